@@ -0,0 +1,256 @@
+package sample;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.reflect.TypeToken;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URLClassLoader;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.inject.Inject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tiger.ReflectiveInjector;
+
+/** Compares the {@link ReflectiveInjector} with the generated components of the sample. */
+public class ReflectiveInjectorTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void applicationComponent_sameAsGenerated() {
+    PseudoApplication expected = new PseudoApplication();
+    createGeneratedApplicationComponent(expected).injectPseudoApplication(expected);
+    PseudoApplication actual = new PseudoApplication();
+    ApplicationComponent component =
+        ReflectiveInjector.createComponent(ApplicationComponent.class, new ApplicationModule(null));
+    component.injectPseudoApplication(actual);
+
+    assertEquals(expected.tank.getClass(), actual.tank.getClass());
+    assertEquals(getClasses(expected.russiaTanks), getClasses(actual.russiaTanks));
+    assertEquals(expected.strings, actual.strings);
+    assertEquals(getValueClasses(expected.planets), getValueClasses(actual.planets));
+    assertEquals(expected.baz.getClass(), actual.baz.getClass());
+    assertSame(component.provideFoo(), component.provideFoo());
+  }
+
+  @Test
+  public void activityComponent_sameAsGenerated() {
+    ApplicationComponent applicationComponent =
+        createGeneratedApplicationComponent(new PseudoApplication());
+    PseudoActivity expected = new PseudoActivity();
+    DaggerActivityComponent.builder()
+        .s1(applicationComponent)
+        .setAlienSource(new AlienSource("Martian"))
+        .b()
+        .injectPseudoActivity(expected);
+    PseudoActivity actual = new PseudoActivity();
+    // The dependency is the generated component, not a proxy of the declared interface.
+    ReflectiveInjector.createComponent(
+            ActivityComponent.class, applicationComponent, new AlienSource("Martian"))
+        .injectPseudoActivity(actual);
+
+    assertEquals(expected.bar.getClass(), actual.bar.getClass());
+    assertSame(actual.bar, actual.bar2);
+    assertEquals(expected.baz.getClass(), actual.baz.getClass());
+    assertEquals(expected.shboom.getClass(), actual.shboom.getClass());
+    assertEquals(expected.alien.toString(), actual.alien.toString());
+    assertEquals(expected.fooByStatic.getClass(), actual.fooByStatic.getClass());
+    assertEquals(expected.optYes.isPresent(), actual.optYes.isPresent());
+    assertEquals(expected.lazyOptYes.isPresent(), actual.lazyOptYes.isPresent());
+    assertEquals(expected.optNo.isPresent(), actual.optNo.isPresent());
+    assertNotNull(actual.buggieInjector);
+  }
+
+  @Test
+  public void dependency_subclassInstance() {
+    PseudoActivity activity = new PseudoActivity();
+    ReflectiveInjector.createComponent(
+            ActivityComponent.class,
+            ReflectiveInjector.createComponent(
+                ApplicationComponent.class, new ApplicationModule(null)),
+            new AlienSource("Martian") {
+              @Override
+              public Alien getAlien() {
+                return new Alien("Venusian");
+              }
+            })
+        .injectPseudoActivity(activity);
+
+    assertEquals("Venusian", activity.alien.toString());
+  }
+
+  @Test
+  public void module_subclassOverride() {
+    PseudoApplication application = new PseudoApplication();
+    ReflectiveInjector.createComponent(
+            ApplicationComponent.class,
+            new ApplicationModule(null) {
+              @Override
+              Planet provideMars() {
+                return new Mercury();
+              }
+            })
+        .injectPseudoApplication(application);
+
+    assertTrue(application.planets.get("mars") instanceof Mercury);
+  }
+
+  @Test
+  public void genericClass_resolvedTypeArguments() {
+    ReflectiveInjector injector = ReflectiveInjector.create(new HashSet<>());
+    UserRepo repo = injector.get(UserRepo.class);
+
+    assertNotNull(repo.item);
+    assertNotNull(repo.holder.value);
+    assertFalse(repo.item == repo.holder.value);
+    Repo<?> userRepo = (Repo<?>) injector.get(new TypeToken<Repo<User>>() {}.getType(), null);
+    assertTrue(userRepo.item instanceof User);
+    assertTrue(userRepo.holder.value instanceof User);
+  }
+
+  @Test
+  public void injectMembers_genericSuperclass() {
+    UserRepo repo = new UserRepo(new User());
+    ReflectiveInjector.create(new HashSet<>()).injectMembers(repo);
+
+    assertTrue(repo.holder.value instanceof User);
+  }
+
+  @Test
+  public void declarations_multibindsAndOptionalReadFromClassFile() throws Exception {
+    TigerCompiler.Result result =
+        new TigerCompiler(folder.newFolder("declarations"))
+            .source(
+                "declarations.DeclarationsModule",
+                "package declarations;",
+                "import dagger.BindsOptionalOf;",
+                "import dagger.Module;",
+                "import dagger.multibindings.Multibinds;",
+                "import java.util.Set;",
+                "@Module public abstract class DeclarationsModule {",
+                "  @Multibinds abstract Set<String> strings();",
+                "  @BindsOptionalOf abstract Set<Integer> integers();",
+                "}")
+            .source(
+                "declarations.DeclarationsComponent",
+                "package declarations;",
+                "import dagger.Component;",
+                "import java.util.Optional;",
+                "import java.util.Set;",
+                "@Component(modules = DeclarationsModule.class)",
+                "public interface DeclarationsComponent {",
+                "  Set<String> strings();",
+                "  Optional<Set<Integer>> integers();",
+                "}")
+            .processors()
+            .compile();
+
+    try (URLClassLoader loader = result.newClassLoader()) {
+      Class<?> componentClass = loader.loadClass("declarations.DeclarationsComponent");
+      Object component =
+          loader
+              .loadClass(ReflectiveInjector.class.getName())
+              .getMethod("createComponent", Class.class, Object[].class)
+              .invoke(null, componentClass, new Object[0]);
+      assertEquals(Collections.emptySet(), componentClass.getMethod("strings").invoke(component));
+      assertEquals(Optional.empty(), componentClass.getMethod("integers").invoke(component));
+    }
+  }
+
+  @Test
+  public void builder_setterOfNeitherModuleNorDependency_fails() throws Exception {
+    TigerCompiler.Result result =
+        new TigerCompiler(folder.newFolder("builder"))
+            .source(
+                "builder.BuilderComponent",
+                "package builder;",
+                "import dagger.Component;",
+                "@Component",
+                "public interface BuilderComponent {",
+                "  String string();",
+                "  @Component.Builder interface Builder {",
+                "    Builder string(String string);",
+                "    BuilderComponent build();",
+                "  }",
+                "}")
+            .processors()
+            .compile();
+
+    try (URLClassLoader loader = result.newClassLoader()) {
+      Class<?> builderClass = loader.loadClass("builder.BuilderComponent$Builder");
+      Object builder =
+          loader
+              .loadClass(ReflectiveInjector.class.getName())
+              .getMethod("createBuilder", Class.class)
+              .invoke(null, builderClass);
+      try {
+        builderClass.getMethod("string", String.class).invoke(builder, "missing @BindsInstance");
+        fail();
+      } catch (InvocationTargetException e) {
+        assertTrue(e.getCause().getMessage(), e.getCause() instanceof IllegalStateException);
+      }
+    }
+  }
+
+  static class User {
+    @Inject
+    User() {}
+  }
+
+  static class Holder<T> {
+    @Inject T value;
+
+    @Inject
+    Holder() {}
+  }
+
+  static class Repo<T> {
+    final T item;
+    @Inject Holder<T> holder;
+
+    @Inject
+    Repo(T item) {
+      this.item = item;
+    }
+  }
+
+  static class UserRepo extends Repo<User> {
+    @Inject
+    UserRepo(User user) {
+      super(user);
+    }
+  }
+
+  private static ApplicationComponent createGeneratedApplicationComponent(
+      PseudoApplication application) {
+    return (ApplicationComponent)
+        DaggerApplicationComponent.builder().s1(new ApplicationModule(null)).create(application);
+  }
+
+  private static Set<Class<?>> getClasses(Collection<?> objects) {
+    Set<Class<?>> result = new HashSet<>();
+    for (Object object : objects) {
+      result.add(object.getClass());
+    }
+    return result;
+  }
+
+  private static Map<String, Class<?>> getValueClasses(Map<String, ?> map) {
+    Map<String, Class<?>> result = new TreeMap<>();
+    for (Map.Entry<String, ?> entry : map.entrySet()) {
+      result.put(entry.getKey(), entry.getValue().getClass());
+    }
+    return result;
+  }
+}
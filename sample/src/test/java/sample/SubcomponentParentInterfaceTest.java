@@ -0,0 +1,100 @@
+package sample;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Method;
+import java.net.URLClassLoader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests what subcomponents get from their parents, calculated children first from the bindings
+ * collected for the hub injectors.
+ */
+public class SubcomponentParentInterfaceTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void grandchildNeeds_passedThroughChild() throws Exception {
+    TigerCompiler.Result result =
+        new TigerCompiler(folder.getRoot())
+            .source(
+                "test.RootModule",
+                "package test;",
+                "import dagger.Module;",
+                "import dagger.Provides;",
+                "@Module public class RootModule {",
+                "  @Provides static String provideString() { return \"root\"; }",
+                "  @Provides static Integer provideInteger() { return 42; }",
+                "}")
+            .source(
+                "test.Greeting",
+                "package test;",
+                "import javax.inject.Inject;",
+                "public class Greeting {",
+                "  public final String text;",
+                "  public final Integer count;",
+                "  @Inject public Greeting(String text, Integer count) {",
+                "    this.text = text;",
+                "    this.count = count;",
+                "  }",
+                "}")
+            .source(
+                "test.GrandchildComponent",
+                "package test;",
+                "import dagger.Subcomponent;",
+                "@Subcomponent public interface GrandchildComponent {",
+                "  Greeting greeting();",
+                "  @Subcomponent.Builder interface Builder { GrandchildComponent build(); }",
+                "}")
+            .source(
+                "test.ChildComponent",
+                "package test;",
+                "import dagger.Subcomponent;",
+                "@Subcomponent public interface ChildComponent {",
+                "  String text();",
+                "  GrandchildComponent.Builder grandchild();",
+                "  @Subcomponent.Builder interface Builder { ChildComponent build(); }",
+                "}")
+            .source(
+                "test.RootComponent",
+                "package test;",
+                "import dagger.Component;",
+                "@Component(modules = RootModule.class) public interface RootComponent {",
+                "  ChildComponent.Builder child();",
+                "}")
+            .compile();
+
+    String childInterface = result.getGeneratedSource("test.DaggerChildComponent_ParentInterface");
+    assertTrue(childInterface, childInterface.contains("String "));
+    assertTrue(childInterface, childInterface.contains("Integer "));
+    String grandchildInterface =
+        result.getGeneratedSource("test.DaggerGrandchildComponent_ParentInterface");
+    assertTrue(grandchildInterface, grandchildInterface.contains("Integer "));
+
+    try (URLClassLoader loader = result.newClassLoader()) {
+      Object root = build(loader.loadClass("test.DaggerRootComponent").getMethod("builder"));
+      Object child = build(call(root, "child"));
+      Object grandchild = build(call(child, "grandchild"));
+      Object greeting = call(grandchild, "greeting");
+      assertEquals("root", greeting.getClass().getField("text").get(greeting));
+      assertEquals(42, greeting.getClass().getField("count").get(greeting));
+    }
+  }
+
+  private static Object call(Object target, String method) throws Exception {
+    Method m = target.getClass().getMethod(method);
+    m.setAccessible(true);
+    return m.invoke(target);
+  }
+
+  private static Object build(Method builderMethod) throws Exception {
+    return call(builderMethod.invoke(null), "build");
+  }
+
+  private static Object build(Object builder) throws Exception {
+    return call(builder, "build");
+  }
+}
@@ -0,0 +1,183 @@
+package sample;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import javax.annotation.processing.Processor;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Compiles sources with the tiger processors in a directory of its own, for tests that need to look
+ * at or run what is generated for a given graph.
+ */
+public class TigerCompiler {
+  private final File root;
+  private final List<String> options = new ArrayList<>();
+  private final List<String> sourceFiles = new ArrayList<>();
+  private final List<String> classPath = new ArrayList<>();
+  @Nullable private List<Processor> processors;
+
+  /** The result of a compilation, the class files and the sources generated. */
+  public static class Result {
+    public final File classes;
+    public final File generated;
+    public final String diagnostics;
+    private final List<String> classPath;
+
+    Result(File classes, File generated, String diagnostics, List<String> classPath) {
+      this.classes = classes;
+      this.generated = generated;
+      this.diagnostics = diagnostics;
+      this.classPath = classPath;
+    }
+
+    /** Returns the generated source of the given top level class, null if not generated. */
+    public String getGeneratedSource(String qualifiedName) throws IOException {
+      File file = new File(generated, qualifiedName.replace('.', '/') + ".java");
+      return file.exists() ? new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8)
+          : null;
+    }
+
+    /** Returns a new class loader of the classes compiled, isolated from those of the test. */
+    public URLClassLoader newClassLoader() throws IOException {
+      List<URL> urls = new ArrayList<>();
+      urls.add(classes.toURI().toURL());
+      for (String entry : classPath) {
+        urls.add(new File(entry).toURI().toURL());
+      }
+      return new URLClassLoader(
+          urls.toArray(new URL[0]), ClassLoader.getSystemClassLoader().getParent());
+    }
+  }
+
+  public TigerCompiler(File root) {
+    this.root = root;
+    classPath.addAll(getClassPathWithoutSample());
+  }
+
+  public TigerCompiler option(String option) {
+    options.add(option);
+    return this;
+  }
+
+  /** Adds a source file with the given content. */
+  public TigerCompiler source(String qualifiedName, String... lines) throws IOException {
+    File file = new File(root, "src/" + qualifiedName.replace('.', '/') + ".java");
+    file.getParentFile().mkdirs();
+    Files.write(file.toPath(), String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    sourceFiles.add(file.getPath());
+    return this;
+  }
+
+  /** Adds the sources of the sample, except MainExtra, which does not compile with tiger. */
+  public TigerCompiler sampleSources() throws IOException {
+    try (Stream<Path> paths = Files.walk(Paths.get("src/main/java"))) {
+      paths
+          .map(Path::toString)
+          .filter(path -> path.endsWith(".java") && !path.endsWith("MainExtra.java"))
+          .forEach(sourceFiles::add);
+    }
+    return this;
+  }
+
+  /** Adds the classes of the given earlier compilation to the class path, e.g., a library. */
+  public TigerCompiler classPath(Result library) {
+    classPath.add(0, library.classes.getPath());
+    return this;
+  }
+
+  /** Adds the given jar or classes directory to the class path. */
+  public TigerCompiler classPath(File entry) {
+    classPath.add(0, entry.getPath());
+    return this;
+  }
+
+  /**
+   * Runs the given processors instead of loading them from the class path, e.g., to look at their
+   * state afterwards.
+   */
+  public TigerCompiler processors(Processor... processors) {
+    this.processors = Arrays.asList(processors);
+    return this;
+  }
+
+  /** Compiles and fails the test on errors. */
+  public Result compile() throws IOException {
+    Result result = compileAllowingErrors();
+    assertEquals(result.diagnostics, "", getErrors(result.diagnostics));
+    return result;
+  }
+
+  /** Compiles and returns the result, whose diagnostics have the errors, if any. */
+  public Result compileAllowingErrors() throws IOException {
+    File classes = new File(root, "classes");
+    File generated = new File(root, "generated");
+    classes.mkdirs();
+    generated.mkdirs();
+    String path = String.join(File.pathSeparator, classPath);
+    List<String> arguments = new ArrayList<>();
+    arguments.addAll(
+        Arrays.asList(
+            "-nowarn", "-d", classes.getPath(), "-s", generated.getPath(), "-classpath", path));
+    if (processors == null) {
+      arguments.addAll(
+          Arrays.asList(
+              "-processorpath",
+              path,
+              "-processor",
+              "tiger.Tiger4ProcessorForComponent,tiger.ProxyProcessor"));
+    }
+    arguments.addAll(options);
+    StringWriter diagnostics = new StringWriter();
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    try (StandardJavaFileManager fileManager =
+        compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+      CompilationTask task =
+          compiler.getTask(
+              diagnostics,
+              fileManager,
+              null,
+              arguments,
+              null,
+              fileManager.getJavaFileObjectsFromStrings(sourceFiles));
+      if (processors != null) {
+        task.setProcessors(processors);
+      }
+      task.call();
+    }
+    return new Result(classes, generated, diagnostics.toString(), new ArrayList<>(classPath));
+  }
+
+  private static String getErrors(String diagnostics) {
+    return Arrays.stream(diagnostics.split("\n"))
+        .filter(line -> line.contains("error:") || line.contains("Exception"))
+        .collect(Collectors.joining("\n"));
+  }
+
+  /**
+   * Returns the class path of the test without the classes of the sample and its tests, which the
+   * processors would see otherwise.
+   */
+  private static List<String> getClassPathWithoutSample() {
+    return Arrays.stream(System.getProperty("java.class.path").split(File.pathSeparator))
+        .filter(entry -> !new File(entry, "sample").isDirectory())
+        .collect(Collectors.toList());
+  }
+}
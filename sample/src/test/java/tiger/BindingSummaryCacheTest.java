@@ -0,0 +1,148 @@
+package tiger;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import sample.TigerCompiler;
+
+/** Tests {@link BindingSummaryCache} across compilations, like those in a build daemon. */
+public class BindingSummaryCacheTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private int compilations;
+
+  @Test
+  public void hitForSameJars_missForChangedJarOrDependencyJar() throws Exception {
+    File dependencyJar =
+        compileToJar(
+            "dep.jar",
+            newCompiler()
+                .source("cachetest.dep.Dep", "package cachetest.dep;", "public class Dep {}"));
+    File libraryJar = compileLibrary("lib.jar", dependencyJar, "");
+
+    assertFalse(lookUp(libraryJar, dependencyJar));
+    assertTrue(lookUp(libraryJar, dependencyJar));
+
+    File changedDependencyJar =
+        compileToJar(
+            "dep2.jar",
+            newCompiler()
+                .source(
+                    "cachetest.dep.Dep",
+                    "package cachetest.dep;",
+                    "public class Dep {",
+                    "  public void changed() {}",
+                    "}"));
+    assertFalse(lookUp(libraryJar, changedDependencyJar));
+    assertTrue(lookUp(libraryJar, changedDependencyJar));
+
+    File changedLibraryJar =
+        compileLibrary(
+            "lib2.jar",
+            changedDependencyJar,
+            "  @Provides public String provideString() { return \"changed\"; }");
+    assertFalse(lookUp(changedLibraryJar, changedDependencyJar));
+    assertTrue(lookUp(changedLibraryJar, changedDependencyJar));
+  }
+
+  /** Returns whether the bindings of the library module are served from the cache. */
+  private boolean lookUp(File libraryJar, File dependencyJar) throws IOException {
+    LookUpProcessor processor = new LookUpProcessor();
+    newCompiler()
+        .classPath(dependencyJar)
+        .classPath(libraryJar)
+        .source("cachetest.app.App", "package cachetest.app;", "class App {}")
+        .processors(processor)
+        .compile();
+    assertTrue(processor.processed);
+    return processor.hit;
+  }
+
+  private File compileLibrary(String name, File dependencyJar, String extraMethod)
+      throws IOException {
+    return compileToJar(
+        name,
+        newCompiler()
+            .classPath(dependencyJar)
+            .source(
+                "cachetest.lib.LibModule",
+                "package cachetest.lib;",
+                "import dagger.Module;",
+                "import dagger.Provides;",
+                "@Module public class LibModule {",
+                "  @Provides public cachetest.dep.Dep provideDep() {",
+                "    return new cachetest.dep.Dep();",
+                "  }",
+                extraMethod,
+                "}"));
+  }
+
+  private TigerCompiler newCompiler() throws IOException {
+    return new TigerCompiler(folder.newFolder("compilation" + ++compilations));
+  }
+
+  private File compileToJar(String name, TigerCompiler compiler) throws IOException {
+    File classes = compiler.processors().compile().classes;
+    File jar = new File(folder.getRoot(), name);
+    try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        Stream<Path> paths = Files.walk(classes.toPath())) {
+      List<Path> files = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+      for (Path file : files) {
+        out.putNextEntry(
+            new JarEntry(classes.toPath().relativize(file).toString().replace('\\', '/')));
+        out.write(Files.readAllBytes(file));
+        out.closeEntry();
+      }
+    }
+    return jar;
+  }
+
+  /** Looks up the library module in a new cache, then collects its bindings like tiger does. */
+  private static class LookUpProcessor extends AbstractProcessor {
+    boolean processed;
+    boolean hit;
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+      return Collections.singleton("*");
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+      return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+      if (processed) {
+        return false;
+      }
+      processed = true;
+      TypeElement module =
+          processingEnv.getElementUtils().getTypeElement("cachetest.lib.LibModule");
+      hit = new BindingSummaryCache(processingEnv).get(module) != null;
+      DependencyCollector.getInstance(processingEnv, new Utils(processingEnv, roundEnv))
+          .collectFromModule(module);
+      return false;
+    }
+  }
+}
@@ -0,0 +1,177 @@
+package tiger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import sample.TigerCompiler;
+
+/** Tests the injectors {@link GeneralInjectorGenerator4} generates. */
+public class GeneralInjectorGenerator4Test {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void sample_smallLimits_shardedAndInitializedByHelpers() throws Exception {
+    TigerCompiler.Result result =
+        new TigerCompiler(folder.getRoot())
+            .sampleSources()
+            .option("-A" + GeneralInjectorGenerator4.OPTION_MAX_BINDINGS_PER_CLASS + "=1")
+            .option("-A" + GeneralInjectorGenerator4.OPTION_MAX_STATEMENTS_PER_METHOD + "=2")
+            .compile();
+
+    String injector = result.getGeneratedSource("sample.DaggerApplicationComponent");
+    assertTrue(injector, injector.contains("final class Shard1 "));
+    assertTrue(injector, injector.contains("initializeFields1();"));
+
+    try (URLClassLoader loader = result.newClassLoader()) {
+      Class<?> injectorClass = loader.loadClass("sample.DaggerApplicationComponent");
+      // Beyond the one field initializer allowed, fields are assigned by the helpers.
+      assertFalse(Modifier.isFinal(injectorClass.getDeclaredField("shard1").getModifiers()));
+
+      String output = runMain(loader).replaceAll("@[0-9a-f]+", "");
+      assertTrue(
+          output,
+          output.startsWith(
+              "application: PseudoApplication[baz: sample.Baz[foo: sample.Fookablams"));
+      assertTrue(output, output.contains("after injection, sub1: "));
+    }
+  }
+
+  @Test
+  public void scopedStorageSlots_sameOutputAsFields() throws Exception {
+    TigerCompiler.Result fields =
+        new TigerCompiler(folder.newFolder("fields")).sampleSources().compile();
+    TigerCompiler.Result slots =
+        new TigerCompiler(folder.newFolder("slots"))
+            .sampleSources()
+            .option(
+                "-A"
+                    + GeneralInjectorGenerator4.OPTION_SCOPED_STORAGE
+                    + "="
+                    + GeneralInjectorGenerator4.SCOPED_STORAGE_SLOTS)
+            .compile();
+
+    String injector = fields.getGeneratedSource("sample.DaggerApplicationComponent");
+    assertTrue(injector, injector.contains("Object lock_"));
+    injector = slots.getGeneratedSource("sample.DaggerApplicationComponent");
+    assertTrue(injector, injector.contains("scopedInstances"));
+    assertTrue(injector, injector.contains("getScopedLock("));
+    // One array of instances and one of locks, no lock field per binding.
+    assertFalse(injector, injector.contains("Object lock_"));
+
+    String expected;
+    try (URLClassLoader loader = fields.newClassLoader()) {
+      expected = runMain(loader).replaceAll("@[0-9a-f]+", "");
+    }
+    try (URLClassLoader loader = slots.newClassLoader()) {
+      assertEquals(expected, runMain(loader).replaceAll("@[0-9a-f]+", ""));
+    }
+  }
+
+  @Test
+  public void singletonHolders_firstInstanceOnly_onlyBindingsNotCallingBack() throws Exception {
+    TigerCompiler.Result result =
+        new TigerCompiler(folder.newFolder("holders"))
+            .option("-A" + GeneralInjectorGenerator4.OPTION_SINGLETON_HOLDERS + "=true")
+            .source(
+                "holders.Foo",
+                "package holders;",
+                "import javax.inject.Inject;",
+                "import javax.inject.Singleton;",
+                "@Singleton public class Foo {",
+                "  @Inject public Foo() {}",
+                "}")
+            .source(
+                "holders.Bar",
+                "package holders;",
+                "import javax.inject.Inject;",
+                "import javax.inject.Provider;",
+                "import javax.inject.Singleton;",
+                "@Singleton public class Bar {",
+                "  @Inject public Bar(Provider<Foo> foo) {}",
+                "}")
+            .source(
+                "holders.Flaky",
+                "package holders;",
+                "import javax.inject.Inject;",
+                "import javax.inject.Singleton;",
+                "@Singleton public class Flaky {",
+                "  static int created;",
+                "  @Inject public Flaky() {",
+                "    if (created++ == 0) {",
+                "      throw new IllegalStateException(\"first\");",
+                "    }",
+                "  }",
+                "}")
+            .source(
+                "holders.HoldersComponent",
+                "package holders;",
+                "import dagger.Component;",
+                "import javax.inject.Singleton;",
+                "@Singleton @Component public interface HoldersComponent {",
+                "  Foo foo();",
+                "  Bar bar();",
+                "  Flaky flaky();",
+                "}")
+            .compile();
+
+    String injector = result.getGeneratedSource("holders.DaggerHoldersComponent");
+    assertTrue(injector, injector.contains("class Holder_holders_Foo "));
+    assertTrue(injector, injector.contains("class Holder_holders_Flaky "));
+    // Bar could call back into the component through the provider.
+    assertFalse(injector, injector.contains("class Holder_holders_Bar "));
+
+    try (URLClassLoader loader = result.newClassLoader()) {
+      Class<?> componentClass = loader.loadClass("holders.HoldersComponent");
+      Object first = createComponent(loader);
+      Object second = createComponent(loader);
+      Method foo = componentClass.getMethod("foo");
+      assertSame(foo.invoke(first), foo.invoke(first));
+      assertSame(foo.invoke(second), foo.invoke(second));
+      // Created twice, each instance of the component gets its own.
+      assertNotSame(foo.invoke(first), foo.invoke(second));
+
+      // A failure in the holder is thrown as is and the creation retried, like without holders.
+      Method flaky = componentClass.getMethod("flaky");
+      try {
+        flaky.invoke(first);
+        fail();
+      } catch (InvocationTargetException e) {
+        assertEquals(IllegalStateException.class, e.getCause().getClass());
+      }
+      assertSame(flaky.invoke(first), flaky.invoke(first));
+      assertNotSame(flaky.invoke(first), flaky.invoke(second));
+    }
+  }
+
+  private static Object createComponent(ClassLoader loader) throws Exception {
+    Object builder =
+        loader.loadClass("holders.DaggerHoldersComponent").getMethod("builder").invoke(null);
+    return builder.getClass().getMethod("build").invoke(builder);
+  }
+
+  private static String runMain(ClassLoader loader) throws Exception {
+    PrintStream out = System.out;
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(bytes, true, "UTF-8"));
+    try {
+      loader.loadClass("sample.Main").getMethod("main", String[].class).invoke(null, (Object) null);
+    } finally {
+      System.setOut(out);
+    }
+    return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,148 @@
+package tiger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+
+/** Tests {@link Producers}. */
+public class ProducersTest {
+  /** Runs the tasks when asked to, so that tests control when producers run. */
+  private final Queue<Runnable> tasks = new ArrayDeque<>();
+  private final Executor executor = tasks::add;
+
+  @Test
+  public void submit_runsOnExecutorOnceInputsAreDone() throws Exception {
+    CompletableFuture<String> input = new CompletableFuture<>();
+    CompletableFuture<String> result =
+        Producers.submit(() -> "hello " + input.join(), executor, input);
+    assertTrue(tasks.isEmpty());
+
+    input.complete("world");
+    assertFalse(result.isDone());
+    runTasks();
+    assertEquals("hello world", result.get());
+  }
+
+  @Test
+  public void submit_failedInput_failsWithSameCause() throws Exception {
+    AtomicBoolean called = new AtomicBoolean();
+    CompletableFuture<String> input = new CompletableFuture<>();
+    CompletableFuture<String> dependant = Producers.submit(() -> input.join(), executor, input);
+    CompletableFuture<String> result =
+        Producers.submit(
+            () -> {
+              called.set(true);
+              return dependant.join();
+            },
+            executor,
+            dependant);
+
+    IllegalStateException failure = new IllegalStateException("input");
+    input.completeExceptionally(failure);
+    runTasks();
+    assertSame(failure, getFailure(result));
+    assertFalse(called.get());
+  }
+
+  @Test
+  public void submit_throwingProducer_failsWithItsException() throws Exception {
+    IllegalStateException failure = new IllegalStateException("producer");
+    CompletableFuture<String> result =
+        Producers.submit(
+            () -> {
+              throw failure;
+            },
+            executor);
+    runTasks();
+    assertSame(failure, getFailure(result));
+  }
+
+  @Test
+  public void submit_cancelledInput_cancelsDependants() {
+    CompletableFuture<String> input = new CompletableFuture<>();
+    CompletableFuture<String> dependant = Producers.submit(() -> input.join(), executor, input);
+    CompletableFuture<String> result =
+        Producers.submit(() -> dependant.join(), executor, dependant);
+
+    input.cancel(false);
+    runTasks();
+    assertTrue(dependant.isCancelled());
+    assertTrue(result.isCancelled());
+  }
+
+  @Test
+  public void submit_cancelledBeforeRun_skipsProducer() {
+    AtomicBoolean called = new AtomicBoolean();
+    CompletableFuture<String> result =
+        Producers.submit(
+            () -> {
+              called.set(true);
+              return "value";
+            },
+            executor);
+    assertEquals(1, tasks.size());
+
+    result.cancel(false);
+    runTasks();
+    assertFalse(called.get());
+  }
+
+  @Test
+  public void submitAsync_cancelled_cancelsReturnedFuture() throws Exception {
+    CompletableFuture<String> returned = new CompletableFuture<>();
+    CompletableFuture<String> result = Producers.submitAsync(() -> returned, executor);
+    runTasks();
+    assertFalse(result.isDone());
+
+    result.cancel(false);
+    assertTrue(returned.isCancelled());
+  }
+
+  @Test
+  public void submitAsync_completedWithReturnedFuture() throws Exception {
+    CompletableFuture<String> returned = new CompletableFuture<>();
+    CompletableFuture<String> result = Producers.submitAsync(() -> returned, executor);
+    runTasks();
+
+    IllegalStateException failure = new IllegalStateException("returned");
+    returned.completeExceptionally(failure);
+    assertSame(failure, getFailure(result));
+  }
+
+  @Test
+  public void submit_rejectedByExecutor_failsWithRejection() throws Exception {
+    RejectedExecutionException rejection = new RejectedExecutionException("shut down");
+    CompletableFuture<String> result =
+        Producers.submit(
+            () -> "value",
+            command -> {
+              throw rejection;
+            });
+    assertSame(rejection, getFailure(result));
+  }
+
+  private void runTasks() {
+    Runnable task;
+    while ((task = tasks.poll()) != null) {
+      task.run();
+    }
+  }
+
+  private static Throwable getFailure(CompletableFuture<?> future) throws InterruptedException {
+    try {
+      throw new AssertionError("completed with " + future.get());
+    } catch (ExecutionException e) {
+      return e.getCause();
+    }
+  }
+}
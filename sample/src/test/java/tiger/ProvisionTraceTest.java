@@ -0,0 +1,62 @@
+package tiger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import org.junit.Test;
+
+/** Tests {@link ProvisionTrace}. */
+public class ProvisionTraceTest {
+  @Test
+  public void writeChromeTrace_wrapped_latestProvisionsAsValidJson() throws Exception {
+    String[] names = {
+      "first", "second", "with \"quotes\"", "back\\slash", "tab\tand\nline", "last"
+    };
+    String json;
+    // The capacity is read once per class, so the trace is loaded again with a small one.
+    String previous = System.setProperty(ProvisionTrace.CAPACITY_PROPERTY, "3");
+    URL classes = ProvisionTrace.class.getProtectionDomain().getCodeSource().getLocation();
+    try (URLClassLoader loader = new URLClassLoader(new URL[] {classes}, null)) {
+      Class<?> traceClass = loader.loadClass(ProvisionTrace.class.getName());
+      long start = System.nanoTime();
+      for (int i = 0; i < names.length; i++) {
+        traceClass
+            .getMethod("record", String.class, long.class)
+            .invoke(null, names[i], start + i * 1000);
+      }
+      StringWriter writer = new StringWriter();
+      traceClass.getMethod("writeChromeTrace", Writer.class).invoke(null, writer);
+      json = writer.toString();
+    } finally {
+      if (previous == null) {
+        System.clearProperty(ProvisionTrace.CAPACITY_PROPERTY);
+      } else {
+        System.setProperty(ProvisionTrace.CAPACITY_PROPERTY, previous);
+      }
+    }
+
+    // Strict parsing, fails on anything but valid JSON.
+    JsonObject trace = new Gson().getAdapter(JsonElement.class).fromJson(json).getAsJsonObject();
+    JsonArray events = trace.getAsJsonArray("traceEvents");
+    // Rounded up to 4, the oldest 2 are overwritten.
+    assertEquals(json, 4, events.size());
+    for (int i = 0; i < 4; i++) {
+      JsonObject event = events.get(i).getAsJsonObject();
+      assertEquals(names[i + 2], event.get("name").getAsString());
+      assertEquals("X", event.get("ph").getAsString());
+      assertEquals(Thread.currentThread().getId(), event.get("tid").getAsLong());
+      assertTrue(json, event.get("dur").getAsDouble() >= 0);
+    }
+    // Relative to the earliest start kept, in microseconds.
+    assertEquals(0, events.get(0).getAsJsonObject().get("ts").getAsDouble(), 0);
+    assertEquals(3, events.get(3).getAsJsonObject().get("ts").getAsDouble(), 0);
+  }
+}
@@ -0,0 +1,66 @@
+package tiger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URLClassLoader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import sample.TigerCompiler;
+
+/** Tests the proxies {@link ProxyGenerator} generates for the hub injectors. */
+public class ProxyGeneratorTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void onlyNonPublicTargetsWrapped() throws Exception {
+    TigerCompiler.Result result =
+        new TigerCompiler(folder.getRoot())
+            .source(
+                "open.OpenModule",
+                "package open;",
+                "import dagger.Module;",
+                "import dagger.Provides;",
+                "@Module public class OpenModule {",
+                "  @Provides public String provideString() { return \"open\"; }",
+                "}")
+            .source(
+                "closed.ClosedModule",
+                "package closed;",
+                "import dagger.Module;",
+                "import dagger.Provides;",
+                "@Module public class ClosedModule {",
+                "  @Provides public Integer provideInteger() { return 1; }",
+                "  @Provides Long provideLong() { return 2L; }",
+                "}")
+            .source(
+                "open.AppComponent",
+                "package open;",
+                "import dagger.Component;",
+                "@Component(modules = {OpenModule.class, closed.ClosedModule.class})",
+                "public interface AppComponent {",
+                "  String string();",
+                "  Integer integer();",
+                "  Long longValue();",
+                "}")
+            .compile();
+
+    assertNull(result.getGeneratedSource("open.TigerProxy"));
+    String proxy = result.getGeneratedSource("closed.TigerProxy");
+    assertTrue(proxy, proxy.contains("provideLong"));
+    assertFalse(proxy, proxy.contains("provideInteger"));
+
+    try (URLClassLoader loader = result.newClassLoader()) {
+      Object builder =
+          loader.loadClass("open.DaggerAppComponent").getMethod("builder").invoke(null);
+      Object component = builder.getClass().getMethod("build").invoke(builder);
+      Class<?> componentClass = loader.loadClass("open.AppComponent");
+      assertEquals("open", componentClass.getMethod("string").invoke(component));
+      assertEquals(1, componentClass.getMethod("integer").invoke(component));
+      assertEquals(2L, componentClass.getMethod("longValue").invoke(component));
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package tiger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+/** Tests {@link ScopedInitializer}. */
+public class ScopedInitializerTest {
+  @Test
+  public void lock_sameBindingInSameThread_failsWithTrail() {
+    ScopedInitializer initializer = new ScopedInitializer();
+    initializer.lock("Foo");
+    initializer.lock("Bar");
+    try {
+      initializer.lock("Foo");
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals("Cycle in creating scoped bindings: [Foo, Bar] -> Foo", e.getMessage());
+    } finally {
+      initializer.unlock("Bar");
+      initializer.unlock("Foo");
+    }
+    // Released, so locked again without failure.
+    initializer.lock("Foo");
+    initializer.unlock("Foo");
+  }
+
+  @Test
+  public void lock_heldByOtherThread_waitsUntilUnlocked() throws Exception {
+    ScopedInitializer initializer = new ScopedInitializer();
+    initializer.lock("Foo");
+    CountDownLatch locked = new CountDownLatch(1);
+    Thread waiter =
+        new Thread(
+            () -> {
+              initializer.lock("Foo");
+              locked.countDown();
+              initializer.unlock("Foo");
+            });
+    waiter.start();
+    awaitWaiting(waiter);
+    assertEquals(1, locked.getCount());
+
+    initializer.unlock("Foo");
+    locked.await();
+    waiter.join();
+  }
+
+  @Test
+  public void lock_acrossThreads_failsOnDeadlock() throws Exception {
+    ScopedInitializer initializer = new ScopedInitializer();
+    // Another injector, the bookkeeping is shared.
+    ScopedInitializer other = new ScopedInitializer();
+    initializer.lock("Foo");
+    CountDownLatch barLocked = new CountDownLatch(1);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    Thread thread =
+        new Thread(
+            () -> {
+              other.lock("Bar");
+              barLocked.countDown();
+              try {
+                initializer.lock("Foo");
+                initializer.unlock("Foo");
+              } catch (Throwable e) {
+                failure.set(e);
+              } finally {
+                other.unlock("Bar");
+              }
+            });
+    thread.start();
+    barLocked.await();
+
+    // The other thread waits for Foo, or fails since this one waits for Bar.
+    try {
+      other.lock("Bar");
+      other.unlock("Bar");
+    } catch (IllegalStateException e) {
+      failure.compareAndSet(null, e);
+    } finally {
+      initializer.unlock("Foo");
+    }
+    thread.join();
+
+    Throwable e = failure.get();
+    assertTrue(String.valueOf(e), e instanceof IllegalStateException);
+    assertTrue(e.getMessage(), e.getMessage().startsWith("Deadlock in creating scoped bindings: "));
+    assertTrue(e.getMessage(), e.getMessage().contains("[Foo]"));
+    assertTrue(e.getMessage(), e.getMessage().contains("[Bar]"));
+  }
+
+  private static void awaitWaiting(Thread thread) throws InterruptedException {
+    while (thread.getState() != Thread.State.WAITING) {
+      Thread.sleep(1);
+    }
+  }
+}
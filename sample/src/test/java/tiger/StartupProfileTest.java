@@ -0,0 +1,131 @@
+package tiger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import sample.TigerCompiler;
+
+/** Tests {@link StartupProfile} and the injectors generated from the profiles it writes. */
+public class StartupProfileTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void writeTo_read_earliestCreationsInOrder() throws Exception {
+    StartupProfile.record("roundtrip.Injector", "provide_b", 20, 25);
+    StartupProfile.record("roundtrip.Injector", "provide_a", 10, 30);
+    StartupProfile.record("roundtrip.Other", "provide_c", 15, 16);
+    // Another instance of the injector, created later.
+    StartupProfile.record("roundtrip.Injector", "provide_a", 40, 41);
+
+    StringWriter writer = new StringWriter();
+    StartupProfile.writeTo(writer);
+    StringBuilder profile = new StringBuilder("# comment\n\n");
+    for (String line : writer.toString().split("\n")) {
+      // Others in the same JVM could have recorded too.
+      if (line.startsWith("roundtrip.")) {
+        profile.append(line).append('\n');
+      }
+    }
+    assertEquals(
+        "# comment\n\n"
+            + "roundtrip.Injector provide_a 20\n"
+            + "roundtrip.Other provide_c 1\n"
+            + "roundtrip.Injector provide_b 5\n",
+        profile.toString());
+
+    Map<String, List<String>> read =
+        StartupProfile.read(new BufferedReader(new StringReader(profile.toString())));
+    assertEquals(
+        ImmutableMap.of(
+            "roundtrip.Injector", Arrays.asList("provide_a", "provide_b"),
+            "roundtrip.Other", Arrays.asList("provide_c")),
+        read);
+  }
+
+  @Test
+  public void recordedThenUsed_hotWarmedUp_coldSharded() throws Exception {
+    TigerCompiler.Result recording =
+        addSources(new TigerCompiler(folder.newFolder("recording")))
+            .option("-A" + GeneralInjectorGenerator4.OPTION_RECORD_STARTUP_PROFILE + "=true")
+            .compile();
+    File profile = new File(folder.getRoot(), "startup.profile");
+    try (URLClassLoader loader = recording.newClassLoader()) {
+      Object builder =
+          loader.loadClass("profile.DaggerProfileComponent").getMethod("builder").invoke(null);
+      Object component = builder.getClass().getMethod("build").invoke(builder);
+      loader.loadClass("profile.ProfileComponent").getMethod("hot").invoke(component);
+      // The runtime classes of the loader, not the ones of this test.
+      try (Writer writer = Files.newBufferedWriter(profile.toPath(), StandardCharsets.UTF_8)) {
+        loader
+            .loadClass(StartupProfile.class.getName())
+            .getMethod("writeTo", Writer.class)
+            .invoke(null, writer);
+      }
+    }
+    String recorded = new String(Files.readAllBytes(profile.toPath()), StandardCharsets.UTF_8);
+    assertTrue(recorded, recorded.contains("_profile_Hot "));
+    assertFalse(recorded, recorded.contains("_profile_Cold "));
+
+    TigerCompiler.Result profiled =
+        addSources(new TigerCompiler(folder.newFolder("profiled")))
+            .option("-A" + GeneralInjectorGenerator4.OPTION_STARTUP_PROFILE + "=" + profile)
+            .compile();
+    String injector = profiled.getGeneratedSource("profile.DaggerProfileComponent");
+    assertTrue(injector, injector.contains("class ColdShard "));
+    assertTrue(injector, injector.contains("warmUp("));
+    try (URLClassLoader loader = profiled.newClassLoader()) {
+      Object builder =
+          loader.loadClass("profile.DaggerProfileComponent").getMethod("builder").invoke(null);
+      Object component = builder.getClass().getMethod("build").invoke(builder);
+      Class<?> componentClass = loader.loadClass("profile.ProfileComponent");
+      assertEquals(
+          componentClass.getMethod("cold").invoke(component),
+          componentClass.getMethod("cold").invoke(component));
+    }
+  }
+
+  private static TigerCompiler addSources(TigerCompiler compiler) throws Exception {
+    return compiler
+        .source(
+            "profile.Hot",
+            "package profile;",
+            "import javax.inject.Inject;",
+            "import javax.inject.Singleton;",
+            "@Singleton public class Hot {",
+            "  @Inject public Hot() {}",
+            "}")
+        .source(
+            "profile.Cold",
+            "package profile;",
+            "import javax.inject.Inject;",
+            "import javax.inject.Singleton;",
+            "@Singleton public class Cold {",
+            "  @Inject public Cold(Hot hot) {}",
+            "}")
+        .source(
+            "profile.ProfileComponent",
+            "package profile;",
+            "import dagger.Component;",
+            "import javax.inject.Singleton;",
+            "@Singleton @Component public interface ProfileComponent {",
+            "  Hot hot();",
+            "  Cold cold();",
+            "}");
+  }
+}
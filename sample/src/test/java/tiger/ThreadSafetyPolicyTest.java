@@ -0,0 +1,158 @@
+package tiger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Method;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import sample.TigerCompiler;
+
+/** Tests the scoped bindings stored as their {@link ThreadSafetyPolicy} specifies. */
+public class ThreadSafetyPolicyTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void policies_fromScopeThenComponent() throws Exception {
+    TigerCompiler.Result result =
+        new TigerCompiler(folder.getRoot())
+            .source(
+                "policies.Confined",
+                "package policies;",
+                "import javax.inject.Inject;",
+                "import javax.inject.Singleton;",
+                "@Singleton public class Confined {",
+                "  @Inject public Confined() {}",
+                "}")
+            .source(
+                "policies.ConfinedComponent",
+                "package policies;",
+                "import dagger.Component;",
+                "import javax.inject.Singleton;",
+                "import tiger.ThreadSafety;",
+                "import tiger.ThreadSafetyPolicy;",
+                "@Singleton @ThreadSafety(ThreadSafetyPolicy.CONFINED)",
+                "@Component public interface ConfinedComponent {",
+                "  Confined confined();",
+                "}")
+            .source(
+                "policies.Concurrent",
+                "package policies;",
+                "import java.util.concurrent.atomic.AtomicInteger;",
+                "import javax.inject.Inject;",
+                "import javax.inject.Singleton;",
+                "@Singleton public class Concurrent {",
+                "  public static final AtomicInteger created = new AtomicInteger();",
+                "  @Inject public Concurrent() {",
+                "    created.incrementAndGet();",
+                "    try {",
+                "      Thread.sleep(50);",
+                "    } catch (InterruptedException e) {",
+                "      throw new AssertionError(e);",
+                "    }",
+                "  }",
+                "}")
+            .source(
+                "policies.ConcurrentComponent",
+                "package policies;",
+                "import dagger.Component;",
+                "import javax.inject.Singleton;",
+                "import tiger.ThreadSafety;",
+                "import tiger.ThreadSafetyPolicy;",
+                "@Singleton @ThreadSafety(ThreadSafetyPolicy.CONCURRENT)",
+                "@Component public interface ConcurrentComponent {",
+                "  Concurrent concurrent();",
+                "}")
+            .source(
+                "policies.EagerScope",
+                "package policies;",
+                "import javax.inject.Scope;",
+                "import tiger.ThreadSafety;",
+                "import tiger.ThreadSafetyPolicy;",
+                "@Scope @ThreadSafety(ThreadSafetyPolicy.EAGER)",
+                "public @interface EagerScope {}")
+            .source(
+                "policies.Eager",
+                "package policies;",
+                "import javax.inject.Inject;",
+                "@EagerScope public class Eager {",
+                "  public static int created;",
+                "  @Inject public Eager() {",
+                "    created++;",
+                "  }",
+                "}")
+            .source(
+                "policies.EagerComponent",
+                "package policies;",
+                "import dagger.Component;",
+                "import tiger.ThreadSafety;",
+                "import tiger.ThreadSafetyPolicy;",
+                "// The one on the scope wins.",
+                "@EagerScope @ThreadSafety(ThreadSafetyPolicy.CONFINED)",
+                "@Component public interface EagerComponent {",
+                "  Eager eager();",
+                "}")
+            .compile();
+
+    String confined = result.getGeneratedSource("policies.DaggerConfinedComponent");
+    assertFalse(confined, confined.contains("volatile"));
+    assertFalse(confined, confined.contains("synchronized"));
+    String concurrent = result.getGeneratedSource("policies.DaggerConcurrentComponent");
+    assertTrue(concurrent, concurrent.contains("volatile"));
+    assertTrue(concurrent, concurrent.contains("synchronized"));
+    String eager = result.getGeneratedSource("policies.DaggerEagerComponent");
+    assertFalse(eager, eager.contains("volatile"));
+    assertFalse(eager, eager.contains("synchronized"));
+
+    try (URLClassLoader loader = result.newClassLoader()) {
+      Object confinedComponent = createComponent(loader, "policies.DaggerConfinedComponent");
+      Method confinedMethod =
+          loader.loadClass("policies.ConfinedComponent").getMethod("confined");
+      Object confinedInstance = confinedMethod.invoke(confinedComponent);
+      assertSame(confinedInstance, confinedMethod.invoke(confinedComponent));
+
+      Object concurrentComponent = createComponent(loader, "policies.DaggerConcurrentComponent");
+      Method concurrentMethod =
+          loader.loadClass("policies.ConcurrentComponent").getMethod("concurrent");
+      ExecutorService executor = Executors.newFixedThreadPool(8);
+      try {
+        List<Future<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+          Callable<Object> task = () -> concurrentMethod.invoke(concurrentComponent);
+          futures.add(executor.submit(task));
+        }
+        for (Future<Object> future : futures) {
+          assertSame(futures.get(0).get(), future.get());
+        }
+      } finally {
+        executor.shutdown();
+      }
+      Object created = loader.loadClass("policies.Concurrent").getField("created").get(null);
+      assertEquals(1, ((AtomicInteger) created).get());
+
+      Class<?> eagerClass = loader.loadClass("policies.Eager");
+      Object eagerComponent = createComponent(loader, "policies.DaggerEagerComponent");
+      // Created by the ctor of the injector, before being asked for.
+      assertEquals(1, eagerClass.getField("created").getInt(null));
+      Method eagerMethod = loader.loadClass("policies.EagerComponent").getMethod("eager");
+      assertSame(eagerMethod.invoke(eagerComponent), eagerMethod.invoke(eagerComponent));
+      assertEquals(1, eagerClass.getField("created").getInt(null));
+    }
+  }
+
+  private static Object createComponent(ClassLoader loader, String injector) throws Exception {
+    Object builder = loader.loadClass(injector).getMethod("builder").invoke(null);
+    return builder.getClass().getMethod("build").invoke(builder);
+  }
+}
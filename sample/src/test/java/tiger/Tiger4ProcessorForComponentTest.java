@@ -0,0 +1,29 @@
+package tiger;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import sample.TigerCompiler;
+
+/** Tests the state {@link Tiger4ProcessorForComponent} keeps while generating hub injectors. */
+public class Tiger4ProcessorForComponentTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void sample_nothingKeptPerComponentAfterGeneration() throws Exception {
+    Tiger4ProcessorForComponent processor = new Tiger4ProcessorForComponent();
+    TigerCompiler.Result result =
+        new TigerCompiler(folder.getRoot())
+            .sampleSources()
+            .processors(processor, new ProxyProcessor())
+            .compile();
+
+    assertNotNull(result.getGeneratedSource("sample.DaggerApplicationComponent"));
+    assertNotNull(
+        result.getGeneratedSource("sample.DaggerAppSub1Sub1Component_ParentInterface"));
+    assertTrue(processor.holdsNoEitherComponent());
+  }
+}
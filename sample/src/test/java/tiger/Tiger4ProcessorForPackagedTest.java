@@ -0,0 +1,85 @@
+package tiger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Sets;
+import java.io.File;
+import java.net.URLClassLoader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import sample.TigerCompiler;
+
+/** Tests the library mode of {@link Tiger4ProcessorForPackaged} and linking the app. */
+public class Tiger4ProcessorForPackagedTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void libraryMode_appLinksFromSerializedBindings() throws Exception {
+    TigerCompiler.Result library =
+        new TigerCompiler(folder.newFolder("library"))
+            .option("-A" + Tiger4ProcessorForPackaged.OPTION_MODE + "=library")
+            .source(
+                "lib.LibModule",
+                "package lib;",
+                "import dagger.Module;",
+                "import dagger.Provides;",
+                "import javax.inject.Named;",
+                "@Module public class LibModule {",
+                "  @Provides @Named(\"greeting\") public String provideGreeting(Thing thing) {",
+                "    return \"hello \" + thing.name;",
+                "  }",
+                "}")
+            .source(
+                "lib.Thing",
+                "package lib;",
+                "import javax.inject.Inject;",
+                "public class Thing {",
+                "  final String name = \"thing\";",
+                "  @Inject public Thing() {}",
+                "}")
+            .source(
+                "lib.LibComponent",
+                "package lib;",
+                "import dagger.Component;",
+                "import javax.inject.Named;",
+                "@Component(modules = LibModule.class)",
+                "public interface LibComponent {",
+                "  @Named(\"greeting\") String greeting();",
+                "}")
+            .compile();
+
+    assertNull(library.getGeneratedSource("lib.DaggerLibComponent"));
+    assertTrue(
+        library.diagnostics,
+        library.diagnostics.contains("lib.DaggerLibComponent is not generated in library mode"));
+    File[] bindings =
+        new File(library.classes, LinkedEitherComponents.PACKAGE.replace('.', '/'))
+            .listFiles((dir, name) -> name.endsWith(".json"));
+    assertEquals(1, bindings.length);
+
+    // No annotations in the app, still linked.
+    Tiger4ProcessorForComponent processor = new Tiger4ProcessorForComponent();
+    TigerCompiler.Result app =
+        new TigerCompiler(folder.newFolder("app"))
+            .classPath(library)
+            .source(
+                "app.App",
+                "package app;",
+                "public class App {",
+                "  public static String greet() {",
+                "    return lib.DaggerLibComponent.builder().build().greeting();",
+                "  }",
+                "}")
+            .processors(processor, new ProxyProcessor())
+            .compile();
+
+    assertEquals(
+        Sets.newHashSet("lib.LibModule", "lib.Thing"), processor.getLinkedBindingClassNames());
+    try (URLClassLoader loader = app.newClassLoader()) {
+      assertEquals("hello thing", loader.loadClass("app.App").getMethod("greet").invoke(null));
+    }
+  }
+}
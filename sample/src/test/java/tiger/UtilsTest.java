@@ -0,0 +1,80 @@
+package tiger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import sample.TigerCompiler;
+
+/** Tests {@link Utils} against the types of a compilation. */
+public class UtilsTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void getTypeFromTypeName_sameMirrorForEqualNames() throws Exception {
+    List<TypeMirror> mirrors = new ArrayList<>();
+    runWithUtils(
+        utils -> {
+          TypeName list = ParameterizedTypeName.get(List.class, String.class);
+          mirrors.add(utils.getTypeFromTypeName(list));
+          mirrors.add(
+              utils.getTypeFromTypeName(
+                  ParameterizedTypeName.get(ClassName.get(List.class), ClassName.get(String.class))));
+          assertEquals(list, TypeName.get(mirrors.get(0)));
+          utils.clearCaches();
+          assertTrue(utils.hasNoCaches());
+          mirrors.add(utils.getTypeFromTypeName(list));
+        });
+
+    assertEquals(3, mirrors.size());
+    assertSame(mirrors.get(0), mirrors.get(1));
+    assertEquals(mirrors.get(0).toString(), mirrors.get(2).toString());
+  }
+
+  /** Runs the given code in the first round of a compilation with the {@link Utils} of it. */
+  private void runWithUtils(Consumer<Utils> code) throws Exception {
+    new TigerCompiler(folder.getRoot())
+        .source("test.Empty", "package test;", "class Empty {}")
+        .processors(
+            new AbstractProcessor() {
+              private boolean done;
+
+              @Override
+              public Set<String> getSupportedAnnotationTypes() {
+                return Collections.singleton("*");
+              }
+
+              @Override
+              public SourceVersion getSupportedSourceVersion() {
+                return SourceVersion.latestSupported();
+              }
+
+              @Override
+              public boolean process(
+                  Set<? extends TypeElement> annotations, RoundEnvironment roundEnvironment) {
+                if (!done) {
+                  done = true;
+                  code.accept(new Utils(processingEnv, roundEnvironment));
+                }
+                return false;
+              }
+            })
+        .compile();
+  }
+}
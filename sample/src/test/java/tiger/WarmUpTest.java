@@ -0,0 +1,144 @@
+package tiger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Method;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import sample.TigerCompiler;
+
+/** Tests {@link WarmUp} and the warm-up methods of generated injectors. */
+public class WarmUpTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+  @After
+  public void tearDown() {
+    executor.shutdown();
+  }
+
+  @Test
+  public void start_eachStepAfterItsDependencies() throws Exception {
+    List<Integer> done = new CopyOnWriteArrayList<>();
+    WarmUp.start(executor, new int[][] {{}, {}, {0}, {0, 1}, {2, 3}}, done::add).get();
+
+    assertEquals(5, done.size());
+    assertTrue(done.toString(), done.indexOf(0) < done.indexOf(2));
+    assertTrue(done.toString(), done.indexOf(0) < done.indexOf(3));
+    assertTrue(done.toString(), done.indexOf(1) < done.indexOf(3));
+    assertTrue(done.toString(), done.indexOf(2) < done.indexOf(4));
+    assertTrue(done.toString(), done.indexOf(3) < done.indexOf(4));
+  }
+
+  @Test
+  public void start_failure_completesExceptionallyAndSkipsDependants() throws Exception {
+    List<Integer> done = new CopyOnWriteArrayList<>();
+    IllegalStateException failure = new IllegalStateException("step 1");
+    CompletableFuture<Void> future =
+        WarmUp.start(
+            executor,
+            new int[][] {{}, {0}, {1}, {0}},
+            index -> {
+              if (index == 1) {
+                throw failure;
+              }
+              done.add(index);
+            });
+    try {
+      future.get();
+      fail();
+    } catch (ExecutionException e) {
+      assertSame(failure, e.getCause());
+    }
+    assertFalse(done.toString(), done.contains(2));
+    assertTrue(done.toString(), done.contains(0));
+  }
+
+  @Test
+  public void generatedWarmUp_createsScopedBindingsInDependencyOrder() throws Exception {
+    TigerCompiler.Result result =
+        new TigerCompiler(folder.getRoot())
+            .option("-A" + GeneralInjectorGenerator4.OPTION_WARM_UP + "=true")
+            .source(
+                "warmup.Log",
+                "package warmup;",
+                "import java.util.List;",
+                "import java.util.concurrent.CopyOnWriteArrayList;",
+                "public class Log {",
+                "  public static final List<String> created = new CopyOnWriteArrayList<>();",
+                "}")
+            .source(
+                "warmup.Foo",
+                "package warmup;",
+                "import javax.inject.Inject;",
+                "import javax.inject.Singleton;",
+                "@Singleton public class Foo {",
+                "  @Inject public Foo() {",
+                "    Log.created.add(\"Foo\");",
+                "  }",
+                "}")
+            .source(
+                "warmup.Bar",
+                "package warmup;",
+                "import javax.inject.Inject;",
+                "import javax.inject.Singleton;",
+                "@Singleton public class Bar {",
+                "  @Inject public Bar(Foo foo) {",
+                "    Log.created.add(\"Bar\");",
+                "  }",
+                "}")
+            .source(
+                "warmup.Baz",
+                "package warmup;",
+                "import javax.inject.Inject;",
+                "import javax.inject.Singleton;",
+                "@Singleton public class Baz {",
+                "  @Inject public Baz(Bar bar, Foo foo) {",
+                "    Log.created.add(\"Baz\");",
+                "  }",
+                "}")
+            .source(
+                "warmup.WarmUpComponent",
+                "package warmup;",
+                "import dagger.Component;",
+                "import javax.inject.Singleton;",
+                "@Singleton @Component public interface WarmUpComponent {",
+                "  Baz baz();",
+                "}")
+            .compile();
+
+    try (URLClassLoader loader = result.newClassLoader()) {
+      Class<?> injectorClass = loader.loadClass("warmup.DaggerWarmUpComponent");
+      Object builder = injectorClass.getMethod("builder").invoke(null);
+      Object component = builder.getClass().getMethod("build").invoke(builder);
+      @SuppressWarnings("unchecked")
+      List<String> created =
+          (List<String>) loader.loadClass("warmup.Log").getField("created").get(null);
+      assertEquals(0, created.size());
+
+      Method warmUp = injectorClass.getMethod("warmUp", Executor.class);
+      ((CompletableFuture<?>) warmUp.invoke(component, executor)).get();
+      assertEquals(Arrays.asList("Foo", "Bar", "Baz"), created);
+
+      // Already created.
+      loader.loadClass("warmup.WarmUpComponent").getMethod("baz").invoke(component);
+      assertEquals(3, created.size());
+    }
+  }
+}
@@ -0,0 +1,349 @@
+package tiger;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.WildcardTypeName;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import javax.annotation.Nullable;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Caches the bindings collected from modules and ctor injected classes that come from jars on the
+ * classpath. The cache is static so it lives as long as the processor's class loader, e.g., across
+ * builds in a Gradle daemon. Entries are keyed by the content hash of the jar of the class and
+ * hold the hashes of the jars of the classes the bindings refer to, i.e., key types, qualifiers
+ * and annotations, so a changed jar or dependency jar simply misses. Summaries hold only keys and
+ * member indexes and are turned back into {@link DependencyInfo}s with the elements of the current
+ * compilation. Classes from sources or directories are never cached.
+ */
+class BindingSummaryCache {
+  private static final int MAX_SUMMARIES = 20000;
+  private static final int MAX_JARS = 500;
+  /** Origin of classes not from a jar, e.g., sources, directories and the platform. */
+  private static final String NOT_FROM_JAR = "";
+
+  /** From jar hash and class name to the bindings of the class. */
+  private static final Map<String, Entry> entries =
+      Collections.synchronizedMap(createLruMap(MAX_SUMMARIES));
+  /** From jar path, size and modified time to the hash and class files of the jar. */
+  private static final Map<String, Jar> jars = Collections.synchronizedMap(createLruMap(MAX_JARS));
+
+  private final ProcessingEnvironment env;
+  /** From binary name of top level class to the hash of its jar, for this compilation. */
+  private final Map<String, String> originHashes = new HashMap<>();
+  /** From package to the jars its classes have been found in, for this compilation. */
+  private final Map<String, List<Jar>> packageJars = new HashMap<>();
+
+  BindingSummaryCache(ProcessingEnvironment env) {
+    this.env = env;
+  }
+
+  /**
+   * Returns the cached bindings of the class, null if not cached or the class is not from a jar.
+   */
+  @Nullable
+  Collection<DependencyInfo> get(TypeElement cls) {
+    String cacheKey = getCacheKey(cls);
+    if (cacheKey == null) {
+      return null;
+    }
+    Entry entry = entries.get(cacheKey);
+    if (entry == null) {
+      return null;
+    }
+    for (Map.Entry<String, String> i : entry.dependencyJarHashes.entrySet()) {
+      if (!getOriginHash(i.getKey()).equals(i.getValue())) {
+        entries.remove(cacheKey);
+        return null;
+      }
+    }
+    List<? extends Element> enclosedElements = cls.getEnclosedElements();
+    Collection<DependencyInfo> result = new HashSet<>();
+    for (Summary summary : entry.summaries) {
+      ExecutableElement method = null;
+      if (summary.methodIndex >= 0) {
+        if (summary.methodIndex >= enclosedElements.size()
+            || !enclosedElements
+                .get(summary.methodIndex)
+                .getSimpleName()
+                .contentEquals(summary.methodName)) {
+          entries.remove(cacheKey);
+          return null;
+        }
+        method = (ExecutableElement) enclosedElements.get(summary.methodIndex);
+      }
+      result.add(
+          new DependencyInfo(
+              summary.sourceType,
+              summary.dependant,
+              new HashSet<>(summary.dependencies),
+              cls,
+              method,
+              summary.provisionType));
+    }
+    return result;
+  }
+
+  /** Caches the given bindings of the class if it is from a jar. */
+  void put(TypeElement cls, Collection<DependencyInfo> dependencyInfos) {
+    String cacheKey = getCacheKey(cls);
+    if (cacheKey == null) {
+      return;
+    }
+    List<? extends Element> enclosedElements = cls.getEnclosedElements();
+    ImmutableList.Builder<Summary> builder = ImmutableList.builder();
+    Set<String> dependencyClasses = new HashSet<>();
+    addClasses(dependencyClasses, cls.getAnnotationMirrors());
+    for (DependencyInfo info : dependencyInfos) {
+      ExecutableElement method = info.getProvisionMethodElement();
+      int methodIndex = method == null ? -1 : enclosedElements.indexOf(method);
+      if (method != null && methodIndex < 0) {
+        return;
+      }
+      if (method != null) {
+        addClasses(dependencyClasses, method.getAnnotationMirrors());
+        for (VariableElement parameter : method.getParameters()) {
+          addClasses(dependencyClasses, parameter.getAnnotationMirrors());
+        }
+      }
+      for (BindingKey key : Iterables.concat(
+          Collections.singleton(info.getDependant()), info.getDependencies())) {
+        addClasses(dependencyClasses, key.getTypeName());
+        if (key.getQualifier() != null) {
+          addClasses(dependencyClasses, key.getQualifier().type);
+        }
+      }
+      builder.add(
+          new Summary(
+              info.getDependencySourceType(),
+              info.getType(),
+              info.getDependant(),
+              ImmutableSet.copyOf(info.getDependencies()),
+              methodIndex,
+              method == null ? null : method.getSimpleName().toString()));
+    }
+    ImmutableMap.Builder<String, String> dependencyJarHashes = ImmutableMap.builder();
+    for (String dependencyClass : dependencyClasses) {
+      String hash = getOriginHash(dependencyClass);
+      if (!hash.equals(NOT_FROM_JAR)) {
+        dependencyJarHashes.put(dependencyClass, hash);
+      }
+    }
+    entries.put(cacheKey, new Entry(builder.build(), dependencyJarHashes.build()));
+  }
+
+  @Nullable
+  private String getCacheKey(TypeElement cls) {
+    TypeElement topLevel = cls;
+    while (topLevel.getEnclosingElement() instanceof TypeElement) {
+      topLevel = (TypeElement) topLevel.getEnclosingElement();
+    }
+    String jarHash = getOriginHash(env.getElementUtils().getBinaryName(topLevel).toString());
+    return jarHash.equals(NOT_FROM_JAR) ? null : jarHash + "!" + cls.getQualifiedName();
+  }
+
+  /** Adds the binary names of the top level classes of the given annotations. */
+  private void addClasses(Set<String> result, List<? extends AnnotationMirror> annotations) {
+    for (AnnotationMirror annotation : annotations) {
+      addClasses(result, TypeName.get(annotation.getAnnotationType()));
+    }
+  }
+
+  /**
+   * Adds the binary names of the top level classes in the given type, type arguments, array
+   * components and bounds included.
+   */
+  private void addClasses(Set<String> result, TypeName typeName) {
+    if (typeName instanceof ParameterizedTypeName) {
+      ParameterizedTypeName parameterizedTypeName = (ParameterizedTypeName) typeName;
+      addClasses(result, parameterizedTypeName.rawType);
+      for (TypeName typeArgument : parameterizedTypeName.typeArguments) {
+        addClasses(result, typeArgument);
+      }
+    } else if (typeName instanceof ArrayTypeName) {
+      addClasses(result, ((ArrayTypeName) typeName).componentType);
+    } else if (typeName instanceof WildcardTypeName) {
+      WildcardTypeName wildcardTypeName = (WildcardTypeName) typeName;
+      for (TypeName bound : Iterables.concat(
+          wildcardTypeName.upperBounds, wildcardTypeName.lowerBounds)) {
+        addClasses(result, bound);
+      }
+    } else if (typeName instanceof ClassName) {
+      ClassName topLevel = (ClassName) typeName;
+      while (topLevel.enclosingClassName() != null) {
+        topLevel = topLevel.enclosingClassName();
+      }
+      result.add(
+          topLevel.packageName().isEmpty()
+              ? topLevel.simpleName()
+              : topLevel.packageName() + "." + topLevel.simpleName());
+    }
+  }
+
+  /**
+   * Returns the content hash of the jar the given top level class is from, {@link #NOT_FROM_JAR}
+   * if not from a jar. Each package is looked up in the jars its other classes come from first, so
+   * the class path is searched about once per package and jar.
+   */
+  private String getOriginHash(String binaryName) {
+    String result = originHashes.get(binaryName);
+    if (result != null) {
+      return result;
+    }
+    int lastDot = binaryName.lastIndexOf('.');
+    String packageName = lastDot < 0 ? "" : binaryName.substring(0, lastDot);
+    String relativeName = binaryName.substring(lastDot + 1) + ".class";
+    String classFile = binaryName.replace('.', '/') + ".class";
+    List<Jar> candidates = packageJars.get(packageName);
+    if (candidates == null) {
+      candidates = new ArrayList<>();
+      packageJars.put(packageName, candidates);
+    }
+    for (Jar jar : candidates) {
+      if (jar.classFiles.contains(classFile)) {
+        result = jar.hash;
+        break;
+      }
+    }
+    if (result == null) {
+      Jar jar = findJar(packageName, relativeName);
+      if (jar != null && jar.classFiles.contains(classFile)) {
+        candidates.add(jar);
+        result = jar.hash;
+      } else {
+        result = NOT_FROM_JAR;
+      }
+    }
+    originHashes.put(binaryName, result);
+    return result;
+  }
+
+  /** Returns the jar on the class path with the given class file, null if not from a jar. */
+  @Nullable
+  private Jar findJar(String packageName, String relativeName) {
+    File file;
+    try {
+      FileObject fileObject =
+          env.getFiler().getResource(StandardLocation.CLASS_PATH, packageName, relativeName);
+      URI uri = fileObject.toUri();
+      if (!"jar".equals(uri.getScheme())) {
+        return null;
+      }
+      String path = uri.getRawSchemeSpecificPart();
+      int separator = path.indexOf("!/");
+      if (separator < 0) {
+        return null;
+      }
+      file = new File(URI.create(path.substring(0, separator)));
+    } catch (IOException | IllegalArgumentException e) {
+      // Not on classpath, i.e., from sources or the platform.
+      return null;
+    }
+    String jarKey = file.getPath() + ":" + file.length() + ":" + file.lastModified();
+    Jar result = jars.get(jarKey);
+    if (result == null) {
+      ImmutableSet.Builder<String> classFiles = ImmutableSet.builder();
+      try (JarFile jarFile = new JarFile(file)) {
+        Enumeration<JarEntry> jarEntries = jarFile.entries();
+        while (jarEntries.hasMoreElements()) {
+          String name = jarEntries.nextElement().getName();
+          if (name.endsWith(".class")) {
+            classFiles.add(name);
+          }
+        }
+        result = new Jar(Files.hash(file, Hashing.sha256()).toString(), classFiles.build());
+      } catch (IOException e) {
+        return null;
+      }
+      jars.put(jarKey, result);
+    }
+    return result;
+  }
+
+  private static <K, V> Map<K, V> createLruMap(final int maxSize) {
+    return new LinkedHashMap<K, V>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  /** Content hash and class files of a jar. */
+  private static class Jar {
+    final String hash;
+    final ImmutableSet<String> classFiles;
+
+    Jar(String hash, ImmutableSet<String> classFiles) {
+      this.hash = hash;
+      this.classFiles = classFiles;
+    }
+  }
+
+  /** Bindings of a class and the hashes of the jars of the classes they refer to. */
+  private static class Entry {
+    final ImmutableList<Summary> summaries;
+    /** From binary name of top level class to the hash of its jar. */
+    final ImmutableMap<String, String> dependencyJarHashes;
+
+    Entry(ImmutableList<Summary> summaries, ImmutableMap<String, String> dependencyJarHashes) {
+      this.summaries = summaries;
+      this.dependencyJarHashes = dependencyJarHashes;
+    }
+  }
+
+  /** Element free {@link DependencyInfo}. */
+  private static class Summary {
+    final DependencySourceType sourceType;
+    final ProvisionType provisionType;
+    final BindingKey dependant;
+    final ImmutableSet<BindingKey> dependencies;
+    /** Index of the provision method in the enclosed elements, -1 for ctor injected class. */
+    final int methodIndex;
+    @Nullable final String methodName;
+
+    Summary(
+        DependencySourceType sourceType,
+        ProvisionType provisionType,
+        BindingKey dependant,
+        ImmutableSet<BindingKey> dependencies,
+        int methodIndex,
+        @Nullable String methodName) {
+      this.sourceType = sourceType;
+      this.provisionType = provisionType;
+      this.dependant = dependant;
+      this.dependencies = dependencies;
+      this.methodIndex = methodIndex;
+      this.methodName = methodName;
+    }
+  }
+}
@@ -524,6 +524,11 @@ public class ComponentGeneratorProcessor extends AbstractProcessor {
     return Sets.newHashSet(GenerationTriggerAnnotation.class.getCanonicalName());
   }
 
+  @Override
+  public Set<String> getSupportedOptions() {
+    return Sets.newHashSet(ThreadSafetyPolicy.OPTION, ProvisionTrace.OPTION);
+  }
+
   @Override
   public SourceVersion getSupportedSourceVersion() {
     return SourceVersion.latestSupported();
@@ -94,8 +94,8 @@ import javax.tools.Diagnostic.Kind;
  *       be created in multiple PackagedInjectors. It MUST be unscoped.
  * </ul>
  *
- * Generated injectors are not thread safe for performance reason. Callers must guarantee thread
- * safe if needed.
+ * Scoped bindings are stored as their {@link ThreadSafetyPolicy} specifies. Without one, they are
+ * created lazily without synchronization.
  *
  * <p>All types are provided by packaged injectors and referred by other packaged injectors and
  * top-level injectors. The ONLY exception is Subcomponents. In packaged injectors the subcomponent
@@ -113,7 +113,9 @@ class CoreInjectorGenerator {
    */
   private static final String GENERATOR_NAME = "dagger.CoreInjectorGenerator";
 
-  private static final boolean LOG_PROVISION_METHOD_ENABLED = false;
+  /** Whether provision methods are traced, see {@link ProvisionTrace#OPTION}. */
+  private final boolean traceEnabled;
+  private static final String TRACE_START_VARIABLE = "tigerTraceStart";
   private static String LOCK_HOLDER_PACKAGE_STRING = "lock.holder";
   private static String LOCK_HOLDER_CLASS_STRING = "LockHolder";
   private static String LOCK_HOLDER_FIELD_STRIN = "theLock";
@@ -124,6 +126,7 @@ class CoreInjectorGenerator {
   // Refers the packaged injector for parent scope.
   private static final String CONTAINING_PACKAGED_INJECTOR_FIELD = "containingPackagedInjector";
   private static final String UNSCOPED_SUFFIX = "_unscoped";
+  private static final String SCOPED_INITIALIZER_FIELD = "scopedInitializer";
 
   private final SetMultimap<BindingKey, DependencyInfo> dependencies;
   private final Set<BindingKey> explicitScopes;
@@ -135,6 +138,11 @@ class CoreInjectorGenerator {
   private SetMultimap<CoreInjectorInfo, TypeElement> nonNullaryCtorModules = HashMultimap.create();
   private Set<TypeElement> nonNullaryCtorUnscopedModules = new HashSet<>();
   private final SetMultimap<CoreInjectorInfo, TypeElement> coreInjectorToComponentMap;
+  // From core injector to "getFooPackagedInjector().provide_xxx()" of its eager scoped bindings.
+  private final SetMultimap<CoreInjectorInfo, String> eagerProvisionCalls =
+      LinkedHashMultimap.create();
+  // Packaged injectors with a ScopedInitializer field.
+  private final Set<ClassName> injectorsWithScopedInitializer = new HashSet<>();
   // Mapping from child to parent.
   private final Map<CoreInjectorInfo, CoreInjectorInfo> componentTree;
   private final List<CoreInjectorInfo> orderedCoreinjectors;
@@ -193,6 +201,7 @@ class CoreInjectorGenerator {
     this.topLevelInjectorPrefix = topLevelInjectorPrefix;
     this.topLevelInjectorSuffix = topLevelInjectorSuffix;
     this.processingEnv = env;
+    traceEnabled = Boolean.parseBoolean(env.getOptions().get(ProvisionTrace.OPTION));
     this.messager = env.getMessager();
     this.elements = env.getElementUtils();
     this.types = env.getTypeUtils();
@@ -266,7 +275,9 @@ class CoreInjectorGenerator {
             getInjectorNameOfScope(injectorClassName, component.getScope()), typeSpecBuilder);
       }
     }
-    return packagedInjectorBuilders.get(injectorClassName);
+    return Preconditions.checkNotNull(
+        packagedInjectorBuilders.get(injectorClassName),
+        "packaged injector already written: " + injectorClassName);
   }
 
   private CoreInjectorInfo getComponentFromPackagedInjectorClassName(
@@ -402,9 +413,11 @@ class CoreInjectorGenerator {
       }
     }
 
+    // Builders are released once written, only the names are needed by top level injectors.
     for (Map.Entry<ClassName, TypeSpec.Builder> entry : packagedInjectorBuilders.entrySet()) {
       String packageString = entry.getKey().packageName();
       TypeSpec.Builder builder = entry.getValue();
+      entry.setValue(null);
       JavaFile javaFile = JavaFile.builder(packageString, builder.build()).build();
 
       // messager.printMessage(
@@ -644,8 +657,35 @@ class CoreInjectorGenerator {
       }
     }
     if (scoped) {
-      generateField(injectorSpecBuilder, key);
-      generateScopedProvisionMethod(injectorSpecBuilder, key);
+      CoreInjectorInfo coreInjectorInfo =
+          getComponentFromPackagedInjectorClassName(packagedInjectorClassName);
+      ThreadSafetyPolicy policy =
+          Utils.getThreadSafetyPolicy(
+              processingEnv,
+              coreInjectorInfo.getScope(),
+              Iterables.getFirst(
+                  utils.sortByFullName(coreInjectorToComponentMap.get(coreInjectorInfo)), null));
+      generateField(injectorSpecBuilder, key, policy);
+      if (policy == ThreadSafetyPolicy.VIRTUAL_THREADS
+          && injectorsWithScopedInitializer.add(packagedInjectorClassName)) {
+        injectorSpecBuilder.addField(
+            FieldSpec.builder(
+                    ClassName.get(ScopedInitializer.class),
+                    SCOPED_INITIALIZER_FIELD,
+                    Modifier.PRIVATE,
+                    Modifier.FINAL)
+                .initializer("new $T()", ClassName.get(ScopedInitializer.class))
+                .build());
+      }
+      generateScopedProvisionMethod(injectorSpecBuilder, key, policy);
+      if (policy == ThreadSafetyPolicy.EAGER) {
+        eagerProvisionCalls.put(
+            coreInjectorInfo,
+            utils.getGetMethodName(packagedInjectorClassName)
+                + "()."
+                + Utils.getProvisionMethodName(dependencies, key)
+                + "()");
+      }
     }
   }
 
@@ -681,34 +721,26 @@ class CoreInjectorGenerator {
   }
 
   private void onProvisionMethodStart(MethodSpec.Builder methodSpecBuilder, BindingKey key) {
-    if (!LOG_PROVISION_METHOD_ENABLED) {
+    if (!traceEnabled) {
       return;
     }
-    // methodSpecBuilder.addStatement(
-    //     "logger.atInfo().log($S)", "providing starts before lock: " + key);
-    // methodSpecBuilder
-    //     .addStatement(
-    //         "$L.$L.$L.lock()",
-    //         LOCK_HOLDER_PACKAGE_STRING,
-    //         LOCK_HOLDER_CLASS_STRING,
-    //         LOCK_HOLDER_FIELD_STRIN);
-    methodSpecBuilder.beginControlFlow("try");
-    methodSpecBuilder.addStatement("logger.atInfo().log($S)", "{ providing starts: " + key);
+    methodSpecBuilder
+        .addStatement("long $L = $T.nanoTime()", TRACE_START_VARIABLE, System.class)
+        .beginControlFlow("try");
   }
 
   private void onProvisionMethodEnd(MethodSpec.Builder methodSpecBuilder, BindingKey key) {
-    if (!LOG_PROVISION_METHOD_ENABLED) {
+    if (!traceEnabled) {
       return;
     }
     methodSpecBuilder
         .nextControlFlow("finally")
-        .addStatement("logger.atInfo().log($S)", "} providing ends: " + key);
-    // methodSpecBuilder.addStatement(
-    //     "$L.$L.$L.unlock()",
-    //     LOCK_HOLDER_PACKAGE_STRING,
-    //     LOCK_HOLDER_CLASS_STRING,
-    //     LOCK_HOLDER_FIELD_STRIN);
-    methodSpecBuilder.endControlFlow();
+        .addStatement(
+            "$T.record($S, $L)",
+            ProvisionTrace.class,
+            Utils.getDisplayName(key),
+            TRACE_START_VARIABLE)
+        .endControlFlow();
   }
 
   private void generateProvisionMethodFromComponentDependency(
@@ -1175,32 +1207,55 @@ class CoreInjectorGenerator {
     return result;
   }
 
-  private void generateScopedProvisionMethod(Builder componentSpecBuilder, BindingKey key) {
+  private void generateScopedProvisionMethod(
+      Builder componentSpecBuilder, BindingKey key, @Nullable ThreadSafetyPolicy policy) {
     MethodSpec.Builder builder =
         MethodSpec.methodBuilder(utils.getProvisionMethodName(dependencies, key))
             .returns(key.getTypeName())
             .addModifiers(Modifier.PUBLIC);
-    builder
-        .addStatement("$T result = $N", key.getTypeName().box(), getFieldName(key))
-        .beginControlFlow("if (result == null)")
-        .addStatement("result = $N", getFieldName(key))
-        .beginControlFlow("if (result == null)")
-        .addStatement(
-            "result = $L = $L()",
-            getFieldName(key),
-            utils.getProvisionMethodName(dependencies, key) + UNSCOPED_SUFFIX)
-        .endControlFlow() // if
-        .endControlFlow() // if
-        .addStatement("return result");
+    if (policy == ThreadSafetyPolicy.VIRTUAL_THREADS) {
+      Utils.addInitializerScopedProvisionStatements(
+          builder,
+          key.getTypeName(),
+          getFieldName(key),
+          SCOPED_INITIALIZER_FIELD,
+          Utils.getDisplayName(key),
+          Utils.getProvisionMethodName(dependencies, key) + UNSCOPED_SUFFIX);
+    } else {
+      Utils.addScopedProvisionStatements(
+          builder,
+          key.getTypeName(),
+          getFieldName(key),
+          policy == ThreadSafetyPolicy.CONCURRENT ? getLockFieldName(key) : null,
+          Utils.getProvisionMethodName(dependencies, key) + UNSCOPED_SUFFIX);
+    }
     componentSpecBuilder.addMethod(builder.build());
   }
 
-  private void generateField(Builder componentSpecBuilder, BindingKey key) {
+  private void generateField(
+      Builder componentSpecBuilder, BindingKey key, @Nullable ThreadSafetyPolicy policy) {
     FieldSpec.Builder builder =
         FieldSpec.builder(key.getTypeName().box(), getFieldName(key), Modifier.PRIVATE);
+    if (policy != null && policy.isReadWithoutLock()) {
+      builder.addModifiers(Modifier.VOLATILE);
+    }
+    if (policy == ThreadSafetyPolicy.CONCURRENT) {
+      componentSpecBuilder.addField(
+          FieldSpec.builder(
+                  ClassName.get(Object.class),
+                  getLockFieldName(key),
+                  Modifier.PRIVATE,
+                  Modifier.FINAL)
+              .initializer("new $T()", ClassName.get(Object.class))
+              .build());
+    }
     componentSpecBuilder.addField(builder.build());
   }
 
+  private String getLockFieldName(BindingKey key) {
+    return "lock_" + getFieldName(key);
+  }
+
   private String getFieldName(BindingKey key) {
     return utils.getSourceCodeNameHandlingBox(key, dependencies);
   }
@@ -1702,6 +1757,11 @@ class CoreInjectorGenerator {
                     .build());
       }
 
+      // Ctor - Eager scoped bindings.
+      for (String call : eagerProvisionCalls.get(coreInjectorInfo)) {
+        ctorBuilder.addStatement("$L", call);
+      }
+
       injectorBuilder.addMethod(ctorBuilder.build());
 
       // Injection methods and non-injection methods.
@@ -19,7 +19,6 @@ import static tiger.ProvisionType.MAP;
 import static tiger.ProvisionType.SET;
 import static tiger.ProvisionType.UNIQUE;
 
-import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.HashMultimap;
@@ -37,10 +36,12 @@ import dagger.MapKey;
 import dagger.Module;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import javax.annotation.Nullable;
 import javax.annotation.processing.Messager;
@@ -79,12 +80,21 @@ public class DependencyCollector {
   private final Utils utils;
 
   private final Logger logger;
+  private final BindingSummaryCache bindingSummaryCache;
+  /** Bindings of the classes of libraries compiled in library mode, see {@link #link}. */
+  private final Map<TypeElement, Collection<DependencyInfo>> linkedBindings = new HashMap<>();
   private List<String> errors = new ArrayList<>();
   private final Map<TypeElement, Collection<DependencyInfo>> eitherComponentToDependenciesMap =
       new HashMap<>();
+  /** Keys left unresolved by the cached dependencies of each (sub)component. */
+  private final Map<TypeElement, Set<BindingKey>> eitherComponentToUnresolvedMap = new HashMap<>();
+  /** Keys required by the provision and injection methods of each (sub)component. */
+  private final Map<TypeElement, Set<BindingKey>> eitherComponentToEntryPointKeysMap =
+      new HashMap<>();
 
   public static DependencyCollector getInstance(ProcessingEnvironment env, Utils utils) {
-    if (instance == null) {
+    // A new compilation, e.g., in the same daemon, must not see elements of the previous one.
+    if (instance == null || instance.env != env) {
       instance = new DependencyCollector(env, utils);
     }
     return instance;
@@ -97,6 +107,7 @@ public class DependencyCollector {
     this.messager = env.getMessager();
     this.utils = utils;
     logger = new Logger(messager, Kind.WARNING);
+    bindingSummaryCache = new BindingSummaryCache(env);
   }
 
   /**
@@ -127,6 +138,14 @@ public class DependencyCollector {
     }
 
     printMultiMap("collect: result module ", result);
+    for (DependencyInfo info : result.values()) {
+      if (utils.isProducer(info)) {
+        errors.add(
+            String.format(
+                "@Produces is only supported by Tiger4 processors: %s",
+                info.getProvisionMethodElement()));
+      }
+    }
 
     collectFromComponentDependencies(result, coreInjectorInfoToComponentDependencyMap);
     printMultiMap("collect: result component dependencies ", result);
@@ -208,6 +227,7 @@ public class DependencyCollector {
         Set<BindingKey> unresolved,
         List<String> allRecoverableErrors) {
     if (eitherComponentToDependenciesMap.containsKey(eitherComponent)) {
+      unresolved.addAll(eitherComponentToUnresolvedMap.get(eitherComponent));
       return eitherComponentToDependenciesMap.get(eitherComponent);
     }
     boolean toDebug = eitherComponent.getSimpleName().contentEquals("ApplicationComponent");
@@ -222,6 +242,7 @@ public class DependencyCollector {
     }
 
     printMultiMap("collect: result module ", result);
+    linkProducers(result);
 
     logger.n(
         "eitherComponent: %s, componentDependencies: %s", eitherComponent, componentDependencies);
@@ -256,12 +277,8 @@ public class DependencyCollector {
     // this only completed dependencies, the requiredKeys and unresolved are fixed below.
     // TODO: fix it.
     completeDependenciesAndRequiredKeys(result, requiredKeys, new HashSet<>());
-    requiredKeys = getRequiredKeys(Sets.newHashSet(eitherComponent), result);
-    for (BindingKey key : requiredKeys) {
-      if (utils.getDependencyInfo(result, key) == null) {
-        unresolved.add(key);
-      }
-    }
+    Set<BindingKey> unresolvedHere = getUnresolvedKeys(eitherComponent, result);
+    unresolved.addAll(unresolvedHere);
 
 
     // Not for base/app:application_component.
@@ -273,9 +290,76 @@ public class DependencyCollector {
 
     logger.w("key count: %d, DI count: %d", result.keySet().size(), result.values().size());
     eitherComponentToDependenciesMap.put(eitherComponent, result.values());
+    eitherComponentToUnresolvedMap.put(eitherComponent, unresolvedHere);
     return result.values();
   }
 
+  /**
+   * Lets {@link Produces} bindings depend on the futures of the parameters produced by the others
+   * in the given bindings instead of the values, so that they are composed instead of required.
+   */
+  private void linkProducers(SetMultimap<BindingKey, DependencyInfo> result) {
+    List<DependencyInfo> producers = new ArrayList<>();
+    for (DependencyInfo info : result.values()) {
+      if (utils.isProducer(info)) {
+        producers.add(info);
+      }
+    }
+    for (DependencyInfo info : producers) {
+      Set<BindingKey> dependencies = new HashSet<>();
+      for (BindingKey key : info.getDependencies()) {
+        BindingKey producedKey = Utils.getProducedKey(key);
+        DependencyInfo produced =
+            key.getTypeName().isPrimitive() || utils.isProviderOrLazy(key)
+                ? null
+                : Iterables.getFirst(result.get(producedKey), null);
+        dependencies.add(utils.isProducer(produced) ? producedKey : key);
+      }
+      if (dependencies.equals(info.getDependencies())) {
+        continue;
+      }
+      result.remove(info.getDependant(), info);
+      result.put(
+          info.getDependant(),
+          new DependencyInfo(
+              info.getDependencySourceType(),
+              info.getDependant(),
+              dependencies,
+              info.getSourceClassElement(),
+              info.getProvisionMethodElement(),
+              info.getType(),
+              info.getCoreInjectorInfo()));
+    }
+  }
+
+  /**
+   * Drops the cached dependencies of the given (sub)component once its injector and those of its
+   * descendants are generated so that only those still needed stay in memory. The cached types of
+   * {@link Utils} go too.
+   */
+  public void release(TypeElement eitherComponent) {
+    eitherComponentToDependenciesMap.remove(eitherComponent);
+    eitherComponentToUnresolvedMap.remove(eitherComponent);
+    eitherComponentToEntryPointKeysMap.remove(eitherComponent);
+    utils.clearCaches();
+  }
+
+  /**
+   * Uses the given bindings of the class, read from the library it comes from, instead of
+   * collecting them, see {@link LinkedBindings}.
+   */
+  void link(TypeElement cls, Collection<DependencyInfo> dependencyInfos) {
+    linkedBindings.put(cls, dependencyInfos);
+  }
+
+  /** Whether nothing of any (sub)component is cached, see {@link #release(TypeElement)}. */
+  boolean holdsNoEitherComponent() {
+    return eitherComponentToDependenciesMap.isEmpty()
+        && eitherComponentToUnresolvedMap.isEmpty()
+        && eitherComponentToEntryPointKeysMap.isEmpty()
+        && utils.hasNoCaches();
+  }
+
   // For gmm, replace the component dependency method bindings with ctor injector classes if
   // possible.
   private void fixDependencies(SetMultimap<BindingKey, DependencyInfo> result) {
@@ -493,6 +577,8 @@ public class DependencyCollector {
     Set<BindingKey> unresolved) {
     Collection<DependencyInfo> dependencies;
     DependencyInfo dependency;
+    // Built for the first map of wildcard required, then kept up to date.
+    SetMultimap<TypeElement, BindingKey> mapContributorIndex = null;
     // Added all the required dependencies from ctor injected classes.
     while (!requiredKeys.isEmpty()) {
       BindingKey key = Iterables.getFirst(requiredKeys, null);
@@ -531,7 +617,17 @@ public class DependencyCollector {
         requiredKeys.add(peeledMapKey);
         continue;
       } else if (utils.isMap(key)) {
-        if (getMapContributorKeys(result.keySet(), key).isEmpty()) {
+        Set<BindingKey> contributors = new HashSet<>();
+        if (isMapOfWildcard(key)) {
+          if (mapContributorIndex == null) {
+            mapContributorIndex = HashMultimap.create();
+            for (BindingKey k : result.keySet()) {
+              indexMapContributor(mapContributorIndex, k);
+            }
+          }
+          contributors = getMapContributorKeys(mapContributorIndex, key);
+        }
+        if (contributors.isEmpty()) {
           // Not found, must be from parent.
           unresolved.add(key);
           logger.n("Binding not found for : " + key);
@@ -625,24 +721,64 @@ public class DependencyCollector {
       // }
       checkOneDependency(result, dependency);
       addDependencyInfo(result, dependency);
+      if (mapContributorIndex != null) {
+        indexMapContributor(mapContributorIndex, dependency.getDependant());
+      }
+    }
+  }
+
+  /** Returns whether the given map key is keyed by a wildcard, e.g., Map<? extends Foo, Bar>. */
+  private boolean isMapOfWildcard(BindingKey key) {
+    return ((ParameterizedTypeName) key.getTypeName()).typeArguments.get(0)
+        instanceof WildcardTypeName;
+  }
+
+  /**
+   * Indexes the given key if it is a map, under the type of its first type argument and all the
+   * super types of it, so that {@link #getMapContributorKeys(SetMultimap, BindingKey)} does not
+   * need to scan all the keys.
+   */
+  private void indexMapContributor(
+      SetMultimap<TypeElement, BindingKey> mapContributorIndex, BindingKey key) {
+    if (!utils.isMap(key)) {
+      return;
+    }
+    TypeName typeName = ((ParameterizedTypeName) key.getTypeName()).typeArguments.get(0);
+    if (!(typeName instanceof ClassName)) {
+      return;
+    }
+    TypeElement typeElement = elements.getTypeElement(utils.getCanonicalName((ClassName) typeName));
+    if (typeElement == null || mapContributorIndex.containsEntry(typeElement, key)) {
+      return;
+    }
+    Set<TypeElement> visited = new HashSet<>();
+    List<TypeMirror> toVisit = Lists.newArrayList(typeElement.asType());
+    while (!toVisit.isEmpty()) {
+      TypeMirror type = toVisit.remove(toVisit.size() - 1);
+      if (!type.getKind().equals(TypeKind.DECLARED)) {
+        continue;
+      }
+      TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+      if (visited.add(element)) {
+        mapContributorIndex.put(element, key);
+        toVisit.addAll(types.directSupertypes(type));
+      }
     }
   }
 
   /**
-   * Returns the {@link BindingKey} from the given set that contributes into give key, which must be
-   * map. Peeling is be handled before by {@link Utils#peelMapWithBuiltinValue(BindingKey)}. The
+   * Returns the {@link BindingKey} from the given index that contributes into give key, which must
+   * be map. Peeling is be handled before by {@link Utils#peelMapWithBuiltinValue(BindingKey)}. The
    * case that Map<Foo> contributes to Map<Foo> is handled the same way as the samplest case. Now we
    * need to handle the case that Map<SomeFooImpl> contributes to Map<? extends Foo>. TODO: Hanlde
    * other cases.
    */
-  private Set<BindingKey> getMapContributorKeys(Set<BindingKey> bindingKeys, BindingKey key) {
+  private Set<BindingKey> getMapContributorKeys(
+      SetMultimap<TypeElement, BindingKey> mapContributorIndex, BindingKey key) {
     logger.n(TAG + ".getMapContributorKeys key: " + key);
     Preconditions.checkArgument(utils.isMap(key), "Need a map but got " + key);
     Set<BindingKey> result = new HashSet<>();
     AnnotationSpec qualifier = key.getQualifier();
-    // TypeName type =
-    //     Iterables.getOnlyElement(((ParameterizedTypeName) key.getTypeName()).typeArguments);
-    // type = utils.getCoreType(type);
 
     ParameterizedTypeName parameterizedTypeName = (ParameterizedTypeName) key.getTypeName();
     TypeName typeName = parameterizedTypeName.typeArguments.get(0);
@@ -657,45 +793,19 @@ public class DependencyCollector {
       logger.w("lowerBounds not supported yet. Key: " + key);
       return result;
     }
-    Iterable<TypeMirror> upperBoundTypes =
-        Iterables.transform(
-            wildcardTypeName.upperBounds,
-            new Function<TypeName, TypeMirror>() {
-              @Override
-              public TypeMirror apply(TypeName input) {
-                ClassName className = (ClassName) input;
-                return  elements.getTypeElement(utils.getCanonicalName(className)).asType();
-              }
-            });
-    for (BindingKey k : bindingKeys) {
-      logger.n(TAG + ".getMapContributorKeys k: " + k);
-
-      if (!utils.isMap(k)) {
-        continue;
-      }
-      logger.n(TAG + ".getMapContributorKeys k: 1");
-
-      ParameterizedTypeName loopParameterizedTypeName = (ParameterizedTypeName) k.getTypeName();
-      TypeName loopTypeName = loopParameterizedTypeName.typeArguments.get(0);
-      if (loopTypeName instanceof WildcardTypeName) {
-        return  result;
-      }
-      logger.n(TAG + ".getMapContributorKeys k: 2");
-
-      ClassName className = (ClassName) loopTypeName;
-      TypeMirror typeMirror = elements.getTypeElement(utils.getCanonicalName(className)).asType();
-      logger.n(TAG + ".getMapContributorKeys k type: " + typeMirror);
-
-      boolean isSubtype = true;
-      for (TypeMirror i : upperBoundTypes) {
-        if (!types.isSubtype(typeMirror, i)) {
-          logger.n(TAG + ".getMapContributorKeys k: super type  " + i);
-
-          isSubtype = false;
-          break;
-        }
-      }
-      if (isSubtype) {
+    // Contributors must be indexed under every upper bound.
+    Set<BindingKey> candidates = null;
+    for (TypeName upperBound : wildcardTypeName.upperBounds) {
+      TypeElement upperBoundElement =
+          elements.getTypeElement(utils.getCanonicalName((ClassName) upperBound));
+      Set<BindingKey> keys = mapContributorIndex.get(upperBoundElement);
+      candidates = candidates == null ? keys : Sets.intersection(candidates, keys);
+    }
+    if (candidates == null) {
+      return result;
+    }
+    for (BindingKey k : candidates) {
+      if (Objects.equals(k.getQualifier(), qualifier)) {
         result.add(k);
       }
     }
@@ -745,11 +855,46 @@ public class DependencyCollector {
     return requiredKeys;
   }
 
+  /**
+   * Returns the keys required by the entry points of the (sub)component or the bindings in its
+   * graph but bound in none of them, i.e., those left to its ancestors. The graph is the closure
+   * over the dependencies reachable from its entry points and modules, so the bindings already in
+   * it need no check.
+   */
+  private Set<BindingKey> getUnresolvedKeys(
+      TypeElement eitherComponent, SetMultimap<BindingKey, DependencyInfo> dependencyInfos) {
+    Set<BindingKey> requiredKeys = new HashSet<>(getRequiredKeys(eitherComponent));
+    for (DependencyInfo info : dependencyInfos.values()) {
+      for (BindingKey key : info.getDependencies()) {
+        if (utils.isBindable(key.getTypeName())) {
+          requiredKeys.add(key);
+        }
+      }
+    }
+    Set<BindingKey> result = new HashSet<>();
+    for (BindingKey key : requiredKeys) {
+      if (!dependencyInfos.containsKey(key)
+          && utils.getDependencyInfo(dependencyInfos, key) == null) {
+        result.add(key);
+      }
+    }
+    return result;
+  }
+
   /**
    * Returns all the required {@link BindingKey}s by the provision methods and injection methods
-   * included in the given class directly.
+   * included in the given class directly. They are calculated once for each class.
    */
   private Set<BindingKey> getRequiredKeys(TypeElement component) {
+    Set<BindingKey> result = eitherComponentToEntryPointKeysMap.get(component);
+    if (result == null) {
+      result = Collections.unmodifiableSet(calculateRequiredKeys(component));
+      eitherComponentToEntryPointKeysMap.put(component, result);
+    }
+    return result;
+  }
+
+  private Set<BindingKey> calculateRequiredKeys(TypeElement component) {
     Set<BindingKey> result = new HashSet<>();
     TypeMirror superType = component.getSuperclass();
     logger.n(TAG + ".getRequiredKeys:  component: " + component + " superType " + superType);
@@ -952,7 +1097,15 @@ public class DependencyCollector {
    */
   public Collection<DependencyInfo>  collectFromModule(TypeElement module) {
     logger.n(TAG + ".collectFromModule: module " + module);
-    Collection<DependencyInfo> result = new HashSet<>();
+    Collection<DependencyInfo> result = linkedBindings.get(module);
+    if (result != null) {
+      return new HashSet<>(result);
+    }
+    result = bindingSummaryCache.get(module);
+    if (result != null) {
+      return result;
+    }
+    result = new HashSet<>();
     for (Element e : module.getEnclosedElements()) {
       logger.n("element: %s", e);
       if (!utils.isProvisionMethodInModule(e)) {
@@ -973,6 +1126,7 @@ public class DependencyCollector {
     }
 
 //    logger.n(String.format("collectFromModule: result: %s", result));
+    bindingSummaryCache.put(module, result);
     return result;
   }
 
@@ -998,6 +1152,13 @@ public class DependencyCollector {
     AnnotationMirror annotation = utils.getQualifier(method);
     List<BindingKey> keys = utils.getDependenciesFromExecutableElement(method);
 
+    if (utils.isProducesMethod(method)) {
+      if (!utils.isAsyncProducesMethod(method)) {
+        key = Utils.getProducedKey(key);
+      }
+      keys.add(Utils.getProductionExecutorKey());
+    }
+
     // Could be from module or other source like component dependencies.
     ProvisionType provideType =
         utils.isProvisionMethodInModule(method) ? utils.getProvisionType(method) : UNIQUE;
@@ -1075,7 +1236,17 @@ public class DependencyCollector {
   public Collection<DependencyInfo> collectFromCtorInjectedClass(
       TypeElement classElement, DeclaredType type) {
     // logger.n(TAG + ".collectFromCtorInjectedClass: classElement: " + classElement);
-    Collection<DependencyInfo> result = new HashSet<>();
+    // Generic ones depend on the specialization.
+    boolean cachable = classElement.getTypeParameters().isEmpty();
+    Collection<DependencyInfo> result = cachable ? linkedBindings.get(classElement) : null;
+    if (result != null) {
+      return new HashSet<>(result);
+    }
+    result = cachable ? bindingSummaryCache.get(classElement) : null;
+    if (result != null) {
+      return result;
+    }
+    result = new HashSet<>();
     Preconditions.checkArgument(
         !utils.hasAnonymousParentClass(classElement),
         String.format("class %s should not have anonymous ancestor.", classElement));
@@ -1110,6 +1281,9 @@ public class DependencyCollector {
             classElement,
             UNIQUE);
     result.add(dependenceInfo);
+    if (cachable) {
+      bindingSummaryCache.put(classElement, result);
+    }
 
     return result;
   }
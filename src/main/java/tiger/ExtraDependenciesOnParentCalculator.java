@@ -2,6 +2,7 @@ package tiger;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.SetMultimap;
 import com.squareup.javapoet.AnnotationSpec;
 import com.squareup.javapoet.ClassName;
@@ -40,12 +41,12 @@ public class ExtraDependenciesOnParentCalculator {
       Map<TypeElement, TypeElement> eitherComponentToParentMap,
       ProcessingEnvironment processingEnvironment,
       Utils utils) {
-    if (instance == null) {
+    // A new compilation, e.g., in the same daemon, must not see elements of the previous one.
+    if (instance == null || instance.processingEnvironment != processingEnvironment) {
       instance =
           new ExtraDependenciesOnParentCalculator(
               eitherComponentToParentMap, processingEnvironment, utils);
       instance.initialize(eitherComponentToParentMap);
-    } else {
     }
 
     return instance;
@@ -76,7 +77,10 @@ public class ExtraDependenciesOnParentCalculator {
     this.logger = new Logger(processingEnvironment.getMessager(), Kind.WARNING);
   }
 
-  /** TODO: remove parent argument, also in {@link DependencyCollector}. */
+  /**
+   * Returns the keys the given (sub)component needs from its parent. The result is shared and
+   * immutable. TODO: remove parent argument, also in {@link DependencyCollector}.
+   */
   public Set<BindingKey> calculate(
       TypeElement eitherComponent, @Nullable TypeElement parentEitherComponent) {
     if (eitherComponentToKeyMap.containsKey(eitherComponent)) {
@@ -87,6 +91,23 @@ public class ExtraDependenciesOnParentCalculator {
     SetMultimap<BindingKey, DependencyInfo> dependencies =
         DependencyCollector.collectionToMultimap(
             dependencyCollector.collectForOne(eitherComponent, parentEitherComponent, unresolved));
+    return calculate(eitherComponent, dependencies, unresolved);
+  }
+
+  /**
+   * Same as {@link #calculate(TypeElement, TypeElement)} but from the dependencies already collected
+   * for the given (sub)component, and the keys they left unresolved, instead of collecting them
+   * again. The results of the children are reused.
+   */
+  public Set<BindingKey> calculate(
+      TypeElement eitherComponent,
+      SetMultimap<BindingKey, DependencyInfo> dependencies,
+      Set<BindingKey> unresolvedCollected) {
+    if (eitherComponentToKeyMap.containsKey(eitherComponent)) {
+      return eitherComponentToKeyMap.get(eitherComponent);
+    }
+
+    Set<BindingKey> unresolved = new HashSet<>(unresolvedCollected);
     logger.n("(sub)component: %s unresolved collected: %s", eitherComponent, unresolved);
 
     Set<BindingKey> fromChildrenAndPackages = new HashSet<>();
@@ -133,11 +154,30 @@ public class ExtraDependenciesOnParentCalculator {
         unresolved.add(k);
       }
     }
-    eitherComponentToKeyMap.put(eitherComponent, unresolved);
     logger.w(
         "(sub)component: %s\ndependencies: %s\nunresolved: %s",
         eitherComponent, dependencies, unresolved);
-    return unresolved;
+    Set<BindingKey> result = ImmutableSet.copyOf(unresolved);
+    eitherComponentToKeyMap.put(eitherComponent, result);
+    return result;
+  }
+
+  /**
+   * Drops the results of the children of the given (sub)component once its injector is generated,
+   * and its own if it has no parent, since nothing needs them anymore.
+   */
+  public void release(TypeElement eitherComponent) {
+    for (TypeElement child : eitherComponentToChildrenMap.get(eitherComponent)) {
+      eitherComponentToKeyMap.remove(child);
+    }
+    if (eitherComponentToParentMap.get(eitherComponent) == null) {
+      eitherComponentToKeyMap.remove(eitherComponent);
+    }
+  }
+
+  /** Whether no result is kept, see {@link #release(TypeElement)}. */
+  boolean holdsNoEitherComponent() {
+    return eitherComponentToKeyMap.isEmpty();
   }
 
   private void logKey(TypeElement eitherComponent, String fmt, Object... args) {
@@ -92,8 +92,8 @@ import javax.tools.Diagnostic.Kind;
  *       be created in multiple PackagedInjectors. It MUST be unscoped.
  * </ul>
  *
- * Generated injectors are not thread safe for performance reason. Callers must guarantee thread
- * safe if needed.
+ * Scoped bindings are stored as their {@link ThreadSafetyPolicy} specifies. Without one, they are
+ * created lazily while holding a lock per binding.
  *
  * <p>All types are provided by packaged injectors and referred by other packaged injectors and
  * top-level injectors. The ONLY exception is Subcomponents. In packaged injectors the subcomponent
@@ -115,7 +115,9 @@ abstract class GeneralInjectorGenerator {
   private static final String INJECT_METHOD_NAME = "inject";
   protected final String TIGER_PROXY_NAME = "TigerProxy";
 
-  private static final boolean LOG_PROVISION_METHOD_ENABLED = false;
+  /** Whether provision methods are traced, see {@link ProvisionTrace#OPTION}. */
+  private final boolean traceEnabled;
+  private static final String TRACE_START_VARIABLE = "tigerTraceStart";
   protected final static String LOCK_HOLDER_PACKAGE_STRING = "lock.holder";
   protected final static String LOCK_HOLDER_CLASS_STRING = "LockHolder";
   protected final static String LOCK_HOLDER_FIELD_STRIN = "theLock";
@@ -125,6 +127,7 @@ abstract class GeneralInjectorGenerator {
   // Refers the packaged injector for parent scope.
   private static final String CONTAINING_PACKAGED_INJECTOR_FIELD = "containingPackagedInjector";
   private static final String UNSCOPED_SUFFIX = "_unscoped";
+  private static final String SCOPED_INITIALIZER_FIELD = "scopedInitializer";
 
   // This does not include key for injected class, but does include its injected memebers.
   protected SetMultimap<BindingKey, DependencyInfo> dependencies;
@@ -150,8 +153,8 @@ abstract class GeneralInjectorGenerator {
   protected final Types types;
   protected Builder injectorBuilder;
   protected MethodSpec.Builder initializeBuilder;
-  private final Set<String> proxiesWhoseGetterGenerated = new HashSet<>();
-  private final Set<ClassName> typesWhoseGetterGenerated = new HashSet<>();
+  /** Added after all the bindings are generated so that eager ones can be created in it. */
+  private MethodSpec.Builder ctorBuilder;
   private final Set<String> fieldsGenerated = new HashSet<>();
   // method simple name and type.
   protected final Set<Pair<String, TypeName>> injectionMethodsDone = new HashSet<>();
@@ -167,6 +170,7 @@ abstract class GeneralInjectorGenerator {
       ProcessingEnvironment env,
       Utils utils) {
     this.processingEnv = env;
+    traceEnabled = Boolean.parseBoolean(env.getOptions().get(ProvisionTrace.OPTION));
     this.messager = env.getMessager();
     this.elements = env.getElementUtils();
     this.types = env.getTypeUtils();
@@ -199,6 +203,12 @@ abstract class GeneralInjectorGenerator {
   // Do implementation specific stuff.
   protected abstract void postGenerateProduced();
 
+  /** Returns the (sub)component the injector is generated for, null if not for one. */
+  @Nullable
+  protected TypeElement getEitherComponent() {
+    return null;
+  }
+
   public void generate() {
     injectorBuilder = createInjectorBuilder();
     initializeBuilder = MethodSpec.methodBuilder(INITIALIZE_METHOD_NAME).addModifiers(Modifier.PUBLIC);
@@ -209,6 +219,7 @@ abstract class GeneralInjectorGenerator {
     preGenerateProduced();
     generateProduced();
     postGenerateProduced();
+    injectorBuilder.addMethod(ctorBuilder.build());
     // injectorBuilder.addMethod(initializeBuilder.build());
 
     // Write
@@ -238,7 +249,7 @@ abstract class GeneralInjectorGenerator {
 
   private void generateCtor() {
     // Ctor
-    MethodSpec.Builder ctorBuilder = MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC);
+    ctorBuilder = MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC);
 
     // ctorBuilder.addStatement(
     //     "$T.out.printf($S, $L)", ClassName.get(System.class), "This is tiger: %s\n", "this");
@@ -270,7 +281,7 @@ abstract class GeneralInjectorGenerator {
     for (BindingKey key : utils.sortBindingKeys(allParameters)) {
       TypeName typeName = key.getTypeName();
       String sourceCodeName = utils.getSourceCodeName(key);
-      generateFieldIfNeeded(typeName, sourceCodeName);
+      generateFinalFieldIfNeeded(typeName, sourceCodeName);
       ctorBuilder
           .addParameter(typeName, sourceCodeName)
           .addStatement("this.$L = $L", sourceCodeName, sourceCodeName);
@@ -284,7 +295,6 @@ abstract class GeneralInjectorGenerator {
         .contains(getInjectorSimpleName())) {
       // ctorBuilder.addStatement("$L()", INITIALIZE_METHOD_NAME);
     }
-    injectorBuilder.addMethod(ctorBuilder.build());
   }
 
   protected final static String getPackageFromInjectorClassName(ClassName injectorClassName) {
@@ -491,9 +501,22 @@ abstract class GeneralInjectorGenerator {
       }
     }
     if (scoped) {
-      generateFieldIfNeeded(key.getTypeName(), getFieldName(key));
-      generateFieldIfNeededAndInitialize(ClassName.get(Object.class), getLockFieldName(key));
-      generateScopedProvisionMethod(injectorBuilder, key);
+      ThreadSafetyPolicy policy =
+          Utils.getThreadSafetyPolicy(
+              processingEnv, Utils.getScopeTypeElement(dependencyInfo), getEitherComponent());
+      if (policy != null && policy.isReadWithoutLock()) {
+        generateVolatileFieldIfNeeded(key.getTypeName(), getFieldName(key));
+      } else {
+        generateFieldIfNeeded(key.getTypeName(), getFieldName(key));
+      }
+      if (policy == null || policy == ThreadSafetyPolicy.CONCURRENT) {
+        generateFinalFieldIfNeededAndInitialize(ClassName.get(Object.class), getLockFieldName(key));
+      }
+      if (policy == ThreadSafetyPolicy.VIRTUAL_THREADS) {
+        generateFinalFieldIfNeededAndInitialize(
+            ClassName.get(ScopedInitializer.class), SCOPED_INITIALIZER_FIELD);
+      }
+      generateScopedProvisionMethod(injectorBuilder, key, policy);
     }
   }
 
@@ -595,34 +618,26 @@ abstract class GeneralInjectorGenerator {
   }
 
   protected final void onProvisionMethodStart(MethodSpec.Builder methodSpecBuilder, BindingKey key) {
-    if (!LOG_PROVISION_METHOD_ENABLED) {
+    if (!traceEnabled) {
       return;
     }
-    // methodSpecBuilder.addStatement(
-    //     "logger.atInfo().log($S)", "providing starts before lock: " + key);
-    // methodSpecBuilder
-    //     .addStatement(
-    //         "$L.$L.$L.lock()",
-    //         LOCK_HOLDER_PACKAGE_STRING,
-    //         LOCK_HOLDER_CLASS_STRING,
-    //         LOCK_HOLDER_FIELD_STRIN);
-    methodSpecBuilder.beginControlFlow("try");
-    methodSpecBuilder.addStatement("logger.atInfo().log($S)", "{ providing starts: " + key);
+    methodSpecBuilder
+        .addStatement("long $L = $T.nanoTime()", TRACE_START_VARIABLE, System.class)
+        .beginControlFlow("try");
   }
 
   protected final void onProvisionMethodEnd(MethodSpec.Builder methodSpecBuilder, BindingKey key) {
-    if (!LOG_PROVISION_METHOD_ENABLED) {
+    if (!traceEnabled) {
       return;
     }
     methodSpecBuilder
         .nextControlFlow("finally")
-        .addStatement("logger.atInfo().log($S)", "} providing ends: " + key);
-    // methodSpecBuilder.addStatement(
-    //     "$L.$L.$L.unlock()",
-    //     LOCK_HOLDER_PACKAGE_STRING,
-    //     LOCK_HOLDER_CLASS_STRING,
-    //     LOCK_HOLDER_FIELD_STRIN);
-    methodSpecBuilder.endControlFlow();
+        .addStatement(
+            "$T.record($S, $L)",
+            ProvisionTrace.class,
+            Utils.getDisplayName(key),
+            TRACE_START_VARIABLE)
+        .endControlFlow();
   }
 
   // TODO: Refactor, so far this happens to work for provision methods from component dependencies.
@@ -677,37 +692,52 @@ abstract class GeneralInjectorGenerator {
     injectorBuilder.addMethod(methodSpecBuilder.build());
   }
 
-  protected final void generateGetProxyMethodIfNeeded(String packageString) {
-    if (!proxiesWhoseGetterGenerated.add(packageString)) {
-      return;
-    }
-    ClassName proxyClassName = ClassName.get(packageString, TIGER_PROXY_NAME);
-    generateGetTypeMethod(proxyClassName);
+  /** Returns name of the final field holding the proxy of the package, generated if needed. */
+  protected final String generateProxyFieldIfNeeded(String packageString) {
+    return generateInstanceFieldIfNeeded(ClassName.get(packageString, TIGER_PROXY_NAME));
+  }
+
+  /**
+   * Returns name of the final xxx field holding an instance of the given type, which is created when
+   * the injector is constructed so that accessing it is a plain field load. Generated if needed.
+   */
+  protected final String generateInstanceFieldIfNeeded(ClassName className) {
+    String fieldName = Utils.getSourceCodeName(className);
+    generateFinalFieldIfNeededAndInitialize(className, fieldName);
+    return fieldName;
   }
 
-  /** generate a getXXX() that returns xxx field, initialize it if needed. */
-  protected final void generateGetTypeMethod(ClassName proxyClassName) {
-    String proxySourceName = Utils.getSourceCodeName(proxyClassName);
-    generateFieldIfNeeded(proxyClassName, proxySourceName);
-    injectorBuilder.addMethod(
-        MethodSpec.methodBuilder(utils.getGetMethodName(proxyClassName))
-            .addModifiers(Modifier.PRIVATE)
-            .returns(proxyClassName)
-            .beginControlFlow("if ($L == null)", proxySourceName)
-            .addStatement("$L = new $T()", proxySourceName, proxyClassName)
-            .endControlFlow()
-            .addStatement("return $L", proxySourceName)
-            .build());
+  protected final String generateInstanceFieldIfNeeded(TypeElement module) {
+    return generateInstanceFieldIfNeeded(ClassName.get(module));
   }
 
   protected final void generateFieldIfNeededAndInitialize(TypeName typeName, String fieldName) {
     generateFieldIfNeededCommon(typeName, fieldName, true, "");
   }
 
+  protected final void generateFinalFieldIfNeededAndInitialize(
+      TypeName typeName, String fieldName) {
+    generateFieldIfNeededCommon(typeName, fieldName, true, true, "");
+  }
+
+  /** The field must be assigned in ctor. */
+  protected final void generateFinalFieldIfNeeded(TypeName typeName, String fieldName) {
+    generateFieldIfNeededCommon(typeName, fieldName, false, true, "");
+  }
+
   protected final void generateFieldIfNeeded(TypeName typeName, String fieldName) {
     generateFieldIfNeededCommon(typeName, fieldName, false, "");
   }
 
+  /** For fields read without lock, e.g., instances of {@link ThreadSafetyPolicy#CONCURRENT}. */
+  protected final void generateVolatileFieldIfNeeded(TypeName typeName, String fieldName) {
+    if (!fieldsGenerated.add(fieldName)) {
+      return;
+    }
+    injectorBuilder.addField(
+        FieldSpec.builder(typeName, fieldName, Modifier.PRIVATE, Modifier.VOLATILE).build());
+  }
+
   protected final void generateFieldIfNeeded(
       TypeName typeName, String fieldName, String fmt, Object... args) {
     generateFieldIfNeededCommon(typeName, fieldName, true, fmt, args);
@@ -715,10 +745,23 @@ abstract class GeneralInjectorGenerator {
 
   protected final void generateFieldIfNeededCommon(
       TypeName typeName, String fieldName, boolean initialize, String fmt, Object... args) {
+    generateFieldIfNeededCommon(typeName, fieldName, initialize, false, fmt, args);
+  }
+
+  protected final void generateFieldIfNeededCommon(
+      TypeName typeName,
+      String fieldName,
+      boolean initialize,
+      boolean isFinal,
+      String fmt,
+      Object... args) {
     if (!fieldsGenerated.add(fieldName)) {
       return;
     }
     FieldSpec.Builder fieldBuilder = FieldSpec.builder(typeName, fieldName, Modifier.PRIVATE);
+    if (isFinal) {
+      fieldBuilder.addModifiers(Modifier.FINAL);
+    }
     if (initialize) {
       if (fmt.isEmpty()) {
         fieldBuilder.initializer("new $T()", typeName);
@@ -729,17 +772,6 @@ abstract class GeneralInjectorGenerator {
     injectorBuilder.addField(fieldBuilder.build());
   }
 
-  protected final void generateGetTypeMethodIfNeeded(TypeElement module) {
-    generateGetTypeMethodIfNeeded(ClassName.get(module));
-  }
-
-  protected final void generateGetTypeMethodIfNeeded(ClassName className) {
-    if (!typesWhoseGetterGenerated.add(className)) {
-      return;
-    }
-    generateGetTypeMethod(className);
-  }
-
   /**
    * For key like javax.inject.Provider<Foo> and dagger.Lazy<Foo>. Qualifier, if presented, will
    * also apply to element binding.
@@ -845,24 +877,32 @@ abstract class GeneralInjectorGenerator {
         .build();
   }
 
-  protected final void generateScopedProvisionMethod(Builder componentSpecBuilder, BindingKey key) {
+  protected final void generateScopedProvisionMethod(
+      Builder componentSpecBuilder, BindingKey key, @Nullable ThreadSafetyPolicy policy) {
     MethodSpec.Builder builder =
         MethodSpec.methodBuilder(getProvisionMethodName(key))
             .returns(key.getTypeName())
             .addModifiers(Modifier.PUBLIC);
-    builder
-        .addStatement("$T result = $N", key.getTypeName().box(), getFieldName(key))
-        .beginControlFlow("if (result == null)")
-        .beginControlFlow("synchronized($L)", getLockFieldName(key))
-        .addStatement("result = $N", getFieldName(key))
-        .beginControlFlow("if (result == null)")
-        .addStatement(
-            "result = $L = $L()", getFieldName(key), getProvisionMethodName(key) + UNSCOPED_SUFFIX)
-        .endControlFlow() // if
-        .endControlFlow() // synchronized
-        .endControlFlow() // if
-        .addStatement("return result");
+    if (policy == ThreadSafetyPolicy.VIRTUAL_THREADS) {
+      Utils.addInitializerScopedProvisionStatements(
+          builder,
+          key.getTypeName(),
+          getFieldName(key),
+          SCOPED_INITIALIZER_FIELD,
+          Utils.getDisplayName(key),
+          getProvisionMethodName(key) + UNSCOPED_SUFFIX);
+    } else {
+      Utils.addScopedProvisionStatements(
+          builder,
+          key.getTypeName(),
+          getFieldName(key),
+          policy == null || policy == ThreadSafetyPolicy.CONCURRENT ? getLockFieldName(key) : null,
+          getProvisionMethodName(key) + UNSCOPED_SUFFIX);
+    }
     componentSpecBuilder.addMethod(builder.build());
+    if (policy == ThreadSafetyPolicy.EAGER) {
+      ctorBuilder.addStatement("$L()", getProvisionMethodName(key));
+    }
     initializeBuilder.addStatement("$L = $L()", getFieldName(key), getProvisionMethodName(key));
   }
 
@@ -979,8 +1019,7 @@ abstract class GeneralInjectorGenerator {
         if (nonNullaryCtorModules.contains(sourceClassElement)) {
           builder.append(utils.getSourceCodeName(sourceClassElement));
         } else {
-          generateGetTypeMethodIfNeeded(sourceClassElement);
-          builder.append(utils.getGetMethodName(sourceClassElement)).append("()");
+          builder.append(generateInstanceFieldIfNeeded(sourceClassElement));
         }
       } else {
         builder.append(utils.getQualifiedName(dependencyInfo.getSourceClassElement()));
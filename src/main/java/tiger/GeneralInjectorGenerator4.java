@@ -23,11 +23,13 @@ import com.google.common.base.Pair;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.SetMultimap;
-import com.google.common.collect.Sets;
 import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ArrayTypeName;
 import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.JavaFile;
 import com.squareup.javapoet.MethodSpec;
@@ -38,12 +40,23 @@ import com.squareup.javapoet.TypeSpec.Builder;
 import dagger.Lazy;
 import dagger.MapKey;
 import java.io.IOException;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.annotation.Generated;
 import javax.annotation.Nullable;
 import javax.annotation.processing.Messager;
@@ -61,6 +74,7 @@ import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
 import javax.tools.Diagnostic.Kind;
+import javax.tools.JavaFileObject;
 
 /**
  * `Shared function between hub and packaged injector of tiger 3. Below might be obsoleted and need
@@ -93,8 +107,8 @@ import javax.tools.Diagnostic.Kind;
  *       be created in multiple PackagedInjectors. It MUST be unscoped.
  * </ul>
  *
- * Generated injectors are not thread safe for performance reason. Callers must guarantee thread
- * safe if needed.
+ * Scoped bindings are stored as their {@link ThreadSafetyPolicy} specifies. Without one, they are
+ * created lazily while holding a lock per binding.
  *
  * <p>All types are provided by packaged injectors and referred by other packaged injectors and
  * top-level injectors. The ONLY exception is Subcomponents. In packaged injectors the subcomponent
@@ -111,12 +125,13 @@ abstract class GeneralInjectorGenerator4 {
    * strict java deps check. TODO(freeman): change it to tiger.
    */
   private static final String GENERATOR_NAME = "dagger." + TAG;
-  private static final String INITIALIZE_METHOD_NAME = "initialize";
 
   private static final String INJECT_METHOD_NAME = "inject";
   protected final String TIGER_PROXY_NAME = "TigerProxy";
 
-  private static final boolean LOG_PROVISION_METHOD_ENABLED = false;
+  /** Whether provision methods are traced, see {@link ProvisionTrace#OPTION}. */
+  private final boolean traceEnabled;
+  private static final String TRACE_START_VARIABLE = "tigerTraceStart";
   protected final static String LOCK_HOLDER_PACKAGE_STRING = "lock.holder";
   protected final static String LOCK_HOLDER_CLASS_STRING = "LockHolder";
   protected final static String LOCK_HOLDER_FIELD_STRIN = "theLock";
@@ -127,6 +142,97 @@ abstract class GeneralInjectorGenerator4 {
   private static final String CONTAINING_PACKAGED_INJECTOR_FIELD = "containingPackagedInjector";
   private static final String UNSCOPED_SUFFIX = "_unscoped";
 
+  /**
+   * Injectors with more bindings than this are sharded, i.e., provision methods of the shardable
+   * bindings are moved into inner classes. This keeps the injector and each shard far from the
+   * class file limits on methods and constant pool entries. It also bounds the field initializers
+   * of each class, the rest are moved into helper methods called by the ctor, so that {@code
+   * <init>} stays far below 64KB. Overridden by {@link #OPTION_MAX_BINDINGS_PER_CLASS}.
+   */
+  private static final int MAX_BINDINGS_PER_CLASS = 1000;
+  /**
+   * Long lists of statements, e.g., contributors of a multi-binding, eager creations in the ctor,
+   * field initializations or member injections, are split into helper methods of at most this
+   * many, so that each method stays below HotSpot's HugeMethodLimit and can be compiled.
+   * Overridden by {@link #OPTION_MAX_STATEMENTS_PER_METHOD}.
+   */
+  private static final int MAX_STATEMENTS_PER_METHOD = 50;
+  /** Option for {@link #MAX_BINDINGS_PER_CLASS}, mainly to exercise sharding in tests. */
+  static final String OPTION_MAX_BINDINGS_PER_CLASS = "tiger.maxBindingsPerClass";
+  /** Option for {@link #MAX_STATEMENTS_PER_METHOD}, mainly to exercise helpers in tests. */
+  static final String OPTION_MAX_STATEMENTS_PER_METHOD = "tiger.maxStatementsPerMethod";
+  private static final String FIELD_INITIALIZATIONS_METHOD_PREFIX = "initializeFields";
+  private static final String SHARD_CLASS_PREFIX = "Shard";
+  private static final String CONTRIBUTORS_SUFFIX = "_contributors";
+  private static final String EAGER_CREATIONS_METHOD_PREFIX = "createEager";
+  private static final String MEMBERS_SUFFIX = "_members";
+  /**
+   * Passed as the variable name to {@link #addNewStatementToMethodSpec} to return the new instance
+   * directly, which keeps large injectors smaller for javac.
+   */
+  protected static final String RETURN_NEW_INSTANCE = "return";
+
+  /** Processor option for how instances of scoped bindings are stored. */
+  static final String OPTION_SCOPED_STORAGE = "tiger.scopedStorage";
+  /**
+   * Keeps the instances of scoped bindings in one array of the injector, indexed by a binding id,
+   * instead of a field and a lock object each. Creation is synchronized on a lock per slot, created
+   * on first use, so that bindings are created in parallel, e.g., by {@link #OPTION_WARM_UP}, like
+   * with fields. Locks are never shared by bindings, which could deadlock on bindings depending on
+   * each other. Bindings read without lock, e.g., {@link ThreadSafetyPolicy#CONCURRENT}, still get
+   * volatile fields since array elements cannot be volatile.
+   */
+  static final String SCOPED_STORAGE_SLOTS = "slots";
+  private static final String SCOPED_SLOTS_FIELD = "scopedInstances";
+  private static final String SCOPED_SLOT_LOCKS_FIELD = "scopedLocks";
+  private static final String SCOPED_SLOT_LOCK_GETTER = "getScopedLock";
+  /**
+   * Processor option, if "true", creating the scoped bindings of the first instance of a component
+   * by holder classes. The class initialization of the JVM makes the creation thread safe without a
+   * lock object per binding. Once created, the instance is kept in the normal storage, so accessing
+   * it costs the same as without holders. Later instances of the same component are detected by the
+   * ctor and create their own instances, locked on the holder class. A creation failing in a holder
+   * is thrown as is and retried by later calls, as without holders. Only bindings whose creation
+   * cannot call back into the component get holders, see {@link #isSingletonHeld}. The first
+   * instance is only weakly referenced, holders being initialized from its own provision methods,
+   * so that it is not kept alive for good once the holders are. Subcomponents are excluded.
+   */
+  static final String OPTION_SINGLETON_HOLDERS = "tiger.singletonHolders";
+  private static final String SINGLETON_HOLDER_PREFIX = "Holder_";
+  private static final String FIRST_INSTANCE_FIELD = "firstInstance";
+  private static final String USES_SINGLETON_HOLDERS_FIELD = "usesSingletonHolders";
+  private static final String SCOPED_INITIALIZER_FIELD = "scopedInitializer";
+  /**
+   * Processor option, if "true", adding "CompletableFuture<Void> warmUp(Executor)" to generated
+   * (sub)components. It creates the scoped bindings of the injector on the executor, each after
+   * those it depends on so that independent subgraphs are created in parallel, and completes once
+   * all are created. {@link ThreadSafetyPolicy#CONFINED} bindings are excluded, and so are {@link
+   * ThreadSafetyPolicy#EAGER} ones, created by the ctor already.
+   */
+  static final String OPTION_WARM_UP = "tiger.warmUp";
+  private static final String WARM_UP_METHOD_NAME = "warmUp";
+  private static final String WARM_UP_BINDING_METHOD_NAME = "warmUpBinding";
+  private static final String WARM_UP_DEPENDENCIES_FIELD = "WARM_UP_DEPENDENCIES";
+  /**
+   * Processor option, if "true", recording the first creation of each scoped binding with {@link
+   * StartupProfile}, which writes the profile for {@link #OPTION_STARTUP_PROFILE}.
+   */
+  static final String OPTION_RECORD_STARTUP_PROFILE = "tiger.recordStartupProfile";
+  /**
+   * Processor option, the path of a profile written by {@link StartupProfile}. For the injectors in
+   * it, the scoped bindings in it, i.e., the hot set, are created by the warm-up method, see {@link
+   * #OPTION_WARM_UP}, in the order recorded. The other shardable scoped bindings, never created in
+   * the recorded run, are moved to a shard created on first use so that their code is not loaded at
+   * startup.
+   */
+  static final String OPTION_STARTUP_PROFILE = "tiger.startupProfile";
+  private static final String RECORDED_SUFFIX = "_recorded";
+  private static final String COLD_SHARD_CLASS_NAME = "ColdShard";
+  private static final String COLD_SHARD_FIELD = "coldShard";
+  private static final String COLD_SHARD_GETTER = "getColdShard";
+  // Returned by getShardIndex() for bindings in the cold shard.
+  private static final int COLD_SHARD = -2;
+
   private final ClassName objectClassName = ClassName.get(Object.class);
 
   // This does not include key for injected class, but does include its injected memebers.
@@ -153,17 +259,49 @@ abstract class GeneralInjectorGenerator4 {
   protected final Elements elements;
   protected final Types types;
   protected Builder injectorBuilder;
-  protected MethodSpec.Builder initializeBuilder;
-  private final Set<String> proxiesWhoseGetterGenerated = new HashSet<>();
-  private final Set<ClassName> typesWhoseGetterGenerated = new HashSet<>();
+  /** Added after all the bindings are generated so that eager ones can be created in it. */
+  private MethodSpec.Builder ctorBuilder;
   private final Set<String> fieldsGenerated = new HashSet<>();
   // method simple name and type.
   protected final Set<Pair<String, TypeName>> injectionMethodsDone = new HashSet<>();
   protected final Logger logger;
   protected final Set<TypeElement> modules;
-  protected Set<TypeElement> nonNullaryCtorModules;
-  private String initializeMethodName;
+  /**
+   * Modules whose instances are passed to the ctor, those without nullary ctor and those the
+   * builder has a setter for.
+   */
+  protected Set<TypeElement> passedModules;
+  /** From qualified name to the source of all the files written by this generator. */
+  private final Map<String, String> generatedSources = new LinkedHashMap<>();
   private boolean toDebug;
+  // Inner classes provision methods are distributed to, empty if not sharded.
+  private final List<Builder> shardBuilders = new ArrayList<>();
+  // Statements creating the EAGER bindings, run by the ctor.
+  private final List<String> eagerCreations = new ArrayList<>();
+  // Helper methods injecting the members of a class, see addDirectInjectionStatements().
+  private final Set<String> memberInjectionHelpers = new HashSet<>();
+  private Set<String> provisionMethodsPinnedToInjector = new HashSet<>();
+  private final boolean scopedSlotsEnabled;
+  // Number of scoped instances stored in SCOPED_SLOTS_FIELD.
+  private int scopedSlotCount;
+  // Whether any slot in SCOPED_SLOTS_FIELD is created under its lock.
+  private boolean usesScopedSlotLocks;
+  // Whether OPTION_SINGLETON_HOLDERS applies to the injector being generated.
+  private boolean singletonHoldersEnabled;
+  private final boolean warmUpEnabled;
+  // Scoped bindings created by OPTION_WARM_UP, in the order generated.
+  private final Set<BindingKey> warmUpKeys = new LinkedHashSet<>();
+  private final boolean recordStartupProfileEnabled;
+  // Provision methods of the hot scoped bindings, null if not in OPTION_STARTUP_PROFILE.
+  @Nullable private List<String> hotBindings;
+  // Inner class for the cold scoped bindings, null if not in OPTION_STARTUP_PROFILE.
+  @Nullable private Builder coldShardBuilder;
+  private final int maxBindingsPerClass;
+  private final int maxStatementsPerMethod;
+  // Number of fields initialized by the field initializers of each class, the injector or a shard.
+  private final Map<Builder, Integer> fieldInitializerCounts = new IdentityHashMap<>();
+  // Initializations of the fields beyond maxBindingsPerClass, run by the ctor of each class.
+  private final Map<Builder, List<CodeBlock>> fieldInitializations = new IdentityHashMap<>();
 
   public GeneralInjectorGenerator4(
       SetMultimap<BindingKey, DependencyInfo> dependencies,
@@ -172,6 +310,7 @@ abstract class GeneralInjectorGenerator4 {
       ProcessingEnvironment env,
       Utils utils) {
     this.processingEnv = env;
+    traceEnabled = Boolean.parseBoolean(env.getOptions().get(ProvisionTrace.OPTION));
     this.messager = env.getMessager();
     this.elements = env.getElementUtils();
     this.types = env.getTypeUtils();
@@ -180,10 +319,19 @@ abstract class GeneralInjectorGenerator4 {
     this.utils = utils;
     logger = new Logger(messager, Kind.WARNING);
     this.modules = modules;
-    nonNullaryCtorModules = utils.getNonNullaryCtorOnes(modules);
+    passedModules = utils.getNonNullaryCtorOnes(modules);
     // generatedBindings = new SetWrapper<>(messager);
     generatedBindings = new HashSet<>();
-    logger.n("modules: \n%s\n nonnullaryctor: \n%s\n", modules, nonNullaryCtorModules);
+    scopedSlotsEnabled =
+        SCOPED_STORAGE_SLOTS.equals(env.getOptions().get(OPTION_SCOPED_STORAGE));
+    warmUpEnabled = Boolean.parseBoolean(env.getOptions().get(OPTION_WARM_UP));
+    recordStartupProfileEnabled =
+        Boolean.parseBoolean(env.getOptions().get(OPTION_RECORD_STARTUP_PROFILE));
+    maxBindingsPerClass =
+        getPositiveIntOption(env, OPTION_MAX_BINDINGS_PER_CLASS, MAX_BINDINGS_PER_CLASS);
+    maxStatementsPerMethod =
+        getPositiveIntOption(env, OPTION_MAX_STATEMENTS_PER_METHOD, MAX_STATEMENTS_PER_METHOD);
+    logger.n("modules: \n%s\n passed: \n%s\n", modules, passedModules);
   }
 
   /** This are for the class header */
@@ -206,9 +354,24 @@ abstract class GeneralInjectorGenerator4 {
   // Do implementation specific stuff.
   protected abstract void postGenerateProduced();
 
+  /** Returns the (sub)component the injector is generated for. */
+  protected abstract TypeElement getEitherComponent();
+
+  /**
+   * Provision methods that must stay in the injector itself when sharded, e.g., those implementing
+   * interfaces.
+   */
+  protected Set<String> getProvisionMethodNamesPinnedToInjector() {
+    return new HashSet<>();
+  }
+
   public void generate() {
     injectorBuilder = createInjectorBuilder();
-    initializeBuilder = MethodSpec.methodBuilder(INITIALIZE_METHOD_NAME).addModifiers(Modifier.PUBLIC);
+    singletonHoldersEnabled =
+        Boolean.parseBoolean(processingEnv.getOptions().get(OPTION_SINGLETON_HOLDERS))
+            && utils.isComponent(getEitherComponent());
+    hotBindings = getStartupProfileBindings();
+    createShardBuildersIfNeeded();
     // messager.printMessage(Kind.NOTE,
     // "generatedBindings: " + generatedBindings);
     // logger.n("" + keyToPackagedInjectorMap);
@@ -216,7 +379,13 @@ abstract class GeneralInjectorGenerator4 {
     preGenerateProduced();
     generateProduced();
     postGenerateProduced();
-    // injectorBuilder.addMethod(initializeBuilder.build());
+    addShardFields();
+    addFieldInitializations();
+    addShards();
+    addScopedSlots();
+    addWarmUpIfNeeded();
+    addEagerCreations();
+    injectorBuilder.addMethod(ctorBuilder.build());
 
     // Write
     JavaFile javaFile = JavaFile.builder(getPackageString(), injectorBuilder.build()).build();
@@ -226,12 +395,460 @@ abstract class GeneralInjectorGenerator4 {
           " package:%s\n%s",
           getPackageString(),
           javaFile.toString());
-      javaFile.writeTo(processingEnv.getFiler());
+      writeJavaFile(javaFile);
     } catch (IOException e) {
       logger.e(e.toString());
     }
   }
 
+  /** Writes the file and keeps its source, see {@link #getGeneratedSources()}. */
+  protected final void writeJavaFile(JavaFile javaFile) throws IOException {
+    String qualifiedName = javaFile.packageName + "." + javaFile.typeSpec.name;
+    String source = javaFile.toString();
+    generatedSources.put(qualifiedName, source);
+    JavaFileObject fileObject =
+        processingEnv
+            .getFiler()
+            .createSourceFile(
+                qualifiedName, javaFile.typeSpec.originatingElements.toArray(new Element[0]));
+    try (Writer writer = fileObject.openWriter()) {
+      writer.write(source);
+    }
+  }
+
+  /** Returns the sources written so far, from qualified name to source. */
+  public Map<String, String> getGeneratedSources() {
+    return generatedSources;
+  }
+
+  /** Returns the qualified name of the injector. */
+  private String getInjectorQualifiedName() {
+    return getPackageString() + "." + getInjectorSimpleName();
+  }
+
+  /**
+   * Returns the scoped bindings of the injector in {@link #OPTION_STARTUP_PROFILE}, in the order
+   * accessed, null if the injector is not in it.
+   */
+  @Nullable
+  protected final List<String> getStartupProfileBindings() {
+    return Utils.getStartupProfile(processingEnv).get(getInjectorQualifiedName());
+  }
+
+  /** Returns the value of the given option, the default if not set. */
+  private static int getPositiveIntOption(
+      ProcessingEnvironment env, String option, int defaultValue) {
+    String value = env.getOptions().get(option);
+    if (value == null) {
+      return defaultValue;
+    }
+    int result = Integer.parseInt(value);
+    Preconditions.checkArgument(result > 0, "%s must be positive: %s", option, value);
+    return result;
+  }
+
+  private void createShardBuildersIfNeeded() {
+    shardBuilders.clear();
+    fieldInitializerCounts.clear();
+    fieldInitializations.clear();
+    eagerCreations.clear();
+    memberInjectionHelpers.clear();
+    provisionMethodsPinnedToInjector = getProvisionMethodNamesPinnedToInjector();
+    coldShardBuilder =
+        hotBindings == null
+            ? null
+            : TypeSpec.classBuilder(COLD_SHARD_CLASS_NAME).addModifiers(Modifier.FINAL);
+    int bindingCount = dependencies.keySet().size();
+    if (bindingCount <= maxBindingsPerClass) {
+      return;
+    }
+    int shardCount = (bindingCount + maxBindingsPerClass - 1) / maxBindingsPerClass;
+    logger.w("binding count: %d, shard count: %d", bindingCount, shardCount);
+    for (int i = 0; i < shardCount; i++) {
+      shardBuilders.add(
+          TypeSpec.classBuilder(SHARD_CLASS_PREFIX + i).addModifiers(Modifier.FINAL));
+    }
+  }
+
+  /** Returns whether provision methods are distributed to shards, including the cold one. */
+  private boolean isSharded() {
+    return !shardBuilders.isEmpty() || coldShardBuilder != null;
+  }
+
+  /**
+   * Returns the access of members used across the injector and its shards, package-private if
+   * sharded so that inner classes access them without synthetic accessors, private otherwise.
+   */
+  protected final Modifier[] getInternalAccess() {
+    return isSharded() ? new Modifier[0] : new Modifier[] {Modifier.PRIVATE};
+  }
+
+  /** Returns the access of the provision method with the given suffix, public if none. */
+  private Modifier[] getProvisionMethodAccess(String suffix) {
+    return suffix.isEmpty() ? new Modifier[] {Modifier.PUBLIC} : getInternalAccess();
+  }
+
+  /**
+   * Adds the creations of the EAGER bindings to the ctor, through helper methods if there are many,
+   * see {@link #MAX_STATEMENTS_PER_METHOD}.
+   */
+  private void addEagerCreations() {
+    if (eagerCreations.size() <= maxStatementsPerMethod) {
+      for (String creation : eagerCreations) {
+        ctorBuilder.addStatement("$L", creation);
+      }
+      return;
+    }
+    List<List<String>> partitions = Lists.partition(eagerCreations, maxStatementsPerMethod);
+    for (int i = 0; i < partitions.size(); i++) {
+      String methodName = EAGER_CREATIONS_METHOD_PREFIX + i;
+      ctorBuilder.addStatement("$L()", methodName);
+      MethodSpec.Builder methodBuilder =
+          MethodSpec.methodBuilder(methodName).addModifiers(Modifier.PRIVATE);
+      for (String creation : partitions.get(i)) {
+        methodBuilder.addStatement("$L", creation);
+      }
+      injectorBuilder.addMethod(methodBuilder.build());
+    }
+  }
+
+  /**
+   * Adds the initializations of the fields beyond {@link #MAX_BINDINGS_PER_CLASS} of each class to
+   * helper methods called by its ctor.
+   */
+  private void addFieldInitializations() {
+    for (Map.Entry<Builder, List<CodeBlock>> entry : fieldInitializations.entrySet()) {
+      Builder target = entry.getKey();
+      MethodSpec.Builder targetCtorBuilder =
+          target == injectorBuilder ? ctorBuilder : MethodSpec.constructorBuilder();
+      List<List<CodeBlock>> partitions = Lists.partition(entry.getValue(), maxStatementsPerMethod);
+      for (int i = 0; i < partitions.size(); i++) {
+        String methodName = FIELD_INITIALIZATIONS_METHOD_PREFIX + i;
+        targetCtorBuilder.addStatement("$L()", methodName);
+        MethodSpec.Builder methodBuilder =
+            MethodSpec.methodBuilder(methodName).addModifiers(Modifier.PRIVATE);
+        for (CodeBlock initialization : partitions.get(i)) {
+          methodBuilder.addStatement("$L", initialization);
+        }
+        target.addMethod(methodBuilder.build());
+      }
+      if (target != injectorBuilder) {
+        target.addMethod(targetCtorBuilder.build());
+      }
+    }
+  }
+
+  /** Adds the fields holding the only instance of each shard. */
+  private void addShardFields() {
+    for (int i = 0; i < shardBuilders.size(); i++) {
+      ClassName shardClassName =
+          ClassName.get(getPackageString(), getInjectorSimpleName(), SHARD_CLASS_PREFIX + i);
+      addInitializedField(
+          injectorBuilder,
+          FieldSpec.builder(shardClassName, getShardFieldName(i))
+              .addModifiers(getInternalAccess()),
+          CodeBlock.of("new $T()", shardClassName),
+          true);
+    }
+  }
+
+  /** Adds the shards as inner classes, see {@link #addShardFields()}. */
+  private void addShards() {
+    for (Builder shardBuilder : shardBuilders) {
+      injectorBuilder.addType(shardBuilder.build());
+    }
+    if (coldShardBuilder == null) {
+      return;
+    }
+    TypeSpec coldShard = coldShardBuilder.build();
+    if (coldShard.methodSpecs.isEmpty()) {
+      return;
+    }
+    ClassName coldShardClassName =
+        ClassName.get(getPackageString(), getInjectorSimpleName(), COLD_SHARD_CLASS_NAME);
+    injectorBuilder.addField(
+        FieldSpec.builder(coldShardClassName, COLD_SHARD_FIELD)
+            .addModifiers(getInternalAccess())
+            .addModifiers(Modifier.VOLATILE)
+            .build());
+    // Created once, the shard holding the storage of its scoped bindings.
+    injectorBuilder.addMethod(
+        MethodSpec.methodBuilder(COLD_SHARD_GETTER)
+            .addModifiers(getInternalAccess())
+            .returns(coldShardClassName)
+            .addStatement("$T result = $L", coldShardClassName, COLD_SHARD_FIELD)
+            .beginControlFlow("if (result == null)")
+            .beginControlFlow("synchronized (this)")
+            .addStatement("result = $L", COLD_SHARD_FIELD)
+            .beginControlFlow("if (result == null)")
+            .addStatement("result = $L = new $T()", COLD_SHARD_FIELD, coldShardClassName)
+            .endControlFlow()
+            .endControlFlow()
+            .endControlFlow()
+            .addStatement("return result")
+            .build());
+    injectorBuilder.addType(coldShard);
+  }
+
+  /** Adds the array holding the scoped instances, if any, see {@link #SCOPED_STORAGE_SLOTS}. */
+  private void addScopedSlots() {
+    if (scopedSlotCount == 0) {
+      return;
+    }
+    injectorBuilder.addField(
+        FieldSpec.builder(ArrayTypeName.of(objectClassName), SCOPED_SLOTS_FIELD)
+            .addModifiers(getInternalAccess())
+            .addModifiers(Modifier.FINAL)
+            .initializer("new $T[$L]", objectClassName, scopedSlotCount)
+            .build());
+    if (!usesScopedSlotLocks) {
+      return;
+    }
+    injectorBuilder.addField(
+        FieldSpec.builder(ArrayTypeName.of(objectClassName), SCOPED_SLOT_LOCKS_FIELD)
+            .addModifiers(getInternalAccess())
+            .addModifiers(Modifier.FINAL)
+            .initializer("new $T[$L]", objectClassName, scopedSlotCount)
+            .build());
+    // The locks are plain Objects, safe to use however published, so the first read needs none.
+    injectorBuilder.addMethod(
+        MethodSpec.methodBuilder(SCOPED_SLOT_LOCK_GETTER)
+            .addModifiers(getInternalAccess())
+            .returns(objectClassName)
+            .addParameter(TypeName.INT, "slot")
+            .addStatement("$T lock = $L[slot]", objectClassName, SCOPED_SLOT_LOCKS_FIELD)
+            .beginControlFlow("if (lock == null)")
+            .beginControlFlow("synchronized ($L)", SCOPED_SLOT_LOCKS_FIELD)
+            .addStatement("lock = $L[slot]", SCOPED_SLOT_LOCKS_FIELD)
+            .beginControlFlow("if (lock == null)")
+            .addStatement("lock = $L[slot] = new $T()", SCOPED_SLOT_LOCKS_FIELD, objectClassName)
+            .endControlFlow()
+            .endControlFlow()
+            .endControlFlow()
+            .addStatement("return lock")
+            .build());
+  }
+
+  /**
+   * Adds the warm-up method and its helpers, see {@link #OPTION_WARM_UP}. The bindings are sorted
+   * so that each comes after the ones it depends on.
+   */
+  private void addWarmUpIfNeeded() {
+    if (!warmUpEnabled && hotBindings == null) {
+      return;
+    }
+    Map<BindingKey, Set<BindingKey>> warmUpDependencies = new HashMap<>();
+    for (BindingKey key : warmUpKeys) {
+      warmUpDependencies.put(key, getWarmUpDependencies(key));
+    }
+    List<BindingKey> roots = new ArrayList<>(warmUpKeys);
+    if (hotBindings != null) {
+      Collections.sort(
+          roots,
+          (a, b) ->
+              Integer.compare(
+                  hotBindings.indexOf(getProvisionMethodName(a)),
+                  hotBindings.indexOf(getProvisionMethodName(b))));
+    }
+    List<BindingKey> sorted = new ArrayList<>();
+    Set<BindingKey> visited = new HashSet<>();
+    for (BindingKey key : roots) {
+      sortWarmUpKeys(key, warmUpDependencies, visited, sorted);
+    }
+
+    Map<BindingKey, Integer> indices = new HashMap<>();
+    MethodSpec.Builder bindingBuilder =
+        MethodSpec.methodBuilder(WARM_UP_BINDING_METHOD_NAME)
+            .addModifiers(Modifier.PRIVATE)
+            .addParameter(TypeName.INT, "index")
+            .beginControlFlow("switch (index)");
+    StringBuilder dependenciesInitializer = new StringBuilder("{");
+    for (BindingKey key : sorted) {
+      int index = indices.size();
+      indices.put(key, index);
+      bindingBuilder.addCode(
+          "case $L:\n$>$L;\nbreak;\n$<", index, getStringCallingProvisionMethod(key));
+      List<Integer> required = new ArrayList<>();
+      for (BindingKey k : warmUpDependencies.get(key)) {
+        // Absent only for bindings in a cycle, which cannot be ordered anyway.
+        Integer i = indices.get(k);
+        if (i != null) {
+          required.add(i);
+        }
+      }
+      Collections.sort(required);
+      dependenciesInitializer.append(index == 0 ? "" : ", ").append("{");
+      for (int i = 0; i < required.size(); i++) {
+        dependenciesInitializer.append(i == 0 ? "" : ", ").append(required.get(i));
+      }
+      dependenciesInitializer.append("}");
+    }
+    dependenciesInitializer.append("}");
+    bindingBuilder
+        .addCode(
+            "default:\n$>throw new $T($S + index);\n$<", IllegalArgumentException.class, "index: ")
+        .endControlFlow();
+    injectorBuilder.addMethod(bindingBuilder.build());
+
+    injectorBuilder.addField(
+        FieldSpec.builder(
+                ArrayTypeName.of(ArrayTypeName.of(TypeName.INT)),
+                WARM_UP_DEPENDENCIES_FIELD,
+                Modifier.PRIVATE,
+                Modifier.STATIC,
+                Modifier.FINAL)
+            .initializer(dependenciesInitializer.toString())
+            .build());
+
+    ClassName warmUpClassName = ClassName.get(WarmUp.class);
+    TypeSpec step =
+        TypeSpec.anonymousClassBuilder("")
+            .addSuperinterface(warmUpClassName.nestedClass("Step"))
+            .addMethod(
+                MethodSpec.methodBuilder("run")
+                    .addAnnotation(Override.class)
+                    .addModifiers(Modifier.PUBLIC)
+                    .addParameter(TypeName.INT, "index")
+                    .addStatement("$L(index)", WARM_UP_BINDING_METHOD_NAME)
+                    .build())
+            .build();
+    injectorBuilder.addMethod(
+        MethodSpec.methodBuilder(WARM_UP_METHOD_NAME)
+            .addJavadoc("Creates the scoped bindings on the executor, independent ones in parallel.\n")
+            .addModifiers(Modifier.PUBLIC)
+            .returns(
+                ParameterizedTypeName.get(
+                    ClassName.get(CompletableFuture.class), ClassName.get(Void.class)))
+            .addParameter(Executor.class, "executor")
+            .addStatement(
+                "return $T.start(executor, $L, $L)",
+                warmUpClassName,
+                WARM_UP_DEPENDENCIES_FIELD,
+                step)
+            .build());
+  }
+
+  /**
+   * Returns the warm-up bindings the given one depends on directly or through unscoped bindings.
+   * Providers and lazies are not followed as they need not be created with the dependant. Missing
+   * ones only cost parallelism as scoped bindings create their dependencies anyway.
+   */
+  private Set<BindingKey> getWarmUpDependencies(BindingKey key) {
+    Set<BindingKey> result = new HashSet<>();
+    Set<BindingKey> visited = new HashSet<>();
+    Stack<BindingKey> toVisit = new Stack<>();
+    addWarmUpDependenciesToVisit(key, toVisit);
+    while (!toVisit.isEmpty()) {
+      BindingKey k = toVisit.pop();
+      if (!visited.add(k) || utils.isProviderOrLazy(k)) {
+        continue;
+      }
+      Set<DependencyInfo> dependencyInfos = Utils.getDependencyInfosHandlingBox(dependencies, k);
+      DependencyInfo dependencyInfo =
+          dependencyInfos == null ? null : Iterables.getFirst(dependencyInfos, null);
+      BindingKey dependant = dependencyInfo == null ? k : dependencyInfo.getDependant();
+      if (warmUpKeys.contains(dependant)) {
+        if (!dependant.equals(key)) {
+          result.add(dependant);
+        }
+      } else if (dependencyInfo != null && !utils.isScoped(dependencyInfo)) {
+        addWarmUpDependenciesToVisit(dependant, toVisit);
+      }
+    }
+    return result;
+  }
+
+  private void addWarmUpDependenciesToVisit(BindingKey key, Stack<BindingKey> toVisit) {
+    Set<DependencyInfo> dependencyInfos = Utils.getDependencyInfosHandlingBox(dependencies, key);
+    if (dependencyInfos == null) {
+      return;
+    }
+    for (DependencyInfo dependencyInfo : dependencyInfos) {
+      toVisit.addAll(dependencyInfo.getDependencies());
+    }
+  }
+
+  /** Adds the given binding to sorted after the ones it depends on. */
+  private void sortWarmUpKeys(
+      BindingKey key,
+      Map<BindingKey, Set<BindingKey>> warmUpDependencies,
+      Set<BindingKey> visited,
+      List<BindingKey> sorted) {
+    if (!visited.add(key)) {
+      return;
+    }
+    for (BindingKey k : utils.sortBindingKeys(warmUpDependencies.get(key))) {
+      sortWarmUpKeys(k, warmUpDependencies, visited, sorted);
+    }
+    sorted.add(key);
+  }
+
+  private String getShardFieldName(int shard) {
+    return "shard" + shard;
+  }
+
+  /**
+   * Returns the shard the provision method for the given key belongs to, or -1 for the injector
+   * itself. Only bindings from modules, ctor injected classes and built-in ones are sharded, others
+   * refer to the injector by "this" or implement its contracts.
+   */
+  private int getShardIndex(BindingKey key) {
+    if (shardBuilders.isEmpty() && coldShardBuilder == null) {
+      return -1;
+    }
+    String provisionMethodName = getProvisionMethodName(key);
+    if (provisionMethodsPinnedToInjector.contains(provisionMethodName)) {
+      return -1;
+    }
+    Set<DependencyInfo> dependencyInfos = Utils.getDependencyInfosHandlingBox(dependencies, key);
+    DependencyInfo dependencyInfo =
+        dependencyInfos == null ? null : Iterables.getFirst(dependencyInfos, null);
+    if (dependencyInfo != null
+        && !dependencyInfo.getDependencySourceType().equals(DependencySourceType.MODULE)
+        && !dependencyInfo
+            .getDependencySourceType()
+            .equals(DependencySourceType.CTOR_INJECTED_CLASS)) {
+      return -1;
+    }
+    if (coldShardBuilder != null
+        && isStoredScoped(dependencyInfo)
+        && !hotBindings.contains(provisionMethodName)) {
+      return COLD_SHARD;
+    }
+    if (shardBuilders.isEmpty()) {
+      return -1;
+    }
+    return (provisionMethodName.hashCode() & Integer.MAX_VALUE) % shardBuilders.size();
+  }
+
+  /** Returns the builder of the class, the injector or a shard, to provide the given key. */
+  protected final Builder getInjectorBuilderFor(BindingKey key) {
+    int shard = getShardIndex(key);
+    if (shard == COLD_SHARD) {
+      return coldShardBuilder;
+    }
+    return shard < 0 ? injectorBuilder : shardBuilders.get(shard);
+  }
+
+  /** Returns "provide_xxx()", qualified by the shard if the binding is sharded. */
+  protected final String getStringCallingProvisionMethod(BindingKey key) {
+    return getStringCallingProvisionMethod(key, "");
+  }
+
+  private String getStringCallingProvisionMethod(BindingKey key, String suffix) {
+    int shard = getShardIndex(key);
+    String prefix;
+    if (shard == COLD_SHARD) {
+      prefix = COLD_SHARD_GETTER + "().";
+    } else {
+      prefix = shard < 0 ? "" : getShardFieldName(shard) + ".";
+    }
+    return prefix
+        + getProvisionMethodName(key)
+        + suffix
+        + "()";
+  }
+
   private void generateProduced() {
     logger.w("provision count: %d", getProduced().getFirst().size());
     logger.w("injection count: %d", getProduced().getSecond().size());
@@ -245,7 +862,7 @@ abstract class GeneralInjectorGenerator4 {
 
   private void generateCtor() {
     // Ctor
-    MethodSpec.Builder ctorBuilder = MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC);
+    ctorBuilder = MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC);
 
     // ctorBuilder.addStatement(
     //     "$T.out.printf($S, $L)", ClassName.get(System.class), "This is tiger: %s\n", "this");
@@ -277,21 +894,37 @@ abstract class GeneralInjectorGenerator4 {
     for (BindingKey key : utils.sortBindingKeys(allParameters)) {
       TypeName typeName = key.getTypeName();
       String sourceCodeName = utils.getSourceCodeName(key);
-      generateFieldIfNeeded(typeName, sourceCodeName);
+      generateFinalFieldIfNeeded(typeName, sourceCodeName);
       ctorBuilder
           .addParameter(typeName, sourceCodeName)
           .addStatement("this.$L = $L", sourceCodeName, sourceCodeName);
     }
 
-    // TODO: handle ApplicationCompoent in a consistent way.
-    if (!Sets.newHashSet(
-            "DaggerApplicationComponent",
-            "DaggerRootApplicationComponent",
-            "DaggerPlatformApplicationComponentImpl")
-        .contains(getInjectorSimpleName())) {
-      // ctorBuilder.addStatement("$L()", INITIALIZE_METHOD_NAME);
+    // Ctor - Whether this is the first instance, see OPTION_SINGLETON_HOLDERS.
+    if (singletonHoldersEnabled) {
+      ClassName injectorClassName = ClassName.get(getPackageString(), getInjectorSimpleName());
+      injectorBuilder.addField(
+          FieldSpec.builder(
+                  ParameterizedTypeName.get(
+                      ClassName.get(AtomicReference.class),
+                      ParameterizedTypeName.get(
+                          ClassName.get(WeakReference.class), injectorClassName)),
+                  FIRST_INSTANCE_FIELD)
+              .addModifiers(getInternalAccess())
+              .addModifiers(Modifier.STATIC, Modifier.FINAL)
+              .initializer("new $T<>()", ClassName.get(AtomicReference.class))
+              .build());
+      injectorBuilder.addField(
+          FieldSpec.builder(TypeName.BOOLEAN, USES_SINGLETON_HOLDERS_FIELD)
+              .addModifiers(getInternalAccess())
+              .addModifiers(Modifier.FINAL)
+              .build());
+      ctorBuilder.addStatement(
+          "$L = $L.compareAndSet(null, new $T<>(this))",
+          USES_SINGLETON_HOLDERS_FIELD,
+          FIRST_INSTANCE_FIELD,
+          ClassName.get(WeakReference.class));
     }
-    injectorBuilder.addMethod(ctorBuilder.build());
   }
 
   protected final static String getPackageFromInjectorClassName(ClassName injectorClassName) {
@@ -418,7 +1051,7 @@ abstract class GeneralInjectorGenerator4 {
     // dependencyInfo);
     // logger.n("scope: " +
     // scopeCalculator.calculate(key));
-    boolean scoped = utils.isScoped(dependencyInfo); // explicitScopes.contains(key);
+    boolean scoped = isStoredScoped(dependencyInfo);
     String suffix = scoped ? UNSCOPED_SUFFIX : "";
     /**
      * TODO: revist this and handle it in a consistent way with the ones below. This is related with
@@ -450,7 +1083,11 @@ abstract class GeneralInjectorGenerator4 {
               if (toDebug) {
                 utils.generateDebugInfoMethod(injectorBuilder, "uriUtil", "module binding");
               }
-              generateProvisionMethodFromModuleUniqueBinding(key, suffix);
+              if (utils.isProducer(dependencyInfo)) {
+                generateProvisionMethodForProducer(dependencyInfo, suffix);
+              } else {
+                generateProvisionMethodFromModuleUniqueBinding(key, suffix);
+              }
               break;
             case CTOR_INJECTED_CLASS:
               generateProvisionMethodFromClass(key, suffix);
@@ -516,9 +1153,40 @@ abstract class GeneralInjectorGenerator4 {
       }
     }
     if (scoped) {
-      generateFieldIfNeeded(key.getTypeName(), getFieldName(key));
-      generateFieldIfNeededAndInitialize(ClassName.get(Object.class), getLockFieldName(key));
-      generateScopedProvisionMethod(injectorBuilder, key);
+      ThreadSafetyPolicy policy =
+          Utils.getThreadSafetyPolicy(
+              processingEnv, Utils.getScopeTypeElement(dependencyInfo), getEitherComponent());
+      boolean warmedUp =
+          hotBindings == null ? warmUpEnabled : hotBindings.contains(getProvisionMethodName(key));
+      if (warmedUp
+          && policy != ThreadSafetyPolicy.CONFINED
+          && policy != ThreadSafetyPolicy.EAGER) {
+        warmUpKeys.add(key);
+      }
+      if (recordStartupProfileEnabled) {
+        generateRecordedProvisionMethod(key);
+      }
+      if (scopedSlotsEnabled && (policy == null || !policy.isReadWithoutLock())) {
+        generateSlotScopedProvisionMethod(getInjectorBuilderFor(key), key, policy);
+      } else {
+        // The storage is next to the provision method, initialized by the ctor of its class.
+        Builder storageBuilder = getInjectorBuilderFor(key);
+        if (policy != null && policy.isReadWithoutLock()) {
+          generateVolatileFieldIfNeeded(storageBuilder, key.getTypeName(), getFieldName(key));
+        } else {
+          generateFieldIfNeeded(storageBuilder, key.getTypeName(), getFieldName(key));
+        }
+        if ((policy == null || policy == ThreadSafetyPolicy.CONCURRENT)
+            && !isSingletonHeld(key, policy)) {
+          generateFinalFieldIfNeededAndInitialize(
+              storageBuilder, objectClassName, getLockFieldName(key));
+        }
+        if (policy == ThreadSafetyPolicy.VIRTUAL_THREADS) {
+          generateFinalFieldIfNeededAndInitialize(
+              ClassName.get(ScopedInitializer.class), SCOPED_INITIALIZER_FIELD);
+        }
+        generateScopedProvisionMethod(getInjectorBuilderFor(key), key, policy);
+      }
     }
   }
 
@@ -549,8 +1217,7 @@ abstract class GeneralInjectorGenerator4 {
 
     onProvisionMethodStart(methodSpecBuilder, key);
 
-    methodSpecBuilder.addStatement("$T result", key.getTypeName());
-    StringBuilder builder = new StringBuilder("result = ");
+    StringBuilder builder = new StringBuilder("return ");
     switch (dependencySourceType) {
       case COMPONENT_DEPENDENCIES_METHOD:
         builder
@@ -582,8 +1249,6 @@ abstract class GeneralInjectorGenerator4 {
     }
 
     methodSpecBuilder.addStatement(builder.toString());
-
-    methodSpecBuilder.addStatement("return result");
     onProvisionMethodEnd(methodSpecBuilder, key);
 
     injectorBuilder.addMethod(methodSpecBuilder.build());
@@ -600,7 +1265,7 @@ abstract class GeneralInjectorGenerator4 {
 
     MethodSpec.Builder methodSpecBuilder =
         MethodSpec.methodBuilder(getProvisionMethodName(key) + suffix)
-            .addModifiers(suffix.isEmpty() ? Modifier.PUBLIC : Modifier.PRIVATE)
+            .addModifiers(getProvisionMethodAccess(suffix))
             .returns(key.getTypeName());
     onProvisionMethodStart(methodSpecBuilder, key);
     if (present) {
@@ -617,47 +1282,48 @@ abstract class GeneralInjectorGenerator4 {
     }
     onProvisionMethodEnd(methodSpecBuilder, key);
 
-    injectorBuilder.addMethod(methodSpecBuilder.build());
+    getInjectorBuilderFor(key).addMethod(methodSpecBuilder.build());
   }
 
   protected final void onProvisionMethodStart(MethodSpec.Builder methodSpecBuilder, BindingKey key) {
-    if (!LOG_PROVISION_METHOD_ENABLED) {
+    if (!traceEnabled) {
       return;
     }
-    // methodSpecBuilder.addStatement(
-    //     "logger.atInfo().log($S)", "providing starts before lock: " + key);
-    // methodSpecBuilder
-    //     .addStatement(
-    //         "$L.$L.$L.lock()",
-    //         LOCK_HOLDER_PACKAGE_STRING,
-    //         LOCK_HOLDER_CLASS_STRING,
-    //         LOCK_HOLDER_FIELD_STRIN);
-    methodSpecBuilder.beginControlFlow("try");
-    methodSpecBuilder.addStatement("logger.atInfo().log($S)", "{ providing starts: " + key);
+    methodSpecBuilder
+        .addStatement("long $L = $T.nanoTime()", TRACE_START_VARIABLE, System.class)
+        .beginControlFlow("try");
   }
 
   protected final void onProvisionMethodEnd(MethodSpec.Builder methodSpecBuilder, BindingKey key) {
-    if (!LOG_PROVISION_METHOD_ENABLED) {
+    if (!traceEnabled) {
       return;
     }
     methodSpecBuilder
         .nextControlFlow("finally")
-        .addStatement("logger.atInfo().log($S)", "} providing ends: " + key);
-    // methodSpecBuilder.addStatement(
-    //     "$L.$L.$L.unlock()",
-    //     LOCK_HOLDER_PACKAGE_STRING,
-    //     LOCK_HOLDER_CLASS_STRING,
-    //     LOCK_HOLDER_FIELD_STRIN);
-    methodSpecBuilder.endControlFlow();
+        .addStatement(
+            "$T.record($S, $L)",
+            ProvisionTrace.class,
+            Utils.getDisplayName(key),
+            TRACE_START_VARIABLE)
+        .endControlFlow();
   }
 
   protected final TypeName getAccessibleTypeName(TypeName typeName) {
-    if (utils.isPublicallyAccessible(typeName)) {
+    if (isGeneratedInterface(typeName) || utils.isPublicallyAccessible(typeName)) {
       return typeName;
     } else {
       return ClassName.get(Object.class);
     }
   }
+
+  /**
+   * Returns whether the given type is a public interface generated in this round, which has no
+   * element to check yet.
+   */
+  protected boolean isGeneratedInterface(TypeName typeName) {
+    return false;
+  }
+
   protected final TypeName getAccessibleTypeName(BindingKey key) {
     return getAccessibleTypeName(key.getTypeName());
   }
@@ -704,17 +1370,85 @@ abstract class GeneralInjectorGenerator4 {
             methodName);
     TypeName returnTypeName = getAccessibleTypeName(returnKey);
     methodSpecBuilder
-        .addModifiers(suffix.isEmpty() ? Modifier.PUBLIC : Modifier.PRIVATE)
+        .addModifiers(getProvisionMethodAccess(suffix))
         .returns(returnTypeName);
 
     onProvisionMethodStart(methodSpecBuilder, key);
 
     /** TODO: unitfy this with {@link #generateProvisionMethodFromClass(BindingKey, String)} */
-    methodSpecBuilder.addStatement("$T result", returnTypeName);
-    addNewStatementToMethodSpec(methodSpecBuilder, dependencyInfo, "result");
-    methodSpecBuilder.addStatement("return result");
+    addNewStatementToMethodSpec(methodSpecBuilder, dependencyInfo, RETURN_NEW_INSTANCE);
     onProvisionMethodEnd(methodSpecBuilder, key);
-    injectorBuilder.addMethod(methodSpecBuilder.build());
+    getInjectorBuilderFor(key).addMethod(methodSpecBuilder.build());
+  }
+
+  /**
+   * Generates the provision method returning the future of the given {@link Produces} binding. It
+   * submits the producer with the futures of the produced parameters, see {@link
+   * DependencyCollector}, as inputs. The other parameters are provided by the task.
+   */
+  private void generateProvisionMethodForProducer(DependencyInfo dependencyInfo, String suffix) {
+    BindingKey key = dependencyInfo.getDependant();
+    ExecutableElement method = dependencyInfo.getProvisionMethodElement();
+    TypeName valueTypeName =
+        Iterables.getOnlyElement(((ParameterizedTypeName) key.getTypeName()).typeArguments);
+    if (!utils.isPublicallyAccessible(valueTypeName)) {
+      logger.e("Type produced by %s must be public: %s", method, valueTypeName);
+    }
+    boolean async = utils.isAsyncProducesMethod(method);
+    MethodSpec.Builder methodSpecBuilder =
+        MethodSpec.methodBuilder(getProvisionMethodName(key) + suffix)
+            .addModifiers(getProvisionMethodAccess(suffix))
+            .returns(key.getTypeName());
+
+    onProvisionMethodStart(methodSpecBuilder, key);
+
+    StringBuilder inputs = new StringBuilder();
+    StringBuilder call = new StringBuilder();
+    appendCallPrefix(call, dependencyInfo);
+    int inputCount = 0;
+    for (BindingKey parameter : utils.getDependenciesFromExecutableElement(method)) {
+      BindingKey producedKey = Utils.getProducedKey(parameter);
+      if (dependencyInfo.getDependencies().contains(producedKey)) {
+        String input = "input" + inputCount++;
+        methodSpecBuilder.addStatement(
+            "final $T $L = $L",
+            producedKey.getTypeName(),
+            input,
+            generateProvisionMethodAndReturnCallingString(producedKey));
+        inputs.append(", ").append(input);
+        call.append(input).append(".join(), ");
+      } else {
+        generateProvisionMethodAndAppendAsParameter(parameter, call);
+      }
+    }
+    if (call.substring(call.length() - 2).equals(", ")) {
+      call.delete(call.length() - 2, call.length());
+    }
+    call.append(")");
+
+    TypeName callableTypeName = async ? key.getTypeName() : valueTypeName;
+    TypeSpec task =
+        TypeSpec.anonymousClassBuilder("")
+            .addSuperinterface(
+                ParameterizedTypeName.get(ClassName.get(Callable.class), callableTypeName))
+            .addMethod(
+                MethodSpec.methodBuilder("call")
+                    .addAnnotation(Override.class)
+                    .addModifiers(Modifier.PUBLIC)
+                    .returns(callableTypeName)
+                    .addException(Exception.class)
+                    .addStatement("return $L", call)
+                    .build())
+            .build();
+    methodSpecBuilder.addStatement(
+        "return $T.$L($L, $L$L)",
+        Producers.class,
+        async ? "submitAsync" : "submit",
+        task,
+        generateProvisionMethodAndReturnCallingString(Utils.getProductionExecutorKey()),
+        inputs);
+    onProvisionMethodEnd(methodSpecBuilder, key);
+    getInjectorBuilderFor(key).addMethod(methodSpecBuilder.build());
   }
 
   /**
@@ -743,37 +1477,110 @@ abstract class GeneralInjectorGenerator4 {
     return Pair.of(dependencyInfo, null);
   }
 
-  protected final void generateGetProxyMethodIfNeeded(String packageString) {
-    if (!proxiesWhoseGetterGenerated.add(packageString)) {
-      return;
+  /**
+   * Returns the binding, with its key, that the given @Binds binding finally delegates to by
+   * following the unscoped @Binds hops. Scoped hops are not followed so that their storage is
+   * used. The binding is null if the key is not uniquely bound here, e.g., from parent.
+   */
+  protected final Pair<DependencyInfo, BindingKey> collapseBinds(DependencyInfo dependencyInfo) {
+    Preconditions.checkArgument(isBinds(dependencyInfo), "Expect @Binds but got " + dependencyInfo);
+    Set<DependencyInfo> visited = new HashSet<>();
+    while (true) {
+      BindingKey key =
+          utils.getKeyForOnlyParameterOfMethod(
+              types,
+              (DeclaredType) dependencyInfo.getSourceClassElement().asType(),
+              dependencyInfo.getProvisionMethodElement());
+      Set<DependencyInfo> dependencyInfos = utils.getDependencyInfo(dependencies, key);
+      if (dependencyInfos == null || dependencyInfos.size() != 1) {
+        return Pair.of(null, key);
+      }
+      DependencyInfo target = Iterables.getOnlyElement(dependencyInfos);
+      // Cycles are left to the provision methods.
+      if (!isBinds(target) || utils.isScoped(target) || !visited.add(target)) {
+        return Pair.of(target, key);
+      }
+      dependencyInfo = target;
     }
-    ClassName proxyClassName = ClassName.get(packageString, TIGER_PROXY_NAME);
-    generateGetTypeMethod(proxyClassName);
   }
 
-  /** generate a getXXX() that returns xxx field, initialize it if needed. */
-  protected final void generateGetTypeMethod(ClassName proxyClassName) {
-    String proxySourceName = Utils.getSourceCodeName(proxyClassName);
-    generateFieldIfNeeded(proxyClassName, proxySourceName);
-    injectorBuilder.addMethod(
-        MethodSpec.methodBuilder(utils.getGetMethodName(proxyClassName))
-            .addModifiers(Modifier.PRIVATE)
-            .returns(proxyClassName)
-            .beginControlFlow("if ($L == null)", proxySourceName)
-            .addStatement("$L = new $T()", proxySourceName, proxyClassName)
-            .endControlFlow()
-            .addStatement("return $L", proxySourceName)
-            .build());
+  protected final boolean isBinds(@Nullable DependencyInfo dependencyInfo) {
+    return dependencyInfo != null
+        && dependencyInfo.getDependencySourceType().equals(DependencySourceType.MODULE)
+        && utils.isBindsMethod(dependencyInfo.getProvisionMethodElement());
+  }
+
+  /** Returns name of the final field holding the proxy of the package, generated if needed. */
+  protected final String generateProxyFieldIfNeeded(String packageString) {
+    return generateInstanceFieldIfNeeded(ClassName.get(packageString, TIGER_PROXY_NAME));
+  }
+
+  /**
+   * Returns name of the final xxx field holding an instance of the given type, which is created when
+   * the injector is constructed so that accessing it is a plain field load. Generated if needed.
+   */
+  protected final String generateInstanceFieldIfNeeded(ClassName className) {
+    String fieldName = Utils.getSourceCodeName(className);
+    generateFinalFieldIfNeededAndInitialize(className, fieldName);
+    return fieldName;
+  }
+
+  /**
+   * Returns the expression of the instance of the given module, which is not passed to the ctor.
+   * Stateless modules, see {@link Utils#isStatelessModule}, are created where used, which costs
+   * nothing once the JIT sees the instance does not escape. Others are held by a field.
+   */
+  protected final String getModuleInstance(TypeElement module) {
+    if (utils.isStatelessModule(module)) {
+      return "new " + utils.getQualifiedName(module) + "()";
+    }
+    return generateInstanceFieldIfNeeded(ClassName.get(module));
   }
 
   protected final void generateFieldIfNeededAndInitialize(TypeName typeName, String fieldName) {
     generateFieldIfNeededCommon(typeName, fieldName, true, "");
   }
 
+  protected final void generateFinalFieldIfNeededAndInitialize(
+      TypeName typeName, String fieldName) {
+    generateFieldIfNeededCommon(typeName, fieldName, true, true, "");
+  }
+
+  /** Adds the field to the given class, the injector or a shard. */
+  private void generateFinalFieldIfNeededAndInitialize(
+      Builder target, TypeName typeName, String fieldName) {
+    generateFieldIfNeededCommon(target, typeName, fieldName, true, true, "");
+  }
+
+  /** The field must be assigned in ctor. */
+  protected final void generateFinalFieldIfNeeded(TypeName typeName, String fieldName) {
+    generateFieldIfNeededCommon(typeName, fieldName, false, true, "");
+  }
+
   protected final void generateFieldIfNeeded(TypeName typeName, String fieldName) {
     generateFieldIfNeededCommon(typeName, fieldName, false, "");
   }
 
+  /** Adds the field to the given class, the injector or a shard. */
+  private void generateFieldIfNeeded(Builder target, TypeName typeName, String fieldName) {
+    generateFieldIfNeededCommon(target, typeName, fieldName, false, false, "");
+  }
+
+  /**
+   * For fields read without lock, e.g., instances of {@link ThreadSafetyPolicy#CONCURRENT}. Adds
+   * the field to the given class, the injector or a shard.
+   */
+  private void generateVolatileFieldIfNeeded(Builder target, TypeName typeName, String fieldName) {
+    if (!fieldsGenerated.add(fieldName)) {
+      return;
+    }
+    target.addField(
+        FieldSpec.builder(getAccessibleTypeName(typeName), fieldName)
+            .addModifiers(getInternalAccess())
+            .addModifiers(Modifier.VOLATILE)
+            .build());
+  }
+
   protected final void generateFieldIfNeeded(
       TypeName typeName, String fieldName, String fmt, Object... args) {
     generateFieldIfNeededCommon(typeName, fieldName, true, fmt, args);
@@ -781,29 +1588,69 @@ abstract class GeneralInjectorGenerator4 {
 
   protected final void generateFieldIfNeededCommon(
       TypeName typeName, String fieldName, boolean initialize, String fmt, Object... args) {
+    generateFieldIfNeededCommon(typeName, fieldName, initialize, false, fmt, args);
+  }
+
+  protected final void generateFieldIfNeededCommon(
+      TypeName typeName,
+      String fieldName,
+      boolean initialize,
+      boolean isFinal,
+      String fmt,
+      Object... args) {
+    generateFieldIfNeededCommon(
+        injectorBuilder, typeName, fieldName, initialize, isFinal, fmt, args);
+  }
+
+  private void generateFieldIfNeededCommon(
+      Builder target,
+      TypeName typeName,
+      String fieldName,
+      boolean initialize,
+      boolean isFinal,
+      String fmt,
+      Object... args) {
     if (!fieldsGenerated.add(fieldName)) {
       return;
     }
-    FieldSpec.Builder fieldBuilder = FieldSpec.builder(getAccessibleTypeName(typeName), fieldName, Modifier.PRIVATE);
-    if (initialize) {
-      if (fmt.isEmpty()) {
-        fieldBuilder.initializer("new $T()", typeName);
-      } else {
-        fieldBuilder.initializer(fmt, args);
+    FieldSpec.Builder fieldBuilder =
+        FieldSpec.builder(getAccessibleTypeName(typeName), fieldName)
+            .addModifiers(getInternalAccess());
+    if (!initialize) {
+      if (isFinal) {
+        fieldBuilder.addModifiers(Modifier.FINAL);
       }
+      target.addField(fieldBuilder.build());
+      return;
     }
-    injectorBuilder.addField(fieldBuilder.build());
-  }
-
-  protected final void generateGetTypeMethodIfNeeded(TypeElement module) {
-    generateGetTypeMethodIfNeeded(ClassName.get(module));
+    addInitializedField(
+        target,
+        fieldBuilder,
+        fmt.isEmpty() ? CodeBlock.of("new $T()", typeName) : CodeBlock.of(fmt, args),
+        isFinal);
   }
 
-  protected final void generateGetTypeMethodIfNeeded(ClassName className) {
-    if (!typesWhoseGetterGenerated.add(className)) {
+  /**
+   * Adds the field with the given initializer to the given class, the injector or a shard. Those
+   * beyond {@link #MAX_BINDINGS_PER_CLASS} are not final and initialized by {@link
+   * #addFieldInitializations()}.
+   */
+  private void addInitializedField(
+      Builder target, FieldSpec.Builder fieldBuilder, CodeBlock initializer, boolean isFinal) {
+    int count = fieldInitializerCounts.getOrDefault(target, 0);
+    if (count >= maxBindingsPerClass) {
+      fieldInitializations
+          .computeIfAbsent(target, k -> new ArrayList<>())
+          .add(CodeBlock.of("$L = $L", fieldBuilder.build().name, initializer));
+      target.addField(fieldBuilder.build());
       return;
     }
-    generateGetTypeMethod(className);
+    fieldInitializerCounts.put(target, count + 1);
+    fieldBuilder.initializer(initializer);
+    if (isFinal) {
+      fieldBuilder.addModifiers(Modifier.FINAL);
+    }
+    target.addField(fieldBuilder.build());
   }
 
   /**
@@ -821,22 +1668,22 @@ abstract class GeneralInjectorGenerator4 {
     TypeName returnTypeName = getAccessibleTypeName(key);
     MethodSpec.Builder methodSpecBuilder =
         MethodSpec.methodBuilder(getProvisionMethodName(key) + suffix)
-            .addModifiers(suffix.isEmpty() ? Modifier.PUBLIC : Modifier.PRIVATE)
+            .addModifiers(getProvisionMethodAccess(suffix))
             .returns(returnTypeName);
 
     onProvisionMethodStart(methodSpecBuilder, key);
 
     // methodSpecBuilder.addStatement("$T result = $L", key.getTypeName(), anonymousTypeSpec);
     methodSpecBuilder.addStatement(
-        "$T result = $T.create(()->$L())",
+        "$T result = $T.create(()->$L)",
         returnTypeName,
         ClassName.get(DoubleCheckLazyProvider.class),
-        getProvisionMethodName(elementKey));
+        getStringCallingProvisionMethod(elementKey));
 
     methodSpecBuilder.addStatement("return result");
     onProvisionMethodEnd(methodSpecBuilder, key);
 
-    injectorBuilder.addMethod(methodSpecBuilder.build());
+    getInjectorBuilderFor(key).addMethod(methodSpecBuilder.build());
   }
 
   protected final TypeSpec createAnonymousBuiltinTypeForUniqueBinding(BindingKey key) {
@@ -892,7 +1739,7 @@ abstract class GeneralInjectorGenerator4 {
                     Iterables.getFirst(dIs, null), "key: " + elementKey + " dI: " + dIs)
                 .getDependant();
       }
-      builderForGet.addStatement("var = $N()", getProvisionMethodName(elementKey));
+      builderForGet.addStatement("var = $L", getStringCallingProvisionMethod(elementKey));
     } else {
       /**
        * TODO: revisit the logic here, current, for Provide, Lazy and Optional, the key != {@link
@@ -912,26 +1759,178 @@ abstract class GeneralInjectorGenerator4 {
         .build();
   }
 
-  protected final void generateScopedProvisionMethod(Builder componentSpecBuilder, BindingKey key) {
+  protected final void generateScopedProvisionMethod(
+      Builder componentSpecBuilder, BindingKey key, @Nullable ThreadSafetyPolicy policy) {
     TypeName returnTypeName = getAccessibleTypeName(key);
     MethodSpec.Builder builder =
         MethodSpec.methodBuilder(getProvisionMethodName(key))
             .returns(returnTypeName)
             .addModifiers(Modifier.PUBLIC);
-    builder
-        .addStatement("$T result = $N", returnTypeName.box(), getFieldName(key))
-        .beginControlFlow("if (result == null)")
-        .beginControlFlow("synchronized($L)", getLockFieldName(key))
-        .addStatement("result = $N", getFieldName(key))
-        .beginControlFlow("if (result == null)")
-        .addStatement(
-            "result = $L = $L()", getFieldName(key), getProvisionMethodName(key) + UNSCOPED_SUFFIX)
-        .endControlFlow() // if
-        .endControlFlow() // synchronized
-        .endControlFlow() // if
-        .addStatement("return result");
+    if (isSingletonHeld(key, policy)) {
+      String holder = generateSingletonHolder(key);
+      Utils.addHeldScopedProvisionStatements(
+          builder,
+          returnTypeName,
+          getFieldName(key),
+          policy == null || policy == ThreadSafetyPolicy.CONCURRENT ? holder + ".class" : null,
+          getProvisionMethodName(key) + getCreationSuffix(),
+          USES_SINGLETON_HOLDERS_FIELD,
+          holder);
+    } else if (policy == ThreadSafetyPolicy.VIRTUAL_THREADS) {
+      Utils.addInitializerScopedProvisionStatements(
+          builder,
+          returnTypeName,
+          getFieldName(key),
+          SCOPED_INITIALIZER_FIELD,
+          Utils.getDisplayName(key),
+          getProvisionMethodName(key) + getCreationSuffix());
+    } else {
+      Utils.addScopedProvisionStatements(
+          builder,
+          returnTypeName,
+          getFieldName(key),
+          policy == null || policy == ThreadSafetyPolicy.CONCURRENT ? getLockFieldName(key) : null,
+          getProvisionMethodName(key) + getCreationSuffix());
+    }
     componentSpecBuilder.addMethod(builder.build());
-    initializeBuilder.addStatement("$L = $L()", getFieldName(key), getProvisionMethodName(key));
+    if (policy == ThreadSafetyPolicy.EAGER) {
+      eagerCreations.add(getStringCallingProvisionMethod(key));
+    }
+  }
+
+  /**
+   * Returns whether the given scoped binding is created by a holder for the first instance of the
+   * injector, see {@link #OPTION_SINGLETON_HOLDERS}. Only bindings whose creation cannot call back
+   * into the injector are, i.e., without providers, lazies, members injectors, (sub)components,
+   * builders, component dependency methods or producers among their transitive dependencies. So a
+   * holder never sees itself being initialized, and holders are initialized in the order of the
+   * dependencies, which cannot deadlock. {@link ThreadSafetyPolicy#VIRTUAL_THREADS} would pin the
+   * carrier thread in class initialization and {@link ThreadSafetyPolicy#EAGER} has nothing to
+   * gain, both are excluded.
+   */
+  private boolean isSingletonHeld(BindingKey key, @Nullable ThreadSafetyPolicy policy) {
+    if (!singletonHoldersEnabled
+        || policy == ThreadSafetyPolicy.VIRTUAL_THREADS
+        || policy == ThreadSafetyPolicy.EAGER) {
+      return false;
+    }
+    Set<BindingKey> ctorParameters = getAllCtorParameters();
+    Set<BindingKey> visited = new HashSet<>();
+    Stack<BindingKey> toVisit = new Stack<>();
+    toVisit.push(key);
+    while (!toVisit.isEmpty()) {
+      BindingKey k = toVisit.pop();
+      if (!visited.add(k) || ctorParameters.contains(k)) {
+        continue;
+      }
+      Set<DependencyInfo> dependencyInfos = Utils.getDependencyInfosHandlingBox(dependencies, k);
+      if (utils.isProviderOrLazy(k) || dependencyInfos == null) {
+        return false;
+      }
+      for (DependencyInfo dependencyInfo : dependencyInfos) {
+        switch (dependencyInfo.getDependencySourceType()) {
+          case MODULE:
+          case CTOR_INJECTED_CLASS:
+          case BINDS_INTANCE:
+          case COMPONENT_DEPENDENCIES_ITSELF:
+            if (utils.isProducer(dependencyInfo)) {
+              return false;
+            }
+            toVisit.addAll(dependencyInfo.getDependencies());
+            break;
+          default:
+            return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Adds the holder class creating the instance of the given scoped binding for the first instance
+   * of the injector and returns its name, see {@link #OPTION_SINGLETON_HOLDERS}.
+   */
+  private String generateSingletonHolder(BindingKey key) {
+    String holderName = SINGLETON_HOLDER_PREFIX + getFieldName(key);
+    injectorBuilder.addType(
+        TypeSpec.classBuilder(holderName)
+            .addModifiers(getInternalAccess())
+            .addModifiers(Modifier.STATIC, Modifier.FINAL)
+            .addField(
+                FieldSpec.builder(
+                        getAccessibleTypeName(key), "INSTANCE", Modifier.STATIC, Modifier.FINAL)
+                    .initializer(
+                        "$L.get().get().$L",
+                        FIRST_INSTANCE_FIELD,
+                        getStringCallingProvisionMethod(key, getCreationSuffix()))
+                    .build())
+            .build());
+    return holderName;
+  }
+
+  /** Like {@link #generateScopedProvisionMethod} but stores the instance in a slot. */
+  private void generateSlotScopedProvisionMethod(
+      Builder componentSpecBuilder, BindingKey key, @Nullable ThreadSafetyPolicy policy) {
+    TypeName returnTypeName = getAccessibleTypeName(key);
+    MethodSpec.Builder builder =
+        MethodSpec.methodBuilder(getProvisionMethodName(key))
+            .returns(returnTypeName)
+            .addModifiers(Modifier.PUBLIC);
+    String holder = isSingletonHeld(key, policy) ? generateSingletonHolder(key) : null;
+    int slot = scopedSlotCount++;
+    usesScopedSlotLocks |= policy == null && holder == null;
+    String lock = holder != null ? holder + ".class" : SCOPED_SLOT_LOCK_GETTER + "(" + slot + ")";
+    Utils.addHeldSlotScopedProvisionStatements(
+        builder,
+        returnTypeName,
+        SCOPED_SLOTS_FIELD,
+        slot,
+        policy == null ? lock : null,
+        getProvisionMethodName(key) + getCreationSuffix(),
+        holder == null ? null : USES_SINGLETON_HOLDERS_FIELD,
+        holder);
+    componentSpecBuilder.addMethod(builder.build());
+    if (policy == ThreadSafetyPolicy.EAGER) {
+      eagerCreations.add(getStringCallingProvisionMethod(key));
+    }
+  }
+
+  /** Returns the suffix of the method creating the instances of scoped bindings. */
+  private String getCreationSuffix() {
+    return recordStartupProfileEnabled ? RECORDED_SUFFIX : UNSCOPED_SUFFIX;
+  }
+
+  /**
+   * Generates the method creating the instance of the given scoped binding and recording it, see
+   * {@link #OPTION_RECORD_STARTUP_PROFILE}.
+   */
+  private void generateRecordedProvisionMethod(BindingKey key) {
+    TypeName returnTypeName = getAccessibleTypeName(key);
+    getInjectorBuilderFor(key)
+        .addMethod(
+            MethodSpec.methodBuilder(getProvisionMethodName(key) + RECORDED_SUFFIX)
+                .addModifiers(Modifier.PRIVATE)
+                .returns(returnTypeName)
+                .addStatement("long start = $T.nanoTime()", System.class)
+                .addStatement(
+                    "$T result = $L()", returnTypeName, getProvisionMethodName(key) + UNSCOPED_SUFFIX)
+                .addStatement(
+                    "$T.record($S, $S, start, $T.nanoTime())",
+                    StartupProfile.class,
+                    getInjectorQualifiedName(),
+                    getProvisionMethodName(key),
+                    System.class)
+                .addStatement("return result")
+                .build());
+  }
+
+  /**
+   * Returns whether the given binding keeps its instance. Scoped @Binds to a scoped binding reuses
+   * the storage of the latter.
+   */
+  private boolean isStoredScoped(@Nullable DependencyInfo dependencyInfo) {
+    return utils.isScoped(dependencyInfo)
+        && !(isBinds(dependencyInfo) && utils.isScoped(collapseBinds(dependencyInfo).first));
   }
 
   protected final String getFieldName(BindingKey key) {
@@ -953,21 +1952,47 @@ abstract class GeneralInjectorGenerator4 {
 
     MethodSpec.Builder methodSpecBuilder =
         MethodSpec.methodBuilder(getProvisionMethodName(key) + suffix)
-            .addModifiers(suffix.isEmpty() ? Modifier.PUBLIC : Modifier.PRIVATE)
+            .addModifiers(getProvisionMethodAccess(suffix))
             .returns(type);
 
     onProvisionMethodStart(methodSpecBuilder, key);
 
     methodSpecBuilder.addStatement("$T result = new $T<>()", type, HashSet.class);
-    generateSetContributors(key, methodSpecBuilder);
+    List<List<DependencyInfo>> partitions =
+        Lists.partition(
+            Lists.newArrayList(utils.getDependencyInfo(dependencies, key)),
+            maxStatementsPerMethod);
+    if (partitions.size() == 1) {
+      generateSetContributors(partitions.get(0), methodSpecBuilder);
+    } else {
+      for (int i = 0; i < partitions.size(); i++) {
+        MethodSpec.Builder helperBuilder =
+            createContributorsHelperMethod(methodSpecBuilder, key, type, i);
+        generateSetContributors(partitions.get(i), helperBuilder);
+        getInjectorBuilderFor(key).addMethod(helperBuilder.build());
+      }
+    }
 
     methodSpecBuilder.addStatement("return result");
     onProvisionMethodEnd(methodSpecBuilder, key);
-    injectorBuilder.addMethod(methodSpecBuilder.build());
+    getInjectorBuilderFor(key).addMethod(methodSpecBuilder.build());
   }
 
-  protected void generateSetContributors(BindingKey key, MethodSpec.Builder methodSpecBuilder) {
-    Set<DependencyInfo> dependencyInfos = utils.getDependencyInfo(dependencies, key);
+  /**
+   * Returns builder of a private method adding the index-th partition of contributors of the given
+   * multi-binding to "result", and calls it from the given provision method.
+   */
+  private MethodSpec.Builder createContributorsHelperMethod(
+      MethodSpec.Builder methodSpecBuilder, BindingKey key, TypeName resultType, int index) {
+    String helperName = getProvisionMethodName(key) + CONTRIBUTORS_SUFFIX + index;
+    methodSpecBuilder.addStatement("$L(result)", helperName);
+    return MethodSpec.methodBuilder(helperName)
+        .addModifiers(Modifier.PRIVATE)
+        .addParameter(resultType, "result");
+  }
+
+  protected void generateSetContributors(
+      List<DependencyInfo> dependencyInfos, MethodSpec.Builder methodSpecBuilder) {
     for (DependencyInfo dependencyInfo : dependencyInfos) {
       // logger.n("for %s from"
       // +
@@ -1002,7 +2027,7 @@ abstract class GeneralInjectorGenerator4 {
 
     MethodSpec.Builder methodSpecBuilder =
         MethodSpec.methodBuilder(getProvisionMethodName(key) + suffix)
-            .addModifiers(suffix.isEmpty() ? Modifier.PUBLIC : Modifier.PRIVATE)
+            .addModifiers(getProvisionMethodAccess(suffix))
             .returns(returnType);
 
     onProvisionMethodStart(methodSpecBuilder, key);
@@ -1011,7 +2036,15 @@ abstract class GeneralInjectorGenerator4 {
     generateMapContributors(key, returnType, methodSpecBuilder);
     methodSpecBuilder.addStatement("return result");
     onProvisionMethodEnd(methodSpecBuilder, key);
-    injectorBuilder.addMethod(methodSpecBuilder.build());
+    getInjectorBuilderFor(key).addMethod(methodSpecBuilder.build());
+  }
+
+  /**
+   * Returns the start of a statement that assigns to the given variable, or returns if it is
+   * {@link #RETURN_NEW_INSTANCE}.
+   */
+  protected static String getAssignmentPrefix(String newVarName) {
+    return newVarName.equals(RETURN_NEW_INSTANCE) ? "return " : newVarName + " = ";
   }
 
   protected final void addNewStatementToMethodSpecByModuleOrCtor(
@@ -1019,7 +2052,7 @@ abstract class GeneralInjectorGenerator4 {
     logger.n(" dependencyInfo : " + dependencyInfo);
     ExecutableElement provisionMethodElement = dependencyInfo.getProvisionMethodElement();
     if (provisionMethodElement == null) {
-      StringBuilder builder = new StringBuilder("$L = new $T(");
+      StringBuilder builder = new StringBuilder("$Lnew $T(");
       List<BindingKey> dependenciesFromExecutableElement =
           utils.getDependenciesFromExecutableElement(
               utils.findInjectedCtor(utils.getTypeElement(dependencyInfo.getDependant())));
@@ -1031,24 +2064,26 @@ abstract class GeneralInjectorGenerator4 {
       }
       builder.append(")");
       methodSpecBuilder.addStatement(
-          builder.toString(), newVarName, ClassName.get(dependencyInfo.getSourceClassElement()));
+          builder.toString(),
+          getAssignmentPrefix(newVarName),
+          ClassName.get(dependencyInfo.getSourceClassElement()));
     } else if (utils.isBindsMethod(provisionMethodElement)) {
       // for @Binds
       StringBuilder stringBuilder = new StringBuilder();
       addCallingProvisionMethod(
           stringBuilder, Iterables.getOnlyElement(dependencyInfo.getDependencies()));
-      methodSpecBuilder.addStatement("$L = $L", newVarName, stringBuilder.toString());
+      methodSpecBuilder.addStatement(
+          "$L$L", getAssignmentPrefix(newVarName), stringBuilder.toString());
     } else {
       boolean isStaticMethod =
           dependencyInfo.getProvisionMethodElement().getModifiers().contains(Modifier.STATIC);
-      StringBuilder builder = new StringBuilder("$L = ");
+      StringBuilder builder = new StringBuilder("$L");
       if (!utils.isStatic(provisionMethodElement)) {
         TypeElement sourceClassElement = dependencyInfo.getSourceClassElement();
-        if (nonNullaryCtorModules.contains(sourceClassElement)) {
+        if (passedModules.contains(sourceClassElement)) {
           builder.append(utils.getSourceCodeName(sourceClassElement));
         } else {
-          generateGetTypeMethodIfNeeded(sourceClassElement);
-          builder.append(utils.getGetMethodName(sourceClassElement)).append("()");
+          builder.append(getModuleInstance(sourceClassElement));
         }
       } else {
         builder.append(utils.getQualifiedName(dependencyInfo.getSourceClassElement()));
@@ -1065,7 +2100,9 @@ abstract class GeneralInjectorGenerator4 {
       builder.append(")");
 
       methodSpecBuilder.addStatement(
-          builder.toString(), newVarName, provisionMethodElement.getSimpleName());
+          builder.toString(),
+          getAssignmentPrefix(newVarName),
+          provisionMethodElement.getSimpleName());
     }
   }
 
@@ -1081,11 +2118,34 @@ abstract class GeneralInjectorGenerator4 {
 
     Preconditions.checkNotNull(
         dependencyInfos, String.format("dependencyInfo not found for key: %s", key));
+    List<List<DependencyInfo>> partitions =
+        Lists.partition(Lists.newArrayList(dependencyInfos), maxStatementsPerMethod);
+    if (partitions.size() <= 1) {
+      generateMapContributors(
+          key, returnType, Iterables.getFirst(partitions, null), methodSpecBuilder);
+      return;
+    }
+    for (int i = 0; i < partitions.size(); i++) {
+      MethodSpec.Builder helperBuilder =
+          createContributorsHelperMethod(methodSpecBuilder, key, returnType, i);
+      generateMapContributors(key, returnType, partitions.get(i), helperBuilder);
+      getInjectorBuilderFor(key).addMethod(helperBuilder.build());
+    }
+  }
+
+  private void generateMapContributors(
+      BindingKey key,
+      ParameterizedTypeName returnType,
+      @Nullable List<DependencyInfo> dependencyInfos,
+      MethodSpec.Builder methodSpecBuilder) {
     TypeName mapKeyType = returnType.typeArguments.get(0);
     TypeName mapValueType = returnType.typeArguments.get(1);
     BindingKey mapValueKey = BindingKey.get(mapValueType);
     methodSpecBuilder.addStatement("$T mapKey", mapKeyType);
     methodSpecBuilder.addStatement("$T mapValue", mapValueType);
+    if (dependencyInfos == null) {
+      return;
+    }
     for (DependencyInfo di : dependencyInfos) {
       if (utils.isMultibindsMethod(di.getProvisionMethodElement())) {
         continue;
@@ -1144,17 +2204,101 @@ abstract class GeneralInjectorGenerator4 {
       cls = utils.getClosestInjectedAncestor(cls);
     }
 
+    // arg is Object if the injected class is not accessible, ancestors are injected through a cast.
     while (!stack.empty()) {
       cls = stack.pop();
-      methodSpecBuilder.addStatement(
-          generateStringCallingProxyInjectionMethod(TypeName.get(cls.asType()), "arg"));
+      if (utils.isPublicallyInjectable(cls, processingEnv)) {
+        addDirectInjectionStatements(cls, stack.isEmpty(), methodSpecBuilder);
+      } else {
+        methodSpecBuilder.addStatement(
+            generateStringCallingProxyInjectionMethod(TypeName.get(cls.asType()), "arg"));
+      }
     }
   }
 
+  /**
+   * Injects the fields and methods of the given class into "arg" without the proxy. Members of
+   * ancestors are accessed through a cast to the declaring class so that hiding members of
+   * subclasses are not used instead. Classes with many members are injected by helper methods, see
+   * {@link #MAX_STATEMENTS_PER_METHOD}.
+   */
+  private void addDirectInjectionStatements(
+      TypeElement cls, boolean isArgClass, MethodSpec.Builder methodSpecBuilder) {
+    CodeBlock receiver =
+        isArgClass ? CodeBlock.of("arg") : CodeBlock.of("(($T) arg)", ClassName.get(cls));
+    int memberCount =
+        utils.getSortedInjectedFields(cls, processingEnv).size()
+            + utils.getSortedInjectedMethods(cls, processingEnv).size();
+    if (memberCount <= maxStatementsPerMethod) {
+      addDirectInjectionStatements(cls, receiver, methodSpecBuilder);
+      return;
+    }
+    String helperPrefix =
+        "inject_" + Utils.getSourceCodeName(ClassName.get(cls)) + MEMBERS_SUFFIX;
+    int helperCount = (memberCount - 1) / maxStatementsPerMethod + 1;
+    for (int i = 0; i < helperCount; i++) {
+      methodSpecBuilder.addStatement("$L$L($L)", helperPrefix, i, receiver);
+    }
+    if (!memberInjectionHelpers.add(helperPrefix)) {
+      return;
+    }
+    List<MethodSpec.Builder> helperBuilders = new ArrayList<>();
+    for (int i = 0; i < helperCount; i++) {
+      helperBuilders.add(
+          MethodSpec.methodBuilder(helperPrefix + i)
+              .addModifiers(Modifier.PRIVATE)
+              .addParameter(ClassName.get(cls), "arg"));
+    }
+    addDirectInjectionStatements(cls, CodeBlock.of("arg"), helperBuilders);
+    for (MethodSpec.Builder helperBuilder : helperBuilders) {
+      injectorBuilder.addMethod(helperBuilder.build());
+    }
+  }
+
+  private void addDirectInjectionStatements(
+      TypeElement cls, CodeBlock receiver, MethodSpec.Builder methodSpecBuilder) {
+    List<MethodSpec.Builder> builders = new ArrayList<>();
+    builders.add(methodSpecBuilder);
+    addDirectInjectionStatements(cls, receiver, builders);
+  }
+
+  /**
+   * Adds the injection of each member to the given methods in order, each getting at most {@link
+   * #MAX_STATEMENTS_PER_METHOD} unless there is only one.
+   */
+  private void addDirectInjectionStatements(
+      TypeElement cls, CodeBlock receiver, List<MethodSpec.Builder> builders) {
+    int index = 0;
+    for (VariableElement field : utils.getSortedInjectedFields(cls, processingEnv)) {
+      BindingKey key = BindingKey.get(field.asType(), Utils.getQualifier(field));
+      getBuilderForStatement(builders, index++)
+          .addStatement(
+              "$L.$N = $L", receiver, field.getSimpleName().toString(),
+              generateProvisionMethodAndReturnCallingString(key));
+    }
+    for (ExecutableElement method : utils.getSortedInjectedMethods(cls, processingEnv)) {
+      StringBuilder builder = new StringBuilder();
+      for (BindingKey key : utils.getDependenciesFromExecutableElement(method)) {
+        generateProvisionMethodAndAppendAsParameter(key, builder);
+      }
+      if (builder.length() > 0) {
+        builder.delete(builder.length() - 2, builder.length());
+      }
+      getBuilderForStatement(builders, index++)
+          .addStatement(
+              "$L.$N($L)", receiver, method.getSimpleName().toString(), builder.toString());
+    }
+  }
+
+  private MethodSpec.Builder getBuilderForStatement(
+      List<MethodSpec.Builder> builders, int index) {
+    return builders.size() == 1 ? builders.get(0) : builders.get(index / maxStatementsPerMethod);
+  }
+
   /** Adds "getxxx()" to the builder. */
   protected final void addCallingProvisionMethod(StringBuilder stringBuilder, BindingKey key) {
     generateProvisionMethodIfNeeded(key);
-    stringBuilder.append(getProvisionMethodName(key)).append("()");
+    stringBuilder.append(getStringCallingProvisionMethod(key));
   }
 
   /** Generic is handled. */
@@ -1190,25 +2334,25 @@ abstract class GeneralInjectorGenerator4 {
         MethodSpec.methodBuilder(getProvisionMethodName(key) + suffix);
     TypeName returnTypeName = getAccessibleTypeName(key);
     methodSpecBuilder
-        .addModifiers(suffix.isEmpty() ? Modifier.PUBLIC : Modifier.PRIVATE)
+        .addModifiers(getProvisionMethodAccess(suffix))
         .returns(returnTypeName);
 
     onProvisionMethodStart(methodSpecBuilder, key);
 
-    methodSpecBuilder.addStatement("$T result", returnTypeName);
-    addNewStatementToMethodSpec(
-        methodSpecBuilder, Iterables.getOnlyElement(dependencies.get(key)), "result");
-
+    DependencyInfo dependencyInfo = Iterables.getOnlyElement(dependencies.get(key));
     if (shouldInjectAfterCreation() && !utils.isGenericNotSpecialized(cls.asType())
         && utils.hasInjectedFieldsOrMethodsRecursively(cls, processingEnv)) {
       // logger.n("hasInjected");
+      methodSpecBuilder.addStatement("$T result", returnTypeName);
+      addNewStatementToMethodSpec(methodSpecBuilder, dependencyInfo, "result");
       generateInjectionMethod(utils.getClassFromKey(key), Utils.getInjectionMethodName(key));
       methodSpecBuilder.addStatement("$L(result)", Utils.getInjectionMethodName(key));
+      methodSpecBuilder.addStatement("return result");
+    } else {
+      addNewStatementToMethodSpec(methodSpecBuilder, dependencyInfo, RETURN_NEW_INSTANCE);
     }
-
-    methodSpecBuilder.addStatement("return result");
     onProvisionMethodEnd(methodSpecBuilder, key);
-    injectorBuilder.addMethod(methodSpecBuilder.build());
+    getInjectorBuilderFor(key).addMethod(methodSpecBuilder.build());
   }
 
 
@@ -1225,25 +2369,8 @@ abstract class GeneralInjectorGenerator4 {
         isModuleMethod || isCtorInjectedClass,
         "unexpected DependencySourceType for: " + dependencyInfo);
 
-    TypeElement sourceClassElement = dependencyInfo.getSourceClassElement();
-    String packageString = utils.getPackageString(sourceClassElement);
     StringBuilder builder = new StringBuilder();
-    builder.append(generateGetProxyMethodAndReturnCallingString(packageString)).append(".");
-    if (isModuleMethod) {
-      builder.append(utils.getMethodNameCallingMethod(sourceClassElement, provisionMethodElement));
-    } else {
-      builder.append(utils.getGetMethodName(sourceClassElement));
-    }
-    builder.append("(");
-    if (isModuleMethod && !utils.isStatic(provisionMethodElement)) {
-      if (nonNullaryCtorModules.contains(sourceClassElement)) {
-        builder.append(utils.getSourceCodeName(sourceClassElement));
-      } else {
-        generateGetTypeMethodIfNeeded(sourceClassElement);
-        builder.append(utils.getGetMethodName(sourceClassElement)).append("()");
-      }
-      builder.append(", ");
-    }
+    appendCallPrefix(builder, dependencyInfo);
     List<BindingKey> parameters =
         isModuleMethod
             ? utils.getDependenciesFromExecutableElement(provisionMethodElement)
@@ -1260,19 +2387,66 @@ abstract class GeneralInjectorGenerator4 {
     return builder.toString();
   }
 
-  private String generateGetProxyMethodAndReturnCallingString(String packageString) {
-    ClassName proxyClassName = ClassName.get(packageString, TIGER_PROXY_NAME);
-    generateGetProxyMethodIfNeeded(packageString);
-    return utils.getGetMethodName(proxyClassName) + "()";
+  /**
+   * Appends the part calling the module method or ctor of the given binding, up to and including
+   * "(", directly or through the proxy.
+   */
+  private void appendCallPrefix(StringBuilder builder, DependencyInfo dependencyInfo) {
+    ExecutableElement provisionMethodElement = dependencyInfo.getProvisionMethodElement();
+    boolean isModuleMethod =
+        dependencyInfo.getDependencySourceType().equals(DependencySourceType.MODULE);
+    boolean isCtorInjectedClass =
+        dependencyInfo.getDependencySourceType().equals(DependencySourceType.CTOR_INJECTED_CLASS);
+    TypeElement sourceClassElement = dependencyInfo.getSourceClassElement();
+    if (isModuleMethod && utils.isModuleMethodCallableDirectly(provisionMethodElement)) {
+      if (utils.isStatic(provisionMethodElement)) {
+        builder.append(utils.getQualifiedName(sourceClassElement));
+      } else if (passedModules.contains(sourceClassElement)) {
+        builder.append(utils.getSourceCodeName(sourceClassElement));
+      } else {
+        builder.append(getModuleInstance(sourceClassElement));
+      }
+      builder.append(".").append(provisionMethodElement.getSimpleName()).append("(");
+    } else if (isCtorInjectedClass && utils.isCtorCallableDirectly(sourceClassElement)) {
+      builder.append("new ").append(utils.getQualifiedName(sourceClassElement)).append("(");
+    } else {
+      appendProxyProvisionMethodPrefix(
+          builder, sourceClassElement, provisionMethodElement, isModuleMethod);
+    }
   }
 
+  /** Adds "proxy.call_xxx(module, " or "proxy.get_xxx(" to the builder. */
+  private void appendProxyProvisionMethodPrefix(
+      StringBuilder builder,
+      TypeElement sourceClassElement,
+      ExecutableElement provisionMethodElement,
+      boolean isModuleMethod) {
+    String packageString = utils.getPackageString(sourceClassElement);
+    builder.append(generateProxyFieldIfNeeded(packageString)).append(".");
+    if (isModuleMethod) {
+      builder.append(utils.getMethodNameCallingMethod(sourceClassElement, provisionMethodElement));
+    } else {
+      builder.append(utils.getGetMethodName(sourceClassElement));
+    }
+    builder.append("(");
+    if (isModuleMethod && !utils.isStatic(provisionMethodElement)) {
+      if (passedModules.contains(sourceClassElement)) {
+        builder.append(utils.getSourceCodeName(sourceClassElement));
+      } else {
+        builder.append(getModuleInstance(sourceClassElement));
+      }
+      builder.append(", ");
+    }
+  }
+
+
   protected final String generateStringCallingProxyInjectionMethod(TypeName typeName, String target) {
     typeName = utils.getClassName(typeName);
     StringBuilder builder =
         new StringBuilder();
     builder
         .append(
-            generateGetProxyMethodAndReturnCallingString(
+            generateProxyFieldIfNeeded(
                 utils.getPackageString(utils.getTypeElement(typeName))))
         .append(".")
         .append(Utils.getInjectionMethodName(BindingKey.get(typeName)))
@@ -1308,13 +2482,10 @@ abstract class GeneralInjectorGenerator4 {
 
   protected final String generateStringCallingProxySetFieldMethod(
       TypeElement cls, String clsName, VariableElement field, String fieldName) {
-    String packageString = utils.getPackageString(cls);
-    ClassName proxyClassName = ClassName.get(packageString, TIGER_PROXY_NAME);
-    generateGetProxyMethodIfNeeded(packageString);
     StringBuilder builder = new StringBuilder();
     builder
-        .append(utils.getGetMethodName(proxyClassName))
-        .append("().")
+        .append(generateProxyFieldIfNeeded(utils.getPackageString(cls)))
+        .append(".")
         .append(utils.getMethodNameSettingField(cls, field))
         .append("(")
         .append(clsName)
@@ -1327,13 +2498,10 @@ abstract class GeneralInjectorGenerator4 {
 
   protected final String generateStringCallingProxyInjectedMethod(
       TypeElement cls, String clsName, ExecutableElement method, String... parameterNames) {
-    String packageString = utils.getPackageString(cls);
-    ClassName proxyClassName = ClassName.get(packageString, TIGER_PROXY_NAME);
-    generateGetProxyMethodIfNeeded(packageString);
     StringBuilder builder = new StringBuilder();
     builder
-        .append(utils.getGetMethodName(proxyClassName))
-        .append("().")
+        .append(generateProxyFieldIfNeeded(utils.getPackageString(cls)))
+        .append(".")
         .append(utils.getMethodNameCallingMethod(cls, method))
         .append("(")
         .append(clsName);
@@ -1377,7 +2545,7 @@ abstract class GeneralInjectorGenerator4 {
 
     MethodSpec.Builder provisionMethodSpecBuilder =
         MethodSpec.methodBuilder(getProvisionMethodName(key) + suffix)
-            .addModifiers(suffix.isEmpty() ? Modifier.PUBLIC : Modifier.PRIVATE)
+            .addModifiers(getProvisionMethodAccess(suffix))
             .returns(key.getTypeName());
 
     onProvisionMethodStart(provisionMethodSpecBuilder, key);
@@ -1402,7 +2570,7 @@ abstract class GeneralInjectorGenerator4 {
 
   protected final String generateProvisionMethodAndReturnCallingString(BindingKey key) {
     generateProvisionMethodIfNeeded(key);
-    return getProvisionMethodName(key) + "()";
+    return getStringCallingProvisionMethod(key);
   }
 
   protected final boolean isEitherComponentBuilderProvsionMethodProvidedByModule(Element method) {
@@ -92,8 +92,8 @@ import javax.tools.Diagnostic.Kind;
  *       be created in multiple PackagedInjectors. It MUST be unscoped.
  * </ul>
  *
- * Generated injectors are not thread safe for performance reason. Callers must guarantee thread
- * safe if needed.
+ * Scoped bindings are stored as their {@link ThreadSafetyPolicy} specifies. Without one, they are
+ * created lazily while holding a lock per binding.
  *
  * <p>All types are provided by packaged injectors and referred by other packaged injectors and
  * top-level injectors. The ONLY exception is Subcomponents. In packaged injectors the subcomponent
@@ -125,6 +125,7 @@ abstract class GeneralInjectorGeneratorHubClone {
   // Refers the packaged injector for parent scope.
   private static final String CONTAINING_PACKAGED_INJECTOR_FIELD = "containingPackagedInjector";
   private static final String UNSCOPED_SUFFIX = "_unscoped";
+  private static final String SCOPED_INITIALIZER_FIELD = "scopedInitializer";
 
   // This does not include key for injected class, but does include its injected memebers.
   protected final SetMultimap<BindingKey, DependencyInfo> dependencies;
@@ -150,8 +151,8 @@ abstract class GeneralInjectorGeneratorHubClone {
   protected final Types types;
   protected Builder injectorBuilder;
   protected MethodSpec.Builder initializeBuilder;
-  private final Set<String> proxiesWhoseGetterGenerated = new HashSet<>();
-  private final Set<ClassName> typesWhoseGetterGenerated = new HashSet<>();
+  /** Added after all the bindings are generated so that eager ones can be created in it. */
+  private MethodSpec.Builder ctorBuilder;
   private final Set<String> fieldsGenerated = new HashSet<>();
   // method simple name and type.
   protected final Set<Pair<String, TypeName>> injectionMethodsDone = new HashSet<>();
@@ -199,6 +200,12 @@ abstract class GeneralInjectorGeneratorHubClone {
   // Do implementation specific stuff.
   protected abstract void postGenerateProduced();
 
+  /** Returns the (sub)component the injector is generated for, null if not for one. */
+  @Nullable
+  protected TypeElement getEitherComponent() {
+    return null;
+  }
+
   public void generate() {
     injectorBuilder = createInjectorBuilder();
     initializeBuilder = MethodSpec.methodBuilder(INITIALIZE_METHOD_NAME).addModifiers(Modifier.PUBLIC);
@@ -209,6 +216,7 @@ abstract class GeneralInjectorGeneratorHubClone {
     preGenerateProduced();
     generateProduced();
     postGenerateProduced();
+    injectorBuilder.addMethod(ctorBuilder.build());
     injectorBuilder.addMethod(initializeBuilder.build());
 
     // Write
@@ -238,7 +246,7 @@ abstract class GeneralInjectorGeneratorHubClone {
 
   private void generateCtor() {
     // Ctor
-    MethodSpec.Builder ctorBuilder = MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC);
+    ctorBuilder = MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC);
 
     ctorBuilder.addStatement(
         "$T.out.printf($S, $L)", ClassName.get(System.class), "This is tiger: %s\n", "this");
@@ -270,7 +278,7 @@ abstract class GeneralInjectorGeneratorHubClone {
     for (BindingKey key : utils.sortBindingKeys(allParameters)) {
       TypeName typeName = key.getTypeName();
       String sourceCodeName = utils.getSourceCodeName(key);
-      generateFieldIfNeeded(typeName, sourceCodeName);
+      generateFinalFieldIfNeeded(typeName, sourceCodeName);
       ctorBuilder
           .addParameter(typeName, sourceCodeName)
           .addStatement("this.$L = $L", sourceCodeName, sourceCodeName);
@@ -284,7 +292,6 @@ abstract class GeneralInjectorGeneratorHubClone {
         .contains(getInjectorSimpleName())) {
       ctorBuilder.addStatement("$L()", INITIALIZE_METHOD_NAME);
     }
-    injectorBuilder.addMethod(ctorBuilder.build());
   }
 
   protected final static String getPackageFromInjectorClassName(ClassName injectorClassName) {
@@ -491,9 +498,22 @@ abstract class GeneralInjectorGeneratorHubClone {
       }
     }
     if (scoped) {
-      generateFieldIfNeeded(key.getTypeName(), getFieldName(key));
-      generateFieldIfNeededAndInitialize(ClassName.get(Object.class), getLockFieldName(key));
-      generateScopedProvisionMethod(injectorBuilder, key);
+      ThreadSafetyPolicy policy =
+          Utils.getThreadSafetyPolicy(
+              processingEnv, Utils.getScopeTypeElement(dependencyInfo), getEitherComponent());
+      if (policy != null && policy.isReadWithoutLock()) {
+        generateVolatileFieldIfNeeded(key.getTypeName(), getFieldName(key));
+      } else {
+        generateFieldIfNeeded(key.getTypeName(), getFieldName(key));
+      }
+      if (policy == null || policy == ThreadSafetyPolicy.CONCURRENT) {
+        generateFinalFieldIfNeededAndInitialize(ClassName.get(Object.class), getLockFieldName(key));
+      }
+      if (policy == ThreadSafetyPolicy.VIRTUAL_THREADS) {
+        generateFinalFieldIfNeededAndInitialize(
+            ClassName.get(ScopedInitializer.class), SCOPED_INITIALIZER_FIELD);
+      }
+      generateScopedProvisionMethod(injectorBuilder, key, policy);
     }
   }
 
@@ -677,60 +697,72 @@ abstract class GeneralInjectorGeneratorHubClone {
     injectorBuilder.addMethod(methodSpecBuilder.build());
   }
 
-  protected final void generateGetProxyMethodIfNeeded(String packageString) {
-    if (!proxiesWhoseGetterGenerated.add(packageString)) {
-      return;
-    }
-    ClassName proxyClassName = ClassName.get(packageString, TIGER_PROXY_NAME);
-    generateGetTypeMethod(proxyClassName);
+  /** Returns name of the final field holding the proxy of the package, generated if needed. */
+  protected final String generateProxyFieldIfNeeded(String packageString) {
+    return generateInstanceFieldIfNeeded(ClassName.get(packageString, TIGER_PROXY_NAME));
+  }
+
+  /**
+   * Returns name of the final xxx field holding an instance of the given type, which is created when
+   * the injector is constructed so that accessing it is a plain field load. Generated if needed.
+   */
+  protected final String generateInstanceFieldIfNeeded(ClassName className) {
+    String fieldName = Utils.getSourceCodeName(className);
+    generateFinalFieldIfNeededAndInitialize(className, fieldName);
+    return fieldName;
   }
 
-  /** generate a getXXX() that returns xxx field, initialize it if needed. */
-  protected final void generateGetTypeMethod(ClassName proxyClassName) {
-    String proxySourceName = Utils.getSourceCodeName(proxyClassName);
-    generateFieldIfNeeded(proxyClassName, proxySourceName);
-    injectorBuilder.addMethod(
-        MethodSpec.methodBuilder(utils.getGetMethodName(proxyClassName))
-            .addModifiers(Modifier.PRIVATE)
-            .returns(proxyClassName)
-            .beginControlFlow("if ($L == null)", proxySourceName)
-            .addStatement("$L = new $T()", proxySourceName, proxyClassName)
-            .endControlFlow()
-            .addStatement("return $L", proxySourceName)
-            .build());
+  protected final String generateInstanceFieldIfNeeded(TypeElement module) {
+    return generateInstanceFieldIfNeeded(ClassName.get(module));
   }
 
   protected final void generateFieldIfNeededAndInitialize(TypeName typeName, String fieldName) {
     generateFieldIfNeededCommon(typeName, fieldName, true);
   }
 
+  protected final void generateFinalFieldIfNeededAndInitialize(
+      TypeName typeName, String fieldName) {
+    generateFieldIfNeededCommon(typeName, fieldName, true, true);
+  }
+
+  /** The field must be assigned in ctor. */
+  protected final void generateFinalFieldIfNeeded(TypeName typeName, String fieldName) {
+    generateFieldIfNeededCommon(typeName, fieldName, false, true);
+  }
+
   protected final void generateFieldIfNeeded(TypeName typeName, String fieldName) {
       generateFieldIfNeededCommon(typeName, fieldName, false);
   }
 
+  /** For fields read without lock, e.g., instances of {@link ThreadSafetyPolicy#CONCURRENT}. */
+  protected final void generateVolatileFieldIfNeeded(TypeName typeName, String fieldName) {
+    if (!fieldsGenerated.add(fieldName)) {
+      return;
+    }
+    injectorBuilder.addField(
+        FieldSpec.builder(typeName, fieldName, Modifier.PRIVATE, Modifier.VOLATILE).build());
+  }
+
   protected final void generateFieldIfNeededCommon(
       TypeName typeName, String fieldName, boolean initialize) {
+    generateFieldIfNeededCommon(typeName, fieldName, initialize, false);
+  }
+
+  protected final void generateFieldIfNeededCommon(
+      TypeName typeName, String fieldName, boolean initialize, boolean isFinal) {
     if (!fieldsGenerated.add(fieldName)) {
       return;
     }
     FieldSpec.Builder fieldBuilder = FieldSpec.builder(typeName, fieldName, Modifier.PRIVATE);
+    if (isFinal) {
+      fieldBuilder.addModifiers(Modifier.FINAL);
+    }
     if (initialize) {
       fieldBuilder.initializer("new $T()", typeName);
     }
     injectorBuilder.addField(fieldBuilder.build());
   }
 
-  protected final void generateGetTypeMethodIfNeeded(TypeElement module) {
-    generateGetTypeMethodIfNeeded(ClassName.get(module));
-  }
-
-  protected final void generateGetTypeMethodIfNeeded(ClassName className) {
-    if (!typesWhoseGetterGenerated.add(className)) {
-      return;
-    }
-    generateGetTypeMethod(className);
-  }
-
   /**
    * For key like javax.inject.Provider<Foo> and dagger.Lazy<Foo>. Qualifier, if presented, will
    * also apply to element binding.
@@ -829,24 +861,32 @@ abstract class GeneralInjectorGeneratorHubClone {
         .build();
   }
 
-  protected final void generateScopedProvisionMethod(Builder componentSpecBuilder, BindingKey key) {
+  protected final void generateScopedProvisionMethod(
+      Builder componentSpecBuilder, BindingKey key, @Nullable ThreadSafetyPolicy policy) {
     MethodSpec.Builder builder =
         MethodSpec.methodBuilder(getProvisionMethodName(key))
             .returns(key.getTypeName())
             .addModifiers(Modifier.PUBLIC);
-    builder
-        .addStatement("$T result = $N", key.getTypeName().box(), getFieldName(key))
-        .beginControlFlow("if (result == null)")
-        .beginControlFlow("synchronized($L)", getLockFieldName(key))
-        .addStatement("result = $N", getFieldName(key))
-        .beginControlFlow("if (result == null)")
-        .addStatement(
-            "result = $L = $L()", getFieldName(key), getProvisionMethodName(key) + UNSCOPED_SUFFIX)
-        .endControlFlow() // if
-        .endControlFlow() // synchronized
-        .endControlFlow() // if
-        .addStatement("return result");
+    if (policy == ThreadSafetyPolicy.VIRTUAL_THREADS) {
+      Utils.addInitializerScopedProvisionStatements(
+          builder,
+          key.getTypeName(),
+          getFieldName(key),
+          SCOPED_INITIALIZER_FIELD,
+          Utils.getDisplayName(key),
+          getProvisionMethodName(key) + UNSCOPED_SUFFIX);
+    } else {
+      Utils.addScopedProvisionStatements(
+          builder,
+          key.getTypeName(),
+          getFieldName(key),
+          policy == null || policy == ThreadSafetyPolicy.CONCURRENT ? getLockFieldName(key) : null,
+          getProvisionMethodName(key) + UNSCOPED_SUFFIX);
+    }
     componentSpecBuilder.addMethod(builder.build());
+    if (policy == ThreadSafetyPolicy.EAGER) {
+      ctorBuilder.addStatement("$L()", getProvisionMethodName(key));
+    }
     initializeBuilder.addStatement("$L = $L()", getFieldName(key), getProvisionMethodName(key));
   }
 
@@ -963,8 +1003,7 @@ abstract class GeneralInjectorGeneratorHubClone {
         if (nonNullaryCtorModules.contains(sourceClassElement)) {
           builder.append(utils.getSourceCodeName(sourceClassElement));
         } else {
-          generateGetTypeMethodIfNeeded(sourceClassElement);
-          builder.append(utils.getGetMethodName(sourceClassElement)).append("()");
+          builder.append(generateInstanceFieldIfNeeded(sourceClassElement));
         }
       } else {
         builder.append(utils.getQualifiedName(dependencyInfo.getSourceClassElement()));
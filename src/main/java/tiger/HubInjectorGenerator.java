@@ -198,6 +198,11 @@ class HubInjectorGenerator extends GeneralInjectorGenerator {
     }
   }
 
+  @Override
+  protected TypeElement getEitherComponent() {
+    return eitherComponent;
+  }
+
   @Override
   protected void postGenerateProduced() {
     logger.n("started");
@@ -1142,10 +1147,8 @@ class HubInjectorGenerator extends GeneralInjectorGenerator {
 
     TypeElement sourceClassElement = dependencyInfo.getSourceClassElement();
     String packageString = utils.getPackageString(sourceClassElement);
-    ClassName proxyClassName = ClassName.get(packageString, TIGER_PROXY_NAME);
-    generateGetProxyMethodIfNeeded(packageString);
     StringBuilder builder = new StringBuilder();
-    builder.append(utils.getGetMethodName(proxyClassName)).append("().");
+    builder.append(generateProxyFieldIfNeeded(packageString)).append(".");
     if (isModuleMethod) {
       builder.append(utils.getMethodNameCallingMethod(sourceClassElement, provisionMethodElement));
     } else {
@@ -1156,8 +1159,7 @@ class HubInjectorGenerator extends GeneralInjectorGenerator {
       if (nonNullaryCtorModules.contains(sourceClassElement)) {
         builder.append(utils.getSourceCodeName(sourceClassElement));
       } else {
-        generateGetTypeMethodIfNeeded(sourceClassElement);
-        builder.append(utils.getGetMethodName(sourceClassElement)).append("()");
+        builder.append(generateInstanceFieldIfNeeded(sourceClassElement));
       }
       builder.append(", ");
     }
@@ -1179,13 +1181,10 @@ class HubInjectorGenerator extends GeneralInjectorGenerator {
 
   protected String generateStringCallingProxySetFieldMethod(
       TypeElement cls, String clsName, VariableElement field, String fieldName) {
-    String packageString = utils.getPackageString(cls);
-    ClassName proxyClassName = ClassName.get(packageString, TIGER_PROXY_NAME);
-    generateGetProxyMethodIfNeeded(packageString);
     StringBuilder builder = new StringBuilder();
     builder
-        .append(utils.getGetMethodName(proxyClassName))
-        .append("().")
+        .append(generateProxyFieldIfNeeded(utils.getPackageString(cls)))
+        .append(".")
         .append(utils.getMethodNameSettingField(cls, field))
         .append("(")
         .append(clsName)
@@ -1198,13 +1197,10 @@ class HubInjectorGenerator extends GeneralInjectorGenerator {
 
   protected String generateStringCallingProxyInjectionMethod(
       TypeElement cls, String clsName, ExecutableElement method, String... parameterNames) {
-    String packageString = utils.getPackageString(cls);
-    ClassName proxyClassName = ClassName.get(packageString, TIGER_PROXY_NAME);
-    generateGetProxyMethodIfNeeded(packageString);
     StringBuilder builder = new StringBuilder();
     builder
-        .append(utils.getGetMethodName(proxyClassName))
-        .append("().")
+        .append(generateProxyFieldIfNeeded(utils.getPackageString(cls)))
+        .append(".")
         .append(utils.getMethodNameCallingMethod(cls, method))
         .append("(")
         .append(clsName);
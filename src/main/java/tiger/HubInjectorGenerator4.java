@@ -22,6 +22,7 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.SetMultimap;
 import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ArrayTypeName;
 import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.JavaFile;
@@ -30,7 +31,10 @@ import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
 import com.squareup.javapoet.TypeSpec.Builder;
+import com.squareup.javapoet.WildcardTypeName;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -43,6 +47,7 @@ import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.ExecutableType;
 import javax.lang.model.type.TypeKind;
@@ -65,6 +70,8 @@ class HubInjectorGenerator4 extends GeneralInjectorGenerator4 {
   private final Map<TypeElement, TypeElement> componentToParentMap;
   private final ExtraDependenciesOnParentCalculator extraDependenciesOnparentCalculator;
   private SetMultimap<TypeElement, BindingKey> componentToKeyMap;
+  /** Generic injectors used, including those generated for other (sub)components. */
+  private final Set<String> neededGenericInjectors = new HashSet<>();
 
   public HubInjectorGenerator4(
       TypeElement eitherComponent,
@@ -98,6 +105,16 @@ class HubInjectorGenerator4 extends GeneralInjectorGenerator4 {
     this.componentToKeyMap = componentToKeyMap;
     this.extraDependenciesOnparentCalculator =
         ExtraDependenciesOnParentCalculator.getInstance(componentToParentMap, env, utils);
+    // Modules with nullary ctor are passed too if the builder can set them, e.g., to test overrides.
+    TypeElement explicitBuilder = utils.findBuilder(elements, eitherComponent);
+    if (explicitBuilder != null) {
+      for (TypeElement module : modules) {
+        if (utils.getBuilderSetter(types, elements, explicitBuilder, BindingKey.get(module))
+            != null) {
+          passedModules.add(module);
+        }
+      }
+    }
     logger.w("(sub)component: %s", eitherComponent);
     if (eitherComponent.getSimpleName().contentEquals("ApplicationComponent")) {
       // generatedBindings.setDebugEnabled(true);
@@ -120,6 +137,177 @@ class HubInjectorGenerator4 extends GeneralInjectorGenerator4 {
   // }
 
 
+  /** Returns the names of the generic injectors the generated code uses. */
+  public Set<String> getNeededGenericInjectors() {
+    return neededGenericInjectors;
+  }
+
+  /**
+   * Returns lines describing everything the generated code depends on: the (sub)component, its
+   * ancestors and children, modules, bindings with their scopes, the classes they come from, the
+   * keys exchanged with the parent and children, and the classes in all keys, whose accessibility
+   * decides between direct calls and the proxy. Same lines, same code.
+   */
+  public List<String> getInputFingerprint() {
+    List<String> result = new ArrayList<>();
+    Set<TypeElement> classes = new HashSet<>();
+    Set<BindingKey> keys = new HashSet<>();
+    for (TypeElement c = eitherComponent; c != null; c = componentToParentMap.get(c)) {
+      result.add("eitherComponent: " + c.getQualifiedName());
+      for (BindingKey key : componentToKeyMap.get(c)) {
+        result.add("key: " + c.getQualifiedName() + " " + key);
+        keys.add(key);
+      }
+      addTypeHierarchy(classes, c);
+    }
+    for (BindingKey key : extraDependenciesOnparentCalculator.calculate(eitherComponent, null)) {
+      result.add("fromParent: " + key);
+      keys.add(key);
+    }
+    for (TypeElement child : eitherComponentToChildrenMap.get(eitherComponent)) {
+      result.add("child: " + child.getQualifiedName());
+      for (BindingKey key : extraDependenciesOnparentCalculator.calculate(child, eitherComponent)) {
+        result.add("fromParent: " + child.getQualifiedName() + " " + key);
+        keys.add(key);
+      }
+      addTypeHierarchy(classes, child);
+    }
+    for (TypeElement module : modules) {
+      addTypeHierarchy(classes, module);
+    }
+    for (TypeElement componentDependency : componentDependencies) {
+      addTypeHierarchy(classes, componentDependency);
+    }
+    for (BindingKey key : bindsInstances) {
+      result.add("bindsInstance: " + key);
+      keys.add(key);
+    }
+    for (String option :
+        new String[] {
+          ThreadSafetyPolicy.OPTION,
+          OPTION_SCOPED_STORAGE,
+          OPTION_SINGLETON_HOLDERS,
+          OPTION_WARM_UP,
+          OPTION_RECORD_STARTUP_PROFILE,
+          OPTION_STARTUP_PROFILE,
+          OPTION_MAX_BINDINGS_PER_CLASS,
+          OPTION_MAX_STATEMENTS_PER_METHOD,
+          ProvisionTrace.OPTION
+        }) {
+      result.add("option: " + option + " " + processingEnv.getOptions().get(option));
+    }
+    result.add("startupProfile: " + getStartupProfileBindings());
+    for (DependencyInfo dependencyInfo : dependencies.values()) {
+      List<String> dependencyKeys = new ArrayList<>();
+      for (BindingKey key : dependencyInfo.getDependencies()) {
+        dependencyKeys.add(key.toString());
+        keys.add(key);
+      }
+      Collections.sort(dependencyKeys);
+      keys.add(dependencyInfo.getDependant());
+      result.add(
+          String.format(
+              "binding: %s %s %s %s %s %s",
+              dependencyInfo.getType(),
+              dependencyInfo.getDependencySourceType(),
+              dependencyInfo.getDependant(),
+              dependencyKeys,
+              dependencyInfo.getSourceClassElement(),
+              dependencyInfo.getProvisionMethodElement()));
+      // The scope, whose ThreadSafety affects the output.
+      TypeElement scope = Utils.getScopeTypeElement(dependencyInfo);
+      if (scope != null) {
+        classes.add(scope);
+      }
+      // Ctor-injected and members-injected classes, injected ancestors included.
+      TypeElement cls = dependencyInfo.getSourceClassElement();
+      while (cls != null) {
+        classes.add(cls);
+        cls = utils.getClosestInjectedAncestor(cls);
+      }
+    }
+    for (BindingKey key : keys) {
+      addClasses(classes, key.getTypeName());
+    }
+    for (TypeElement cls : classes) {
+      addFingerprint(result, cls);
+    }
+    return result;
+  }
+
+  /**
+   * Adds the classes in the given type, type arguments, array components, bounds and enclosing
+   * classes included.
+   */
+  private void addClasses(Set<TypeElement> result, TypeName typeName) {
+    if (typeName instanceof ParameterizedTypeName) {
+      ParameterizedTypeName parameterizedTypeName = (ParameterizedTypeName) typeName;
+      addClasses(result, parameterizedTypeName.rawType);
+      for (TypeName typeArgument : parameterizedTypeName.typeArguments) {
+        addClasses(result, typeArgument);
+      }
+    } else if (typeName instanceof ArrayTypeName) {
+      addClasses(result, ((ArrayTypeName) typeName).componentType);
+    } else if (typeName instanceof WildcardTypeName) {
+      WildcardTypeName wildcardTypeName = (WildcardTypeName) typeName;
+      for (TypeName bound : Iterables.concat(
+          wildcardTypeName.upperBounds, wildcardTypeName.lowerBounds)) {
+        addClasses(result, bound);
+      }
+    } else if (typeName instanceof ClassName) {
+      for (ClassName c = (ClassName) typeName; c != null; c = c.enclosingClassName()) {
+        TypeElement typeElement = utils.getTypeElementForClassName(c);
+        if (typeElement != null) {
+          result.add(typeElement);
+        }
+      }
+    }
+  }
+
+  private void addTypeHierarchy(Set<TypeElement> result, TypeElement typeElement) {
+    if (!result.add(typeElement)) {
+      return;
+    }
+    TypeMirror superclass = typeElement.getSuperclass();
+    if (superclass.getKind().equals(TypeKind.DECLARED)) {
+      addTypeHierarchy(result, (TypeElement) ((DeclaredType) superclass).asElement());
+    }
+    for (TypeMirror i : typeElement.getInterfaces()) {
+      addTypeHierarchy(result, (TypeElement) ((DeclaredType) i).asElement());
+    }
+  }
+
+  /** Adds the signature, annotations included, of the class and its members. */
+  private void addFingerprint(List<String> result, TypeElement cls) {
+    String name = cls.getQualifiedName().toString();
+    result.add(
+        String.format(
+            "class: %s %s %s %s %s",
+            name,
+            cls.getModifiers(),
+            cls.getAnnotationMirrors(),
+            cls.getSuperclass(),
+            cls.getInterfaces()));
+    for (Element e : cls.getEnclosedElements()) {
+      result.add(
+          String.format(
+              "member: %s %s %s %s %s %s",
+              name,
+              e.getKind(),
+              e.getModifiers(),
+              e.getAnnotationMirrors(),
+              e,
+              e.asType()));
+      if (e.getKind().equals(ElementKind.METHOD) || e.getKind().equals(ElementKind.CONSTRUCTOR)) {
+        for (VariableElement parameter : ((ExecutableElement) e).getParameters()) {
+          result.add(
+              String.format(
+                  "parameter: %s %s %s %s", name, e, parameter, parameter.getAnnotationMirrors()));
+        }
+      }
+    }
+  }
+
   @Override
   protected String getPackageString() {
     return utils.getPackage(eitherComponent).getQualifiedName().toString();
@@ -159,12 +347,39 @@ class HubInjectorGenerator4 extends GeneralInjectorGenerator4 {
         SubcomponentParentInterfaceGenerator.getInterfaceName(subcomponent, utils));
   }
 
+  /** The parent interface of the (sub)component is generated along with its injector. */
+  @Override
+  protected boolean isGeneratedInterface(TypeName typeName) {
+    return utils.isSubcomponent(eitherComponent)
+        && typeName.equals(getSubcomponentParentInterfaceClassName(eitherComponent));
+  }
+
   /** Returns provided and injected. */
   @Override
   protected Pair<Set<BindingKey>, Set<BindingKey>> getProduced() {
     return utils.getProduced(eitherComponent);
   }
 
+  /**
+   * Those implementing the parent interfaces of children and those inherited from the parent
+   * interface.
+   */
+  @Override
+  protected Set<String> getProvisionMethodNamesPinnedToInjector() {
+    Set<String> result = new HashSet<>();
+    for (TypeElement child : eitherComponentToChildrenMap.get(eitherComponent)) {
+      for (BindingKey key : extraDependenciesOnparentCalculator.calculate(child, eitherComponent)) {
+        result.add(getProvisionMethodName(key));
+      }
+    }
+    if (utils.isSubcomponent(eitherComponent)) {
+      for (BindingKey key : extraDependenciesOnparentCalculator.calculate(eitherComponent, null)) {
+        result.add(getProvisionMethodName(key));
+      }
+    }
+    return result;
+  }
+
   @Override
   protected void preGenerateProduced() {
     utils.generateDebugInfoMethod(
@@ -202,6 +417,11 @@ class HubInjectorGenerator4 extends GeneralInjectorGenerator4 {
     }
   }
 
+  @Override
+  protected TypeElement getEitherComponent() {
+    return eitherComponent;
+  }
+
   @Override
   protected void postGenerateProduced() {
     logger.n("started");
@@ -271,9 +491,7 @@ class HubInjectorGenerator4 extends GeneralInjectorGenerator4 {
                   MethodSpec.methodBuilder(provisionMethodName)
                       .addModifiers(Modifier.PUBLIC)
                       .returns(key.getTypeName())
-                      .addStatement(
-                          "return $L()",
-                          getProvisionMethodName(key))
+                      .addStatement("return $L", getStringCallingProvisionMethod(key))
                       .build());
             }
           }
@@ -419,7 +637,7 @@ class HubInjectorGenerator4 extends GeneralInjectorGenerator4 {
           .addModifiers(Modifier.PUBLIC)
           .addAnnotation(Override.class)
           .returns(key.getTypeName());
-      methodSpecBuilder.addStatement("return $L()", getProvisionMethodName(key));
+      methodSpecBuilder.addStatement("return $L", getStringCallingProvisionMethod(key));
       injectorBuilder.addMethod(methodSpecBuilder.build());
     }
   }
@@ -610,9 +828,8 @@ class HubInjectorGenerator4 extends GeneralInjectorGenerator4 {
             //   }
             //   methodBuilder.addStatement(statement);
             // } else {
-            String statement = "return $L()";
-            methodBuilder.addStatement(
-                statement, Utils.getProvisionMethodName(dependencies, providedKey));
+            String statement = "return $L";
+            methodBuilder.addStatement(statement, getStringCallingProvisionMethod(providedKey));
             // }
             // logger.n("method added: " + methodBuilder.build());
             injectorBuilder.addMethod(methodBuilder.build());
@@ -764,14 +981,14 @@ class HubInjectorGenerator4 extends GeneralInjectorGenerator4 {
     // logger.n("pos: 7");
 
     /** Set module methods. */
-    for (TypeElement m : nonNullaryCtorModules) {
+    for (TypeElement m : passedModules) {
       String methodName =
           explicit
               ? Preconditions.checkNotNull(
               utils.getBuilderSetterName(types, elements, expliciteBuilder, m))
               : null;
 
-      logger.l(Kind.NOTE, "nonNullaryCtorModules: %s", m);
+      logger.l(Kind.NOTE, "passedModules: %s", m);
       utils.addSetMethod(
           types, elements, componentClassName,
           builderBuilder,
@@ -791,6 +1008,18 @@ class HubInjectorGenerator4 extends GeneralInjectorGenerator4 {
         MethodSpec.methodBuilder(methodName)
             .addModifiers(Modifier.PUBLIC)
             .returns(componentClassName);
+    // Modules not set are created, if they can be.
+    Set<TypeElement> nonNullaryCtorModules = utils.getNonNullaryCtorOnes(modules);
+    for (TypeElement m : utils.sortByFullName(passedModules)) {
+      if (nonNullaryCtorModules.contains(m)) {
+        continue;
+      }
+      String fieldName = Utils.getSourceCodeName(BindingKey.get(m));
+      buildMethodBuilder
+          .beginControlFlow("if ($N == null)", fieldName)
+          .addStatement("$N = new $T()", fieldName, ClassName.get(m))
+          .endControlFlow();
+    }
     StringBuilder returnCodeBuilder = new StringBuilder("return new $T(");
     for (BindingKey key : utils.sortBindingKeys(getAllCtorParameters())) {
       returnCodeBuilder.append(Utils.getSourceCodeNameHandlingBox(key, dependencies)).append(", ");
@@ -818,7 +1047,7 @@ class HubInjectorGenerator4 extends GeneralInjectorGenerator4 {
       allParameters.add(BindingKey.get(dep));
     }
     allParameters.addAll(bindsInstances);
-    for (TypeElement typeElement : nonNullaryCtorModules) {
+    for (TypeElement typeElement : passedModules) {
       allParameters.add(BindingKey.get(typeElement));
     }
     if (utils.isSubcomponent(eitherComponent)) {
@@ -947,27 +1176,30 @@ class HubInjectorGenerator4 extends GeneralInjectorGenerator4 {
         if (dependencyInfo.getDependencySourceType().equals(DependencySourceType.MODULE) &&
             utils.isBindsMethod(dependencyInfo.getProvisionMethodElement())) {
           String provisionString;
-          BindingKey key = utils.getKeyForOnlyParameterOfMethod(
-              types,
-              (DeclaredType) dependencyInfo.getSourceClassElement().asType(),
-              dependencyInfo.getProvisionMethodElement());
+          Pair<DependencyInfo, BindingKey> target = collapseBinds(dependencyInfo);
+          BindingKey key = target.second;
           boolean needsCast = !utils.isPublicallyAccessible(key.getTypeName());
-          provisionString = generateProvisionMethodAndReturnCallingString(key);
+          if (isTrivialProvision(target.first)) {
+            provisionString = generateStringCallingProxyProvisionMethod(target.first);
+          } else {
+            provisionString = generateProvisionMethodAndReturnCallingString(key);
+          }
 
           if (needsCast) {
             methodSpecBuilder.addStatement(
-                "$L = ($T) $L",
-                newVarName,
+                "$L($T) $L",
+                getAssignmentPrefix(newVarName),
                 getAccessibleTypeName(
                     BindingKey.get(
                         Utils.getReturnTypeElement(dependencyInfo.getProvisionMethodElement()))),
                 provisionString);
 
           } else {
-            methodSpecBuilder.addStatement("$L = $L", newVarName, provisionString);
+            methodSpecBuilder.addStatement(
+                "$L$L", getAssignmentPrefix(newVarName), provisionString);
           }
         } else {
-          methodSpecBuilder.addStatement("$L = $L", newVarName,
+          methodSpecBuilder.addStatement("$L$L", getAssignmentPrefix(newVarName),
               generateStringCallingProxyProvisionMethod(dependencyInfo));
         }
         return;
@@ -978,8 +1210,8 @@ class HubInjectorGenerator4 extends GeneralInjectorGenerator4 {
       case EITHER_COMPONENT_BUILDER:
       case BINDS_INTANCE:
         methodSpecBuilder.addStatement(
-            "$L = $L",
-            newVarName,
+            "$L$L",
+            getAssignmentPrefix(newVarName),
             generateProvisionMethodAndReturnCallingString(dependencyInfo.getDependant())
         );
         return;
@@ -991,12 +1223,35 @@ class HubInjectorGenerator4 extends GeneralInjectorGenerator4 {
   }
 
 
+  /**
+   * Returns whether the provision method for the binding would do nothing but calling the proxy,
+   * therefore the call can be inlined.
+   */
+  private boolean isTrivialProvision(@Nullable DependencyInfo dependencyInfo) {
+    if (dependencyInfo == null
+        || utils.isScoped(dependencyInfo)
+        || !dependencyInfo.getType().equals(ProvisionType.UNIQUE)) {
+      return false;
+    }
+    ExecutableElement provisionMethodElement = dependencyInfo.getProvisionMethodElement();
+    switch (dependencyInfo.getDependencySourceType()) {
+      case MODULE:
+        return utils.isProvidesMethod(provisionMethodElement);
+      case CTOR_INJECTED_CLASS:
+        return !utils.isKeyByGenericClass(dependencyInfo.getDependant())
+            && !utils.hasInjectedFieldsOrMethodsRecursively(
+                dependencyInfo.getSourceClassElement(), processingEnv);
+      default:
+        return false;
+    }
+  }
+
   private void addNewStatementToMethodSpecForGenericClass(MethodSpec.Builder methodSpecBuilder,
       DependencyInfo dependencyInfo, String newVarName) {
-    StringBuilder stringBuilder = new StringBuilder("$L = $L");
+    StringBuilder stringBuilder = new StringBuilder("$L$L");
     methodSpecBuilder.addStatement(
         stringBuilder.toString(),
-        newVarName,
+        getAssignmentPrefix(newVarName),
         createStringProvidingKey(dependencyInfo.getDependant()));
   }
 
@@ -1028,7 +1283,7 @@ class HubInjectorGenerator4 extends GeneralInjectorGenerator4 {
       builder.append(")");
     } else {
       // types from hub or this
-      builder.append(getProvisionMethodName(key)).append("()");
+      builder.append(getStringCallingProvisionMethod(key));
     }
     // logger.n("result: %s", builder.toString());
     return builder.toString();
@@ -1036,6 +1291,7 @@ class HubInjectorGenerator4 extends GeneralInjectorGenerator4 {
 
   private void generateGenericInjectorIfNeeded(DependencyInfo dependencyInfo) {
     BindingKey dependant = dependencyInfo.getDependant();
+    neededGenericInjectors.add(utils.getGenericInjectorName(dependant));
     if (!generatedGenericInjectors.add(utils.getGenericInjectorName(dependant))) {
       return;
     }
@@ -1095,7 +1351,7 @@ class HubInjectorGenerator4 extends GeneralInjectorGenerator4 {
             utils.getPackageString(utils.getClassFromKey(dependant)),
             genericInjectorBuilder.build()).build();
     try {
-      javaFile.writeTo(processingEnv.getFiler());
+      writeJavaFile(javaFile);
     } catch (IOException e) {
       e.printStackTrace();
     }
@@ -1124,7 +1380,7 @@ class HubInjectorGenerator4 extends GeneralInjectorGenerator4 {
         getInternalPackagedInjectorGetterName(packagedInjectorClassName));
     injectorBuilder.addMethod(
         MethodSpec.methodBuilder(utils.getGetMethodName(packagedInjectorClassName))
-            .addModifiers(Modifier.PRIVATE)
+            .addModifiers(getInternalAccess())
             .returns(packagedInjectorClassName)
             .addStatement("return $L.get()", packagedInjectorSourceName)
             .build());
@@ -1167,7 +1423,7 @@ class HubInjectorGenerator4 extends GeneralInjectorGenerator4 {
     injectorBuilder.addMethod(
         MethodSpec.methodBuilder(
             getInternalPackagedInjectorGetterName(packagedInjectorClassName))
-            .addModifiers(Modifier.PRIVATE)
+            .addModifiers(getInternalAccess())
             .returns(packagedInjectorClassName)
             .addStatement(
                 statementBuilder.toString(), packagedInjectorClassName)
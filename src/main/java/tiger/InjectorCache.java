@@ -0,0 +1,187 @@
+package tiger;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.JavaFileObject;
+
+/**
+ * Persists the sources generated for each (sub)component together with a hash of everything they
+ * are generated from, so that unchanged (sub)components are re-emitted from the cache instead of
+ * being regenerated. Enabled by the {@link #OPTION_CACHE_DIR} processor option, which should point
+ * to a directory in the build directory. Layout: "&lt;component&gt;.hash" holds the hash in the
+ * first line followed by the names of the sources the (sub)component needs, "sources/&lt;name&gt;"
+ * holds each source.
+ */
+class InjectorCache {
+  static final String OPTION_CACHE_DIR = "tiger.injectorCacheDir";
+
+  // Hash of the processor build, see getProcessorVersion(), null until computed.
+  @Nullable private static String processorVersion;
+  private static final String HASH_SUFFIX = ".hash";
+  private static final String SOURCES_DIR = "sources";
+
+  private final ProcessingEnvironment env;
+  private final Logger logger;
+  @Nullable private final Path cacheDir;
+
+  InjectorCache(ProcessingEnvironment env) {
+    this.env = env;
+    logger = new Logger(env.getMessager(), Kind.WARNING);
+    String dir = env.getOptions().get(OPTION_CACHE_DIR);
+    if (dir != null && !dir.isEmpty() && getProcessorVersion() == null) {
+      logger.w("injector cache disabled, the processor build cannot be identified.");
+      dir = null;
+    }
+    cacheDir = dir == null || dir.isEmpty() ? null : Paths.get(dir);
+  }
+
+  /**
+   * Returns the hash of the jar or classes directory the processor is loaded from, so that another
+   * build of the processor, which may generate other code for the same input, does not reuse the
+   * cache. Null if the processor build cannot be identified.
+   */
+  @Nullable
+  private static synchronized String getProcessorVersion() {
+    if (processorVersion != null) {
+      return processorVersion;
+    }
+    try {
+      CodeSource codeSource = InjectorCache.class.getProtectionDomain().getCodeSource();
+      if (codeSource == null) {
+        return null;
+      }
+      Path location = Paths.get(codeSource.getLocation().toURI());
+      List<Path> files = new ArrayList<>();
+      if (Files.isDirectory(location)) {
+        try (Stream<Path> paths = Files.walk(location)) {
+          paths.filter(Files::isRegularFile).sorted().forEach(files::add);
+        }
+      } else {
+        files.add(location);
+      }
+      Hasher hasher = Hashing.sha256().newHasher();
+      for (Path file : files) {
+        hasher.putString(location.relativize(file).toString(), StandardCharsets.UTF_8);
+        hasher.putBytes(Files.readAllBytes(file));
+      }
+      processorVersion = hasher.hash().toString();
+    } catch (IOException | URISyntaxException | RuntimeException e) {
+      return null;
+    }
+    return processorVersion;
+  }
+
+  boolean isEnabled() {
+    return cacheDir != null;
+  }
+
+  /** Returns a hash of the given lines which does not depend on their order. */
+  String hash(Collection<String> lines) {
+    List<String> sorted = new ArrayList<>(lines);
+    Collections.sort(sorted);
+    sorted.add(0, getProcessorVersion());
+    return Hashing.sha256()
+        .hashString(Joiner.on('\n').join(sorted), StandardCharsets.UTF_8)
+        .toString();
+  }
+
+  /**
+   * Writes the cached sources of the given (sub)component if its hash is unchanged, except those in
+   * written. Returns whether the (sub)component was handled.
+   */
+  boolean reemitIfUnchanged(TypeElement eitherComponent, String hash, Set<String> written) {
+    if (!isEnabled()) {
+      return false;
+    }
+    Path hashFile = cacheDir.resolve(eitherComponent.getQualifiedName() + HASH_SUFFIX);
+    List<String> sourceNames;
+    try {
+      if (!Files.exists(hashFile)) {
+        return false;
+      }
+      List<String> lines = Files.readAllLines(hashFile, StandardCharsets.UTF_8);
+      if (lines.isEmpty() || !lines.get(0).equals(hash)) {
+        return false;
+      }
+      sourceNames = lines.subList(1, lines.size());
+      for (String name : sourceNames) {
+        if (!Files.exists(getSourceFile(name))) {
+          return false;
+        }
+      }
+      for (String name : sourceNames) {
+        if (!written.add(name)) {
+          continue;
+        }
+        String source = new String(Files.readAllBytes(getSourceFile(name)), StandardCharsets.UTF_8);
+        JavaFileObject fileObject = env.getFiler().createSourceFile(name, eitherComponent);
+        try (Writer writer = fileObject.openWriter()) {
+          writer.write(source);
+        }
+      }
+    } catch (IOException e) {
+      logger.e("reading injector cache for %s failed: %s", eitherComponent, e);
+      return false;
+    }
+    logger.n("(sub)component unchanged, re-emitted %s", sourceNames);
+    return true;
+  }
+
+  /**
+   * Saves the given sources generated for the (sub)component, and the names of the other sources it
+   * needs, e.g., generic injectors generated for another (sub)component.
+   */
+  void put(
+      TypeElement eitherComponent,
+      String hash,
+      Map<String, String> generatedSources,
+      Set<String> neededSources) {
+    if (!isEnabled()) {
+      return;
+    }
+    try {
+      Files.createDirectories(cacheDir.resolve(SOURCES_DIR));
+      for (Map.Entry<String, String> i : generatedSources.entrySet()) {
+        Files.write(getSourceFile(i.getKey()), i.getValue().getBytes(StandardCharsets.UTF_8));
+      }
+      List<String> lines = Lists.newArrayList(hash);
+      lines.addAll(generatedSources.keySet());
+      for (String name : neededSources) {
+        if (!generatedSources.containsKey(name)) {
+          lines.add(name);
+        }
+      }
+      Files.write(
+          cacheDir.resolve(eitherComponent.getQualifiedName() + HASH_SUFFIX),
+          lines,
+          StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      logger.w("writing injector cache for %s failed: %s", eitherComponent, e);
+    }
+  }
+
+  private Path getSourceFile(String qualifiedName) {
+    return cacheDir.resolve(SOURCES_DIR).resolve(qualifiedName + ".java");
+  }
+}
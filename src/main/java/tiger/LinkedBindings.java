@@ -0,0 +1,319 @@
+package tiger;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.WildcardTypeName;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+
+/**
+ * Serialized bindings of the modules and ctor injected classes of a library compiled in library
+ * mode. They are written next to its {@link LinkedEitherComponents} class, see {@link
+ * #getResourceName}, and linking the app reads them instead of collecting the bindings from the
+ * class files again. Classes whose bindings cannot be represented, e.g., with type variables, are
+ * left out and collected as usual.
+ */
+class LinkedBindings {
+  private static final Gson gson = new Gson();
+  private static final Map<String, TypeName> primitives =
+      ImmutableMap.<String, TypeName>builder()
+          .put("boolean", TypeName.BOOLEAN)
+          .put("byte", TypeName.BYTE)
+          .put("short", TypeName.SHORT)
+          .put("int", TypeName.INT)
+          .put("long", TypeName.LONG)
+          .put("char", TypeName.CHAR)
+          .put("float", TypeName.FLOAT)
+          .put("double", TypeName.DOUBLE)
+          .put("void", TypeName.VOID)
+          .build();
+
+  private LinkedBindings() {}
+
+  /** Returns the name of the resource with the bindings of the given linked class. */
+  static String getResourceName(String linkedSimpleName) {
+    return linkedSimpleName + ".bindings.json";
+  }
+
+  /** Returns the json of the given bindings of classes. */
+  static String toJson(Elements elements, Map<TypeElement, Collection<DependencyInfo>> bindings) {
+    List<ClassBindings> result = new ArrayList<>();
+    for (Map.Entry<TypeElement, Collection<DependencyInfo>> i : bindings.entrySet()) {
+      ClassBindings classBindings = toClassBindings(elements, i.getKey(), i.getValue());
+      if (classBindings != null) {
+        result.add(classBindings);
+      }
+    }
+    return gson.toJson(result.toArray(new ClassBindings[0]));
+  }
+
+  /**
+   * Returns the bindings of classes in the given json with the elements of the current
+   * compilation. Classes not found or changed since, i.e., whose members do not match, are left
+   * out.
+   */
+  static Map<TypeElement, Collection<DependencyInfo>> fromJson(Elements elements, String json) {
+    Map<TypeElement, Collection<DependencyInfo>> result = new HashMap<>();
+    for (ClassBindings classBindings : gson.fromJson(json, ClassBindings[].class)) {
+      TypeElement cls = elements.getTypeElement(classBindings.className);
+      if (cls == null) {
+        continue;
+      }
+      Collection<DependencyInfo> dependencyInfos = toDependencyInfos(cls, classBindings);
+      if (dependencyInfos != null) {
+        result.put(cls, dependencyInfos);
+      }
+    }
+    return result;
+  }
+
+  @Nullable
+  private static ClassBindings toClassBindings(
+      Elements elements, TypeElement cls, Collection<DependencyInfo> dependencyInfos) {
+    List<? extends Element> enclosedElements = cls.getEnclosedElements();
+    ClassBindings result = new ClassBindings();
+    result.className = cls.getQualifiedName().toString();
+    result.bindings = new ArrayList<>();
+    for (DependencyInfo info : dependencyInfos) {
+      Binding binding = new Binding();
+      binding.sourceType = info.getDependencySourceType().name();
+      binding.provisionType = info.getType().name();
+      binding.dependant = toKey(info.getDependant());
+      binding.dependencies = new ArrayList<>();
+      for (BindingKey key : info.getDependencies()) {
+        binding.dependencies.add(toKey(key));
+      }
+      ExecutableElement method = info.getProvisionMethodElement();
+      binding.methodIndex = method == null ? -1 : enclosedElements.indexOf(method);
+      if (method != null) {
+        if (binding.methodIndex < 0) {
+          return null;
+        }
+        binding.methodName = method.getSimpleName().toString();
+      }
+      result.bindings.add(binding);
+    }
+    // Only what reads back the same, e.g., no type variables or type annotations.
+    Collection<DependencyInfo> readBack = toDependencyInfos(cls, result);
+    return readBack != null && readBack.equals(new HashSet<>(dependencyInfos)) ? result : null;
+  }
+
+  @Nullable
+  private static Collection<DependencyInfo> toDependencyInfos(
+      TypeElement cls, ClassBindings classBindings) {
+    List<? extends Element> enclosedElements = cls.getEnclosedElements();
+    Set<DependencyInfo> result = new HashSet<>();
+    for (Binding binding : classBindings.bindings) {
+      ExecutableElement method = null;
+      if (binding.methodIndex >= 0) {
+        if (binding.methodIndex >= enclosedElements.size()
+            || !enclosedElements
+                .get(binding.methodIndex)
+                .getSimpleName()
+                .contentEquals(binding.methodName)) {
+          return null;
+        }
+        method = (ExecutableElement) enclosedElements.get(binding.methodIndex);
+      }
+      Set<BindingKey> dependencies = new HashSet<>();
+      for (Key key : binding.dependencies) {
+        BindingKey bindingKey = toBindingKey(key);
+        if (bindingKey == null) {
+          return null;
+        }
+        dependencies.add(bindingKey);
+      }
+      BindingKey dependant = toBindingKey(binding.dependant);
+      if (dependant == null) {
+        return null;
+      }
+      result.add(
+          new DependencyInfo(
+              DependencySourceType.valueOf(binding.sourceType),
+              dependant,
+              dependencies,
+              cls,
+              method,
+              ProvisionType.valueOf(binding.provisionType)));
+    }
+    return result;
+  }
+
+  private static Key toKey(BindingKey bindingKey) {
+    Key result = new Key();
+    result.type = toType(bindingKey.getTypeName());
+    AnnotationSpec qualifier = bindingKey.getQualifier();
+    if (qualifier != null) {
+      result.qualifierType = toType(qualifier.type);
+      result.qualifierMembers = new LinkedHashMap<>();
+      for (Map.Entry<String, List<CodeBlock>> i : qualifier.members.entrySet()) {
+        List<String> values = new ArrayList<>();
+        for (CodeBlock codeBlock : i.getValue()) {
+          values.add(codeBlock.toString());
+        }
+        result.qualifierMembers.put(i.getKey(), values);
+      }
+    }
+    return result;
+  }
+
+  @Nullable
+  private static BindingKey toBindingKey(Key key) {
+    TypeName typeName = toTypeName(key.type);
+    if (typeName == null) {
+      return null;
+    }
+    if (key.qualifierType == null) {
+      return BindingKey.get(typeName);
+    }
+    TypeName qualifierType = toTypeName(key.qualifierType);
+    if (!(qualifierType instanceof ClassName)) {
+      return null;
+    }
+    AnnotationSpec.Builder qualifier = AnnotationSpec.builder((ClassName) qualifierType);
+    for (Map.Entry<String, List<String>> i : key.qualifierMembers.entrySet()) {
+      for (String value : i.getValue()) {
+        qualifier.addMember(i.getKey(), "$L", value);
+      }
+    }
+    return BindingKey.get(typeName, qualifier.build());
+  }
+
+  /** Returns the serialized form of the given type, whatever it does not cover is dropped. */
+  private static Type toType(TypeName typeName) {
+    Type result = new Type();
+    if (typeName.isPrimitive() || typeName.equals(TypeName.VOID)) {
+      result.primitive = typeName.toString();
+    } else if (typeName instanceof ClassName) {
+      ClassName className = (ClassName) typeName;
+      result.packageName = className.packageName();
+      result.simpleNames = className.simpleNames();
+    } else if (typeName instanceof ParameterizedTypeName) {
+      ParameterizedTypeName parameterizedTypeName = (ParameterizedTypeName) typeName;
+      result.rawType = toType(parameterizedTypeName.rawType);
+      result.typeArguments = new ArrayList<>();
+      for (TypeName typeArgument : parameterizedTypeName.typeArguments) {
+        result.typeArguments.add(toType(typeArgument));
+      }
+    } else if (typeName instanceof ArrayTypeName) {
+      result.componentType = toType(((ArrayTypeName) typeName).componentType);
+    } else if (typeName instanceof WildcardTypeName) {
+      WildcardTypeName wildcardTypeName = (WildcardTypeName) typeName;
+      result.upperBounds = new ArrayList<>();
+      for (TypeName bound : wildcardTypeName.upperBounds) {
+        result.upperBounds.add(toType(bound));
+      }
+      result.lowerBounds = new ArrayList<>();
+      for (TypeName bound : wildcardTypeName.lowerBounds) {
+        result.lowerBounds.add(toType(bound));
+      }
+    }
+    return result;
+  }
+
+  /** Returns the type of the given serialized form, null if it is not covered. */
+  @Nullable
+  private static TypeName toTypeName(Type type) {
+    if (type.primitive != null) {
+      return primitives.get(type.primitive);
+    } else if (type.simpleNames != null) {
+      if (type.simpleNames.isEmpty()) {
+        return null;
+      }
+      return ClassName.get(
+          type.packageName,
+          type.simpleNames.get(0),
+          type.simpleNames.subList(1, type.simpleNames.size()).toArray(new String[0]));
+    } else if (type.rawType != null) {
+      TypeName rawType = toTypeName(type.rawType);
+      List<TypeName> typeArguments = toTypeNames(type.typeArguments);
+      if (!(rawType instanceof ClassName) || typeArguments == null) {
+        return null;
+      }
+      return ParameterizedTypeName.get(
+          (ClassName) rawType, typeArguments.toArray(new TypeName[0]));
+    } else if (type.componentType != null) {
+      TypeName componentType = toTypeName(type.componentType);
+      return componentType == null ? null : ArrayTypeName.of(componentType);
+    } else if (type.upperBounds != null) {
+      List<TypeName> upperBounds = toTypeNames(type.upperBounds);
+      List<TypeName> lowerBounds = toTypeNames(type.lowerBounds);
+      if (upperBounds == null || lowerBounds == null || upperBounds.size() != 1) {
+        return null;
+      }
+      return lowerBounds.isEmpty()
+          ? WildcardTypeName.subtypeOf(upperBounds.get(0))
+          : lowerBounds.size() == 1 ? WildcardTypeName.supertypeOf(lowerBounds.get(0)) : null;
+    }
+    return null;
+  }
+
+  @Nullable
+  private static List<TypeName> toTypeNames(@Nullable List<Type> types) {
+    if (types == null) {
+      return null;
+    }
+    List<TypeName> result = new ArrayList<>();
+    for (Type type : types) {
+      TypeName typeName = toTypeName(type);
+      if (typeName == null) {
+        return null;
+      }
+      result.add(typeName);
+    }
+    return result;
+  }
+
+  /** The bindings of a module or ctor injected class. */
+  private static class ClassBindings {
+    String className;
+    List<Binding> bindings;
+  }
+
+  /** Element free {@link DependencyInfo}. */
+  private static class Binding {
+    String sourceType;
+    String provisionType;
+    Key dependant;
+    List<Key> dependencies;
+    /** Index of the provision method in the enclosed elements, -1 for ctor injected class. */
+    int methodIndex;
+    @Nullable String methodName;
+  }
+
+  /** Serialized {@link BindingKey}, the qualifier members as code. */
+  private static class Key {
+    Type type;
+    @Nullable Type qualifierType;
+    @Nullable Map<String, List<String>> qualifierMembers;
+  }
+
+  /** Serialized {@link TypeName}, only the fields of its kind are set. */
+  private static class Type {
+    @Nullable String primitive;
+    @Nullable String packageName;
+    @Nullable List<String> simpleNames;
+    @Nullable Type rawType;
+    @Nullable List<Type> typeArguments;
+    @Nullable Type componentType;
+    @Nullable List<Type> upperBounds;
+    @Nullable List<Type> lowerBounds;
+  }
+}
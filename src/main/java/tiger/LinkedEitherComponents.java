@@ -0,0 +1,24 @@
+package tiger;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Lists the (sub)components of a library compiled in library mode. The annotated classes are
+ * generated into {@link #PACKAGE} so that the app can find them on the classpath and generate the
+ * hub injectors for all the libraries at once. The bindings of the library are serialized next to
+ * each, see {@link LinkedBindings}.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.CLASS)
+public @interface LinkedEitherComponents {
+  String PACKAGE = "tiger.linked";
+
+  /**
+   * Qualified names of the (sub)components. Names instead of classes because the (sub)components
+   * might not be accessible from {@link #PACKAGE}.
+   */
+  String[] value();
+}
@@ -90,8 +90,8 @@ import javax.tools.Diagnostic.Kind;
  * the original non-generic class. Let's see how it works. This therefore could be created in
  * multiple PackagedInjectors. It MUST be unscoped.
  * 
- * Generated injectors are not thread safe for performance reason. Callers must guarantee thread
- * safe if needed.
+ * Scoped bindings are stored as their {@link ThreadSafetyPolicy} specifies. Without one, they are
+ * created lazily while holding the top level injector.
  * </ul>
  */
 class NewInjectorGenerator {
@@ -109,6 +109,7 @@ class NewInjectorGenerator {
   // Refers the packaged injector for parent scope.
   private static final String CONTAINING_PACKAGED_INJECTOR_FIELD = "containingPackagedInjector";
   private static final String UNSCOPED_SUFFIX = "_unscoped";
+  private static final String SCOPED_INITIALIZER_FIELD = "scopedInitializer";
 
   private final SetMultimap<NewBindingKey, NewDependencyInfo> dependencies;
   private final Set<NewBindingKey> explicitScopes;
@@ -121,6 +122,11 @@ class NewInjectorGenerator {
   private final List<ComponentInfo> orderedComponents;
   private final String topLevelPackageString;
   private final List<String> errors = new ArrayList<>();
+  // From component to "getFooPackagedInjector().provide_xxx()" of its eager scoped bindings.
+  private final SetMultimap<ComponentInfo, String> eagerProvisionCalls =
+      LinkedHashMultimap.create();
+  // Packaged injectors with a ScopedInitializer field.
+  private final Set<ClassName> injectorsWithScopedInitializer = new HashSet<>();
 
   // Includes multi-binding package.
   private final SetMultimap<ClassName, NewBindingKey> generatedBindingsForPackagedInjector =
@@ -491,8 +497,26 @@ class NewInjectorGenerator {
       }
     }
     if (scoped) {
-      generateField(injectorSpecBuilder, key);
-      generateScopedProvisionMethod(injectorSpecBuilder, key);
+      ComponentInfo component = getComponentFromPackagedInjectorClassName(packagedInjectorClassName);
+      ThreadSafetyPolicy policy =
+          Utils.getThreadSafetyPolicy(processingEnv, component.getScope(), null);
+      generateField(injectorSpecBuilder, key, policy);
+      if (policy == ThreadSafetyPolicy.VIRTUAL_THREADS
+          && injectorsWithScopedInitializer.add(packagedInjectorClassName)) {
+        injectorSpecBuilder.addField(
+            FieldSpec.builder(ClassName.get(ScopedInitializer.class), SCOPED_INITIALIZER_FIELD,
+                Modifier.PRIVATE, Modifier.FINAL)
+                .initializer("new $T()", ClassName.get(ScopedInitializer.class)).build());
+      }
+      generateScopedProvisionMethod(injectorSpecBuilder, key, policy);
+      if (policy == ThreadSafetyPolicy.EAGER) {
+        eagerProvisionCalls.put(
+            component,
+            Utils.getGetMethodName(packagedInjectorClassName)
+                + "()."
+                + getProvisionMethodName(key)
+                + "()");
+      }
     }
   }
 
@@ -821,28 +845,39 @@ class NewInjectorGenerator {
   }
 
   private void generateScopedProvisionMethod(
-      Builder componentSpecBuilder, NewBindingKey key) {
+      Builder componentSpecBuilder, NewBindingKey key, @Nullable ThreadSafetyPolicy policy) {
     MethodSpec.Builder builder =
         MethodSpec.methodBuilder(getProvisionMethodName(key))
             .returns(key.getTypeName())
             .addModifiers(Modifier.PUBLIC);
-    builder
-        .addStatement("$T result = $N", key.getTypeName().box(), getFieldName(key))
-        .beginControlFlow("if (result == null)")
-        .beginControlFlow("synchronized ($L)", TOP_LEVEL_INJECTOR_FIELD)
-        .addStatement("result = $N", getFieldName(key)).beginControlFlow("if (result == null)")
-        .addStatement("result = $L = $L()", getFieldName(key),
-            getProvisionMethodName(key) + UNSCOPED_SUFFIX)
-        .endControlFlow() // if
-        .endControlFlow() // synchronized
-        .endControlFlow() // if
-        .addStatement("return result");
+    if (policy == ThreadSafetyPolicy.VIRTUAL_THREADS) {
+      Utils.addInitializerScopedProvisionStatements(
+          builder,
+          key.getTypeName(),
+          getFieldName(key),
+          SCOPED_INITIALIZER_FIELD,
+          (key.getQualifier() == null ? "" : key.getQualifier() + " ") + key.getTypeName(),
+          getProvisionMethodName(key) + UNSCOPED_SUFFIX);
+    } else {
+      Utils.addScopedProvisionStatements(
+          builder,
+          key.getTypeName(),
+          getFieldName(key),
+          policy == null || policy == ThreadSafetyPolicy.CONCURRENT
+              ? TOP_LEVEL_INJECTOR_FIELD
+              : null,
+          getProvisionMethodName(key) + UNSCOPED_SUFFIX);
+    }
     componentSpecBuilder.addMethod(builder.build());
   }
 
-  private void generateField(Builder componentSpecBuilder, NewBindingKey key) {
+  private void generateField(
+      Builder componentSpecBuilder, NewBindingKey key, @Nullable ThreadSafetyPolicy policy) {
     FieldSpec.Builder builder =
         FieldSpec.builder(key.getTypeName().box(), getFieldName(key), Modifier.PRIVATE);
+    if (policy != null && policy.isReadWithoutLock()) {
+      builder.addModifiers(Modifier.VOLATILE);
+    }
     componentSpecBuilder.addField(builder.build());
   }
 
@@ -1209,6 +1244,11 @@ class NewInjectorGenerator {
                 .addStatement("return $N", moduleName).build());
       }
 
+      // Eager scoped bindings.
+      for (String call : eagerProvisionCalls.get(component)) {
+        ctorBuilder.addStatement("$L", call);
+      }
+
       injectorBuilder.addMethod(ctorBuilder.build());
 
       // Injection methods and non-injection methods.
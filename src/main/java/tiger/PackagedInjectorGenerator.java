@@ -118,6 +118,10 @@ public class PackagedInjectorGenerator extends GeneralInjectorGenerator {
     SetMultimap<BindingKey, DependencyInfo> result = HashMultimap.create();
     for (TypeElement e : modules) {
       for (DependencyInfo dependencyInfo : dependencyCollector.collectFromModule(e)) {
+        // Producers are composed by the (sub)component injectors only.
+        if (utils.isProducer(dependencyInfo)) {
+          continue;
+        }
         result.put(dependencyInfo.getDependant(), dependencyInfo);
       }
     }
@@ -0,0 +1,117 @@
+package tiger;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Schedules the {@link Produces} methods for generated injectors. Each runs on the executor once
+ * all its inputs are done. A failed input fails the result with the same cause, a cancelled one
+ * cancels it. Cancelling the result before the method runs skips it, and cancels the future
+ * returned by an asynchronous one.
+ */
+public final class Producers {
+  private Producers() {}
+
+  /** Returns the future of the value returned by the given producer. */
+  public static <T> CompletableFuture<T> submit(
+      final Callable<T> producer, final Executor executor, CompletableFuture<?>... inputs) {
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    CompletableFuture.allOf(inputs)
+        .whenComplete(
+            (ignored, failure) -> {
+              if (failure != null) {
+                fail(result, failure);
+                return;
+              }
+              execute(
+                  executor,
+                  result,
+                  () -> {
+                    T value = producer.call();
+                    result.complete(value);
+                  });
+            });
+    return result;
+  }
+
+  /** Returns the future of the value of the future returned by the given producer. */
+  public static <T> CompletableFuture<T> submitAsync(
+      final Callable<? extends CompletionStage<T>> producer,
+      final Executor executor,
+      CompletableFuture<?>... inputs) {
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    CompletableFuture.allOf(inputs)
+        .whenComplete(
+            (ignored, failure) -> {
+              if (failure != null) {
+                fail(result, failure);
+                return;
+              }
+              execute(
+                  executor,
+                  result,
+                  () -> {
+                    CompletableFuture<T> future = producer.call().toCompletableFuture();
+                    result.whenComplete(
+                        (value, resultFailure) -> {
+                          if (result.isCancelled()) {
+                            future.cancel(true);
+                          }
+                        });
+                    future.whenComplete(
+                        (value, futureFailure) -> {
+                          if (futureFailure != null) {
+                            fail(result, futureFailure);
+                          } else {
+                            result.complete(value);
+                          }
+                        });
+                  });
+            });
+    return result;
+  }
+
+  /** Runs the given task on the executor unless the result is done, e.g., cancelled. */
+  private static void execute(
+      Executor executor, final CompletableFuture<?> result, final Task task) {
+    if (result.isDone()) {
+      return;
+    }
+    try {
+      executor.execute(
+          () -> {
+            if (result.isDone()) {
+              return;
+            }
+            try {
+              task.run();
+            } catch (Throwable e) {
+              result.completeExceptionally(e);
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      result.completeExceptionally(e);
+    }
+  }
+
+  private static void fail(CompletableFuture<?> result, Throwable failure) {
+    while (failure instanceof CompletionException && failure.getCause() != null) {
+      failure = failure.getCause();
+    }
+    if (failure instanceof CancellationException) {
+      result.cancel(false);
+    } else {
+      result.completeExceptionally(failure);
+    }
+  }
+
+  /** Work run by {@link #execute}. */
+  private interface Task {
+    void run() throws Exception;
+  }
+}
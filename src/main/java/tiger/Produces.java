@@ -0,0 +1,23 @@
+package tiger;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotates a module method producing a value asynchronously. It binds {@code CompletableFuture<T>}
+ * for its return type T, or for the T of its return type {@code CompletableFuture<T>}, with the
+ * same qualifier. The method runs on the {@link Production} executor once the values of its
+ * parameters produced by other producers of the same (sub)component are, so independent producers
+ * run concurrently. Other parameters are provided as usual. A failed or cancelled input fails or
+ * cancels the dependant, and cancelling a produced future before its method runs skips the method.
+ *
+ * <p>Like @Provides ones, unscoped producers run each time their future is requested. Annotate
+ * them with the scope to run them once per (sub)component. Supported by the Tiger4 processors.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface Produces {}
@@ -0,0 +1,15 @@
+package tiger;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import javax.inject.Qualifier;
+
+/**
+ * Qualifies the {@link java.util.concurrent.Executor} the {@link Produces} methods of a
+ * (sub)component run on. It has to be bound, e.g., by a module or @BindsInstance.
+ */
+@Documented
+@Qualifier
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Production {}
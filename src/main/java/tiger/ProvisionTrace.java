@@ -0,0 +1,126 @@
+package tiger;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the provisions of injectors generated with {@link #OPTION} into a ring buffer, allocated
+ * once the first provision is recorded and keeping the latest ones. Each provision is one complete
+ * event, with the nanosecond start and duration, so nested provisions show nested in the Chrome
+ * trace written by {@link #writeChromeTrace}, e.g., for chrome://tracing or Perfetto. Injectors
+ * generated without the option have no tracing code at all.
+ *
+ * <p>Recording is lock free. Events recorded while writing, or overwritten as the buffer wraps, may
+ * be missing or mixed up in the trace.
+ */
+public final class ProvisionTrace {
+  /** Processor option, if "true", tracing the provision methods of the generated injectors. */
+  static final String OPTION = "tiger.trace";
+  /** System property, the number of latest provisions kept, rounded up to a power of two. */
+  public static final String CAPACITY_PROPERTY = "tiger.traceCapacity";
+  /** System property, the file the Chrome trace is written to when the JVM exits. */
+  public static final String FILE_PROPERTY = "tiger.traceFile";
+
+  private static final int DEFAULT_CAPACITY = 1 << 16;
+  private static final int CAPACITY = getCapacity();
+  private static final int MASK = CAPACITY - 1;
+
+  private static final String[] names = new String[CAPACITY];
+  private static final long[] startNanos = new long[CAPACITY];
+  private static final long[] durationNanos = new long[CAPACITY];
+  private static final long[] threadIds = new long[CAPACITY];
+  private static final AtomicLong recorded = new AtomicLong();
+
+  static {
+    final String path = System.getProperty(FILE_PROPERTY);
+    if (path != null) {
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> writeChromeTrace(path)));
+    }
+  }
+
+  private ProvisionTrace() {}
+
+  /** Records the provision of the given binding, started at the given time, ending now. */
+  public static void record(String name, long start) {
+    long end = System.nanoTime();
+    int slot = (int) (recorded.getAndIncrement() & MASK);
+    names[slot] = name;
+    startNanos[slot] = start;
+    durationNanos[slot] = end - start;
+    threadIds[slot] = Thread.currentThread().getId();
+  }
+
+  /**
+   * Writes the provisions kept, oldest first, as Chrome trace-event JSON. Times are relative to the
+   * earliest start kept.
+   */
+  public static void writeChromeTrace(Writer writer) throws IOException {
+    long end = recorded.get();
+    long begin = Math.max(0, end - CAPACITY);
+    long origin = Long.MAX_VALUE;
+    for (long i = begin; i < end; i++) {
+      int slot = (int) (i & MASK);
+      if (names[slot] != null) {
+        origin = Math.min(origin, startNanos[slot]);
+      }
+    }
+    writer.write("{\"traceEvents\":[");
+    boolean first = true;
+    for (long i = begin; i < end; i++) {
+      int slot = (int) (i & MASK);
+      String name = names[slot];
+      if (name == null) {
+        continue;
+      }
+      writer.write(first ? "\n" : ",\n");
+      first = false;
+      writer.write(
+          String.format(
+              Locale.ROOT,
+              "{\"name\":\"%s\",\"cat\":\"tiger\",\"ph\":\"X\",\"ts\":%.3f,\"dur\":%.3f,"
+                  + "\"pid\":1,\"tid\":%d}",
+              escape(name),
+              (startNanos[slot] - origin) / 1000.0,
+              durationNanos[slot] / 1000.0,
+              threadIds[slot]));
+    }
+    writer.write("\n]}\n");
+    writer.flush();
+  }
+
+  private static void writeChromeTrace(String path) {
+    try (Writer writer =
+        new OutputStreamWriter(new FileOutputStream(path), StandardCharsets.UTF_8)) {
+      writeChromeTrace(writer);
+    } catch (IOException e) {
+      System.err.println("Failed to write provision trace to " + path + ": " + e);
+    }
+  }
+
+  private static String escape(String name) {
+    StringBuilder result = new StringBuilder();
+    for (char c : name.toCharArray()) {
+      if (c == '"' || c == '\\') {
+        result.append('\\').append(c);
+      } else if (c < ' ') {
+        result.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+      } else {
+        result.append(c);
+      }
+    }
+    return result.toString();
+  }
+
+  private static int getCapacity() {
+    int capacity = Math.min(Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY), 1 << 30);
+    if (capacity <= 1) {
+      return 1;
+    }
+    return Integer.highestOneBit(capacity - 1) << 1;
+  }
+}
@@ -56,12 +56,25 @@ public class ProxyGenerator {
   private final ClassName objectClassName = ClassName.get(Object.class);
   private final Logger logger;
   private final Types types;
+  // Whether the injectors call public targets directly, so only the others need wrappers.
+  private final boolean onlyForNonPublicTargets;
 
   public ProxyGenerator(ProcessingEnvironment env, Utils utils) {
+    this(env, utils, false);
+  }
+
+  /**
+   * If onlyForNonPublicTargets, only wraps the module methods, ctors and members injectors cannot
+   * reach directly, see {@link Utils#isModuleMethodCallableDirectly}, {@link
+   * Utils#isCtorCallableDirectly} and {@link Utils#isPublicallyInjectable}. Packages needing none
+   * get no proxy.
+   */
+  public ProxyGenerator(ProcessingEnvironment env, Utils utils, boolean onlyForNonPublicTargets) {
     this.env = env;
     messager = env.getMessager();
     types = env.getTypeUtils();
     this.utils = utils;
+    this.onlyForNonPublicTargets = onlyForNonPublicTargets;
     logger = new Logger(messager, Kind.NOTE);
   }
 
@@ -133,15 +146,20 @@ public class ProxyGenerator {
       // if (utils.isGenericNotSpecialized(c.asType())) {
       //   continue;
       // }
-      if (!utils.isGenericNotSpecialized(c.asType())) {
+      if (!utils.isGenericNotSpecialized(c.asType())
+          && !(onlyForNonPublicTargets && utils.isCtorCallableDirectly(c))) {
         addMethodCallingCtor(typeBuilder, c);
       }
-      if (utils.hasInjectedFieldsOrMethodsRecursively(c, env)) {
+      if (utils.hasInjectedFieldsOrMethodsRecursively(c, env)
+          && !(onlyForNonPublicTargets && utils.isPublicallyInjectable(c, env))) {
         addInjectionMethod(typeBuilder, c);
       }
       // addMethodSettingFields(typeBuilder, c);
       // addMethodsCallingClassMethods(typeBuilder, c);
     }
+    if (onlyForNonPublicTargets && typeBuilder.build().methodSpecs.isEmpty()) {
+      return;
+    }
 
     JavaFile javaFile =
         JavaFile.builder(p.getQualifiedName().toString(), typeBuilder.build()).build();
@@ -379,7 +397,10 @@ public class ProxyGenerator {
       if (utils.isMultibindsMethod(method)) {
         continue;
       }
-      if (!utils.isProvidesMethod(method)) {
+      if (!utils.isProvidesMethod(method) && !utils.isProducesMethod(method)) {
+        continue;
+      }
+      if (onlyForNonPublicTargets && utils.isModuleMethodCallableDirectly(method)) {
         continue;
       }
 
@@ -144,7 +144,8 @@ public class ProxyProcessor extends TailChaserProcesssor {
     // messager.printMessage(
     //     Kind.NOTE, TAG + ".process: ctor injected classes " + newInjected);
 
-    new ProxyGenerator(processingEnv, utils).generate(allModules, classesWithInject);
+    // The hub injectors call public targets directly.
+    new ProxyGenerator(processingEnv, utils, true).generate(allModules, classesWithInject);
 
     done = true;
 
@@ -0,0 +1,150 @@
+package tiger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Guards the first creation of the scoped bindings of an injector for {@link
+ * ThreadSafetyPolicy#VIRTUAL_THREADS}. Unlike synchronized blocks it does not pin virtual threads
+ * while the instances are created, and it fails fast with the binding trail, instead of
+ * deadlocking, on initialization cycles within a thread or across threads. Generated injectors use
+ * it as:
+ *
+ * <pre>
+ *   scopedInitializer.lock("Foo");
+ *   try {
+ *     // check and create Foo
+ *   } finally {
+ *     scopedInitializer.unlock("Foo");
+ *   }
+ * </pre>
+ *
+ * The bookkeeping is shared by all injectors so that cycles across injectors, e.g., a subcomponent
+ * and its parent, are found too. It is only used when an instance is absent. Each creation has its
+ * own condition, so that a thread is only woken once the binding it waits for is created.
+ */
+public final class ScopedInitializer {
+  private static final ReentrantLock bookkeepingLock = new ReentrantLock();
+  /** From thread to the bindings it is creating, innermost last. */
+  private static final Map<Thread, Deque<String>> trails = new HashMap<>();
+  /** From thread to the binding it waits for. */
+  private static final Map<Thread, Owned> waiting = new HashMap<>();
+
+  /** From binding being created to its creation. */
+  private final Map<String, Creation> creations = new HashMap<>();
+
+  /**
+   * Blocks until no other thread is creating the given binding of this injector, then marks it as
+   * created by the current one.
+   *
+   * @throws IllegalStateException if it would never return, i.e., the current thread is creating
+   *     the binding already, or waits for a thread that waits, directly or not, for it.
+   */
+  public void lock(String binding) {
+    Thread current = Thread.currentThread();
+    bookkeepingLock.lock();
+    try {
+      while (true) {
+        Creation creation = creations.get(binding);
+        if (creation == null) {
+          creations.put(binding, new Creation(current));
+          Deque<String> trail = trails.get(current);
+          if (trail == null) {
+            trail = new ArrayDeque<>();
+            trails.put(current, trail);
+          }
+          trail.addLast(binding);
+          return;
+        }
+        if (creation.owner == current) {
+          throw new IllegalStateException(
+              String.format(
+                  "Cycle in creating scoped bindings: %s -> %s", trails.get(current), binding));
+        }
+        checkNoDeadlock(current, creation.owner, binding);
+        waiting.put(current, new Owned(this, binding));
+        try {
+          creation.done.awaitUninterruptibly();
+        } finally {
+          waiting.remove(current);
+        }
+      }
+    } finally {
+      bookkeepingLock.unlock();
+    }
+  }
+
+  /** Marks the given binding, locked by the current thread, as no longer being created. */
+  public void unlock(String binding) {
+    Thread current = Thread.currentThread();
+    bookkeepingLock.lock();
+    try {
+      Creation creation = creations.remove(binding);
+      Deque<String> trail = trails.get(current);
+      trail.removeLastOccurrence(binding);
+      if (trail.isEmpty()) {
+        trails.remove(current);
+      }
+      creation.done.signalAll();
+    } finally {
+      bookkeepingLock.unlock();
+    }
+  }
+
+  /** Follows the threads waited for, starting from the owner, and fails if back to current. */
+  private void checkNoDeadlock(Thread current, Thread owner, String binding) {
+    List<String> cycle = new ArrayList<>();
+    cycle.add(String.format("%s waits for %s of %s", current, binding, owner));
+    Map<Thread, Boolean> visited = new IdentityHashMap<>();
+    Thread thread = owner;
+    while (visited.put(thread, true) == null) {
+      Owned owned = waiting.get(thread);
+      if (owned == null) {
+        return;
+      }
+      Creation creation = owned.initializer.creations.get(owned.binding);
+      if (creation == null) {
+        return;
+      }
+      Thread next = creation.owner;
+      cycle.add(
+          String.format(
+              "%s creating %s waits for %s of %s",
+              thread, trails.get(thread), owned.binding, next));
+      if (next == current) {
+        cycle.add(String.format("%s creating %s", current, trails.get(current)));
+        throw new IllegalStateException(
+            "Deadlock in creating scoped bindings: " + String.join(", ", cycle));
+      }
+      thread = next;
+    }
+  }
+
+  /** A binding being created, and the threads waiting for it. */
+  private static final class Creation {
+    final Thread owner;
+    final Condition done = bookkeepingLock.newCondition();
+
+    Creation(Thread owner) {
+      this.owner = owner;
+    }
+  }
+
+  /** A binding of an injector. */
+  private static final class Owned {
+    final ScopedInitializer initializer;
+    final String binding;
+
+    Owned(ScopedInitializer initializer, String binding) {
+      this.initializer = initializer;
+      this.binding = binding;
+    }
+  }
+}
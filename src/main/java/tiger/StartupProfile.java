@@ -0,0 +1,119 @@
+package tiger;
+
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the first creation of scoped bindings by injectors generated with {@link
+ * GeneralInjectorGenerator4#OPTION_RECORD_STARTUP_PROFILE}, and reads the result back for {@link
+ * GeneralInjectorGenerator4#OPTION_STARTUP_PROFILE}. The profile has a line per binding, in the
+ * order they were first accessed:
+ *
+ * <pre>
+ *   qualified.InjectorName provide_xxx nanosToCreate
+ * </pre>
+ *
+ * The time includes creating the dependencies not created yet. Lines starting with "#" are ignored.
+ */
+public final class StartupProfile {
+  /** System property, the file the profile is written to when the JVM exits. */
+  public static final String PROPERTY = "tiger.startupProfile";
+
+  /** The earliest creation of each binding, by injector and binding. */
+  private static final Map<String, Entry> entries = new HashMap<>();
+  private static boolean exitHookAdded;
+
+  private StartupProfile() {}
+
+  /**
+   * Records the given binding of the given injector, created in between the given times, unless it
+   * has been recorded with an earlier start, e.g., by another instance of the injector.
+   */
+  public static void record(String injector, String binding, long startNanos, long endNanos) {
+    String key = injector + " " + binding;
+    synchronized (entries) {
+      Entry previous = entries.get(key);
+      if (previous == null || previous.startNanos > startNanos) {
+        entries.put(key, new Entry(injector, binding, startNanos, endNanos - startNanos));
+      }
+      if (!exitHookAdded) {
+        exitHookAdded = true;
+        final String path = System.getProperty(PROPERTY);
+        if (path != null) {
+          Runtime.getRuntime().addShutdownHook(new Thread(() -> writeTo(path)));
+        }
+      }
+    }
+  }
+
+  /** Writes the profile recorded so far. */
+  public static void writeTo(Writer writer) throws IOException {
+    List<Entry> sorted;
+    synchronized (entries) {
+      sorted = new ArrayList<>(entries.values());
+    }
+    Collections.sort(sorted, Comparator.comparingLong(entry -> entry.startNanos));
+    for (Entry entry : sorted) {
+      writer.write(entry.injector + " " + entry.binding + " " + entry.nanos + "\n");
+    }
+    writer.flush();
+  }
+
+  private static void writeTo(String path) {
+    try (Writer writer =
+        new OutputStreamWriter(new FileOutputStream(path), StandardCharsets.UTF_8)) {
+      writeTo(writer);
+    } catch (IOException e) {
+      System.err.println("Failed to write startup profile to " + path + ": " + e);
+    }
+  }
+
+  /** Returns the bindings in the profile by injector, in the order they were first accessed. */
+  static Map<String, List<String>> read(BufferedReader reader) throws IOException {
+    Map<String, List<String>> result = new LinkedHashMap<>();
+    String line;
+    while ((line = reader.readLine()) != null) {
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      String[] parts = line.split("\\s+");
+      if (parts.length < 2) {
+        throw new IOException("Invalid line: " + line);
+      }
+      List<String> bindings = result.get(parts[0]);
+      if (bindings == null) {
+        bindings = new ArrayList<>();
+        result.put(parts[0], bindings);
+      }
+      bindings.add(parts[1]);
+    }
+    return result;
+  }
+
+  /** A binding created. */
+  private static final class Entry {
+    final String injector;
+    final String binding;
+    final long startNanos;
+    final long nanos;
+
+    Entry(String injector, String binding, long startNanos, long nanos) {
+      this.injector = injector;
+      this.binding = binding;
+      this.startNanos = startNanos;
+      this.nanos = nanos;
+    }
+  }
+}
@@ -0,0 +1,16 @@
+package tiger;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Specifies the {@link ThreadSafetyPolicy} of the scoped bindings of the annotated scope
+ * annotation or (sub)component. The one on the scope wins.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface ThreadSafety {
+  ThreadSafetyPolicy value();
+}
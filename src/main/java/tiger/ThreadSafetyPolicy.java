@@ -0,0 +1,27 @@
+package tiger;
+
+/**
+ * How generated injectors store the instances of scoped bindings. Set by {@link ThreadSafety} on
+ * scope annotations or (sub)components, or by the {@link #OPTION} processor option for all. If not
+ * set, each generator keeps its own default.
+ */
+public enum ThreadSafetyPolicy {
+  /** Plain lazy fields, for injectors used by one thread only, e.g., the UI thread. */
+  CONFINED,
+  /** Double checked locking on volatile fields, safe to use from any thread. */
+  CONCURRENT,
+  /** Created when the injector is created, then only read. */
+  EAGER,
+  /**
+   * Like {@link #CONCURRENT} but creation is guarded by a {@link ScopedInitializer}, which does not
+   * pin virtual threads and fails fast on initialization cycles.
+   */
+  VIRTUAL_THREADS;
+
+  static final String OPTION = "tiger.threadSafety";
+
+  /** Returns whether instances are read without a lock, and therefore must be volatile. */
+  boolean isReadWithoutLock() {
+    return this == CONCURRENT || this == VIRTUAL_THREADS;
+  }
+}
@@ -80,6 +80,11 @@ class Tiger2InjectorGenerator extends GeneralInjectorGenerator {
     return Sets.newHashSet(TypeName.get(eitherComponent.asType()));
   }
 
+  @Override
+  protected TypeElement getEitherComponent() {
+    return eitherComponent;
+  }
+
   @Override
   protected Pair<Set<BindingKey>, Set<BindingKey>> getProduced() {
     Set<BindingKey> provided = new HashSet<>();
@@ -587,10 +592,8 @@ class Tiger2InjectorGenerator extends GeneralInjectorGenerator {
 
     TypeElement sourceClassElement = dependencyInfo.getSourceClassElement();
     String packageString = utils.getPackageString(sourceClassElement);
-    ClassName proxyClassName = ClassName.get(packageString, TIGER_PROXY_NAME);
-    generateGetProxyMethodIfNeeded(packageString);
     StringBuilder builder = new StringBuilder();
-    builder.append(utils.getGetMethodName(proxyClassName)).append("().");
+    builder.append(generateProxyFieldIfNeeded(packageString)).append(".");
     if (isModuleMethod) {
       builder.append(utils.getMethodNameCallingMethod(sourceClassElement, provisionMethodElement));
     } else {
@@ -601,8 +604,7 @@ class Tiger2InjectorGenerator extends GeneralInjectorGenerator {
       if (nonNullaryCtorModules.contains(sourceClassElement)) {
         builder.append(utils.getSourceCodeName(sourceClassElement));
       } else {
-        generateGetTypeMethodIfNeeded(sourceClassElement);
-        builder.append(utils.getGetMethodName(sourceClassElement)).append("()");
+        builder.append(generateInstanceFieldIfNeeded(sourceClassElement));
       }
       builder.append(", ");
     }
@@ -624,13 +626,10 @@ class Tiger2InjectorGenerator extends GeneralInjectorGenerator {
 
   protected String generateStringCallingProxySetFieldMethod(
       TypeElement cls, String clsName, VariableElement field, String fieldName) {
-    String packageString = utils.getPackageString(cls);
-    ClassName proxyClassName = ClassName.get(packageString, TIGER_PROXY_NAME);
-    generateGetProxyMethodIfNeeded(packageString);
     StringBuilder builder = new StringBuilder();
     builder
-        .append(utils.getGetMethodName(proxyClassName))
-        .append("().")
+        .append(generateProxyFieldIfNeeded(utils.getPackageString(cls)))
+        .append(".")
         .append(utils.getMethodNameSettingField(cls, field))
         .append("(")
         .append(clsName)
@@ -643,13 +642,10 @@ class Tiger2InjectorGenerator extends GeneralInjectorGenerator {
 
   protected String generateStringCallingProxyInjectionMethod(
       TypeElement cls, String clsName, ExecutableElement method, String... parameterNames) {
-    String packageString = utils.getPackageString(cls);
-    ClassName proxyClassName = ClassName.get(packageString, TIGER_PROXY_NAME);
-    generateGetProxyMethodIfNeeded(packageString);
     StringBuilder builder = new StringBuilder();
     builder
-        .append(utils.getGetMethodName(proxyClassName))
-        .append("().")
+        .append(generateProxyFieldIfNeeded(utils.getPackageString(cls)))
+        .append(".")
         .append(utils.getMethodNameCallingMethod(cls, method))
         .append("(")
         .append(clsName);
@@ -1387,6 +1387,11 @@ public class Tiger2Processor extends AbstractProcessor {
     );
   }
 
+  @Override
+  public Set<String> getSupportedOptions() {
+    return Sets.newHashSet(ThreadSafetyPolicy.OPTION, ProvisionTrace.OPTION);
+  }
+
   @Override
   public SourceVersion getSupportedSourceVersion() {
     return SourceVersion.latestSupported();
@@ -143,6 +143,11 @@ public class Tiger3ProcessorForPackaged extends TailChaserProcesssor {
     return result;
   }
 
+  @Override
+  public Set<String> getSupportedOptions() {
+    return Sets.newHashSet(ThreadSafetyPolicy.OPTION, ProvisionTrace.OPTION);
+  }
+
   @Override
   protected boolean handle(Set<? extends TypeElement> annotations) {
     boolean modulesAndClassesCollected = collectModulesAndClasses(annotations);
@@ -8,6 +8,8 @@ import com.squareup.javapoet.JavaFile;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.TypeSpec;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -27,9 +29,30 @@ public class Tiger4ProcessorForComponent extends Tiger4ProcessorForPackaged {
 
   static public TypeSpec.Builder debugBuilder = TypeSpec.classBuilder("debug");
 
+  private InjectorCache injectorCache;
+  private SubcomponentParentInterfaceGenerator subcomponentParentInterfaceGenerator;
+  private ExtraDependenciesOnParentCalculator extraDependenciesOnParentCalculator;
+  /**
+   * Number of (sub)components still to process in the subtree of each (sub)component, those of
+   * finished subtrees are released, see {@link #release}.
+   */
+  private final Map<TypeElement, Integer> eitherComponentToPendingCountMap = new HashMap<>();
+
+  @Override
+  public Set<String> getSupportedOptions() {
+    Set<String> result = new HashSet<>(super.getSupportedOptions());
+    result.add(InjectorCache.OPTION_CACHE_DIR);
+    return result;
+  }
+
   @Override
   protected void handleHub() {
+    injectorCache = new InjectorCache(processingEnv);
+    subcomponentParentInterfaceGenerator =
+        new SubcomponentParentInterfaceGenerator(processingEnv, utils);
     prepairForHubInjectorGeneration();
+    extraDependenciesOnParentCalculator =
+        ExtraDependenciesOnParentCalculator.getInstance(componentToParentMap, processingEnv, utils);
     generateHubInjectors(allEitherComponents, componentToParentMap);
     JavaFile javaFile = JavaFile.builder("tiger", debugBuilder.build()).build();
     try {
@@ -39,8 +62,16 @@ public class Tiger4ProcessorForComponent extends Tiger4ProcessorForPackaged {
     }
   }
 
+  /**
+   * Generated with the hub injectors instead, from the dependencies collected for them, see {@link
+   * #processEitherComponent}.
+   */
+  @Override
+  protected void generateSubcomponentParentInterfaces() {}
+
   private void prepairForHubInjectorGeneration() {
     dependencyCollector = DependencyCollector.getInstance(processingEnv, utils);
+    linkLibraryBindings();
 
 //    addChildrenAndRemoveSub(allEitherComponents, componentToParentMap);
 
@@ -130,8 +161,13 @@ public class Tiger4ProcessorForComponent extends Tiger4ProcessorForPackaged {
     // logger.n("filtered: %s", filtered);
     filtered = allEitherComponents;
     int count = 0;
-    List<TypeElement> sorted = utils.sortByFullName(filtered);
+    List<TypeElement> sorted = getChildrenFirst(utils.sortByFullName(filtered));
     logger.w("sorted components: %s", sorted);
+    for (TypeElement c : sorted) {
+      for (TypeElement i = c; i != null; i = componentToParentMap.get(i)) {
+        eitherComponentToPendingCountMap.merge(i, 1, Integer::sum);
+      }
+    }
     for (TypeElement c : sorted) {
       if (c.getQualifiedName().toString().contains("Fragment") && count < 0) {
         count ++;
@@ -143,6 +179,39 @@ public class Tiger4ProcessorForComponent extends Tiger4ProcessorForPackaged {
     }
   }
 
+  /**
+   * Returns the given (sub)components with children before their parents, otherwise in the given
+   * order, so that what a (sub)component needs from its parent is known when the parent is
+   * processed.
+   */
+  private List<TypeElement> getChildrenFirst(List<TypeElement> eitherComponents) {
+    SetMultimap<TypeElement, TypeElement> eitherComponentToChildrenMap = HashMultimap.create();
+    for (Map.Entry<TypeElement, TypeElement> i : componentToParentMap.entrySet()) {
+      eitherComponentToChildrenMap.put(i.getValue(), i.getKey());
+    }
+    Set<TypeElement> toInclude = new HashSet<>(eitherComponents);
+    List<TypeElement> result = new ArrayList<>();
+    for (TypeElement c : eitherComponents) {
+      addChildrenFirst(c, eitherComponentToChildrenMap, toInclude, result);
+    }
+    return result;
+  }
+
+  private void addChildrenFirst(
+      TypeElement eitherComponent,
+      SetMultimap<TypeElement, TypeElement> eitherComponentToChildrenMap,
+      Set<TypeElement> toInclude,
+      List<TypeElement> result) {
+    if (!toInclude.remove(eitherComponent)) {
+      return;
+    }
+    for (TypeElement child :
+        utils.sortByFullName(eitherComponentToChildrenMap.get(eitherComponent))) {
+      addChildrenFirst(child, eitherComponentToChildrenMap, toInclude, result);
+    }
+    result.add(eitherComponent);
+  }
+
   public static void profilerMethod(String methodName, long millis) {
     debugBuilder.addMethod(
         MethodSpec.methodBuilder(methodName.replace(".", "_") + "_" + System.nanoTime())
@@ -177,12 +246,15 @@ public class Tiger4ProcessorForComponent extends Tiger4ProcessorForPackaged {
     //verifyComponents(eitherComponents);
 
     logger.n("allModules:  %s,\n %s", allModules.size(), allModules);
+    Set<BindingKey> unresolved = new HashSet<>();
     dependencyInfos =
         dependencyCollector.collectForOne(
             eitherComponent,
             componentToParentMap.get(eitherComponent),
             componentToComponentDependencyMap.get(eitherComponent),
-            componentToBindsInstanceMap.get(eitherComponent), allRecoverableErrors);
+            componentToBindsInstanceMap.get(eitherComponent),
+            unresolved,
+            allRecoverableErrors);
 
     logger.n("componentToKeyMap: %s", componentToKeyMap);
 
@@ -203,9 +275,6 @@ public class Tiger4ProcessorForComponent extends Tiger4ProcessorForPackaged {
 //    logger.n( String.format(
 //        "TigerDaggerGeneratorProcessor.process(). all dependencyInfos: %s", dependencyInfos));
 
-    Set<BindingKey> requiredKeys =
-        dependencyCollector.getRequiredKeys(allEitherComponents, dependencyInfos);
-
     if (!allRecoverableErrors.isEmpty()) {
       logger.n( "allRecoverableErrors:");
       for (String error : allRecoverableErrors) {
@@ -215,6 +284,11 @@ public class Tiger4ProcessorForComponent extends Tiger4ProcessorForPackaged {
 
     addEitherComponentAndAncestersToKeyMap(eitherComponent);
     dependencies = DependencyCollector.collectionToMultimap(dependencyInfos);
+    // The children are done, their results are reused instead of collecting them again.
+    extraDependenciesOnParentCalculator.calculate(eitherComponent, dependencies, unresolved);
+    if (utils.isSubcomponent(eitherComponent)) {
+      subcomponentParentInterfaceGenerator.generate(eitherComponent, componentToParentMap);
+    }
     HubInjectorGenerator4 hubInjectorGenerator =
         new HubInjectorGenerator4(
             eitherComponent,
@@ -226,7 +300,29 @@ public class Tiger4ProcessorForComponent extends Tiger4ProcessorForPackaged {
             componentToBindsInstanceMap.get(eitherComponent),
             processingEnv,
             utils);
-    hubInjectorGenerator.generate();
+    String hash = null;
+    if (injectorCache.isEnabled()) {
+      hash = injectorCache.hash(hubInjectorGenerator.getInputFingerprint());
+    }
+    if (hash != null
+        && injectorCache.reemitIfUnchanged(
+            eitherComponent, hash, HubInjectorGenerator4.generatedGenericInjectors)) {
+      logger.w("(sub)component unchanged: %s", eitherComponent);
+    } else {
+      hubInjectorGenerator.generate();
+      if (hash != null) {
+        injectorCache.put(
+            eitherComponent,
+            hash,
+            hubInjectorGenerator.getGeneratedSources(),
+            hubInjectorGenerator.getNeededGenericInjectors());
+      }
+    }
+
+    dependencyInfos = null;
+    dependencies = null;
+    utils.clearCaches();
+    release(eitherComponent);
 
     if (allRecoverableErrors.isEmpty()) {
     } else if (env.processingOver()) {
@@ -238,6 +334,33 @@ public class Tiger4ProcessorForComponent extends Tiger4ProcessorForPackaged {
     logger.n("time: %s ms", (System.currentTimeMillis() - startTime));
   }
 
+  /**
+   * Releases what is kept for the given (sub)component and its ancestors whose subtrees are done.
+   * Until then descendants still need them, e.g., the keys of their ancestors.
+   */
+  private void release(TypeElement eitherComponent) {
+    for (TypeElement i = eitherComponent; i != null; i = componentToParentMap.get(i)) {
+      if (eitherComponentToPendingCountMap.merge(i, -1, Integer::sum) > 0) {
+        continue;
+      }
+      eitherComponentToPendingCountMap.remove(i);
+      componentToKeyMap.removeAll(i);
+      dependencyCollector.release(i);
+      extraDependenciesOnParentCalculator.release(i);
+    }
+  }
+
+  /** Whether nothing of any (sub)component is kept, e.g., once all hub injectors are generated. */
+  boolean holdsNoEitherComponent() {
+    return dependencyInfos == null
+        && dependencies == null
+        && componentToKeyMap.isEmpty()
+        && eitherComponentToPendingCountMap.isEmpty()
+        && dependencyCollector.holdsNoEitherComponent()
+        && extraDependenciesOnParentCalculator.holdsNoEitherComponent()
+        && utils.hasNoCaches();
+  }
+
   private void addEitherComponentAndAncestersToKeyMap(TypeElement eitherComponent) {
     while (eitherComponent != null) {
       addEitherComponentToKeyMap(eitherComponent);
@@ -16,15 +16,24 @@
 package tiger;
 
 import com.google.auto.service.AutoService;
+import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.TypeSpec;
 import dagger.Component;
 import dagger.Module;
 import dagger.Subcomponent;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -39,10 +48,16 @@ import javax.inject.Inject;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
 import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.DeclaredType;
+import javax.lang.model.util.SimpleAnnotationValueVisitor8;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
 
 /**
  * Collects Dagger Component interfaces and generate Dagger Component implementions by wraping about
@@ -52,6 +67,13 @@ import javax.lang.model.type.DeclaredType;
 public class Tiger4ProcessorForPackaged extends TailChaserProcesssor {
   private static final String TAG = "Tiger4ProcessorForPackaged";
   private static final String MODULE_ANNOTATION_ELEMENT_SUBCOMPONENTS = "subcomponents";
+  /**
+   * Set to {@link #MODE_LIBRARY} to generate only the packaged injectors and a {@link
+   * LinkedEitherComponents} of the library. The app, processed without the option, then generates
+   * the hub injectors of all the libraries on the classpath.
+   */
+  static final String OPTION_MODE = "tiger.mode";
+  static final String MODE_LIBRARY = "library";
   protected SetMultimap<TypeElement, BindingKey> componentToKeyMap = HashMultimap.create();
 
   private enum State{
@@ -103,8 +125,44 @@ public class Tiger4ProcessorForPackaged extends TailChaserProcesssor {
   protected Set<TypeElement> allEitherComponents = new HashSet<>();
   private boolean hubInjectorsGenerated;
   private boolean firstRound;
+  private boolean linkedEitherComponentsCollected;
+  /** The {@link LinkedEitherComponents} classes of the libraries on the classpath. */
+  private final List<TypeElement> linkedClasses = new ArrayList<>();
+  /** Classes whose bindings are read from the libraries, see {@link #linkLibraryBindings}. */
+  private final Set<String> linkedBindingClassNames = new HashSet<>();
   protected DependencyCollector dependencyCollector;
 
+  @Override
+  public Set<String> getSupportedOptions() {
+    return Sets.newHashSet(
+        OPTION_MODE,
+        ThreadSafetyPolicy.OPTION,
+        GeneralInjectorGenerator4.OPTION_SCOPED_STORAGE,
+        GeneralInjectorGenerator4.OPTION_SINGLETON_HOLDERS,
+        GeneralInjectorGenerator4.OPTION_WARM_UP,
+        GeneralInjectorGenerator4.OPTION_RECORD_STARTUP_PROFILE,
+        GeneralInjectorGenerator4.OPTION_STARTUP_PROFILE,
+        GeneralInjectorGenerator4.OPTION_MAX_BINDINGS_PER_CLASS,
+        GeneralInjectorGenerator4.OPTION_MAX_STATEMENTS_PER_METHOD,
+        ProvisionTrace.OPTION);
+  }
+
+  /**
+   * All annotations when not in library mode and libraries compiled in library mode are on the
+   * classpath, since the app then needs processing even without any annotations of its own.
+   */
+  @Override
+  public Set<String> getSupportedAnnotationTypes() {
+    if (!isLibraryMode() && elements.getPackageElement(LinkedEitherComponents.PACKAGE) != null) {
+      return Collections.singleton("*");
+    }
+    return super.getSupportedAnnotationTypes();
+  }
+
+  protected boolean isLibraryMode() {
+    return MODE_LIBRARY.equals(processingEnv.getOptions().get(OPTION_MODE));
+  }
+
   /**
    * Returns whether collecting is finished.
    */
@@ -133,6 +191,10 @@ public class Tiger4ProcessorForPackaged extends TailChaserProcesssor {
         utils.getTypedElements(roundEnvironment, Component.class, Subcomponent.class);
     allEitherComponents.addAll(newEitherComponents);
     logger.n("newEitherComponents: %s", newEitherComponents);
+    if (!linkedEitherComponentsCollected && !isLibraryMode()) {
+      allEitherComponents.addAll(collectLinkedEitherComponents());
+      linkedEitherComponentsCollected = true;
+    }
 
     // Still could be wrong if manipulated carefull to screw it. Wont worry about that.
     boolean result = !firstRound && newEitherComponents.isEmpty();
@@ -168,13 +230,20 @@ public class Tiger4ProcessorForPackaged extends TailChaserProcesssor {
         if (eitherComponentsCollected) {
           addSiblingsInSamePackage(allEitherComponents);
           componentToParentMap = collectComponentToParentMap(allEitherComponents);
-          generateSubcomponentParentInterfaces();
+          // The parent of a subcomponent might be in the app, leave it to the app.
+          if (!isLibraryMode()) {
+            generateSubcomponentParentInterfaces();
+          }
           state = State.SUBCOMPONENT_PARENT_INTERFACE_GENERAED;
         }
         return false;
       case SUBCOMPONENT_PARENT_INTERFACE_GENERAED:
         if (eitherComponentsCollected) {
-          handleHub();
+          if (isLibraryMode()) {
+            generateLinkedEitherComponents();
+          } else {
+            handleHub();
+          }
           state = State.HUB_INJECTOR_GENERATED;
         }
         return false;
@@ -184,7 +253,183 @@ public class Tiger4ProcessorForPackaged extends TailChaserProcesssor {
     return false;
   }
 
-  private void generateSubcomponentParentInterfaces() {
+  /**
+   * Returns the (sub)components of the libraries compiled in library mode, i.e., those listed by
+   * the {@link LinkedEitherComponents}s on the classpath.
+   */
+  private Set<TypeElement> collectLinkedEitherComponents() {
+    Set<TypeElement> result = new HashSet<>();
+    PackageElement packageElement = elements.getPackageElement(LinkedEitherComponents.PACKAGE);
+    if (packageElement == null) {
+      return result;
+    }
+    for (Element e : packageElement.getEnclosedElements()) {
+      AnnotationMirror annotationMirror =
+          utils.getAnnotationMirror(e, LinkedEitherComponents.class);
+      if (annotationMirror == null) {
+        continue;
+      }
+      linkedClasses.add((TypeElement) e);
+      AnnotationValue names = Utils.getAnnotationValue(elements, annotationMirror, "value");
+      for (AnnotationValue av : getArrayElements(names)) {
+        String name = (String) av.getValue();
+        TypeElement eitherComponent = elements.getTypeElement(name);
+        if (eitherComponent == null) {
+          logger.e("(sub)component %s linked by %s not found", name, e);
+          continue;
+        }
+        result.add(eitherComponent);
+      }
+    }
+    logger.n("result: %s", result);
+    return result;
+  }
+
+  /**
+   * Makes the {@link #dependencyCollector} use the bindings the libraries compiled in library mode
+   * serialized next to their {@link LinkedEitherComponents}, see {@link LinkedBindings}. Those of
+   * libraries without them are collected from their classes as usual.
+   */
+  protected void linkLibraryBindings() {
+    for (TypeElement linked : linkedClasses) {
+      String resourceName = LinkedBindings.getResourceName(linked.getSimpleName().toString());
+      String json;
+      try {
+        json =
+            processingEnv
+                .getFiler()
+                .getResource(
+                    StandardLocation.CLASS_PATH, LinkedEitherComponents.PACKAGE, resourceName)
+                .getCharContent(true)
+                .toString();
+      } catch (IOException e) {
+        logger.w("bindings of %s not found, collected from the classes: %s", linked, e);
+        continue;
+      }
+      for (Map.Entry<TypeElement, Collection<DependencyInfo>> i :
+          LinkedBindings.fromJson(elements, json).entrySet()) {
+        dependencyCollector.link(i.getKey(), i.getValue());
+        linkedBindingClassNames.add(i.getKey().getQualifiedName().toString());
+      }
+    }
+    logger.n("linkedBindingClassNames: %s", linkedBindingClassNames);
+  }
+
+  /** Names of the classes whose bindings are read from the libraries, see linkLibraryBindings. */
+  Set<String> getLinkedBindingClassNames() {
+    return linkedBindingClassNames;
+  }
+
+  /** Returns the elements of the given array annotation value, empty if it is not an array. */
+  private static List<? extends AnnotationValue> getArrayElements(AnnotationValue value) {
+    return value.accept(
+        new SimpleAnnotationValueVisitor8<List<? extends AnnotationValue>, Void>(
+            Collections.<AnnotationValue>emptyList()) {
+          @Override
+          public List<? extends AnnotationValue> visitArray(
+              List<? extends AnnotationValue> values, Void unused) {
+            return values;
+          }
+        },
+        null);
+  }
+
+  /**
+   * Generates the {@link LinkedEitherComponents} of this library and the bindings of its modules
+   * and ctor injected classes, see {@link LinkedBindings}. The name is derived from the
+   * (sub)components and classes so that libraries do not clash. Warns about the components whose
+   * implementations are left to the app.
+   */
+  private void generateLinkedEitherComponents() {
+    for (TypeElement c : utils.sortByFullName(allEitherComponents)) {
+      if (utils.isComponent(c)) {
+        messager.printMessage(
+            Kind.MANDATORY_WARNING,
+            String.format(
+                "%s.%s is not generated in library mode (-A%s=%s), but when compiling the app "
+                    + "with this library on the classpath.",
+                utils.getPackage(c).getQualifiedName(),
+                utils.getComponentImplementationSimpleNameFromInterface(c),
+                OPTION_MODE,
+                MODE_LIBRARY),
+            c);
+      }
+    }
+    Map<TypeElement, Collection<DependencyInfo>> bindings = collectLibraryBindings();
+    if (allEitherComponents.isEmpty() && bindings.isEmpty()) {
+      return;
+    }
+    List<String> names = new ArrayList<>();
+    for (TypeElement c : utils.sortByFullName(allEitherComponents)) {
+      names.add(c.getQualifiedName().toString());
+    }
+    List<String> bindingClassNames = new ArrayList<>();
+    for (TypeElement c : utils.sortByFullName(bindings.keySet())) {
+      bindingClassNames.add(c.getQualifiedName().toString());
+    }
+    String hash =
+        Hashing.sha256()
+            .hashString(
+                Joiner.on(',').join(names) + ";" + Joiner.on(',').join(bindingClassNames),
+                StandardCharsets.UTF_8)
+            .toString()
+            .substring(0, 16);
+    AnnotationSpec.Builder annotationBuilder = AnnotationSpec.builder(LinkedEitherComponents.class);
+    for (String name : names) {
+      annotationBuilder.addMember("value", "$S", name);
+    }
+    if (names.isEmpty()) {
+      annotationBuilder.addMember("value", "{}");
+    }
+    String simpleName = "Linked_" + hash;
+    TypeSpec linked =
+        TypeSpec.classBuilder(simpleName)
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .addAnnotation(annotationBuilder.build())
+            .build();
+    JavaFile javaFile = JavaFile.builder(LinkedEitherComponents.PACKAGE, linked).build();
+    try {
+      javaFile.writeTo(processingEnv.getFiler());
+      FileObject resource =
+          processingEnv
+              .getFiler()
+              .createResource(
+                  StandardLocation.CLASS_OUTPUT,
+                  LinkedEitherComponents.PACKAGE,
+                  LinkedBindings.getResourceName(simpleName));
+      try (Writer writer = resource.openWriter()) {
+        writer.write(LinkedBindings.toJson(elements, bindings));
+      }
+    } catch (IOException e) {
+      logger.e("write to %s failed: %s", javaFile, e);
+    }
+  }
+
+  /** Returns the bindings of the modules and the non-generic ctor injected classes compiled. */
+  private Map<TypeElement, Collection<DependencyInfo>> collectLibraryBindings() {
+    dependencyCollector = DependencyCollector.getInstance(processingEnv, utils);
+    Map<TypeElement, Collection<DependencyInfo>> result = new HashMap<>();
+    for (TypeElement module : allModules) {
+      result.put(module, dependencyCollector.collectFromModule(module));
+    }
+    for (Element e : allInjected) {
+      if (!e.getKind().equals(ElementKind.CONSTRUCTOR)) {
+        continue;
+      }
+      TypeElement cls = (TypeElement) e.getEnclosingElement();
+      if (!cls.getTypeParameters().isEmpty()) {
+        continue;
+      }
+      Collection<DependencyInfo> dependencyInfos =
+          dependencyCollector.collectFromCtorInjectedClass(cls, (DeclaredType) cls.asType());
+      if (dependencyInfos != null) {
+        result.put(cls, dependencyInfos);
+      }
+    }
+    return result;
+  }
+
+  protected void generateSubcomponentParentInterfaces() {
     SubcomponentParentInterfaceGenerator subcomponentParentInterfaceGenerator = new SubcomponentParentInterfaceGenerator(
         processingEnv, utils);
     for (TypeElement c : allEitherComponents) {
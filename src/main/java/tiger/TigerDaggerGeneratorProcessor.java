@@ -1453,6 +1453,11 @@ public class TigerDaggerGeneratorProcessor extends AbstractProcessor {
     );
   }
 
+  @Override
+  public Set<String> getSupportedOptions() {
+    return Sets.newHashSet(ThreadSafetyPolicy.OPTION, ProvisionTrace.OPTION);
+  }
+
   @Override
   public SourceVersion getSupportedSourceVersion() {
     return SourceVersion.latestSupported();
@@ -56,20 +56,29 @@ import dagger.multibindings.ElementsIntoSet;
 import dagger.multibindings.IntoMap;
 import dagger.multibindings.IntoSet;
 import dagger.multibindings.Multibinds;
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import javax.annotation.Generated;
 import javax.annotation.Nullable;
 import javax.annotation.processing.Messager;
@@ -89,6 +98,7 @@ import javax.lang.model.element.Modifier;
 import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
 import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.ExecutableType;
 import javax.lang.model.type.TypeKind;
@@ -144,6 +154,40 @@ class Utils {
         }
       };
   private boolean debugInfoEnabled;
+  /**
+   * From {@link DeclaredType} to its enclosed elements and their types as members of it. See
+   * {@link #traverseAndDo(Types, DeclaredType, TypeElement, Function)}.
+   */
+  private final Map<SameTypeKey, List<Pair<TypeMirror, Element>>> memberTypesCache =
+      new HashMap<>();
+  /**
+   * Filled by {@link #getTypeFromTypeName(TypeName)}. Keyed by name, {@link TypeName}s being equal
+   * by their string, while the same type has different {@link TypeMirror}s from different elements.
+   */
+  private final Map<TypeName, TypeMirror> typeNameToTypeMirrorCache = new HashMap<>();
+  /**
+   * From specialized key to the generic {@link DependencyInfo} and the specialized one created from
+   * it by {@link #getDependencyInfoByGeneric(SetMultimap, BindingKey)}.
+   */
+  private final Map<BindingKey, Pair<DependencyInfo, DependencyInfo>> specializedDependencyInfoCache =
+      new HashMap<>();
+
+  /**
+   * Drops the cached types and bindings, which reference elements, e.g., once the (sub)component
+   * they were used for is generated.
+   */
+  void clearCaches() {
+    memberTypesCache.clear();
+    typeNameToTypeMirrorCache.clear();
+    specializedDependencyInfoCache.clear();
+  }
+
+  /** Whether nothing is cached, see {@link #clearCaches()}. */
+  boolean hasNoCaches() {
+    return memberTypesCache.isEmpty()
+        && typeNameToTypeMirrorCache.isEmpty()
+        && specializedDependencyInfoCache.isEmpty();
+  }
 
   public void setDebugInfoEnabled(boolean v) {
     debugInfoEnabled = v;
@@ -359,6 +403,255 @@ class Utils {
     return Sets.newHashSet(Collections2.transform(result, f -> (TypeElement) f.asElement()));
   }
 
+  /** Compilations the invalid {@link ThreadSafetyPolicy#OPTION} has been reported for. */
+  private static final Set<ProcessingEnvironment> threadSafetyOptionReported =
+      Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+  /** Per compilation, the profile of {@link GeneralInjectorGenerator4#OPTION_STARTUP_PROFILE}. */
+  private static final Map<ProcessingEnvironment, Map<String, List<String>>> startupProfiles =
+      Collections.synchronizedMap(new WeakHashMap<>());
+
+  /**
+   * Returns the bindings in the profile of {@link GeneralInjectorGenerator4#OPTION_STARTUP_PROFILE}
+   * by injector, empty if the option is absent or the profile cannot be read, which is reported
+   * once.
+   */
+  public static Map<String, List<String>> getStartupProfile(ProcessingEnvironment env) {
+    synchronized (startupProfiles) {
+      Map<String, List<String>> result = startupProfiles.get(env);
+      if (result != null) {
+        return result;
+      }
+      result = new HashMap<>();
+      String path = env.getOptions().get(GeneralInjectorGenerator4.OPTION_STARTUP_PROFILE);
+      if (path != null) {
+        try (BufferedReader reader =
+            Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+          result = StartupProfile.read(reader);
+        } catch (IOException e) {
+          env.getMessager()
+              .printMessage(
+                  Kind.ERROR,
+                  String.format(
+                      "Failed to read %s %s: %s",
+                      GeneralInjectorGenerator4.OPTION_STARTUP_PROFILE,
+                      path,
+                      e));
+        }
+      }
+      startupProfiles.put(env, result);
+      return result;
+    }
+  }
+
+  /** Returns the scope of the given binding, null if unscoped. */
+  @Nullable
+  public static TypeElement getScopeTypeElement(DependencyInfo dependencyInfo) {
+    Element element;
+    switch (dependencyInfo.getDependencySourceType()) {
+      case MODULE:
+        element = dependencyInfo.getProvisionMethodElement();
+        break;
+      case CTOR_INJECTED_CLASS:
+        element = dependencyInfo.getSourceClassElement();
+        break;
+      default:
+        return null;
+    }
+    return Iterables.getFirst(getScopeTypeElements(element), null);
+  }
+
+  /**
+   * Returns the {@link ThreadSafetyPolicy} for the bindings of the given scope in the given
+   * (sub)component. {@link ThreadSafety} on the scope wins over the one on the (sub)component,
+   * which wins over {@link ThreadSafetyPolicy#OPTION}. Null if none is set.
+   */
+  @Nullable
+  public static ThreadSafetyPolicy getThreadSafetyPolicy(
+      ProcessingEnvironment env,
+      @Nullable TypeElement scope,
+      @Nullable TypeElement eitherComponent) {
+    for (TypeElement element : Arrays.asList(scope, eitherComponent)) {
+      ThreadSafety threadSafety = element == null ? null : element.getAnnotation(ThreadSafety.class);
+      if (threadSafety != null) {
+        return threadSafety.value();
+      }
+    }
+    String option = env.getOptions().get(ThreadSafetyPolicy.OPTION);
+    if (option == null) {
+      return null;
+    }
+    try {
+      return ThreadSafetyPolicy.valueOf(option.toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      if (threadSafetyOptionReported.add(env)) {
+        env.getMessager()
+            .printMessage(
+                Kind.ERROR,
+                String.format(
+                    "Invalid %s: %s, expected one of %s.",
+                    ThreadSafetyPolicy.OPTION,
+                    option,
+                    Arrays.toString(ThreadSafetyPolicy.values())));
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Adds to the given scoped provision method the statements returning the instance kept in the
+   * given field, created by calling the unscoped provision method if absent. The creation is
+   * synchronized on the lock if not null.
+   */
+  public static void addScopedProvisionStatements(
+      MethodSpec.Builder builder,
+      TypeName typeName,
+      String fieldName,
+      @Nullable String lock,
+      String unscopedProvisionMethodName) {
+    addScopedInstanceStatements(
+        builder, typeName.box(), fieldName, lock, unscopedProvisionMethodName, null, null);
+    builder.addStatement("return result");
+  }
+
+  /**
+   * Like {@link #addScopedProvisionStatements} but, if the given condition holds, the absent
+   * instance is taken from the INSTANCE field of the given holder class, without lock. Then a
+   * failed creation is thrown as is, not wrapped in an {@link ExceptionInInitializerError}, and
+   * later calls create the instance as if the condition did not hold.
+   */
+  public static void addHeldScopedProvisionStatements(
+      MethodSpec.Builder builder,
+      TypeName typeName,
+      String fieldName,
+      @Nullable String lock,
+      String unscopedProvisionMethodName,
+      String condition,
+      String holder) {
+    addScopedInstanceStatements(
+        builder, typeName.box(), fieldName, lock, unscopedProvisionMethodName, condition, holder);
+    builder.addStatement("return result");
+  }
+
+  /**
+   * Like {@link #addScopedProvisionStatements} but the creation is guarded by the given {@link
+   * ScopedInitializer} instead of a lock, see {@link ThreadSafetyPolicy#VIRTUAL_THREADS}.
+   */
+  public static void addInitializerScopedProvisionStatements(
+      MethodSpec.Builder builder,
+      TypeName typeName,
+      String fieldName,
+      String initializer,
+      String bindingName,
+      String unscopedProvisionMethodName) {
+    builder
+        .addStatement("$T result = $N", typeName.box(), fieldName)
+        .beginControlFlow("if (result == null)")
+        .addStatement("$L.lock($S)", initializer, bindingName)
+        .beginControlFlow("try")
+        .addStatement("result = $N", fieldName)
+        .beginControlFlow("if (result == null)")
+        .addStatement("result = $N = $L()", fieldName, unscopedProvisionMethodName)
+        .endControlFlow()
+        .nextControlFlow("finally")
+        .addStatement("$L.unlock($S)", initializer, bindingName)
+        .endControlFlow()
+        .endControlFlow()
+        .addStatement("return result");
+  }
+
+  /** Returns the name of the binding to report, e.g., in the trail of a {@link ScopedInitializer}. */
+  public static String getDisplayName(BindingKey key) {
+    return (key.getQualifier() == null ? "" : key.getQualifier() + " ") + key.getTypeName();
+  }
+
+  /**
+   * Like {@link #addScopedProvisionStatements} but the instance is kept in the given slot of the
+   * given Object array.
+   */
+  public static void addSlotScopedProvisionStatements(
+      MethodSpec.Builder builder,
+      TypeName typeName,
+      String slotsFieldName,
+      int slot,
+      @Nullable String lock,
+      String unscopedProvisionMethodName) {
+    addHeldSlotScopedProvisionStatements(
+        builder, typeName, slotsFieldName, slot, lock, unscopedProvisionMethodName, null, null);
+  }
+
+  /**
+   * Like {@link #addSlotScopedProvisionStatements} but, if the given condition is not null and
+   * holds, the absent instance is taken from the given holder, see {@link
+   * #addHeldScopedProvisionStatements}.
+   */
+  public static void addHeldSlotScopedProvisionStatements(
+      MethodSpec.Builder builder,
+      TypeName typeName,
+      String slotsFieldName,
+      int slot,
+      @Nullable String lock,
+      String unscopedProvisionMethodName,
+      @Nullable String condition,
+      @Nullable String holder) {
+    addScopedInstanceStatements(
+        builder,
+        ClassName.get(Object.class),
+        slotsFieldName + "[" + slot + "]",
+        lock,
+        unscopedProvisionMethodName,
+        condition,
+        holder);
+    builder.addStatement("return ($T) result", typeName.box());
+  }
+
+  /**
+   * Adds the statements assigning the stored instance, created if absent, to "result". If the
+   * condition is not null and holds, the absent instance is taken from the holder.
+   */
+  private static void addScopedInstanceStatements(
+      MethodSpec.Builder builder,
+      TypeName resultTypeName,
+      String storage,
+      @Nullable String lock,
+      String unscopedProvisionMethodName,
+      @Nullable String condition,
+      @Nullable String holder) {
+    builder
+        .addStatement("$T result = $L", resultTypeName, storage)
+        .beginControlFlow("if (result == null)");
+    if (condition != null) {
+      builder
+          .beginControlFlow("if ($L)", condition)
+          .beginControlFlow("try")
+          .addStatement("result = $L = $L.INSTANCE", storage, holder)
+          .nextControlFlow("catch ($T e)", ExceptionInInitializerError.class)
+          .beginControlFlow("if (e.getCause() instanceof $T)", RuntimeException.class)
+          .addStatement("throw ($T) e.getCause()", RuntimeException.class)
+          .endControlFlow()
+          .addStatement("throw e")
+          .nextControlFlow("catch ($T e)", NoClassDefFoundError.class)
+          .addCode("// The holder failed before, created below from now on.\n")
+          .endControlFlow()
+          .endControlFlow()
+          .beginControlFlow("if (result == null)");
+    }
+    if (lock != null) {
+      builder
+          .beginControlFlow("synchronized($L)", lock)
+          .addStatement("result = $L", storage)
+          .beginControlFlow("if (result == null)");
+    }
+    builder.addStatement("result = $L = $L()", storage, unscopedProvisionMethodName);
+    if (lock != null) {
+      builder.endControlFlow().endControlFlow(); // if, synchronized
+    }
+    if (condition != null) {
+      builder.endControlFlow();
+    }
+    builder.endControlFlow();
+  }
+
   /**
    * Return if the given {@link TypeElement} is annotated with {@link Scope}.
    */
@@ -368,7 +661,43 @@ class Utils {
 
   public boolean isProvisionMethodInModule(Element element) {
     return isProvidesMethod(element) || isBindsMethod(element) || isMultibindsMethod(element)
-        || isBindsOptionalOfMethod(element);
+        || isBindsOptionalOfMethod(element) || isProducesMethod(element);
+  }
+
+  /** Returns whether the given element is a {@link Produces} method. */
+  public boolean isProducesMethod(@Nullable Element element) {
+    return element != null
+        && element.getKind().equals(ElementKind.METHOD)
+        && hasAnnotationMirror(element, Produces.class);
+  }
+
+  /** Returns whether the given binding is from a {@link Produces} method. */
+  public boolean isProducer(@Nullable DependencyInfo dependencyInfo) {
+    return dependencyInfo != null
+        && dependencyInfo.getDependencySourceType().equals(DependencySourceType.MODULE)
+        && isProducesMethod(dependencyInfo.getProvisionMethodElement());
+  }
+
+  /** Returns whether the given {@link Produces} method returns a future itself. */
+  public boolean isAsyncProducesMethod(ExecutableElement method) {
+    TypeName returnType = TypeName.get(method.getReturnType());
+    return returnType instanceof ParameterizedTypeName
+        && ((ParameterizedTypeName) returnType).rawType.equals(
+            ClassName.get(CompletableFuture.class));
+  }
+
+  /** Returns the key of the future produced for the given key. */
+  public static BindingKey getProducedKey(BindingKey key) {
+    return BindingKey.get(
+        ParameterizedTypeName.get(
+            ClassName.get(CompletableFuture.class), key.getTypeName().box()),
+        key.getQualifier());
+  }
+
+  /** Returns the key of the executor {@link Produces} methods run on. */
+  public static BindingKey getProductionExecutorKey() {
+    return BindingKey.get(
+        ClassName.get(Executor.class), AnnotationSpec.builder(Production.class).build());
   }
 
   public boolean isBindsOptionalOfMethod(Element element) {
@@ -513,6 +842,10 @@ class Utils {
       BindingKey rawKey = BindingKey.get(rawTypeName);
       if (dependencies.containsKey(rawKey)) {
         DependencyInfo dependencyInfo = Iterables.getOnlyElement(dependencies.get(rawKey));
+        Pair<DependencyInfo, DependencyInfo> cached = specializedDependencyInfoCache.get(key);
+        if (cached != null && cached.first == dependencyInfo) {
+          return cached.second;
+        }
         TypeName formalTypeName = dependencyInfo.getDependant().getTypeName();
         Preconditions.checkState(
             formalTypeName instanceof ParameterizedTypeName,
@@ -526,13 +859,16 @@ class Utils {
                 parameterizedTypeName, (ParameterizedTypeName) formalTypeName);
         Set<BindingKey> specializedDependencies =
             specializeIfNeeded(dependencyInfo.getDependencies(), mapTypeVariableToSpecialized);
-        return new DependencyInfo(
-            dependencyInfo.getDependencySourceType(),
-            key,
-            specializedDependencies,
-            dependencyInfo.getSourceClassElement(),
-            dependencyInfo.getProvisionMethodElement(),
-            dependencyInfo.getType());
+        DependencyInfo result =
+            new DependencyInfo(
+                dependencyInfo.getDependencySourceType(),
+                key,
+                specializedDependencies,
+                dependencyInfo.getSourceClassElement(),
+                dependencyInfo.getProvisionMethodElement(),
+                dependencyInfo.getType());
+        specializedDependencyInfoCache.put(key, Pair.of(dependencyInfo, result));
+        return result;
       }
     }
     return null;
@@ -1132,6 +1468,49 @@ class Utils {
     return result;
   }
 
+  /**
+   * Returns whether the module has no state, i.e., it is a concrete top level or static nested
+   * class with a non-private nullary ctor and without instance fields, including inherited ones.
+   * Its instances are not observable therefore one instance can be shared by everyone.
+   */
+  public boolean isStatelessModule(TypeElement module) {
+    if (!module.getKind().equals(ElementKind.CLASS)
+        || isAbstract(module)
+        || !(module.getEnclosingElement().getKind().equals(ElementKind.PACKAGE)
+            || module.getModifiers().contains(Modifier.STATIC))) {
+      return false;
+    }
+    boolean hasCtor = false;
+    boolean hasNullaryCtor = false;
+    for (Element element : module.getEnclosedElements()) {
+      if (isCtor(element)) {
+        hasCtor = true;
+        if (((ExecutableElement) element).getParameters().isEmpty()
+            && !element.getModifiers().contains(Modifier.PRIVATE)) {
+          hasNullaryCtor = true;
+        }
+      }
+    }
+    if (hasCtor && !hasNullaryCtor) {
+      return false;
+    }
+    TypeElement cls = module;
+    while (cls != null && !cls.getQualifiedName().contentEquals(Object.class.getName())) {
+      for (Element element : cls.getEnclosedElements()) {
+        if (element.getKind().equals(ElementKind.FIELD)
+            && !element.getModifiers().contains(Modifier.STATIC)) {
+          return false;
+        }
+      }
+      TypeMirror superclass = cls.getSuperclass();
+      cls =
+          superclass.getKind().equals(TypeKind.DECLARED)
+              ? (TypeElement) ((DeclaredType) superclass).asElement()
+              : null;
+    }
+    return true;
+  }
+
   /**
    * Returns if the moduleType has provision methods.
    */
@@ -1665,7 +2044,9 @@ class Utils {
   }
 
   public ProvisionType getProvisionType(ExecutableElement method) {
-    if (isAnnotationPresent(method, IntoMap.class)) {
+    if (isProducesMethod(method)) {
+      return UNIQUE;
+    } else if (isAnnotationPresent(method, IntoMap.class)) {
       return MAP;
     } else if (isAnnotationPresent(method, IntoSet.class)) {
       return SET;
@@ -2088,33 +2469,60 @@ class Utils {
    *
    * <p>getAllMembers seems have a bug that mark annotated fields methods(or the other way). TODO:
    * use {@link java.util.function.BiConsumer}.
+   *
+   * <p>Ancestors shared by several paths, i.e., diamonds, are visited only once.
    */
   public void traverseAndDo(
       Types types,
       DeclaredType type,
       TypeElement element,
       Function<Pair<TypeMirror, Element>, Void> function) {
+    traverseAndDo(types, type, element, function, new HashSet<>());
+  }
+
+  private void traverseAndDo(
+      Types types,
+      DeclaredType type,
+      TypeElement element,
+      Function<Pair<TypeMirror, Element>, Void> function,
+      Set<TypeElement> visited) {
     // logger.n("container " + element);
+    if (!visited.add(element)) {
+      return;
+    }
 
     TypeMirror typeMirror = element.getSuperclass();
     if (!typeMirror.getKind().equals(TypeKind.NONE)) {
       DeclaredType superClassType = (DeclaredType) typeMirror;
       traverseAndDo(
-          types, superClassType, (TypeElement) superClassType.asElement(), function);
+          types, superClassType, (TypeElement) superClassType.asElement(), function, visited);
     }
 
     for (TypeMirror i : element.getInterfaces()) {
       DeclaredType iface = (DeclaredType) i;
       traverseAndDo(
-          types, iface, (TypeElement) iface.asElement(), function);
+          types, iface, (TypeElement) iface.asElement(), function, visited);
     }
 
-    for (Element e : element.getEnclosedElements()) {
-      TypeMirror elementType = types.asMemberOf(type, e);
-      function.apply(Pair.of(elementType, e));
+    for (Pair<TypeMirror, Element> member : getMemberTypes(types, type, element)) {
+      function.apply(member);
     }
   }
 
+  private List<Pair<TypeMirror, Element>> getMemberTypes(
+      Types types, DeclaredType type, TypeElement element) {
+    SameTypeKey key = new SameTypeKey(types, type);
+    List<Pair<TypeMirror, Element>> result = memberTypesCache.get(key);
+    if (result == null) {
+      result = new ArrayList<>();
+      for (Element e : element.getEnclosedElements()) {
+        result.add(Pair.of(types.asMemberOf(type, e), e));
+      }
+      memberTypesCache.put(key, result);
+    }
+    return result;
+  }
+
   @Nullable
   public TypeElement getClosestInjectedAncestor(TypeElement cls) {
     TypeElement clsClosestInjectAncestor = getSuper(cls);
@@ -2136,22 +2544,26 @@ class Utils {
 
   // This does box for primitive types.
   public TypeMirror getTypeFromTypeName(TypeName typeName) {
+    TypeMirror result = typeNameToTypeMirrorCache.get(typeName);
+    if (result != null) {
+      return result;
+    }
     Preconditions.checkArgument(!isGenericNotSpecialized(typeName), "expect specialized: " + typeName);
     // logger.n("typeName: %s", typeName);
-    if (typeName.isPrimitive()) {
-      typeName = typeName.box();
-    }
-    if (typeName instanceof  ClassName) {
-      return getTypeFromClassName((ClassName) typeName);
-    }
-    if (typeName instanceof ParameterizedTypeName) {
-      return getTypeFromParameterizedTypeName((ParameterizedTypeName) typeName);
-    }
-    if (typeName instanceof WildcardTypeName) {
-      return getTypeFromWildcardTypeName((WildcardTypeName) typeName);
+    TypeName boxed = typeName.isPrimitive() ? typeName.box() : typeName;
+    if (boxed instanceof  ClassName) {
+      result = getTypeFromClassName((ClassName) boxed);
+    } else if (boxed instanceof ParameterizedTypeName) {
+      result = getTypeFromParameterizedTypeName((ParameterizedTypeName) boxed);
+    } else if (boxed instanceof WildcardTypeName) {
+      result = getTypeFromWildcardTypeName((WildcardTypeName) boxed);
+    }
+    if (result == null) {
+      // logger.e("get type from wrong TypeName: %s", typeName);
+      return null;
     }
-    // logger.e("get type from wrong TypeName: %s", typeName);
-    return null;
+    typeNameToTypeMirrorCache.put(typeName, result);
+    return result;
   }
 
   /**
@@ -2925,5 +3337,112 @@ class Utils {
             || isSelfAndEnclosingPublic(getTypeElement(getClassName(typeName))));
   }
 
+  /** Type variables are not accessible as they are not specialized. */
+  public boolean isPublicallyAccessible(TypeMirror type) {
+    switch (type.getKind()) {
+      case DECLARED:
+        if (!isSelfAndEnclosingPublic((TypeElement) ((DeclaredType) type).asElement())) {
+          return false;
+        }
+        for (TypeMirror i : ((DeclaredType) type).getTypeArguments()) {
+          if (!isPublicallyAccessible(i)) {
+            return false;
+          }
+        }
+        return true;
+      case ARRAY:
+        return isPublicallyAccessible(((ArrayType) type).getComponentType());
+      case WILDCARD:
+        WildcardType wildcardType = (WildcardType) type;
+        TypeMirror extendsBound = wildcardType.getExtendsBound();
+        TypeMirror superBound = wildcardType.getSuperBound();
+        return (extendsBound == null || isPublicallyAccessible(extendsBound))
+            && (superBound == null || isPublicallyAccessible(superBound));
+      case TYPEVAR:
+        return false;
+      default:
+        return type.getKind().isPrimitive();
+    }
+  }
+
+  /**
+   * Returns whether the ctor or method can be called from any package, i.e., it, its enclosing
+   * types and its parameter types are all public.
+   */
+  public boolean isPublicallyCallable(@Nullable ExecutableElement executableElement) {
+    if (executableElement == null
+        || !executableElement.getModifiers().contains(Modifier.PUBLIC)
+        || !isSelfAndEnclosingPublic((TypeElement) executableElement.getEnclosingElement())) {
+      return false;
+    }
+    for (VariableElement parameter : executableElement.getParameters()) {
+      if (!isPublicallyAccessible(parameter.asType())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns whether injectors call the module method without the proxy, i.e., it is public and
+   * returns a public type. {@link ProxyGenerator} only generates wrappers for the others.
+   */
+  public boolean isModuleMethodCallableDirectly(ExecutableElement method) {
+    return isPublicallyCallable(method) && isPublicallyAccessible(method.getReturnType());
+  }
+
+  /**
+   * Returns whether injectors create the class without the proxy, i.e., it is not generic and its
+   * injected ctor is public. {@link ProxyGenerator} only generates wrappers for the others.
+   */
+  public boolean isCtorCallableDirectly(TypeElement cls) {
+    return cls.getTypeParameters().isEmpty() && isPublicallyCallable(findInjectedCtor(cls));
+  }
 
+  /**
+   * Returns whether the injected fields and methods declared by the class, not its ancestors, can be
+   * injected from any package.
+   */
+  public boolean isPublicallyInjectable(TypeElement cls, ProcessingEnvironment env) {
+    if (!isSelfAndEnclosingPublic(cls)) {
+      return false;
+    }
+    for (VariableElement field : getInjectedFields(cls, env)) {
+      if (!field.getModifiers().contains(Modifier.PUBLIC)
+          || field.getModifiers().contains(Modifier.FINAL)
+          || !isPublicallyAccessible(field.asType())) {
+        return false;
+      }
+    }
+    for (ExecutableElement method : getInjectedMethods(cls, env)) {
+      if (!isPublicallyCallable(method)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * A {@link DeclaredType} as a map key, equal to the types {@link Types#isSameType} with it. Unlike
+   * its string, it tells apart type variables of the same name from different declarations.
+   */
+  private static final class SameTypeKey {
+    private final Types types;
+    private final DeclaredType type;
+
+    SameTypeKey(Types types, DeclaredType type) {
+      this.types = types;
+      this.type = type;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof SameTypeKey && types.isSameType(type, ((SameTypeKey) o).type);
+    }
+
+    @Override
+    public int hashCode() {
+      return type.asElement().hashCode();
+    }
+  }
 }
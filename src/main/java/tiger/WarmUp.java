@@ -0,0 +1,52 @@
+package tiger;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Creates the scoped bindings of an injector ahead of use, see {@link
+ * GeneralInjectorGenerator4#OPTION_WARM_UP}. Bindings are identified by their index, and each is
+ * created once all the ones it depends on are, so that independent subgraphs are created in
+ * parallel without threads blocking on each other's locks.
+ */
+public final class WarmUp {
+  /** Creates a binding, i.e., calls its provision method. */
+  public interface Step {
+    void run(int index);
+  }
+
+  private WarmUp() {}
+
+  /**
+   * Runs the steps on the given executor and returns a future completed once all of them are done,
+   * or exceptionally with the first failure.
+   *
+   * @param dependencies for each binding, the indices of those it depends on, all smaller than its
+   *     own
+   */
+  public static CompletableFuture<Void> start(
+      Executor executor, int[][] dependencies, final Step step) {
+    CompletableFuture<?>[] futures = new CompletableFuture<?>[dependencies.length];
+    for (int i = 0; i < dependencies.length; i++) {
+      final int index = i;
+      Runnable runnable =
+          new Runnable() {
+            @Override
+            public void run() {
+              step.run(index);
+            }
+          };
+      int[] required = dependencies[i];
+      if (required.length == 0) {
+        futures[i] = CompletableFuture.runAsync(runnable, executor);
+      } else {
+        CompletableFuture<?>[] requiredFutures = new CompletableFuture<?>[required.length];
+        for (int j = 0; j < required.length; j++) {
+          requiredFutures[j] = futures[required[j]];
+        }
+        futures[i] = CompletableFuture.allOf(requiredFutures).thenRunAsync(runnable, executor);
+      }
+    }
+    return CompletableFuture.allOf(futures);
+  }
+}
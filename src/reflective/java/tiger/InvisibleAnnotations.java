@@ -0,0 +1,309 @@
+package tiger;
+
+import com.google.common.base.Preconditions;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+
+/**
+ * Reads the annotations kept in class files but not at runtime, i.e., of {@code CLASS} retention
+ * like {@link dagger.multibindings.Multibinds}, for {@link ReflectiveInjector}. Annotations are
+ * keyed by the binary names of their types, their members by name. Enum and class members are
+ * resolved when read by {@link #getMember}, nested annotations are left as maps and arrays as
+ * lists. Class files are not always available, e.g., not in dexed apps, then null is returned.
+ */
+final class InvisibleAnnotations {
+  private static final String RUNTIME_INVISIBLE_ANNOTATIONS = "RuntimeInvisibleAnnotations";
+
+  /** Shared by all injectors, from class to what is read from its class file. */
+  private static final Map<Class<?>, ClassAnnotations> classes = new ConcurrentHashMap<>();
+
+  private InvisibleAnnotations() {}
+
+  /** Returns the invisible annotations of the given class, null if its class file is not found. */
+  @Nullable
+  static Map<String, Map<String, Object>> of(Class<?> cls) {
+    ClassAnnotations result = read(cls);
+    return result == null ? null : result.annotations;
+  }
+
+  /** Returns the invisible annotations of the given method, null if its class file is not found. */
+  @Nullable
+  static Map<String, Map<String, Object>> of(Method method) {
+    ClassAnnotations result = read(method.getDeclaringClass());
+    if (result == null) {
+      return null;
+    }
+    Map<String, Map<String, Object>> annotations =
+        result.methodAnnotations.get(method.getName() + getDescriptor(method));
+    return annotations == null
+        ? Collections.<String, Map<String, Object>>emptyMap()
+        : annotations;
+  }
+
+  /** Returns the value of the given member of an annotation, null if not set explicitly. */
+  @Nullable
+  static Object getMember(Map<String, Object> annotation, String member) {
+    Object result = annotation.get(member);
+    return result instanceof Supplier ? ((Supplier<?>) result).get() : result;
+  }
+
+  @Nullable
+  private static ClassAnnotations read(Class<?> cls) {
+    ClassAnnotations result = classes.get(cls);
+    if (result != null) {
+      return result.annotations == null ? null : result;
+    }
+    ClassLoader loader =
+        cls.getClassLoader() != null ? cls.getClassLoader() : ClassLoader.getSystemClassLoader();
+    try (InputStream in = loader.getResourceAsStream(cls.getName().replace('.', '/') + ".class")) {
+      result = in == null ? new ClassAnnotations() : new Reader(loader).read(in);
+    } catch (IOException e) {
+      throw new IllegalStateException("cannot read class file of " + cls, e);
+    }
+    classes.put(cls, result);
+    return result.annotations == null ? null : result;
+  }
+
+  private static String getDescriptor(Method method) {
+    StringBuilder result = new StringBuilder("(");
+    for (Class<?> type : method.getParameterTypes()) {
+      result.append(getDescriptor(type));
+    }
+    return result.append(')').append(getDescriptor(method.getReturnType())).toString();
+  }
+
+  private static String getDescriptor(Class<?> type) {
+    if (type.isArray()) {
+      return type.getName().replace('.', '/');
+    }
+    if (type.isPrimitive()) {
+      return String.valueOf(getPrimitiveDescriptor(type));
+    }
+    return "L" + type.getName().replace('.', '/') + ";";
+  }
+
+  private static char getPrimitiveDescriptor(Class<?> type) {
+    if (type == boolean.class) {
+      return 'Z';
+    } else if (type == long.class) {
+      return 'J';
+    } else if (type == void.class) {
+      return 'V';
+    }
+    return Character.toUpperCase(type.getName().charAt(0));
+  }
+
+  /** The annotations of a class and its methods, the former null if the class file is absent. */
+  private static final class ClassAnnotations {
+    @Nullable Map<String, Map<String, Object>> annotations;
+    /** Keyed by name and descriptor. */
+    final Map<String, Map<String, Map<String, Object>>> methodAnnotations = new HashMap<>();
+  }
+
+  /** Reads the annotations of a class file, skipping everything else. */
+  private static final class Reader {
+    private final ClassLoader loader;
+    private Object[] constants;
+    private DataInputStream in;
+
+    Reader(ClassLoader loader) {
+      this.loader = loader;
+    }
+
+    ClassAnnotations read(InputStream inputStream) throws IOException {
+      in = new DataInputStream(inputStream);
+      Preconditions.checkState(in.readInt() == 0xCAFEBABE, "not a class file");
+      in.readUnsignedShort(); // minor_version
+      in.readUnsignedShort(); // major_version
+      readConstants();
+      in.readUnsignedShort(); // access_flags
+      in.readUnsignedShort(); // this_class
+      in.readUnsignedShort(); // super_class
+      skip(2 * in.readUnsignedShort()); // interfaces
+      ClassAnnotations result = new ClassAnnotations();
+      for (int i = in.readUnsignedShort(); i > 0; i--) { // fields
+        skip(6); // access_flags, name_index and descriptor_index
+        readAttributes();
+      }
+      for (int i = in.readUnsignedShort(); i > 0; i--) { // methods
+        in.readUnsignedShort(); // access_flags
+        String nameAndDescriptor = getUtf8() + getUtf8();
+        Map<String, Map<String, Object>> annotations = readAttributes();
+        if (!annotations.isEmpty()) {
+          result.methodAnnotations.put(nameAndDescriptor, annotations);
+        }
+      }
+      result.annotations = readAttributes();
+      return result;
+    }
+
+    private void readConstants() throws IOException {
+      constants = new Object[in.readUnsignedShort()];
+      for (int i = 1; i < constants.length; i++) {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+          case 1: // Utf8
+            constants[i] = in.readUTF();
+            break;
+          case 3: // Integer
+            constants[i] = in.readInt();
+            break;
+          case 4: // Float
+            constants[i] = in.readFloat();
+            break;
+          case 5: // Long
+            constants[i++] = in.readLong();
+            break;
+          case 6: // Double
+            constants[i++] = in.readDouble();
+            break;
+          case 7: // Class
+          case 8: // String
+          case 16: // MethodType
+          case 19: // Module
+          case 20: // Package
+            skip(2);
+            break;
+          case 15: // MethodHandle
+            skip(3);
+            break;
+          case 9: // Fieldref
+          case 10: // Methodref
+          case 11: // InterfaceMethodref
+          case 12: // NameAndType
+          case 17: // Dynamic
+          case 18: // InvokeDynamic
+            skip(4);
+            break;
+          default:
+            throw new IllegalStateException("unknown constant pool tag " + tag);
+        }
+      }
+    }
+
+    /** Reads the attributes at hand, returns the invisible annotations among them. */
+    private Map<String, Map<String, Object>> readAttributes() throws IOException {
+      Map<String, Map<String, Object>> result = new HashMap<>();
+      for (int i = in.readUnsignedShort(); i > 0; i--) {
+        String name = getUtf8();
+        int length = in.readInt();
+        if (!name.equals(RUNTIME_INVISIBLE_ANNOTATIONS)) {
+          skip(length);
+          continue;
+        }
+        for (int j = in.readUnsignedShort(); j > 0; j--) {
+          String type = getUtf8();
+          result.put(getClassName(type), readAnnotationMembers());
+        }
+      }
+      return result;
+    }
+
+    private Map<String, Object> readAnnotationMembers() throws IOException {
+      Map<String, Object> result = new HashMap<>();
+      for (int i = in.readUnsignedShort(); i > 0; i--) {
+        String name = getUtf8();
+        result.put(name, readElementValue());
+      }
+      return result;
+    }
+
+    private Object readElementValue() throws IOException {
+      char tag = (char) in.readUnsignedByte();
+      switch (tag) {
+        case 'B':
+          return (byte) (int) getConstant();
+        case 'C':
+          return (char) (int) getConstant();
+        case 'S':
+          return (short) (int) getConstant();
+        case 'Z':
+          return (int) getConstant() != 0;
+        case 'I':
+        case 'J':
+        case 'F':
+        case 'D':
+        case 's':
+          return getConstant();
+        case 'e':
+          String enumType = getUtf8();
+          String constant = getUtf8();
+          return (Supplier<Object>) () -> getEnumConstant(enumType, constant);
+        case 'c':
+          String descriptor = getUtf8();
+          return (Supplier<Object>) () -> getClass(descriptor);
+        case '@':
+          in.readUnsignedShort(); // type_index
+          return readAnnotationMembers();
+        case '[':
+          List<Object> values = new ArrayList<>();
+          for (int i = in.readUnsignedShort(); i > 0; i--) {
+            values.add(readElementValue());
+          }
+          return values;
+        default:
+          throw new IllegalStateException("unknown element value tag " + tag);
+      }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Object getEnumConstant(String enumType, String constant) {
+      return Enum.valueOf((Class) getClass(enumType), constant);
+    }
+
+    private Class<?> getClass(String descriptor) {
+      switch (descriptor.charAt(0)) {
+        case 'L':
+          return loadClass(getClassName(descriptor));
+        case '[':
+          return Array.newInstance(getClass(descriptor.substring(1)), 0).getClass();
+        default:
+          for (Class<?> type :
+              new Class<?>[] {
+                boolean.class, byte.class, char.class, short.class, int.class, long.class,
+                float.class, double.class, void.class
+              }) {
+            if (descriptor.charAt(0) == getPrimitiveDescriptor(type)) {
+              return type;
+            }
+          }
+          throw new IllegalStateException("unknown descriptor " + descriptor);
+      }
+    }
+
+    private Class<?> loadClass(String name) {
+      try {
+        return Class.forName(name, false, loader);
+      } catch (ClassNotFoundException e) {
+        throw new IllegalStateException("cannot load " + name, e);
+      }
+    }
+
+    private static String getClassName(String descriptor) {
+      return descriptor.substring(1, descriptor.length() - 1).replace('/', '.');
+    }
+
+    private Object getConstant() throws IOException {
+      return constants[in.readUnsignedShort()];
+    }
+
+    private String getUtf8() throws IOException {
+      return (String) getConstant();
+    }
+
+    private void skip(int n) throws IOException {
+      in.readFully(new byte[n]);
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package tiger;
+
+import dagger.Module;
+import dagger.Provides;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Qualifier;
+import javax.inject.Scope;
+
+/**
+ * The {@link Class} based counterparts of the helpers in {@code Utils}, for {@link
+ * ReflectiveInjector} which runs without a processing environment.
+ */
+final class ReflectionUtils {
+  private ReflectionUtils() {}
+
+  /** Returns whether the give class is a Dagger {@link Module}. */
+  static boolean isModule(Class<?> clazz) {
+    return clazz.getAnnotation(Module.class) != null;
+  }
+
+  /** Returns whether the given {@link AccessibleObject} is a {@link Provides} one. */
+  static boolean isProvides(AccessibleObject accessibleObject) {
+    return accessibleObject.getAnnotation(Provides.class) != null;
+  }
+
+  /** Returns whether the given annotation is a {@link Qualifier}. */
+  static boolean isQualifierAnnotation(Annotation annotation) {
+    return annotation.annotationType().getAnnotation(Qualifier.class) != null;
+  }
+
+  /** Returns the injected ctor, null if none. */
+  @Nullable
+  static Constructor<?> findInjectedCtor(Class<?> clazz) {
+    for (Constructor<?> ctor : clazz.getDeclaredConstructors()) {
+      if (isInjected(ctor)) {
+        return ctor;
+      }
+    }
+    return null;
+  }
+
+  /** Returns {@link Module}s referenced by the given {@link Module}s recursively. */
+  static Set<Class<?>> findAllModules(Set<Class<?>> modules) {
+    Set<Class<?>> result = new HashSet<>();
+    for (Class<?> module : modules) {
+      result.addAll(getIncludedModules(module));
+    }
+    result.addAll(modules);
+    return result;
+  }
+
+  static List<Field> getInjectedFields(Class<?> clazz) {
+    return getInjected(Arrays.asList(clazz.getDeclaredFields()));
+  }
+
+  static List<Method> getInjectedMethods(Class<?> clazz) {
+    return getInjected(Arrays.asList(clazz.getDeclaredMethods()));
+  }
+
+  /** Returns the scope annotations of the given class or method. */
+  static List<Class<? extends Annotation>> getScopeAnnotations(AnnotatedElement annotatedElement) {
+    List<Class<? extends Annotation>> result = new ArrayList<>();
+    for (Annotation annotation : annotatedElement.getAnnotations()) {
+      if (annotation.annotationType().getAnnotation(Scope.class) != null) {
+        result.add(annotation.annotationType());
+      }
+    }
+    return result;
+  }
+
+  /** Returns included {@link Module}s of the specified {@link Module} recursively. */
+  private static List<Class<?>> getIncludedModules(Class<?> module) {
+    List<Class<?>> result = new ArrayList<>();
+    for (Class<?> clazz : module.getAnnotation(Module.class).includes()) {
+      result.add(clazz);
+      result.addAll(getIncludedModules(clazz));
+    }
+    return result;
+  }
+
+  private static boolean isInjected(AccessibleObject accessibleObject) {
+    for (Annotation annotation : accessibleObject.getAnnotations()) {
+      if (annotation.annotationType().getName().equals(Inject.class.getName())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static <T extends AccessibleObject> List<T> getInjected(Iterable<T> all) {
+    List<T> result = new ArrayList<>();
+    for (T t : all) {
+      if (isInjected(t)) {
+        result.add(t);
+      }
+    }
+    return result;
+  }
+}
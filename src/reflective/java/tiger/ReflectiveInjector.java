@@ -0,0 +1,1308 @@
+package tiger;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Primitives;
+import dagger.Binds;
+import dagger.BindsInstance;
+import dagger.BindsOptionalOf;
+import dagger.Component;
+import dagger.Lazy;
+import dagger.MapKey;
+import dagger.Module;
+import dagger.Subcomponent;
+import dagger.internal.DoubleCheck;
+import dagger.multibindings.ElementsIntoSet;
+import dagger.multibindings.IntoMap;
+import dagger.multibindings.IntoSet;
+import dagger.multibindings.Multibinds;
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import javax.inject.Provider;
+
+/**
+ * Resolves bindings at runtime by reflection instead of generated injectors. Meant for debug builds
+ * so that the processors can be skipped in edit-compile-run loops. Bindings come from {@link
+ * Module}s and classes with {@link javax.inject.Inject}ed ctors, found with the {@link Class} based
+ * helpers in {@link ReflectionUtils}. It ships in a runtime library of its own, apart from the
+ * processors.
+ *
+ * <p>Scoping follows {@code ScopeCalculator}: a scoped binding lives in the nearest injector of its
+ * scope and is created with the bindings visible there, an unscoped binding is created with the
+ * bindings visible to the requesting injector. Each ctor, method and field is turned into a {@link
+ * MethodHandle} on first use and cached for all injectors, each binding is linked to its
+ * dependencies once per injector.
+ *
+ * <p>(Sub)component and builder interfaces are implemented by {@link Proxy}s, see {@link
+ * #createComponent} and {@link #createBuilder}. Abstract classes need the generated injectors.
+ * Qualifiers and scopes must be retained at runtime, map keys too unless unwrapped. Builder
+ * annotations, {@link dagger.BindsOptionalOf} and {@link Multibinds} are not, they are read from
+ * the class files by {@link InvisibleAnnotations}, and where those are missing, e.g., in dexed
+ * apps, what cannot be told apart fails instead of being guessed. Module instances and component
+ * dependencies are matched by the declared types they are an instance of, so subclasses, e.g., test
+ * overrides, and implementations of dependency interfaces can be given.
+ *
+ * <p>Generic classes with injected ctors are bound for each parameterization requested, e.g.,
+ * {@code Repo<User>}, their type variables resolved in the dependencies of the ctor and members.
+ */
+public final class ReflectiveInjector {
+
+  /** Shared by all injectors, from ctor, method or field to its spread {@link MethodHandle}. */
+  private static final Map<Member, MethodHandle> handles = new ConcurrentHashMap<>();
+  /** Shared by all injectors, from class to its injected fields and methods, ancestors first. */
+  private static final Map<Class<?>, List<Member>> injectedMembers = new ConcurrentHashMap<>();
+  /** Shared by all injectors, so that a scoped class gets one instance in its scope. */
+  private static final Map<Key, Binding> ctorBindings = new ConcurrentHashMap<>();
+  /** The bindings being provisioned by this thread, to report dependency cycles. */
+  private static final ThreadLocal<ArrayDeque<Binding>> provisioning =
+      ThreadLocal.withInitial(ArrayDeque::new);
+
+  @Nullable private final ReflectiveInjector parent;
+  private final Set<Class<? extends Annotation>> scopes;
+  private final Map<Key, Binding> bindings = new HashMap<>();
+  private final Map<Key, List<Binding>> setContributions = new HashMap<>();
+  private final Map<Key, Map<Object, Binding>> mapContributions = new HashMap<>();
+  /** Keys of {@link Multibinds} declarations. */
+  private final Set<Key> declarations = new HashSet<>();
+  private final Map<Key, Provider<?>> providers = new HashMap<>();
+  private final Map<Binding, Provider<?>> scopedProviders = new HashMap<>();
+  private final Map<Key, Provider<?>[]> membersInjectorDependencies = new HashMap<>();
+
+  private ReflectiveInjector(
+      @Nullable ReflectiveInjector parent, Collection<Class<? extends Annotation>> scopes) {
+    this.parent = parent;
+    this.scopes = new HashSet<>(scopes);
+  }
+
+  /** Returns a root injector of the given scopes with the given modules. */
+  @SafeVarargs
+  public static ReflectiveInjector create(
+      Collection<Object> modules, Class<? extends Annotation>... scopes) {
+    List<Class<? extends Annotation>> scopeList = new ArrayList<>();
+    for (Class<? extends Annotation> scope : scopes) {
+      scopeList.add(scope);
+    }
+    ReflectiveInjector result = new ReflectiveInjector(null, scopeList);
+    result.addModules(modules);
+    return result;
+  }
+
+  /** Returns a child injector of the given scopes with the given modules. */
+  @SafeVarargs
+  public final ReflectiveInjector createChild(
+      Collection<Object> modules, Class<? extends Annotation>... scopes) {
+    List<Class<? extends Annotation>> scopeList = new ArrayList<>();
+    for (Class<? extends Annotation> scope : scopes) {
+      scopeList.add(scope);
+    }
+    ReflectiveInjector result = new ReflectiveInjector(this, scopeList);
+    result.addModules(modules);
+    return result;
+  }
+
+  /** Adds the given module instances, each under the nearest {@link Module} class it extends. */
+  private void addModules(Collection<Object> modules) {
+    Map<Class<?>, Object> instances = new HashMap<>();
+    for (Object module : modules) {
+      Class<?> moduleClass = module.getClass();
+      while (moduleClass != null && !ReflectionUtils.isModule(moduleClass)) {
+        moduleClass = moduleClass.getSuperclass();
+      }
+      Preconditions.checkArgument(moduleClass != null, "not a module: %s", module.getClass());
+      Preconditions.checkArgument(
+          instances.put(moduleClass, module) == null, "more than one instance of %s", moduleClass);
+    }
+    addModules(instances.keySet(), instances);
+  }
+
+  /**
+   * Returns an implementation of the given {@link Component} interface. The arguments are the
+   * module instances and component dependencies, each an instance of exactly one of the modules,
+   * included or not, or dependencies of the component. Modules not given are created by their
+   * no-arg ctors.
+   */
+  public static <T> T createComponent(Class<T> component, Object... modulesAndDependencies) {
+    Component annotation = component.getAnnotation(Component.class);
+    Preconditions.checkArgument(annotation != null, "not a component: %s", component);
+    Set<Class<?>> declared = getModulesAndDependencies(component);
+    Map<Class<?>, Object> instances = new HashMap<>();
+    for (Object instance : modulesAndDependencies) {
+      List<Class<?>> matched = new ArrayList<>();
+      for (Class<?> type : declared) {
+        if (type.isInstance(instance)) {
+          matched.add(type);
+        }
+      }
+      Preconditions.checkArgument(
+          matched.size() == 1,
+          "%s must be an instance of exactly one module or dependency of %s, but is of %s",
+          instance,
+          component,
+          matched);
+      Class<?> type = matched.get(0);
+      Preconditions.checkArgument(
+          instances.put(type, instance) == null, "more than one instance of %s", type);
+    }
+    return component.cast(
+        createEitherComponent(null, component, instances, Collections.emptyMap()));
+  }
+
+  /** Returns an implementation of the given {@link Component.Builder} interface. */
+  public static <T> T createBuilder(Class<T> builder) {
+    return builder.cast(createEitherComponentBuilder(null, builder));
+  }
+
+  /** Returns the instance of the given type. */
+  public <T> T get(Class<T> type) {
+    return type.cast(getProvider(new Key(type, null)).get());
+  }
+
+  /** Returns the instance of the given type and qualifier, e.g., {@code Set<Foo>}. */
+  public Object get(Type type, @Nullable Annotation qualifier) {
+    return getProvider(new Key(type, qualifier)).get();
+  }
+
+  /** Injects the fields and methods of the given instance. */
+  public void injectMembers(Object instance) {
+    Key key = new Key(instance.getClass(), null);
+    injectMembers(instance, key, getTypeArguments(key));
+  }
+
+  /**
+   * Injects the fields and methods of the given instance of the given key, the type variables of
+   * its class and ancestors resolved by the given map.
+   */
+  private void injectMembers(
+      Object instance, Key key, Map<TypeVariable<?>, Type> typeArguments) {
+    List<Member> members = getInjectedMembers(instance.getClass());
+    if (members.isEmpty()) {
+      return;
+    }
+    Provider<?>[] dependencies;
+    synchronized (membersInjectorDependencies) {
+      dependencies = membersInjectorDependencies.get(key);
+      if (dependencies == null) {
+        List<Provider<?>> list = new ArrayList<>();
+        for (Member member : members) {
+          for (Key dependency : getDependencies(member, typeArguments)) {
+            list.add(getProvider(dependency));
+          }
+        }
+        dependencies = list.toArray(new Provider<?>[0]);
+        membersInjectorDependencies.put(key, dependencies);
+      }
+    }
+    int index = 0;
+    for (Member member : members) {
+      MethodHandle handle = getHandle(member);
+      int count = member instanceof Field ? 1 : ((Executable) member).getParameterCount();
+      Object[] args = new Object[count + 1];
+      args[0] = instance;
+      for (int i = 0; i < count; i++) {
+        args[i + 1] = dependencies[index++].get();
+      }
+      invoke(handle, args, member);
+    }
+  }
+
+  /**
+   * Returns the provider of the given key, including {@link Provider}, {@link Lazy}, {@link
+   * dagger.MembersInjector}, optional and multibinding keys.
+   */
+  public Provider<?> getProvider(Key key) {
+    synchronized (providers) {
+      Provider<?> result = providers.get(key);
+      if (result == null) {
+        result = createProvider(key);
+        providers.put(key, result);
+      }
+      return result;
+    }
+  }
+
+  private Provider<?> createProvider(Key key) {
+    Class<?> rawType = getRawType(key.type);
+    if (rawType.equals(Provider.class)) {
+      Provider<?> provider = getProvider(key.withType(getTypeArgument(key.type, 0)));
+      return () -> provider;
+    }
+    if (rawType.equals(Lazy.class)) {
+      Provider<?> provider = getProvider(key.withType(getTypeArgument(key.type, 0)));
+      return () -> DoubleCheck.lazy(provider);
+    }
+    if (rawType.equals(dagger.MembersInjector.class)) {
+      dagger.MembersInjector<Object> membersInjector = this::injectMembers;
+      return () -> membersInjector;
+    }
+
+    Binding binding = findBinding(key);
+    if (binding != null) {
+      return link(binding);
+    }
+    if (isOptional(rawType)) {
+      return createOptionalProvider(key, rawType);
+    }
+    if (rawType.equals(Set.class) && hasSetBindings(key)) {
+      return createSetProvider(key);
+    }
+    if (rawType.equals(Map.class) && hasMapBindings(key)) {
+      return createMapProvider(key);
+    }
+    if (key.qualifier == null) {
+      Constructor<?> ctor = ReflectionUtils.findInjectedCtor(rawType);
+      if (ctor != null) {
+        if (rawType.getTypeParameters().length > 0 && !(key.type instanceof ParameterizedType)) {
+          throw new IllegalStateException(
+              String.format(
+                  "raw type of generic class %s, requested by: %s", key, getProvisioningTrail()));
+        }
+        return link(ctorBindings.computeIfAbsent(key, k -> createCtorBinding(k, ctor)));
+      }
+    }
+    throw new IllegalStateException(
+        String.format("no binding for %s, requested by: %s", key, getProvisioningTrail()));
+  }
+
+  @Nullable
+  private Binding findBinding(Key key) {
+    for (ReflectiveInjector i = this; i != null; i = i.parent) {
+      Binding binding = i.bindings.get(key);
+      if (binding != null) {
+        return binding;
+      }
+    }
+    return null;
+  }
+
+  /** Returns whether the given key can be provided, used for optional bindings. */
+  private boolean hasBinding(Key key) {
+    Class<?> rawType = getRawType(key.type);
+    if (rawType.equals(Provider.class) || rawType.equals(Lazy.class)) {
+      return hasBinding(key.withType(getTypeArgument(key.type, 0)));
+    }
+    return findBinding(key) != null
+        || (rawType.equals(Set.class) && hasSetBindings(key))
+        || (rawType.equals(Map.class) && hasMapBindings(key))
+        || (key.qualifier == null && ReflectionUtils.findInjectedCtor(rawType) != null);
+  }
+
+  /** Returns the provider of the binding, shared by the injector of its scope if scoped. */
+  private Provider<?> link(Binding binding) {
+    if (binding.scope == null) {
+      return new LinkedProvider(this, binding);
+    }
+    ReflectiveInjector owner = this;
+    while (owner != null && !owner.scopes.contains(binding.scope)) {
+      owner = owner.parent;
+    }
+    if (owner == null) {
+      throw new IllegalStateException(
+          String.format(
+              "no injector of scope %s for %s from %s, requested by: %s",
+              binding.scope.getName(),
+              binding.key,
+              binding.source,
+              getProvisioningTrail()));
+    }
+    synchronized (owner.scopedProviders) {
+      Provider<?> result = owner.scopedProviders.get(binding);
+      if (result == null) {
+        result = DoubleCheck.provider(new LinkedProvider(owner, binding));
+        owner.scopedProviders.put(binding, result);
+      }
+      return result;
+    }
+  }
+
+  private Provider<?> createOptionalProvider(Key key, Class<?> optionalType) {
+    Key contentKey = key.withType(getTypeArgument(key.type, 0));
+    boolean isGuava = optionalType.equals(com.google.common.base.Optional.class);
+    if (!hasBinding(contentKey)) {
+      Object absent = isGuava ? com.google.common.base.Optional.absent() : java.util.Optional.empty();
+      return () -> absent;
+    }
+    Provider<?> provider = getProvider(contentKey);
+    return isGuava
+        ? () -> com.google.common.base.Optional.of(provider.get())
+        : () -> java.util.Optional.of(provider.get());
+  }
+
+  private boolean hasSetBindings(Key key) {
+    for (ReflectiveInjector i = this; i != null; i = i.parent) {
+      if (i.setContributions.containsKey(key) || i.declarations.contains(key)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns the provider of a {@link Set} with the contributions of this and the ancestors. */
+  private Provider<?> createSetProvider(Key key) {
+    List<Provider<?>> elementProviders = new ArrayList<>();
+    List<Provider<?>> elementsProviders = new ArrayList<>();
+    for (ReflectiveInjector i : getAncestorsAndSelf()) {
+      for (Binding binding : i.setContributions.getOrDefault(key, Collections.emptyList())) {
+        (binding.elements ? elementsProviders : elementProviders).add(link(binding));
+      }
+    }
+    return () -> {
+      Set<Object> result = new LinkedHashSet<>();
+      for (Provider<?> provider : elementProviders) {
+        result.add(provider.get());
+      }
+      for (Provider<?> provider : elementsProviders) {
+        result.addAll((Collection<?>) provider.get());
+      }
+      return Collections.unmodifiableSet(result);
+    };
+  }
+
+  private boolean hasMapBindings(Key key) {
+    Key mapKey = getMapKeyOfValues(key);
+    for (ReflectiveInjector i = this; i != null; i = i.parent) {
+      if (i.mapContributions.containsKey(mapKey) || i.declarations.contains(mapKey)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns the provider of a {@link Map} with the contributions of this and the ancestors. */
+  private Provider<?> createMapProvider(Key key) {
+    Key mapKey = getMapKeyOfValues(key);
+    boolean ofProviders = !mapKey.equals(key);
+    Map<Object, Provider<?>> valueProviders = new LinkedHashMap<>();
+    for (ReflectiveInjector i : getAncestorsAndSelf()) {
+      for (Map.Entry<Object, Binding> entry :
+          i.mapContributions.getOrDefault(mapKey, Collections.emptyMap()).entrySet()) {
+        Preconditions.checkState(
+            valueProviders.put(entry.getKey(), link(entry.getValue())) == null,
+            "duplicate map key %s for %s",
+            entry.getKey(),
+            mapKey);
+      }
+    }
+    if (ofProviders) {
+      Map<Object, Provider<?>> result = Collections.unmodifiableMap(valueProviders);
+      return () -> result;
+    }
+    return () -> {
+      Map<Object, Object> result = new LinkedHashMap<>();
+      for (Map.Entry<Object, Provider<?>> entry : valueProviders.entrySet()) {
+        result.put(entry.getKey(), entry.getValue().get());
+      }
+      return Collections.unmodifiableMap(result);
+    };
+  }
+
+  /** Returns {@code Map<K, V>} for {@code Map<K, Provider<V>>}, otherwise the given key. */
+  private static Key getMapKeyOfValues(Key key) {
+    Type valueType = getTypeArgument(key.type, 1);
+    if (!getRawType(valueType).equals(Provider.class)) {
+      return key;
+    }
+    return key.withType(
+        new ParameterizedTypeImpl(
+            Map.class, getTypeArgument(key.type, 0), getTypeArgument(valueType, 0)));
+  }
+
+  private List<ReflectiveInjector> getAncestorsAndSelf() {
+    List<ReflectiveInjector> result = new ArrayList<>();
+    for (ReflectiveInjector i = this; i != null; i = i.parent) {
+      result.add(i);
+    }
+    return Lists.reverse(result);
+  }
+
+  /** Adds the given modules and those they include, with the given instances by module. */
+  private void addModules(Set<Class<?>> modules, Map<Class<?>, Object> instances) {
+    for (Class<?> module : modules) {
+      Preconditions.checkArgument(ReflectionUtils.isModule(module), "not a module: %s", module);
+    }
+    for (Class<?> m : ReflectionUtils.findAllModules(modules)) {
+      addModuleBindings(m, instances.get(m));
+      Module annotation = m.getAnnotation(Module.class);
+      for (Class<?> subcomponent : annotation.subcomponents()) {
+        Class<?> builder = getEitherComponentBuilder(subcomponent);
+        Preconditions.checkArgument(
+            builder != null, "no builder for subcomponent %s in module %s", subcomponent, m);
+        addBinding(
+            new Binding(
+                new Key(builder, null),
+                null,
+                m,
+                injector -> () -> createEitherComponentBuilder(this, builder)));
+      }
+    }
+  }
+
+  private void addModuleBindings(Class<?> module, @Nullable Object instance) {
+    Provider<Object> moduleProvider =
+        instance != null
+            ? () -> instance
+            : DoubleCheck.provider(() -> createModule(module));
+    for (Method method : module.getDeclaredMethods()) {
+      Annotation qualifier = getQualifier(method.getAnnotations());
+      if (Modifier.isAbstract(method.getModifiers())
+          && method.getParameterCount() == 0
+          && method.getAnnotation(Binds.class) == null) {
+        // Optional bindings need no declaration here.
+        if (isMultibindsDeclaration(method)) {
+          declarations.add(new Key(method.getGenericReturnType(), qualifier));
+        }
+        continue;
+      }
+      Class<? extends Annotation> scope = getScope(method);
+      if (method.getAnnotation(Binds.class) != null) {
+        Type[] parameterTypes = method.getGenericParameterTypes();
+        Preconditions.checkArgument(parameterTypes.length == 1, "invalid @Binds: %s", method);
+        Key source =
+            new Key(parameterTypes[0], getQualifier(method.getParameterAnnotations()[0]));
+        addContributionOrBinding(
+            method,
+            qualifier,
+            new Binding(
+                new Key(method.getGenericReturnType(), qualifier),
+                scope,
+                method,
+                injector -> injector.getProvider(source)));
+      } else if (ReflectionUtils.isProvides(method)) {
+        boolean isStatic = Modifier.isStatic(method.getModifiers());
+        addContributionOrBinding(
+            method,
+            qualifier,
+            new Binding(
+                new Key(method.getGenericReturnType(), qualifier),
+                scope,
+                method,
+                isStatic ? null : moduleProvider));
+      }
+    }
+  }
+
+  private void addContributionOrBinding(Method method, Annotation qualifier, Binding binding) {
+    Type type = method.getGenericReturnType();
+    if (method.getAnnotation(IntoSet.class) != null) {
+      Key key = new Key(new ParameterizedTypeImpl(Set.class, type), qualifier);
+      setContributions.computeIfAbsent(key, k -> new ArrayList<>()).add(binding);
+    } else if (method.getAnnotation(ElementsIntoSet.class) != null) {
+      binding.elements = true;
+      setContributions.computeIfAbsent(binding.key, k -> new ArrayList<>()).add(binding);
+    } else if (method.getAnnotation(IntoMap.class) != null) {
+      Class<? extends Annotation> mapKeyType = getMapKeyType(method);
+      Object mapKey = getMapKeyValue(method, mapKeyType);
+      Type keyType =
+          mapKeyType.getAnnotation(MapKey.class).unwrapValue()
+              ? mapKeyType.getDeclaredMethods()[0].getGenericReturnType()
+              : mapKeyType;
+      Key key =
+          new Key(new ParameterizedTypeImpl(Map.class, new Key(keyType, null).type, type), qualifier);
+      Map<Object, Binding> contributions =
+          mapContributions.computeIfAbsent(key, k -> new LinkedHashMap<>());
+      Preconditions.checkState(
+          contributions.put(mapKey, binding) == null, "duplicate map key %s for %s", mapKey, key);
+    } else {
+      addBinding(binding);
+    }
+  }
+
+  private void addBinding(Binding binding) {
+    Binding old = bindings.put(binding.key, binding);
+    Preconditions.checkState(
+        old == null,
+        "duplicate bindings for %s: %s and %s",
+        binding.key,
+        old == null ? null : old.source,
+        binding.source);
+  }
+
+  private static Object createModule(Class<?> module) {
+    try {
+      Constructor<?> ctor = module.getDeclaredConstructor();
+      ctor.setAccessible(true);
+      return ctor.newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("module instance not given and cannot be created: " + module, e);
+    }
+  }
+
+  private static Binding createCtorBinding(Key key, Constructor<?> ctor) {
+    List<Class<? extends Annotation>> scopes =
+        ReflectionUtils.getScopeAnnotations(ctor.getDeclaringClass());
+    Preconditions.checkState(scopes.size() <= 1, "more than one scope on %s", ctor);
+    Binding result =
+        new Binding(key, scopes.isEmpty() ? null : scopes.get(0), ctor, (Provider<?>) null);
+    result.typeArguments = getTypeArguments(key);
+    return result;
+  }
+
+  /**
+   * Returns the type variables of the class of the given key and its ancestors, resolved by the
+   * type arguments of the key. Variables that cannot be resolved, e.g., of a raw type, are absent.
+   */
+  private static Map<TypeVariable<?>, Type> getTypeArguments(Key key) {
+    Map<TypeVariable<?>, Type> result = new HashMap<>();
+    Class<?> cls = getRawType(key.type);
+    if (key.type instanceof ParameterizedType) {
+      Type[] arguments = ((ParameterizedType) key.type).getActualTypeArguments();
+      TypeVariable<?>[] variables = cls.getTypeParameters();
+      for (int i = 0; i < variables.length; i++) {
+        result.put(variables[i], arguments[i]);
+      }
+    }
+    for (Class<?> c = cls; c.getSuperclass() != null; c = c.getSuperclass()) {
+      if (!(c.getGenericSuperclass() instanceof ParameterizedType)) {
+        continue;
+      }
+      Type[] arguments = ((ParameterizedType) c.getGenericSuperclass()).getActualTypeArguments();
+      TypeVariable<?>[] variables = c.getSuperclass().getTypeParameters();
+      for (int i = 0; i < variables.length; i++) {
+        Type resolved = resolve(arguments[i], result);
+        if (resolved != null) {
+          result.put(variables[i], resolved);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the given type with its type variables replaced by the given map, null if any is not
+   * in it, or in a wildcard or array type.
+   */
+  @Nullable
+  private static Type resolve(Type type, Map<TypeVariable<?>, Type> typeArguments) {
+    if (type instanceof TypeVariable) {
+      return typeArguments.get(type);
+    }
+    if (type instanceof ParameterizedType) {
+      ParameterizedType parameterizedType = (ParameterizedType) type;
+      Type[] arguments = parameterizedType.getActualTypeArguments();
+      boolean changed = false;
+      for (int i = 0; i < arguments.length; i++) {
+        Type resolved = resolve(arguments[i], typeArguments);
+        if (resolved == null) {
+          return null;
+        }
+        changed |= resolved != arguments[i];
+        arguments[i] = resolved;
+      }
+      return changed
+          ? new ParameterizedTypeImpl((Class<?>) parameterizedType.getRawType(), arguments)
+          : type;
+    }
+    if (type instanceof WildcardType || type instanceof GenericArrayType) {
+      return hasTypeVariable(type) ? null : type;
+    }
+    return type;
+  }
+
+  /** Returns whether the given type is, or has, a type variable. */
+  private static boolean hasTypeVariable(Type type) {
+    if (type instanceof TypeVariable) {
+      return true;
+    }
+    if (type instanceof ParameterizedType) {
+      for (Type argument : ((ParameterizedType) type).getActualTypeArguments()) {
+        if (hasTypeVariable(argument)) {
+          return true;
+        }
+      }
+    } else if (type instanceof WildcardType) {
+      for (Type bound : ((WildcardType) type).getUpperBounds()) {
+        if (hasTypeVariable(bound)) {
+          return true;
+        }
+      }
+      for (Type bound : ((WildcardType) type).getLowerBounds()) {
+        if (hasTypeVariable(bound)) {
+          return true;
+        }
+      }
+    } else if (type instanceof GenericArrayType) {
+      return hasTypeVariable(((GenericArrayType) type).getGenericComponentType());
+    }
+    return false;
+  }
+
+  @Nullable
+  private static Class<? extends Annotation> getScope(Method method) {
+    List<Class<? extends Annotation>> scopes = ReflectionUtils.getScopeAnnotations(method);
+    Preconditions.checkState(scopes.size() <= 1, "more than one scope on %s", method);
+    return scopes.isEmpty() ? null : scopes.get(0);
+  }
+
+  /**
+   * Returns whether the given abstract module method without parameters is a {@link Multibinds}
+   * declaration rather than a {@link dagger.BindsOptionalOf} one. Only sets and maps can be both.
+   */
+  private static boolean isMultibindsDeclaration(Method method) {
+    Map<String, Map<String, Object>> annotations = InvisibleAnnotations.of(method);
+    if (annotations != null && annotations.containsKey(Multibinds.class.getName())) {
+      return true;
+    }
+    if (annotations != null && annotations.containsKey(BindsOptionalOf.class.getName())) {
+      return false;
+    }
+    Class<?> returnType = method.getReturnType();
+    Preconditions.checkState(
+        annotations != null || !(returnType.equals(Set.class) || returnType.equals(Map.class)),
+        "cannot tell @Multibinds from @BindsOptionalOf without the class file of %s: %s",
+        method.getDeclaringClass(),
+        method);
+    Preconditions.checkState(
+        annotations == null,
+        "abstract module method without @Binds, @Multibinds or @BindsOptionalOf: %s",
+        method);
+    return false;
+  }
+
+  /** Returns the type of the map key of the given {@link IntoMap} method. */
+  private static Class<? extends Annotation> getMapKeyType(Method method) {
+    for (Annotation annotation : method.getAnnotations()) {
+      if (annotation.annotationType().getAnnotation(MapKey.class) != null) {
+        return annotation.annotationType();
+      }
+    }
+    Map<String, Map<String, Object>> annotations = InvisibleAnnotations.of(method);
+    if (annotations != null) {
+      for (String name : annotations.keySet()) {
+        Class<?> type;
+        try {
+          type = Class.forName(name, false, method.getDeclaringClass().getClassLoader());
+        } catch (ClassNotFoundException e) {
+          continue;
+        }
+        if (type.getAnnotation(MapKey.class) != null) {
+          return type.asSubclass(Annotation.class);
+        }
+      }
+    }
+    throw new IllegalStateException("@IntoMap without map key: " + method);
+  }
+
+  /**
+   * Returns the map key of the given {@link IntoMap} method. An unwrapped key not retained at
+   * runtime is read from the class file, a wrapped one must be retained to be created.
+   */
+  private static Object getMapKeyValue(Method method, Class<? extends Annotation> mapKeyType) {
+    boolean unwrapValue = mapKeyType.getAnnotation(MapKey.class).unwrapValue();
+    Annotation mapKey = method.getAnnotation(mapKeyType);
+    if (mapKey != null && !unwrapValue) {
+      return mapKey;
+    }
+    Method value = mapKeyType.getDeclaredMethods()[0];
+    if (mapKey != null) {
+      try {
+        value.setAccessible(true);
+        return value.invoke(mapKey);
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalStateException("cannot read map key " + mapKey, e);
+      }
+    }
+    Preconditions.checkState(
+        unwrapValue, "map key %s of %s must be retained at runtime", mapKeyType, method);
+    Object result =
+        InvisibleAnnotations.getMember(
+            InvisibleAnnotations.of(method).get(mapKeyType.getName()), value.getName());
+    return result != null ? result : value.getDefaultValue();
+  }
+
+  /** Provisions a binding with the dependencies from an injector, resolved on first use. */
+  private static final class LinkedProvider implements Provider<Object> {
+    private final ReflectiveInjector injector;
+    private final Binding binding;
+    private volatile Provider<?>[] dependencies;
+    @Nullable private Provider<?> linked;
+
+    LinkedProvider(ReflectiveInjector injector, Binding binding) {
+      this.injector = injector;
+      this.binding = binding;
+    }
+
+    @Override
+    public Object get() {
+      ArrayDeque<Binding> trail = provisioning.get();
+      if (trail.contains(binding)) {
+        throw new IllegalStateException(
+            "dependency cycle: " + injector.getProvisioningTrail() + " -> " + binding.key);
+      }
+      trail.push(binding);
+      try {
+        return provision();
+      } finally {
+        trail.pop();
+      }
+    }
+
+    private Object provision() {
+      Provider<?>[] resolved = dependencies;
+      if (resolved == null) {
+        if (binding.linker != null) {
+          linked = binding.linker.apply(injector);
+          resolved = new Provider<?>[0];
+        } else {
+          List<Provider<?>> list = new ArrayList<>();
+          for (Key key : getDependencies((Member) binding.source, binding.typeArguments)) {
+            list.add(injector.getProvider(key));
+          }
+          resolved = list.toArray(new Provider<?>[0]);
+        }
+        dependencies = resolved;
+      }
+      if (binding.linker != null) {
+        return linked.get();
+      }
+      int offset = binding.receiver == null ? 0 : 1;
+      Object[] args = new Object[resolved.length + offset];
+      if (binding.receiver != null) {
+        args[0] = binding.receiver.get();
+      }
+      for (int i = 0; i < resolved.length; i++) {
+        args[i + offset] = resolved[i].get();
+      }
+      Member source = (Member) binding.source;
+      Object result = invoke(getHandle(source), args, source);
+      if (binding.source instanceof Constructor) {
+        injector.injectMembers(result, binding.key, binding.typeArguments);
+      }
+      return result;
+    }
+  }
+
+  private String getProvisioningTrail() {
+    List<Key> keys = new ArrayList<>();
+    for (Binding binding : provisioning.get()) {
+      keys.add(binding.key);
+    }
+    return Joiner.on(" -> ").join(Lists.reverse(keys));
+  }
+
+  /** Returns the injected fields and methods of the class, ancestors first. */
+  private static List<Member> getInjectedMembers(Class<?> cls) {
+    List<Member> result = injectedMembers.get(cls);
+    if (result == null) {
+      result = new ArrayList<>();
+      List<Class<?>> classes = new ArrayList<>();
+      for (Class<?> c = cls; c != null && !c.equals(Object.class); c = c.getSuperclass()) {
+        classes.add(c);
+      }
+      for (Class<?> c : Lists.reverse(classes)) {
+        for (Field field : ReflectionUtils.getInjectedFields(c)) {
+          if (!Modifier.isStatic(field.getModifiers())) {
+            result.add(field);
+          }
+        }
+        for (Method method : ReflectionUtils.getInjectedMethods(c)) {
+          if (!Modifier.isStatic(method.getModifiers())) {
+            result.add(method);
+          }
+        }
+      }
+      injectedMembers.put(cls, result);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the keys the given member depends on, type variables replaced by the given map. Throws
+   * if any is not in it, e.g., for members of a raw generic class.
+   */
+  private static List<Key> getDependencies(
+      Member member, Map<TypeVariable<?>, Type> typeArguments) {
+    List<Key> result = new ArrayList<>();
+    if (member instanceof Field) {
+      Field field = (Field) member;
+      result.add(
+          new Key(
+              resolve(field.getGenericType(), typeArguments, member),
+              getQualifier(field.getAnnotations())));
+    } else {
+      Executable executable = (Executable) member;
+      Type[] types = executable.getGenericParameterTypes();
+      Annotation[][] annotations = executable.getParameterAnnotations();
+      // Inner class ctors might have implicit parameters without annotations.
+      int offset = annotations.length - types.length;
+      for (int i = 0; i < types.length; i++) {
+        result.add(
+            new Key(
+                resolve(types[i], typeArguments, member),
+                i + offset >= 0 ? getQualifier(annotations[i + offset]) : null));
+      }
+    }
+    return result;
+  }
+
+  private static Type resolve(Type type, Map<TypeVariable<?>, Type> typeArguments, Member member) {
+    Type result = resolve(type, typeArguments);
+    if (result == null) {
+      throw new IllegalStateException(
+          String.format("unsupported: cannot resolve type variables of %s in %s", type, member));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the handle of the ctor, method or field setter taking the receiver, if any, and the
+   * arguments as an Object[].
+   */
+  private static MethodHandle getHandle(Member member) {
+    MethodHandle result = handles.get(member);
+    if (result == null) {
+      ((AccessibleObject) member).setAccessible(true);
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      try {
+        if (member instanceof Field) {
+          result = lookup.unreflectSetter((Field) member);
+        } else if (member instanceof Method) {
+          result = lookup.unreflect((Method) member);
+        } else {
+          result = lookup.unreflectConstructor((Constructor<?>) member);
+        }
+      } catch (IllegalAccessException e) {
+        throw new IllegalStateException("cannot access " + member, e);
+      }
+      int count = result.type().parameterCount();
+      result =
+          result
+              .asType(MethodType.genericMethodType(count))
+              .asSpreader(Object[].class, count);
+      handles.put(member, result);
+    }
+    return result;
+  }
+
+  private static Object invoke(MethodHandle handle, Object[] args, Member member) {
+    try {
+      return (Object) handle.invokeExact(args);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new RuntimeException("invoking " + member + " failed", e);
+    }
+  }
+
+  private static Object createEitherComponent(
+      @Nullable ReflectiveInjector parent,
+      Class<?> eitherComponent,
+      Map<Class<?>, Object> instances,
+      Map<Key, Object> boundInstances) {
+    Preconditions.checkArgument(
+        eitherComponent.isInterface(), "not an interface (sub)component: %s", eitherComponent);
+    ReflectiveInjector injector =
+        new ReflectiveInjector(parent, ReflectionUtils.getScopeAnnotations(eitherComponent));
+    Component component = eitherComponent.getAnnotation(Component.class);
+    Subcomponent subcomponent = eitherComponent.getAnnotation(Subcomponent.class);
+    Preconditions.checkArgument(
+        component != null || subcomponent != null, "not a (sub)component: %s", eitherComponent);
+    injector.addModules(
+        new HashSet<>(
+            Arrays.asList(component != null ? component.modules() : subcomponent.modules())),
+        instances);
+    if (component != null) {
+      for (Class<?> dependency : component.dependencies()) {
+        Object instance =
+            Preconditions.checkNotNull(
+                instances.get(dependency), "dependency %s of %s not set", dependency,
+                eitherComponent);
+        injector.addComponentDependency(dependency, instance);
+      }
+    }
+    for (Map.Entry<Key, Object> entry : boundInstances.entrySet()) {
+      Object instance = entry.getValue();
+      injector.addBinding(
+          new Binding(entry.getKey(), null, eitherComponent, i -> () -> instance));
+    }
+    Object result =
+        Proxy.newProxyInstance(
+            eitherComponent.getClassLoader(),
+            new Class<?>[] {eitherComponent},
+            new EitherComponentHandler(injector, eitherComponent));
+    injector.addBinding(
+        new Binding(new Key(eitherComponent, null), null, eitherComponent, i -> () -> result));
+    return result;
+  }
+
+  /** Binds the provision methods of the component dependency and the dependency itself. */
+  private void addComponentDependency(Class<?> dependency, Object instance) {
+    addBinding(new Binding(new Key(dependency, null), null, dependency, i -> () -> instance));
+    for (Method method : dependency.getMethods()) {
+      if (method.getParameterCount() != 0
+          || method.getReturnType().equals(void.class)
+          || method.getDeclaringClass().equals(Object.class)
+          || Modifier.isStatic(method.getModifiers())) {
+        continue;
+      }
+      Key key = new Key(method.getGenericReturnType(), getQualifier(method.getAnnotations()));
+      if (!bindings.containsKey(key)) {
+        addBinding(new Binding(key, null, method, () -> instance));
+      }
+    }
+  }
+
+  private static Object createEitherComponentBuilder(
+      @Nullable ReflectiveInjector parent, Class<?> builder) {
+    Preconditions.checkArgument(
+        builder.isInterface(), "not an interface (sub)component builder: %s", builder);
+    Class<?> eitherComponent =
+        Preconditions.checkNotNull(
+            builder.getEnclosingClass(), "(sub)component of builder %s not found", builder);
+    Set<Class<?>> settable = getModulesAndDependencies(eitherComponent);
+    Map<Class<?>, Object> instances = new HashMap<>();
+    Map<Key, Object> boundInstances = new HashMap<>();
+    Object[] proxy = new Object[1];
+    InvocationHandler handler =
+        (p, method, args) -> {
+          if (method.getDeclaringClass().equals(Object.class)) {
+            return invokeObjectMethod(p, method, args, builder);
+          }
+          if (args == null || args.length == 0) {
+            Preconditions.checkState(
+                method.getReturnType().isAssignableFrom(eitherComponent),
+                "builder method without parameters must build %s: %s",
+                eitherComponent,
+                method);
+            return createEitherComponent(parent, eitherComponent, instances, boundInstances);
+          }
+          Preconditions.checkState(args.length == 1, "invalid builder method: %s", method);
+          Class<?> type = method.getParameterTypes()[0];
+          Annotation[] parameterAnnotations = method.getParameterAnnotations()[0];
+          if (method.getAnnotation(BindsInstance.class) != null
+              || getAnnotation(parameterAnnotations, BindsInstance.class) != null) {
+            Annotation qualifier = getQualifier(parameterAnnotations);
+            if (qualifier == null) {
+              qualifier = getQualifier(method.getAnnotations());
+            }
+            boundInstances.put(
+                new Key(method.getGenericParameterTypes()[0], qualifier),
+                Preconditions.checkNotNull(args[0], "null bound instance for %s", method));
+          } else {
+            Preconditions.checkState(
+                settable.contains(type),
+                "%s is neither a module nor a dependency of %s, or misses @BindsInstance: %s",
+                type,
+                eitherComponent,
+                method);
+            instances.put(type, args[0]);
+          }
+          return proxy[0];
+        };
+    proxy[0] = Proxy.newProxyInstance(builder.getClassLoader(), new Class<?>[] {builder}, handler);
+    return proxy[0];
+  }
+
+  /** Returns the modules, included or not, and the dependencies of the given (sub)component. */
+  private static Set<Class<?>> getModulesAndDependencies(Class<?> eitherComponent) {
+    Component component = eitherComponent.getAnnotation(Component.class);
+    Subcomponent subcomponent = eitherComponent.getAnnotation(Subcomponent.class);
+    Preconditions.checkArgument(
+        component != null || subcomponent != null, "not a (sub)component: %s", eitherComponent);
+    Set<Class<?>> result =
+        ReflectionUtils.findAllModules(
+            new HashSet<>(
+                Arrays.asList(component != null ? component.modules() : subcomponent.modules())));
+    if (component != null) {
+      result.addAll(Arrays.asList(component.dependencies()));
+    }
+    return result;
+  }
+
+  @Nullable
+  private static Class<?> getEitherComponentBuilder(Class<?> eitherComponent) {
+    List<Class<?>> result = new ArrayList<>();
+    for (Class<?> c : eitherComponent.getDeclaredClasses()) {
+      if (isEitherComponentBuilder(c)) {
+        result.add(c);
+      }
+    }
+    Preconditions.checkState(
+        result.size() <= 1, "more than one builder in %s: %s", eitherComponent, result);
+    return result.isEmpty() ? null : result.get(0);
+  }
+
+  /**
+   * Returns whether the given class is a (sub)component builder. {@link Subcomponent.Builder} and
+   * {@link Component.Builder} are not retained at runtime, they are read from the class file.
+   * Without it, this looks for a build method in a class nested in a (sub)component.
+   */
+  private static boolean isEitherComponentBuilder(Class<?> cls) {
+    Class<?> enclosing = cls.getEnclosingClass();
+    if (enclosing == null
+        || (enclosing.getAnnotation(Component.class) == null
+            && enclosing.getAnnotation(Subcomponent.class) == null)) {
+      return false;
+    }
+    Map<String, Map<String, Object>> annotations = InvisibleAnnotations.of(cls);
+    if (annotations != null) {
+      return annotations.containsKey(Component.Builder.class.getName())
+          || annotations.containsKey(Subcomponent.Builder.class.getName());
+    }
+    for (Method method : cls.getMethods()) {
+      if (method.getParameterCount() == 0 && method.getReturnType().equals(enclosing)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Implements the provision, members injection and subcomponent methods of a (sub)component. */
+  private static final class EitherComponentHandler implements InvocationHandler {
+    private final ReflectiveInjector injector;
+    private final Class<?> eitherComponent;
+    private final Map<Method, Function<Object[], Object>> methods = new ConcurrentHashMap<>();
+
+    EitherComponentHandler(ReflectiveInjector injector, Class<?> eitherComponent) {
+      this.injector = injector;
+      this.eitherComponent = eitherComponent;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      if (method.getDeclaringClass().equals(Object.class)) {
+        return invokeObjectMethod(proxy, method, args, eitherComponent);
+      }
+      Function<Object[], Object> function = methods.get(method);
+      if (function == null) {
+        function = createMethod(method);
+        methods.put(method, function);
+      }
+      return function.apply(args);
+    }
+
+    private Function<Object[], Object> createMethod(Method method) {
+      Class<?> returnType = method.getReturnType();
+      if (returnType.getAnnotation(Subcomponent.class) != null) {
+        return args -> {
+          Map<Class<?>, Object> instances = new HashMap<>();
+          Class<?>[] parameterTypes = method.getParameterTypes();
+          for (int i = 0; i < parameterTypes.length; i++) {
+            instances.put(parameterTypes[i], args[i]);
+          }
+          return createEitherComponent(injector, returnType, instances, Collections.emptyMap());
+        };
+      }
+      if (isEitherComponentBuilder(returnType)) {
+        return args -> createEitherComponentBuilder(injector, returnType);
+      }
+      if (method.getParameterCount() == 1) {
+        return args -> {
+          injector.injectMembers(args[0]);
+          return returnType.equals(void.class) ? null : args[0];
+        };
+      }
+      Preconditions.checkState(
+          method.getParameterCount() == 0, "unsupported (sub)component method: %s", method);
+      Provider<?> provider =
+          injector.getProvider(
+              new Key(method.getGenericReturnType(), getQualifier(method.getAnnotations())));
+      return args -> provider.get();
+    }
+  }
+
+  /** Implements {@link Object#equals}, {@link Object#hashCode} and {@link Object#toString}. */
+  private static Object invokeObjectMethod(
+      Object proxy, Method method, Object[] args, Class<?> implemented) {
+    switch (method.getName()) {
+      case "equals":
+        return proxy == args[0];
+      case "hashCode":
+        return System.identityHashCode(proxy);
+      default:
+        return "Reflective" + implemented.getSimpleName();
+    }
+  }
+
+  @Nullable
+  private static Annotation getQualifier(Annotation[] annotations) {
+    for (Annotation annotation : annotations) {
+      if (ReflectionUtils.isQualifierAnnotation(annotation)) {
+        return annotation;
+      }
+    }
+    return null;
+  }
+
+  @Nullable
+  private static Annotation getAnnotation(
+      Annotation[] annotations, Class<? extends Annotation> type) {
+    for (Annotation annotation : annotations) {
+      if (annotation.annotationType().equals(type)) {
+        return annotation;
+      }
+    }
+    return null;
+  }
+
+  private static boolean isOptional(Class<?> type) {
+    return type.equals(java.util.Optional.class)
+        || type.equals(com.google.common.base.Optional.class);
+  }
+
+  private static Class<?> getRawType(Type type) {
+    if (type instanceof Class) {
+      return (Class<?>) type;
+    }
+    if (type instanceof ParameterizedType) {
+      return (Class<?>) ((ParameterizedType) type).getRawType();
+    }
+    return Object.class;
+  }
+
+  private static Type getTypeArgument(Type type, int index) {
+    Preconditions.checkArgument(
+        type instanceof ParameterizedType, "type argument expected for %s", type);
+    return ((ParameterizedType) type).getActualTypeArguments()[index];
+  }
+
+  /**
+   * Binding key of type and qualifier. Types are compared by name so that types created here equal
+   * those from reflection.
+   */
+  public static final class Key {
+    final Type type;
+    @Nullable final Annotation qualifier;
+    private final String name;
+
+    public Key(Type type, @Nullable Annotation qualifier) {
+      this.type = type instanceof Class ? Primitives.wrap((Class<?>) type) : type;
+      this.qualifier = qualifier;
+      name = this.type.getTypeName();
+    }
+
+    Key withType(Type type) {
+      return new Key(type, qualifier);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return name.equals(other.name) && Objects.equals(qualifier, other.qualifier);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(name, qualifier);
+    }
+
+    @Override
+    public String toString() {
+      return qualifier == null ? name : qualifier + " " + name;
+    }
+  }
+
+  /** A binding from a ctor, a provision method or a linker. */
+  private static final class Binding {
+    final Key key;
+    @Nullable final Class<? extends Annotation> scope;
+    /** Ctor, method, or the class or method declaring the linker. */
+    final Object source;
+    /** Receiver of the method, null for ctors, static methods and linkers. */
+    @Nullable final Provider<?> receiver;
+    /** Returns the provider from the given injector instead of invoking the source. */
+    @Nullable final Function<ReflectiveInjector, Provider<?>> linker;
+    /** Whether the binding provides the elements of a multibinding set. */
+    boolean elements;
+    /** Type variables of the class of a ctor binding, resolved by the key. */
+    Map<TypeVariable<?>, Type> typeArguments = Collections.emptyMap();
+
+    Binding(
+        Key key,
+        @Nullable Class<? extends Annotation> scope,
+        Executable source,
+        @Nullable Provider<?> receiver) {
+      this.key = key;
+      this.scope = scope;
+      this.source = source;
+      this.receiver = receiver;
+      linker = null;
+    }
+
+    Binding(
+        Key key,
+        @Nullable Class<? extends Annotation> scope,
+        Object source,
+        Function<ReflectiveInjector, Provider<?>> linker) {
+      this.key = key;
+      this.scope = scope;
+      this.source = source;
+      this.receiver = null;
+      this.linker = linker;
+    }
+  }
+
+  /** A {@link ParameterizedType} without owner type, e.g., {@code Set<Foo>}. */
+  private static final class ParameterizedTypeImpl implements ParameterizedType {
+    private final Class<?> rawType;
+    private final Type[] typeArguments;
+
+    ParameterizedTypeImpl(Class<?> rawType, Type... typeArguments) {
+      this.rawType = rawType;
+      this.typeArguments = typeArguments;
+    }
+
+    @Override
+    public Type[] getActualTypeArguments() {
+      return typeArguments.clone();
+    }
+
+    @Override
+    public Type getRawType() {
+      return rawType;
+    }
+
+    @Override
+    public Type getOwnerType() {
+      return null;
+    }
+
+    @Override
+    public String getTypeName() {
+      List<String> names = new ArrayList<>();
+      for (Type type : typeArguments) {
+        names.add(type.getTypeName());
+      }
+      return rawType.getName() + "<" + Joiner.on(", ").join(names) + ">";
+    }
+
+    @Override
+    public String toString() {
+      return getTypeName();
+    }
+  }
+}